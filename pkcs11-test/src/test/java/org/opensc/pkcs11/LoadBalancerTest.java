@@ -0,0 +1,300 @@
+/***********************************************************
+ * $Id$
+ * 
+ * PKCS11 provider of the OpenSC project http://www.opensc-project.org
+ *
+ * Copyright (C) 2002-2006 ev-i Informationstechnologie GmbH
+ *
+ * Created: Oct 19, 2026
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ * 
+ ***********************************************************/
+
+package org.opensc.pkcs11;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.security.SignatureException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import javax.crypto.IllegalBlockSizeException;
+
+import junit.framework.TestCase;
+
+import org.opensc.pkcs11.spi.StubTokenCipherSpi;
+import org.opensc.pkcs11.wrap.PKCS11Exception;
+
+/**
+ * Tests the scheduling and failover of {@link PKCS11LoadBalancer} with
+ * stub slots, which do not need a PKCS#11 module. The decryption of
+ * {@link CipherMember} passes through the cipher service of the provider
+ * and only replaces the calls to the token.
+ * 
+ * @author wglas
+ */
+public class LoadBalancerTest extends TestCase
+{
+    private static class StubMember extends PKCS11LoadBalancer.Member
+    {
+        volatile int opened;
+        volatile int signed;
+        volatile GeneralSecurityException failure;
+        volatile CountDownLatch block;
+
+        StubMember(long slotId) throws IOException
+        {
+            super(slotId);
+            this.open();
+        }
+
+        @Override
+        void openSlot() throws IOException
+        {
+            ++this.opened;
+        }
+
+        @Override
+        void closeSlot()
+        {
+        }
+
+        @Override
+        byte[] sign(String algorithm, byte[] data) throws GeneralSecurityException
+        {
+            if (this.failure != null) throw this.failure;
+
+            if (this.block != null)
+            {
+                try
+                {
+                    this.block.await();
+                } catch (InterruptedException e)
+                {
+                    throw new SignatureException("Interrupted.");
+                }
+            }
+
+            ++this.signed;
+            return new byte[] { (byte)this.slotId };
+        }
+
+        @Override
+        byte[] decrypt(String transformation, byte[] data) throws GeneralSecurityException
+        {
+            return this.sign(transformation,data);
+        }
+    }
+
+    /**
+     * A provider, which offers the cipher service of the PKCS#11 provider
+     * on a stub token.
+     */
+    private static class StubTokenProvider extends Provider
+    {
+        private static final long serialVersionUID = 1L;
+
+        StubTokenProvider(final int errorCode, final byte[] result)
+        {
+            super("StubToken",1.0,"PKCS#11 cipher service on a stub token.");
+
+            this.putService(new Service(this,"Cipher","RSA/ECB/PKCS1Padding",
+                                        StubTokenCipherSpi.class.getName(),null,null) {
+
+                @Override
+                public Object newInstance(Object constructorParameter)
+                {
+                    return new StubTokenCipherSpi(this.getAlgorithm(),errorCode,result);
+                }
+            });
+        }
+    }
+
+    /**
+     * A slot, which decrypts through the cipher service like the slots
+     * of a PKCS#11 module.
+     */
+    private static class CipherMember extends PKCS11LoadBalancer.Member
+    {
+        final Provider provider;
+
+        CipherMember(long slotId, int errorCode) throws IOException
+        {
+            super(slotId);
+            this.provider = new StubTokenProvider(errorCode,new byte[] { (byte)slotId });
+            this.open();
+        }
+
+        @Override
+        void openSlot() throws IOException
+        {
+        }
+
+        @Override
+        void closeSlot()
+        {
+        }
+
+        @Override
+        byte[] sign(String algorithm, byte[] data) throws GeneralSecurityException
+        {
+            throw new SignatureException("Signing is not supported by the stub token.");
+        }
+
+        @Override
+        byte[] decrypt(String transformation, byte[] data) throws GeneralSecurityException
+        {
+            return PKCS11LoadBalancer.decryptWith(this.provider,new StubTokenCipherSpi.StubKey(),
+                                                  transformation,data);
+        }
+    }
+
+    private static final byte[] DATA = new byte[] { 0x01, 0x02, 0x03 };
+
+    public void testLeastOutstanding() throws Exception
+    {
+        final StubMember a = new StubMember(1);
+        StubMember b = new StubMember(2);
+
+        final PKCS11LoadBalancer lb = new PKCS11LoadBalancer(Arrays.asList(a,b));
+
+        a.block = new CountDownLatch(1);
+
+        final byte[][] result = new byte[1][];
+
+        Thread t = new Thread() {
+            public void run() {
+                try {
+                    result[0] = lb.sign("SHA1withRSA",DATA);
+                } catch (GeneralSecurityException e) {
+                    // checked below.
+                }
+            }
+        };
+        t.start();
+
+        while (lb.getOutstandingRequests(1) == 0)
+            Thread.sleep(1);
+
+        // slot 1 is busy, so the request has to go to slot 2.
+        assertEquals(2,lb.sign("SHA1withRSA",DATA)[0]);
+        assertEquals(1,b.signed);
+
+        a.block.countDown();
+        t.join();
+
+        assertEquals(1,result[0][0]);
+        assertEquals(1,a.signed);
+        assertEquals(0,lb.getOutstandingRequests(1));
+        assertEquals(0,lb.getOutstandingRequests(2));
+    }
+
+    public void testFailover() throws Exception
+    {
+        StubMember a = new StubMember(1);
+        StubMember b = new StubMember(2);
+
+        PKCS11LoadBalancer lb = new PKCS11LoadBalancer(Arrays.asList(a,b));
+
+        a.failure = new SignatureException("PKCS11 exception",
+                new PKCS11Exception(PKCS11Exception.CKR_DEVICE_REMOVED,"removed"));
+
+        assertEquals(2,lb.decrypt("RSA/ECB/PKCS1Padding",DATA)[0]);
+        assertEquals(1,lb.getHealthySlotCount());
+        assertEquals(0,a.signed);
+
+        // the failed slot is not retried before the retry interval has passed.
+        a.failure = null;
+        assertEquals(2,lb.sign("SHA1withRSA",DATA)[0]);
+        assertEquals(1,a.opened);
+
+        lb.setRetryInterval(0L);
+
+        assertEquals(1,lb.sign("SHA1withRSA",DATA)[0]);
+        assertEquals(2,a.opened);
+        assertEquals(2,lb.getHealthySlotCount());
+
+        b.failure = new SignatureException("PKCS11 exception",
+                new PKCS11Exception(PKCS11Exception.CKR_TOKEN_NOT_PRESENT,"not present"));
+        a.failure = b.failure;
+
+        try
+        {
+            lb.sign("SHA1withRSA",DATA);
+            fail("Signing without a healthy slot succeeded.");
+        } catch (GeneralSecurityException e)
+        {
+            assertEquals(0,lb.getHealthySlotCount());
+        }
+    }
+
+    public void testDecryptFailoverThroughCipherSpi() throws Exception
+    {
+        CipherMember a = new CipherMember(1,PKCS11Exception.CKR_DEVICE_REMOVED);
+        CipherMember b = new CipherMember(2,PKCS11Exception.CKR_OK);
+
+        PKCS11LoadBalancer lb = new PKCS11LoadBalancer(Arrays.asList(a,b));
+
+        // slot 1 is tried first and its token has been removed.
+        assertEquals(2,lb.decrypt("RSA/ECB/PKCS1Padding",DATA)[0]);
+        assertFalse(a.healthy);
+        assertEquals(1,lb.getHealthySlotCount());
+    }
+
+    public void testNoDecryptFailoverForInvalidData() throws Exception
+    {
+        CipherMember a = new CipherMember(1,PKCS11Exception.CKR_ENCRYPTED_DATA_INVALID);
+        CipherMember b = new CipherMember(2,PKCS11Exception.CKR_OK);
+
+        PKCS11LoadBalancer lb = new PKCS11LoadBalancer(Arrays.asList(a,b));
+
+        try
+        {
+            lb.decrypt("RSA/ECB/PKCS1Padding",DATA);
+            fail("Decrypting invalid data succeeded.");
+        } catch (IllegalBlockSizeException e)
+        {
+            assertEquals(PKCS11Exception.CKR_ENCRYPTED_DATA_INVALID,
+                         ((PKCS11Exception)e.getCause()).getErrorCode());
+        }
+
+        assertEquals(2,lb.getHealthySlotCount());
+    }
+
+    public void testNoFailoverForOtherErrors() throws Exception
+    {
+        StubMember a = new StubMember(1);
+        StubMember b = new StubMember(2);
+
+        PKCS11LoadBalancer lb = new PKCS11LoadBalancer(Arrays.asList(a,b));
+
+        SignatureException failure = new SignatureException("Invalid data.");
+        a.failure = failure;
+
+        try
+        {
+            lb.sign("SHA1withRSA",DATA);
+            fail("Signing with an invalid input succeeded.");
+        } catch (SignatureException e)
+        {
+            assertSame(failure,e);
+        }
+
+        assertEquals(0,b.signed);
+        assertEquals(2,lb.getHealthySlotCount());
+    }
+}
@@ -0,0 +1,124 @@
+/***********************************************************
+ * $Id$
+ * 
+ * PKCS11 provider of the OpenSC project http://www.opensc-project.org
+ *
+ * Copyright (C) 2002-2006 ev-i Informationstechnologie GmbH
+ *
+ * Created: Oct 19, 2026
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ * 
+ ***********************************************************/
+
+package org.opensc.pkcs11.spi;
+
+import java.security.PrivateKey;
+
+import org.opensc.pkcs11.wrap.PKCS11Exception;
+import org.opensc.pkcs11.wrap.PKCS11SessionChild;
+
+/**
+ * A {@link PKCS11CipherSpi}, which performs its operations on a stub token
+ * instead of calling the PKCS#11 module. Everything besides the calls to
+ * the token is the code of the real cipher service.
+ * 
+ * @author wglas
+ */
+public class StubTokenCipherSpi extends PKCS11CipherSpi
+{
+    /**
+     * A private key on the stub token.
+     */
+    public static class StubKey implements PrivateKey, PKCS11SessionChild
+    {
+        private static final long serialVersionUID = 1L;
+
+        public String getAlgorithm()
+        {
+            return "RSA";
+        }
+
+        public String getFormat()
+        {
+            return null;
+        }
+
+        public byte[] getEncoded()
+        {
+            return null;
+        }
+
+        public long getPvh()
+        {
+            return 0L;
+        }
+
+        public long getSlotHandle()
+        {
+            return 0L;
+        }
+
+        public long getSessionHandle()
+        {
+            return 0L;
+        }
+
+        public long getHandle()
+        {
+            return 0L;
+        }
+
+        public void destroy()
+        {
+        }
+
+        public boolean isDestroyed()
+        {
+            return false;
+        }
+    }
+
+    private final int errorCode;
+    private final byte[] result;
+
+    /**
+     * @param algorithm The cipher algorithm.
+     * @param errorCode The PKCS#11 error code reported by the token on
+     *                  <code>doFinal()</code> or <code>CKR_OK</code>, if the
+     *                  operation succeeds.
+     * @param result The result of a successful operation.
+     */
+    public StubTokenCipherSpi(String algorithm, int errorCode, byte[] result)
+    {
+        super(null,algorithm);
+        this.errorCode = errorCode;
+        this.result = result;
+    }
+
+    @Override
+    void initNative(int pkcs11_alg) throws PKCS11Exception
+    {
+    }
+
+    @Override
+    byte[] doFinalNative(byte[] input, int off, int len) throws PKCS11Exception
+    {
+        if (this.errorCode != PKCS11Exception.CKR_OK)
+            throw new PKCS11Exception(this.errorCode,"Stub token failure.");
+
+        return this.result;
+    }
+}
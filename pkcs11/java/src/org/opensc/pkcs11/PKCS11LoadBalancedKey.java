@@ -0,0 +1,97 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS11 provider of the OpenSC project http://www.opensc-project.org
+ *
+ * Copyright (C) 2002-2006 ev-i Informationstechnologie GmbH
+ *
+ * Created: Oct 19, 2026
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *
+ ***********************************************************/
+
+package org.opensc.pkcs11;
+
+import java.security.PrivateKey;
+
+/**
+ * A private key, which stands for the private keys held by all slots of
+ * a {@link PKCS11LoadBalancer}. The signature and cipher services of the
+ * {@link PKCS11Provider} route operations with this key through the load
+ * balancer, which performs them on the least loaded healthy slot.
+ * 
+ * Instances are obtained through {@link PKCS11LoadBalancer#getPrivateKey()}.
+ * 
+ * @author wglas
+ */
+public class PKCS11LoadBalancedKey implements PrivateKey
+{
+    /**
+     * Should be changed, when the class layout changes.
+     */
+    private static final long serialVersionUID = -3466226153425874019L;
+
+    private final PKCS11LoadBalancer loadBalancer;
+    private final String algorithm;
+    private final int keyBits;
+
+    PKCS11LoadBalancedKey(PKCS11LoadBalancer loadBalancer, String algorithm, int keyBits)
+    {
+        this.loadBalancer = loadBalancer;
+        this.algorithm = algorithm;
+        this.keyBits = keyBits;
+    }
+
+    /**
+     * @return The load balancer, which performs the operations with this key.
+     */
+    public PKCS11LoadBalancer getLoadBalancer()
+    {
+        return this.loadBalancer;
+    }
+
+    /**
+     * @return The size of the key in bits.
+     */
+    public int getKeyBits()
+    {
+        return this.keyBits;
+    }
+
+    /* (non-Javadoc)
+     * @see java.security.Key#getAlgorithm()
+     */
+    public String getAlgorithm()
+    {
+        return this.algorithm;
+    }
+
+    /* (non-Javadoc)
+     * @see java.security.Key#getEncoded()
+     */
+    public byte[] getEncoded()
+    {
+        return null;
+    }
+
+    /* (non-Javadoc)
+     * @see java.security.Key#getFormat()
+     */
+    public String getFormat()
+    {
+        return null;
+    }
+}
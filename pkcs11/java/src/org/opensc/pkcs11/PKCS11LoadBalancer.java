@@ -0,0 +1,663 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS11 provider of the OpenSC project http://www.opensc-project.org
+ *
+ * Copyright (C) 2002-2006 ev-i Informationstechnologie GmbH
+ *
+ * Created: Oct 19, 2026
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *
+ ***********************************************************/
+
+package org.opensc.pkcs11;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Cipher;
+import javax.security.auth.DestroyFailedException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.opensc.pkcs11.wrap.PKCS11Exception;
+import org.opensc.pkcs11.wrap.PKCS11PrivateKey;
+import org.opensc.pkcs11.wrap.PKCS11Slot;
+import org.opensc.util.PKCS11Id;
+
+/**
+ * This class distributes signature and decryption operations across all
+ * slots of a PKCS#11 module, which hold a private key with the same
+ * CKA_ID resp. CKA_LABEL.
+ *
+ * Each operation is dispatched to the healthy slot with the least number
+ * of outstanding requests. Operations on the same slot are serialized,
+ * because a PKCS#11 session can only perform one cryptographic operation
+ * at a time. If a token reports <code>CKR_DEVICE_REMOVED</code> or
+ * <code>CKR_TOKEN_NOT_PRESENT</code>, the slot is marked as unhealthy and
+ * the operation is retried on the next available slot. Unhealthy slots
+ * are reopened, after {@link #getRetryInterval()} milliseconds have passed.
+ *
+ * Besides calling {@link #sign(String, byte[])} and
+ * {@link #decrypt(String, byte[])} directly, the key returned by
+ * {@link #getPrivateKey()} may be passed to the signature and cipher
+ * services of the {@link PKCS11Provider}, which then route the
+ * operation through this load balancer:
+ * 
+ * <pre>
+ *   PKCS11LoadBalancer lb = new PKCS11LoadBalancer(provider,keyId,null);
+ *   lb.open();
+ *   Signature sig = Signature.getInstance("SHA256withRSA",provider);
+ *   sig.initSign(lb.getPrivateKey());
+ * </pre>
+ *
+ * @author wglas
+ */
+public class PKCS11LoadBalancer
+{
+    private static Log log = LogFactory.getLog(PKCS11LoadBalancer.class);
+
+    /**
+     * The default interval in milliseconds, after which the reopening
+     * of an unhealthy slot is attempted.
+     */
+    public static final long DEFAULT_RETRY_INTERVAL = 10000L;
+
+    /**
+     * A single slot, which takes part in load balancing.
+     */
+    static abstract class Member
+    {
+        final long slotId;
+        final AtomicInteger outstanding;
+        volatile boolean healthy;
+        volatile long failedAt;
+
+        Member(long slotId)
+        {
+            this.slotId = slotId;
+            this.outstanding = new AtomicInteger();
+            this.healthy = false;
+            this.failedAt = 0L;
+        }
+
+        /**
+         * Open the session of this slot and locate the private key.
+         */
+        abstract void openSlot() throws IOException;
+
+        /**
+         * Close the session of this slot.
+         */
+        abstract void closeSlot();
+
+        abstract byte[] sign(String algorithm, byte[] data) throws GeneralSecurityException;
+
+        abstract byte[] decrypt(String transformation, byte[] data) throws GeneralSecurityException;
+
+        /**
+         * (Re-)open this slot.
+         * Must be called with the lock of this member held.
+         */
+        final void open() throws IOException
+        {
+            close();
+            openSlot();
+            this.healthy = true;
+        }
+
+        /**
+         * Close this slot.
+         * Must be called with the lock of this member held.
+         */
+        final void close()
+        {
+            closeSlot();
+            this.healthy = false;
+        }
+
+        void markFailed()
+        {
+            this.healthy = false;
+            this.failedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * A slot of the PKCS#11 module of our provider.
+     */
+    private class SlotMember extends Member
+    {
+        PKCS11SessionStore sessionStore;
+        PKCS11PrivateKey privateKey;
+
+        SlotMember(long slotId)
+        {
+            super(slotId);
+        }
+
+        @Override
+        void openSlot() throws IOException
+        {
+            PKCS11SessionStore store = new PKCS11SessionStore();
+            store.open(PKCS11LoadBalancer.this.provider,makeSlotParameter(this.slotId));
+
+            try
+            {
+                this.privateKey = findKey(store);
+            }
+            catch (IOException e)
+            {
+                store.close();
+                throw e;
+            }
+
+            this.sessionStore = store;
+        }
+
+        @Override
+        void closeSlot()
+        {
+            if (this.sessionStore != null)
+                this.sessionStore.close();
+
+            this.sessionStore = null;
+            this.privateKey = null;
+        }
+
+        @Override
+        byte[] sign(String algorithm, byte[] data) throws GeneralSecurityException
+        {
+            Signature sig = Signature.getInstance(algorithm,PKCS11LoadBalancer.this.provider);
+            sig.initSign(this.privateKey);
+            sig.update(data);
+            return sig.sign();
+        }
+
+        @Override
+        byte[] decrypt(String transformation, byte[] data) throws GeneralSecurityException
+        {
+            return decryptWith(PKCS11LoadBalancer.this.provider,this.privateKey,transformation,data);
+        }
+    }
+
+    /**
+     * Decrypt the given data with the cipher service of the given provider.
+     * Token failures are reported by the cipher service as the cause of the
+     * thrown exception.
+     */
+    static byte[] decryptWith(Provider provider, PrivateKey key,
+                              String transformation, byte[] data) throws GeneralSecurityException
+    {
+        Cipher cipher = Cipher.getInstance(transformation,provider);
+        cipher.init(Cipher.DECRYPT_MODE,key);
+        return cipher.doFinal(data);
+    }
+
+    /**
+     * An operation, which is performed with the private key of a slot.
+     */
+    private interface Operation
+    {
+        byte[] perform(Member member) throws GeneralSecurityException;
+    }
+
+    private final PKCS11Provider provider;
+    private final PKCS11LoadStoreParameter param;
+    private final PKCS11Id keyId;
+    private final String keyLabel;
+    private final List<Member> members;
+    private volatile long retryInterval;
+    private volatile PKCS11LoadBalancedKey balancedKey;
+
+    /**
+     * Construct a load balancer, which searches for private keys with the
+     * given CKA_ID and/or CKA_LABEL. At least one of <code>keyId</code> or
+     * <code>keyLabel</code> must be given.
+     *
+     * @param provider The PKCS#11 provider to use.
+     * @param keyId The CKA_ID of the private key or <code>null</code>,
+     *              if the key should be searched by label only.
+     * @param keyLabel The CKA_LABEL of the private key or <code>null</code>,
+     *                 if the key should be searched by ID only.
+     */
+    public PKCS11LoadBalancer(PKCS11Provider provider, PKCS11Id keyId, String keyLabel)
+    {
+        this(provider,null,keyId,keyLabel);
+    }
+
+    /**
+     * Construct a load balancer, which searches for private keys with the
+     * given CKA_ID and/or CKA_LABEL and uses the given parameters for opening
+     * the slots. The slot ID of the parameters is ignored.
+     *
+     * @param provider The PKCS#11 provider to use.
+     * @param param The parameters used to open the session on each slot
+     *              or <code>null</code>, if the default settings should be used.
+     * @param keyId The CKA_ID of the private key or <code>null</code>,
+     *              if the key should be searched by label only.
+     * @param keyLabel The CKA_LABEL of the private key or <code>null</code>,
+     *                 if the key should be searched by ID only.
+     */
+    public PKCS11LoadBalancer(PKCS11Provider provider, PKCS11LoadStoreParameter param,
+                              PKCS11Id keyId, String keyLabel)
+    {
+        if (keyId == null && keyLabel == null)
+            throw new IllegalArgumentException("Either a key ID or a key label must be given.");
+
+        this.provider = provider;
+        this.param = param;
+        this.keyId = keyId;
+        this.keyLabel = keyLabel;
+        this.members = new ArrayList<Member>();
+        this.retryInterval = DEFAULT_RETRY_INTERVAL;
+    }
+
+    /**
+     * Construct a load balancer over the given, already opened members.
+     * Used for testing the scheduling without a PKCS#11 module.
+     */
+    PKCS11LoadBalancer(List<? extends Member> members)
+    {
+        this.provider = null;
+        this.param = null;
+        this.keyId = null;
+        this.keyLabel = null;
+        this.members = new ArrayList<Member>(members);
+        this.retryInterval = DEFAULT_RETRY_INTERVAL;
+    }
+
+    private PKCS11LoadStoreParameter makeSlotParameter(long slotId)
+    {
+        PKCS11LoadStoreParameter ret = new PKCS11LoadStoreParameter();
+
+        if (this.param != null)
+        {
+            ret.setProtectionParameter(this.param.getProtectionParameter());
+            ret.setSOProtectionParameter(this.param.getSOProtectionParameter());
+            ret.setEventHandler(this.param.getEventHandler());
+            ret.setWriteEnabled(this.param.isWriteEnabled());
+            ret.setRetainUserCredential(this.param.isRetainUserCredential());
+        }
+
+        ret.setSlotId(Long.valueOf(slotId));
+        return ret;
+    }
+
+    private PKCS11PrivateKey findKey(PKCS11SessionStore store) throws PKCS11Exception
+    {
+        if (this.keyLabel == null)
+            return PKCS11PrivateKey.findPrivateKey(store.getSession(),this.keyId);
+
+        List<PKCS11PrivateKey> keys = PKCS11PrivateKey.getPrivateKeys(store.getSession());
+
+        for (PKCS11PrivateKey key : keys)
+        {
+            if (!this.keyLabel.equals(key.getLabel())) continue;
+            if (this.keyId != null && !this.keyId.equals(key.getId())) continue;
+
+            return key;
+        }
+
+        throw new PKCS11Exception("The private key with id "+this.keyId+
+                                  " and label ["+this.keyLabel+"] was not found.");
+    }
+
+    /**
+     * Discover all slots with a present token, which hold the
+     * requested private key and open a session on each of these slots.
+     *
+     * @throws IOException If no slot holding the private key has been found.
+     */
+    public synchronized void open() throws IOException
+    {
+        close();
+
+        List<PKCS11Slot> slots = PKCS11Slot.enumerateSlots(this.provider);
+
+        List<Member> found = new ArrayList<Member>(slots.size());
+        PKCS11LoadBalancedKey key = null;
+
+        for (PKCS11Slot slot : slots)
+        {
+            long slotId = slot.getId();
+            boolean tokenPresent = slot.isTokenPresent();
+
+            try
+            {
+                slot.destroy();
+            } catch (DestroyFailedException e)
+            {
+                log.warn("Cannot destroy slot:",e);
+            }
+
+            if (!tokenPresent) continue;
+
+            SlotMember member = new SlotMember(slotId);
+
+            try
+            {
+                synchronized (member)
+                {
+                    member.open();
+
+                    if (key == null)
+                        key = new PKCS11LoadBalancedKey(this,
+                                                        member.privateKey.getAlgorithm(),
+                                                        member.privateKey.getKeyBits());
+                }
+                found.add(member);
+            }
+            catch (IOException e)
+            {
+                log.info("Slot number "+slotId+" does not hold the requested private key:",e);
+            }
+        }
+
+        if (found.size() == 0)
+            throw new PKCS11Exception("Could not find a slot holding the private key with id "+
+                                      this.keyId+" and label ["+this.keyLabel+"].");
+
+        synchronized (this.members)
+        {
+            this.members.addAll(found);
+        }
+
+        this.balancedKey = key;
+    }
+
+    /**
+     * @return A private key, which routes the operations of the signature
+     *         and cipher services of the {@link PKCS11Provider} through this
+     *         load balancer.
+     * @throws IllegalStateException If this load balancer has not been opened.
+     */
+    public PKCS11LoadBalancedKey getPrivateKey()
+    {
+        PKCS11LoadBalancedKey ret = this.balancedKey;
+
+        if (ret == null)
+            throw new IllegalStateException("The load balancer has not been opened.");
+
+        return ret;
+    }
+
+    /**
+     * Close the sessions on all slots.
+     */
+    public synchronized void close()
+    {
+        List<Member> old;
+
+        this.balancedKey = null;
+
+        synchronized (this.members)
+        {
+            old = new ArrayList<Member>(this.members);
+            this.members.clear();
+        }
+
+        for (Member member : old)
+        {
+            synchronized (member)
+            {
+                member.close();
+            }
+        }
+    }
+
+    /**
+     * Select the healthy member with the least outstanding requests and
+     * increment its number of outstanding requests.
+     *
+     * @param exclude Members, which already failed during the current operation.
+     * @return The selected member or <code>null</code>, if no healthy member
+     *         is available.
+     */
+    private Member acquireMember(List<Member> exclude)
+    {
+        List<Member> candidates;
+
+        synchronized (this.members)
+        {
+            candidates = new ArrayList<Member>(this.members);
+        }
+
+        Member best = null;
+        int bestOutstanding = Integer.MAX_VALUE;
+        long now = System.currentTimeMillis();
+
+        for (Member member : candidates)
+        {
+            if (exclude.contains(member)) continue;
+
+            if (!member.healthy)
+            {
+                if (now - member.failedAt < this.retryInterval) continue;
+
+                recover(member);
+
+                if (!member.healthy) continue;
+            }
+
+            int n = member.outstanding.get();
+
+            if (n < bestOutstanding)
+            {
+                best = member;
+                bestOutstanding = n;
+            }
+        }
+
+        if (best != null)
+            best.outstanding.incrementAndGet();
+
+        return best;
+    }
+
+    private void recover(Member member)
+    {
+        synchronized (member)
+        {
+            if (member.healthy) return;
+
+            try
+            {
+                member.open();
+                log.info("Slot number "+member.slotId+" has been recovered.");
+            }
+            catch (IOException e)
+            {
+                log.warn("Recovery of slot number "+member.slotId+" failed:",e);
+                member.close();
+                member.markFailed();
+            }
+        }
+    }
+
+    /**
+     * @return Whether the given exception indicates, that the token has
+     *         been removed from the slot.
+     */
+    private static boolean isTokenFailure(Throwable e)
+    {
+        while (e != null)
+        {
+            if (e instanceof PKCS11Exception)
+            {
+                int code = ((PKCS11Exception)e).getErrorCode();
+
+                if (code == PKCS11Exception.CKR_DEVICE_REMOVED ||
+                        code == PKCS11Exception.CKR_TOKEN_NOT_PRESENT)
+                    return true;
+            }
+            e = e.getCause();
+        }
+        return false;
+    }
+
+    private byte[] execute(Operation op) throws GeneralSecurityException
+    {
+        List<Member> failed = new ArrayList<Member>();
+
+        while (true)
+        {
+            Member member = acquireMember(failed);
+
+            if (member == null)
+            {
+                throw new GeneralSecurityException("No healthy token holding the private key with id "+
+                                                   this.keyId+" and label ["+this.keyLabel+"] is available.");
+            }
+
+            try
+            {
+                synchronized (member)
+                {
+                    if (member.healthy)
+                        return op.perform(member);
+                }
+            }
+            catch (GeneralSecurityException e)
+            {
+                if (!isTokenFailure(e)) throw e;
+
+                log.warn("Token in slot number "+member.slotId+" failed, trying next slot:",e);
+
+                synchronized (member)
+                {
+                    member.close();
+                    member.markFailed();
+                }
+            }
+            finally
+            {
+                member.outstanding.decrementAndGet();
+            }
+
+            failed.add(member);
+        }
+    }
+
+    /**
+     * Sign the given data on the least loaded token.
+     *
+     * @param algorithm The signature algorithm, e.g. <tt>SHA1withRSA</tt>.
+     * @param data The data to sign.
+     * @return The signature.
+     * @throws GeneralSecurityException Upon errors during the signature operation
+     *               or if no healthy token is available.
+     */
+    public byte[] sign(final String algorithm, final byte[] data) throws GeneralSecurityException
+    {
+        return execute(new Operation() {
+            public byte[] perform(Member member) throws GeneralSecurityException
+            {
+                return member.sign(algorithm,data);
+            }
+        });
+    }
+
+    /**
+     * Decrypt the given data on the least loaded token.
+     *
+     * @param transformation The cipher transformation,
+     *                       e.g. <tt>RSA/ECB/PKCS1Padding</tt>.
+     * @param data The data to decrypt.
+     * @return The decrypted data.
+     * @throws GeneralSecurityException Upon errors during the decryption operation
+     *               or if no healthy token is available.
+     */
+    public byte[] decrypt(final String transformation, final byte[] data) throws GeneralSecurityException
+    {
+        return execute(new Operation() {
+            public byte[] perform(Member member) throws GeneralSecurityException
+            {
+                return member.decrypt(transformation,data);
+            }
+        });
+    }
+
+    /**
+     * @return The IDs of all slots, which take part in load balancing.
+     */
+    public List<Long> getSlotIds()
+    {
+        List<Long> ret = new ArrayList<Long>();
+
+        synchronized (this.members)
+        {
+            for (Member member : this.members)
+                ret.add(Long.valueOf(member.slotId));
+        }
+        return Collections.unmodifiableList(ret);
+    }
+
+    /**
+     * @return The number of slots, which are currently considered to be healthy.
+     */
+    public int getHealthySlotCount()
+    {
+        int ret = 0;
+
+        synchronized (this.members)
+        {
+            for (Member member : this.members)
+                if (member.healthy) ++ret;
+        }
+        return ret;
+    }
+
+    /**
+     * @param slotId The ID of a slot.
+     * @return The number of currently outstanding requests on the given slot
+     *         or -1, if the slot does not take part in load balancing.
+     */
+    public int getOutstandingRequests(long slotId)
+    {
+        synchronized (this.members)
+        {
+            for (Member member : this.members)
+                if (member.slotId == slotId) return member.outstanding.get();
+        }
+        return -1;
+    }
+
+    /**
+     * @return The interval in milliseconds, after which the reopening
+     *         of an unhealthy slot is attempted.
+     */
+    public long getRetryInterval()
+    {
+        return this.retryInterval;
+    }
+
+    /**
+     * @param retryInterval The interval in milliseconds, after which the reopening
+     *                      of an unhealthy slot is attempted.
+     */
+    public void setRetryInterval(long retryInterval)
+    {
+        this.retryInterval = retryInterval;
+    }
+}
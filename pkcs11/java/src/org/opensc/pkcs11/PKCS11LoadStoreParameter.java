@@ -23,6 +23,7 @@ public class PKCS11LoadStoreParameter implements LoadStoreParameter
 	boolean waitForSlot;
 	Long slotId;
 	boolean writeEnabled;
+	boolean retainUserCredential;
 		
 	/**
 	 * Constructs a PKCS11LoadStoreParameter instance using default settings.
@@ -239,4 +240,30 @@ public class PKCS11LoadStoreParameter implements LoadStoreParameter
 	{
 		this.writeEnabled = writeEnabled;
 	}
+
+	/**
+	 * @return Returns, whether the user credential should be held by the
+	 *         login state of the token after a successful authentication.
+	 *         
+	 * @see #setRetainUserCredential(boolean)
+	 */
+	public boolean isRetainUserCredential()
+	{
+		return this.retainUserCredential;
+	}
+
+	/**
+	 * @param retainUserCredential Set, whether the user credential should be held
+	 *                             by the login state of the token in order to
+	 *                             transparently re-authenticate, if the token
+	 *                             loses its login state. This is disabled by
+	 *                             default, so the PIN is wiped right after
+	 *                             the login.
+	 *                             
+	 * @see org.opensc.pkcs11.wrap.PKCS11LoginState
+	 */
+	public void setRetainUserCredential(boolean retainUserCredential)
+	{
+		this.retainUserCredential = retainUserCredential;
+	}
 }
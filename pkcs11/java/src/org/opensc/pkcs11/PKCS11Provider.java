@@ -26,11 +26,12 @@
 package org.opensc.pkcs11;
 
 import java.io.IOException;
-import java.lang.reflect.Constructor;
 import java.security.Provider;
 import java.security.ProviderException;
 import java.security.interfaces.DSAKey;
 import java.security.interfaces.RSAKey;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.security.auth.DestroyFailedException;
 import javax.security.auth.Destroyable;
@@ -39,7 +40,12 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.opensc.pkcs11.spec.PKCS11DSAKeyPairGenParameterSpec;
 import org.opensc.pkcs11.spec.PKCS11RSAKeyPairGenParameterSpec;
+import org.opensc.pkcs11.spi.PKCS11CipherSpi;
+import org.opensc.pkcs11.spi.PKCS11KeyPairGeneratorSpi;
+import org.opensc.pkcs11.spi.PKCS11KeyStoreSpi;
+import org.opensc.pkcs11.spi.PKCS11SignatureSpi;
 import org.opensc.pkcs11.wrap.PKCS11Exception;
+import org.opensc.pkcs11.wrap.PKCS11LoginState;
 import org.opensc.pkcs11.wrap.PKCS11SessionChild;
 import org.opensc.util.DestroyableHolder;
 import org.opensc.util.DestroyableParent;
@@ -73,6 +79,7 @@ public class PKCS11Provider extends Provider implements DestroyableParent
 	 private long pkcs11ModuleHandle;
 	 private ShutdownThread shutdownThread;
 	 private DestroyableHolder destroyableHolder;
+	 private Map<Long,PKCS11LoginState> loginStates;
 
 	 private native long loadNativePKCS11Module(String filename) throws PKCS11Exception;
 	 private native void unloadPKCS11Module(long handle) throws PKCS11Exception;
@@ -155,33 +162,34 @@ public class PKCS11Provider extends Provider implements DestroyableParent
 	{
         this.pkcs11ModuleHandle = loadNativePKCS11Module(filename);
         this.destroyableHolder = new DestroyableHolder();
+        this.loginStates = new HashMap<Long,PKCS11LoginState>();
         this.shutdownThread = new ShutdownThread(this);
 		Runtime.getRuntime().addShutdownHook(this.shutdownThread);
 		
 		putService(new PKCS11Service
-        		(this, "KeyStore", "PKCS11", "org.opensc.pkcs11.spi.PKCS11KeyStoreSpi"));
+        		(this, "KeyStore", "PKCS11", KEY_STORE_FACTORY));
 		putService(new PKCS11SignatureService
-        		(this, "Signature", "NONEwithRSA", "org.opensc.pkcs11.spi.PKCS11SignatureSpi"));
+        		(this, "Signature", "NONEwithRSA", SIGNATURE_FACTORY));
 		putService(new PKCS11SignatureService
-        		(this, "Signature", "MD5withRSA", "org.opensc.pkcs11.spi.PKCS11SignatureSpi"));
+        		(this, "Signature", "MD5withRSA", SIGNATURE_FACTORY));
 		putService(new PKCS11SignatureService
-        		(this, "Signature", "SHA1withRSA", "org.opensc.pkcs11.spi.PKCS11SignatureSpi"));
+        		(this, "Signature", "SHA1withRSA", SIGNATURE_FACTORY));
 		putService(new PKCS11SignatureService
-        		(this, "Signature", "SHA256withRSA", "org.opensc.pkcs11.spi.PKCS11SignatureSpi"));
+        		(this, "Signature", "SHA256withRSA", SIGNATURE_FACTORY));
 		putService(new PKCS11SignatureService
-        		(this, "Signature", "SHA384withRSA", "org.opensc.pkcs11.spi.PKCS11SignatureSpi"));
+        		(this, "Signature", "SHA384withRSA", SIGNATURE_FACTORY));
 		putService(new PKCS11SignatureService
-        		(this, "Signature", "SHA512withRSA", "org.opensc.pkcs11.spi.PKCS11SignatureSpi"));
+        		(this, "Signature", "SHA512withRSA", SIGNATURE_FACTORY));
 		putService(new PKCS11SignatureService
-        		(this, "Signature", "SHA1withDSA", "org.opensc.pkcs11.spi.PKCS11SignatureSpi"));
+        		(this, "Signature", "SHA1withDSA", SIGNATURE_FACTORY));
 		putService(new PKCS11SignatureService
-        		(this, "Signature", "NONEwithDSA", "org.opensc.pkcs11.spi.PKCS11SignatureSpi"));
+        		(this, "Signature", "NONEwithDSA", SIGNATURE_FACTORY));
         putService(new PKCS11CipherService
-                   (this, "Cipher", "RSA/ECB/PKCS1Padding", "org.opensc.pkcs11.spi.PKCS11CipherSpi"));
+                   (this, "Cipher", "RSA/ECB/PKCS1Padding", CIPHER_FACTORY));
         putService(new PKCS11KeyPairGeneratorService
-                   (this, "KeyPairGenerator", "RSA", "org.opensc.pkcs11.spi.PKCS11KeyPairGeneratorSpi"));
+                   (this, "KeyPairGenerator", "RSA", KEY_PAIR_GENERATOR_FACTORY));
         putService(new PKCS11KeyPairGeneratorService
-                   (this, "KeyPairGenerator", "DSA", "org.opensc.pkcs11.spi.PKCS11KeyPairGeneratorSpi"));
+                   (this, "KeyPairGenerator", "DSA", KEY_PAIR_GENERATOR_FACTORY));
 	}
 	
 	/**
@@ -214,45 +222,95 @@ public class PKCS11Provider extends Provider implements DestroyableParent
 		initialize(filename);
 	}
 
+	/**
+	 * A factory for the SPI instances of a service, which is created once
+	 * when registering the service. This allows us to directly call the
+	 * (Provider, String) constructor of the SPI class instead of looking
+	 * up the constructor using reflection upon each <tt>getInstance()</tt>
+	 * call.
+	 */
+	private static abstract class SpiFactory
+	{
+		private final Class<?> spiClass;
+		
+		SpiFactory(Class<?> spiClass)
+		{
+			this.spiClass = spiClass;
+		}
+		
+		/**
+		 * @return The name of the SPI class instantiated by this factory.
+		 */
+		String getClassName()
+		{
+			return this.spiClass.getName();
+		}
+		
+		/**
+		 * @param provider The provider, which instantiates the SPI.
+		 * @param algorithm The requested algorithm.
+		 * @return A new SPI instance.
+		 */
+		abstract Object newInstance(PKCS11Provider provider, String algorithm);
+	}
+	
+	private static final SpiFactory KEY_STORE_FACTORY =
+		new SpiFactory(PKCS11KeyStoreSpi.class) {
+			Object newInstance(PKCS11Provider provider, String algorithm)
+			{
+				return new PKCS11KeyStoreSpi(provider,algorithm);
+			}
+		};
+	
+	private static final SpiFactory SIGNATURE_FACTORY =
+		new SpiFactory(PKCS11SignatureSpi.class) {
+			Object newInstance(PKCS11Provider provider, String algorithm)
+			{
+				return new PKCS11SignatureSpi(provider,algorithm);
+			}
+		};
+	
+	private static final SpiFactory CIPHER_FACTORY =
+		new SpiFactory(PKCS11CipherSpi.class) {
+			Object newInstance(PKCS11Provider provider, String algorithm)
+			{
+				return new PKCS11CipherSpi(provider,algorithm);
+			}
+		};
+	
+	private static final SpiFactory KEY_PAIR_GENERATOR_FACTORY =
+		new SpiFactory(PKCS11KeyPairGeneratorSpi.class) {
+			Object newInstance(PKCS11Provider provider, String algorithm)
+			{
+				return new PKCS11KeyPairGeneratorSpi(provider,algorithm);
+			}
+		};
+	
 	// we have our own ServiceDescription implementation that overrides
 	// newInstance()
 	// that calls the (Provider, String) constructor instead of the no-args
 	// constructor
 	private static class PKCS11Service extends Service
 	{
-
-		private static final Class[] paramTypes = { PKCS11Provider.class,
-				String.class };
+		private final SpiFactory factory;
 
 		PKCS11Service(Provider provider, String type, String algorithm,
-				String className)
+				SpiFactory factory)
 		{
-			super(provider, type, algorithm, className, null, null);
+			super(provider, type, algorithm, factory.getClassName(), null, null);
+			this.factory = factory;
 		}
 
 		public Object newInstance(Object param)
 		{
 			try
 			{
-				// get the Class object for the implementation class
-				Class clazz;
-				PKCS11Provider provider = (PKCS11Provider) getProvider();
-				ClassLoader loader = provider.getClass().getClassLoader();
-				if (loader == null)
-				{
-					clazz = Class.forName(getClassName());
-				} else
-				{
-					clazz = loader.loadClass(getClassName());
-				}
-				
-				// fetch the (Provider, String) constructor
-				Constructor cons = clazz.getConstructor(paramTypes);
-				// invoke constructor and return the SPI object
-				Object obj = cons.newInstance(new Object[] { provider,
-						getAlgorithm() });
-				return obj;
+				return this.factory.newInstance((PKCS11Provider) getProvider(),
+						getAlgorithm());
 
+			} catch (ProviderException e)
+			{
+				throw e;
 			} catch (Exception e)
 			{
 				throw new ProviderException("Caught exception in newInstance:",e);
@@ -262,9 +320,14 @@ public class PKCS11Provider extends Provider implements DestroyableParent
 
 	private static class PKCS11SignatureService extends PKCS11Service
 	{
-		PKCS11SignatureService(Provider provider, String type, String algorithm, String className)
+		private final boolean supportsRSA;
+		private final boolean supportsDSA;
+		
+		PKCS11SignatureService(Provider provider, String type, String algorithm, SpiFactory factory)
 		{
-			super(provider, type, algorithm, className);
+			super(provider, type, algorithm, factory);
+			this.supportsRSA = algorithm.endsWith("RSA");
+			this.supportsDSA = algorithm.endsWith("DSA");
 		}
 
 		/* (non-Javadoc)
@@ -276,10 +339,10 @@ public class PKCS11Provider extends Provider implements DestroyableParent
 			if (! (param instanceof PKCS11SessionChild)) return false;
 			
 			if (param instanceof RSAKey)
-				return super.getAlgorithm().endsWith("RSA");
+				return this.supportsRSA;
 			
 			if (param instanceof DSAKey)
-				return super.getAlgorithm().endsWith("DSA");
+				return this.supportsDSA;
 			
 			return false;
 		}
@@ -287,9 +350,12 @@ public class PKCS11Provider extends Provider implements DestroyableParent
 	
     private static class PKCS11CipherService extends PKCS11Service
     {
-        PKCS11CipherService(Provider provider, String type, String algorithm, String className)
+        private final boolean supportsRSA;
+        
+        PKCS11CipherService(Provider provider, String type, String algorithm, SpiFactory factory)
         {
-            super(provider, type, algorithm, className);
+            super(provider, type, algorithm, factory);
+            this.supportsRSA = algorithm.startsWith("RSA");
         }
 
         /* (non-Javadoc)
@@ -301,7 +367,7 @@ public class PKCS11Provider extends Provider implements DestroyableParent
             if (! (param instanceof PKCS11SessionChild)) return false;
             
             if (param instanceof RSAKey)
-                return super.getAlgorithm().startsWith("RSA");
+                return this.supportsRSA;
             
             return false;
         }
@@ -309,9 +375,14 @@ public class PKCS11Provider extends Provider implements DestroyableParent
     
     private static class PKCS11KeyPairGeneratorService extends PKCS11Service
     {
-        PKCS11KeyPairGeneratorService(Provider provider, String type, String algorithm, String className)
+        private final boolean supportsRSA;
+        private final boolean supportsDSA;
+        
+        PKCS11KeyPairGeneratorService(Provider provider, String type, String algorithm, SpiFactory factory)
         {
-            super(provider, type, algorithm, className);
+            super(provider, type, algorithm, factory);
+            this.supportsRSA = algorithm.equals("RSA");
+            this.supportsDSA = algorithm.equals("DSA");
         }
 
         /* (non-Javadoc)
@@ -321,15 +392,35 @@ public class PKCS11Provider extends Provider implements DestroyableParent
         public boolean supportsParameter(Object param)
         {
             if (param instanceof PKCS11RSAKeyPairGenParameterSpec)
-                return super.getAlgorithm().equals("RSA");
+                return this.supportsRSA;
             
             if (param instanceof PKCS11DSAKeyPairGenParameterSpec)
-                return super.getAlgorithm().equals("DSA");
+                return this.supportsDSA;
             
             return false;
         }
     }
     
+	/**
+	 * Returns the login state of the token in the given slot, which is
+	 * shared by all sessions opened on this slot.
+	 * 
+	 * @param slotId The ID of the slot.
+	 * @return The login state of the token in the given slot.
+	 */
+	public synchronized PKCS11LoginState getLoginState(long slotId)
+	{
+		Long key = Long.valueOf(slotId);
+		PKCS11LoginState ret = this.loginStates.get(key);
+		
+		if (ret == null)
+		{
+			ret = new PKCS11LoginState(slotId);
+			this.loginStates.put(key,ret);
+		}
+		return ret;
+	}
+	
 	/**
 	 * @return Returns the pkcs11ModuleHandle used by calls to the
 	 *         natvie JNI functions of associated services.
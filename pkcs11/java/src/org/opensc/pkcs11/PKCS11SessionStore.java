@@ -31,6 +31,7 @@ import java.security.KeyStore.CallbackHandlerProtection;
 import java.security.KeyStore.LoadStoreParameter;
 import java.security.KeyStore.PasswordProtection;
 import java.security.KeyStore.ProtectionParameter;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.security.auth.DestroyFailedException;
@@ -42,6 +43,7 @@ import javax.security.auth.callback.UnsupportedCallbackException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.opensc.pkcs11.wrap.PKCS11Exception;
+import org.opensc.pkcs11.wrap.PKCS11LoginState;
 import org.opensc.pkcs11.wrap.PKCS11Session;
 import org.opensc.pkcs11.wrap.PKCS11Slot;
 
@@ -62,6 +64,7 @@ public class PKCS11SessionStore implements LoadStoreParameter
     PKCS11EventCallback cb;
     CallbackHandler eventHandler;
     ProtectionParameter protectionParameter;
+    boolean retainUserCredential;
     
     /**
      * Contruct a PKCS11SessionStore instance, which may be opened afterwards.
@@ -191,8 +194,12 @@ public class PKCS11SessionStore implements LoadStoreParameter
         this.cb = new PKCS11EventCallback(PKCS11EventCallback.NO_EVENT);
 
         this.eventHandler = null;
+        this.retainUserCredential = false;
         if (param instanceof PKCS11LoadStoreParameter)
+        {
             this.eventHandler = ((PKCS11LoadStoreParameter)param).getEventHandler();
+            this.retainUserCredential = ((PKCS11LoadStoreParameter)param).isRetainUserCredential();
+        }
         
         try
         {
@@ -323,6 +330,7 @@ public class PKCS11SessionStore implements LoadStoreParameter
         this.protectionParameter = null;
         this.cb = null;
         this.eventHandler = null;
+        this.retainUserCredential = false;
     }
     
     /**
@@ -331,14 +339,30 @@ public class PKCS11SessionStore implements LoadStoreParameter
      * ProtectionParameter. This may be use in order to search for a certificate on a token
      * without entering a PIN.
      * 
+     * As the login state is shared among all sessions on a token, the
+     * authentication is skipped, if the user has already logged in to the token
+     * through another session store. If requested through
+     * {@link PKCS11LoadStoreParameter#setRetainUserCredential(boolean)}, the
+     * credential is held by the login state of the token after a successful
+     * authentication in order to allow a transparent re-authentication, if the
+     * token loses its login state. Otherwise, the PIN is not kept.
+     * 
      * @param param The protection parameters used to do normal (user) authentication.
      * 
      * @see PKCS11LoadStoreParameter#getProtectionParameter()
+     * @see PKCS11LoginState
      */
     public void authenticate(ProtectionParameter param) throws IOException
     {
         this.protectionParameter = param;
         
+        if (this.protectionParameter != null && this.session.isUserLoggedIn())
+        {
+            log.debug("User is already logged in to the token in slot number "+
+                      this.slot.getId()+", skipping authentication.");
+            return;
+        }
+        
         try
         {
             if (this.protectionParameter instanceof PasswordProtection)
@@ -348,6 +372,8 @@ public class PKCS11SessionStore implements LoadStoreParameter
                     (PasswordProtection)this.protectionParameter;
             
                 this.session.loginUser(pp.getPassword());
+                if (this.retainUserCredential)
+                    this.slot.getLoginState().setUserCredential(pp.getPassword());
                 changeEvent(PKCS11EventCallback.AUHENTICATION_SUCEEDED);
             }
             else if (this.protectionParameter instanceof CallbackHandlerProtection)
@@ -372,10 +398,20 @@ public class PKCS11SessionStore implements LoadStoreParameter
                     cbh.handle(new Callback[] { pcb });
                 
                     pin = pcb.getPassword();
+                    pcb.clearPassword();
                     changeEvent(PKCS11EventCallback.PIN_AUTHENTICATION_IN_PROGRESS);
                 }
 
-                this.session.loginUser(pin);
+                try
+                {
+                    this.session.loginUser(pin);
+                    if (this.retainUserCredential)
+                        this.slot.getLoginState().setUserCredential(pin);
+                }
+                finally
+                {
+                    if (pin != null) Arrays.fill(pin,'\0');
+                }
                 changeEvent(PKCS11EventCallback.AUHENTICATION_SUCEEDED);
             }
         }
@@ -397,6 +433,13 @@ public class PKCS11SessionStore implements LoadStoreParameter
      */
     public void authenticateSO(ProtectionParameter param) throws IOException
     {
+        if (param != null && this.session.isSOLoggedIn())
+        {
+            log.debug("SO is already logged in to the token in slot number "+
+                      this.slot.getId()+", skipping authentication.");
+            return;
+        }
+        
         try
         {
             if (param instanceof PasswordProtection)
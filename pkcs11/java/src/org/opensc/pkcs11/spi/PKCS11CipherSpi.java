@@ -25,7 +25,9 @@
 
 package org.opensc.pkcs11.spi;
 
+import java.io.ByteArrayOutputStream;
 import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.Key;
@@ -44,11 +46,13 @@ import javax.crypto.ShortBufferException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.opensc.pkcs11.PKCS11LoadBalancedKey;
 import org.opensc.pkcs11.PKCS11Provider;
 import org.opensc.pkcs11.wrap.PKCS11Exception;
 import org.opensc.pkcs11.wrap.PKCS11Mechanism;
 import org.opensc.pkcs11.wrap.PKCS11PrivateKey;
 import org.opensc.pkcs11.wrap.PKCS11PublicKey;
+import org.opensc.pkcs11.wrap.PKCS11Session;
 import org.opensc.pkcs11.wrap.PKCS11SessionChild;
 
 /**
@@ -68,6 +72,11 @@ public class PKCS11CipherSpi extends CipherSpi
 	PublicKey publicKey;
 	int mode;
 	long count;
+	/**
+	 * The data to decrypt with a load balanced key, which is passed to the
+	 * load balancer by <code>engineDoFinal()</code>.
+	 */
+	ByteArrayOutputStream balancedData;
 
 	/**
 	 * Contructs an instance of PKCS11CipherSpi using the given provider
@@ -112,6 +121,11 @@ public class PKCS11CipherSpi extends CipherSpi
 	@Override
 	protected int engineGetKeySize(Key key) throws InvalidKeyException
 	{
+		if (key instanceof PKCS11LoadBalancedKey)
+		{
+			return ((PKCS11LoadBalancedKey)key).getKeyBits();
+		}
+		
 		if (key instanceof PKCS11PrivateKey)
 		{
 			return ((PKCS11PrivateKey)key).getKeyBits();
@@ -131,6 +145,11 @@ public class PKCS11CipherSpi extends CipherSpi
 	@Override
 	protected int engineGetBlockSize()
 	{
+		if (this.privateKey instanceof PKCS11LoadBalancedKey)
+		{
+			return ((PKCS11LoadBalancedKey)this.privateKey).getKeyBits() / 8;
+		}
+		
 		if (this.privateKey != null)
 		{
 			return ((PKCS11PrivateKey)this.privateKey).getKeyBits() / 8;
@@ -189,6 +208,21 @@ public class PKCS11CipherSpi extends CipherSpi
 	private native void initEncryptNative(long pvh, long shandle, long hsession, long handle, int pkcs11_alg) throws PKCS11Exception;
 	private native void initDecryptNative(long pvh, long shandle, long hsession, long handle, int pkcs11_alg) throws PKCS11Exception;
 
+	/**
+	 * Initialize the operation of the current mode on the token.
+	 */
+	void initNative(int pkcs11_alg) throws PKCS11Exception
+	{
+		if (this.mode == Cipher.DECRYPT_MODE)
+			initDecryptNative(this.worker.getPvh(),
+					this.worker.getSlotHandle(),this.worker.getSessionHandle(),
+					this.worker.getHandle(),pkcs11_alg);
+		else
+			initEncryptNative(this.worker.getPvh(),
+					this.worker.getSlotHandle(),this.worker.getSessionHandle(),
+					this.worker.getHandle(),pkcs11_alg);
+	}
+
 	/* (non-Javadoc)
 	 * @see javax.crypto.CipherSpi#engineInit(int, java.security.Key, java.security.SecureRandom)
 	 */
@@ -196,6 +230,32 @@ public class PKCS11CipherSpi extends CipherSpi
 	protected void engineInit(int opmode, Key key, SecureRandom random)
 			throws InvalidKeyException
 	{
+		if (key instanceof PKCS11LoadBalancedKey)
+		{
+			if (opmode != Cipher.DECRYPT_MODE)
+				throw new InvalidKeyException("A load balanced key can only be used for decryption.");
+			
+			if (!this.algorithm.startsWith(key.getAlgorithm()))
+				throw new InvalidKeyException("PKCS11 key algorithm ["+
+						key.getAlgorithm()+
+						"] is incompatible with signature algorithm ["+
+						this.algorithm+"].");
+			
+			getPKCS11MechanismType();
+			
+			// the data is collected and decrypted on the least loaded token
+			// by engineDoFinal().
+			this.worker = null;
+			this.publicKey = null;
+			this.privateKey = (PrivateKey)key;
+			this.mode = opmode;
+			this.count = 0;
+			this.balancedData = new ByteArrayOutputStream();
+			return;
+		}
+		
+		this.balancedData = null;
+		
 		if (opmode == Cipher.ENCRYPT_MODE)
 		{
 			if (! (key instanceof PKCS11SessionChild))
@@ -228,9 +288,16 @@ public class PKCS11CipherSpi extends CipherSpi
 			
 			try
 			{
-				initEncryptNative(this.worker.getPvh(),
-                        this.worker.getSlotHandle(),this.worker.getSessionHandle(),
-                        this.worker.getHandle(),pkcs11_alg);
+				try
+				{
+					initNative(pkcs11_alg);
+				} catch (PKCS11Exception e)
+				{
+					// The token might have been logged out by another application.
+					if (!PKCS11Session.reloginIfRequired(this.worker,e)) throw e;
+					
+					initNative(pkcs11_alg);
+				}
 				
 			} catch (PKCS11Exception e)
 			{
@@ -268,9 +335,16 @@ public class PKCS11CipherSpi extends CipherSpi
 
 			try
 			{
-				initDecryptNative(this.worker.getPvh(),
-                        this.worker.getSlotHandle(),this.worker.getSessionHandle(),
-                        this.worker.getHandle(),pkcs11_alg);
+				try
+				{
+					initNative(pkcs11_alg);
+				} catch (PKCS11Exception e)
+				{
+					// The token might have been logged out by another application.
+					if (!PKCS11Session.reloginIfRequired(this.worker,e)) throw e;
+					
+					initNative(pkcs11_alg);
+				}
 				
 			} catch (PKCS11Exception e)
 			{
@@ -314,6 +388,12 @@ public class PKCS11CipherSpi extends CipherSpi
 	@Override
 	protected byte[] engineUpdate(byte[] data, int off, int len)
 	{
+		if (this.balancedData != null)
+		{
+			this.balancedData.write(data,off,len);
+			return null;
+		}
+		
 		try
 		{
 			this.count += len;
@@ -345,6 +425,12 @@ public class PKCS11CipherSpi extends CipherSpi
 	protected int engineUpdate(byte[] input, int off, int len, byte[] output,
 			int output_off) throws ShortBufferException
 	{
+		if (this.balancedData != null)
+		{
+			this.balancedData.write(input,off,len);
+			return 0;
+		}
+		
 		try
 		{
 			this.count += len;
@@ -361,7 +447,9 @@ public class PKCS11CipherSpi extends CipherSpi
 		} catch (PKCS11Exception e)
 		{
 			log.error("PKCS11Exception caught:",e);
-			throw new ShortBufferException("PKCS11 exception:"+e);
+			ShortBufferException sbe = new ShortBufferException("PKCS11 exception:"+e);
+			sbe.initCause(e);
+			throw sbe;
 		}
 	}
 
@@ -371,6 +459,62 @@ public class PKCS11CipherSpi extends CipherSpi
 	private native byte[] doDecryptNative(long pvh, long shandle, long hsession, long handle, byte[] data, int off, int len) throws PKCS11Exception;
 	private native byte[] doEncryptNative(long pvh, long shandle, long hsession, long handle, byte[] data, int off, int len) throws PKCS11Exception;
 
+	/**
+	 * Finish the operation of the current mode on the token.
+	 */
+	byte[] doFinalNative(byte[] input, int off, int len) throws PKCS11Exception
+	{
+		if (this.mode == Cipher.DECRYPT_MODE)
+			if (this.count == 0)
+				return doDecryptNative(this.worker.getPvh(),this.worker.getSlotHandle(),
+						this.worker.getSessionHandle(),this.worker.getHandle(),input,off,len);
+			else
+				return doFinalDecryptNative(this.worker.getPvh(),this.worker.getSlotHandle(),
+						this.worker.getSessionHandle(),this.worker.getHandle(),input,off,len);
+		else
+			if (this.count == 0)
+				return doEncryptNative(this.worker.getPvh(),this.worker.getSlotHandle(),
+						this.worker.getSessionHandle(),this.worker.getHandle(),input,off,len);
+			else
+				return doFinalEncryptNative(this.worker.getPvh(),this.worker.getSlotHandle(),
+						this.worker.getSessionHandle(),this.worker.getHandle(),input,off,len);
+	}
+
+	/**
+	 * Decrypt the collected data on the least loaded token of the
+	 * load balancer of our key.
+	 */
+	private byte[] doFinalBalanced(byte[] input, int off, int len)
+			throws IllegalBlockSizeException, BadPaddingException
+	{
+		if (input != null)
+			this.balancedData.write(input,off,len);
+		
+		PKCS11LoadBalancedKey key = (PKCS11LoadBalancedKey)this.privateKey;
+		
+		try
+		{
+			return key.getLoadBalancer().decrypt(this.algorithm,this.balancedData.toByteArray());
+			
+		} catch (IllegalBlockSizeException e)
+		{
+			throw e;
+		} catch (BadPaddingException e)
+		{
+			throw e;
+		} catch (GeneralSecurityException e)
+		{
+			log.error("Load balanced decryption failed:",e);
+			IllegalBlockSizeException ibse =
+				new IllegalBlockSizeException("Load balanced decryption failed:"+e);
+			ibse.initCause(e);
+			throw ibse;
+		} finally
+		{
+			this.balancedData.reset();
+		}
+	}
+	
 	/* (non-Javadoc)
 	 * @see javax.crypto.CipherSpi#engineDoFinal(byte[], int, int)
 	 */
@@ -378,29 +522,21 @@ public class PKCS11CipherSpi extends CipherSpi
 	protected byte[] engineDoFinal(byte[] input, int off, int len)
 			throws IllegalBlockSizeException, BadPaddingException
 	{
+		if (this.balancedData != null)
+			return doFinalBalanced(input,off,len);
+		
 		byte[] ret;
 		
 		try
 		{
-			if (this.mode == Cipher.DECRYPT_MODE)
-				if (this.count == 0)
-					ret = doDecryptNative(this.worker.getPvh(),this.worker.getSlotHandle(),
-							this.worker.getSessionHandle(),this.worker.getHandle(),input,off,len);
-				else
-					ret = doFinalDecryptNative(this.worker.getPvh(),this.worker.getSlotHandle(),
-							this.worker.getSessionHandle(),this.worker.getHandle(),input,off,len);
-			else
-				if (this.count == 0)
-					ret = doEncryptNative(this.worker.getPvh(),this.worker.getSlotHandle(),
-							this.worker.getSessionHandle(),this.worker.getHandle(),input,off,len);
-				else
-					ret = doFinalEncryptNative(this.worker.getPvh(),this.worker.getSlotHandle(),
-							this.worker.getSessionHandle(),this.worker.getHandle(),input,off,len);
+			ret = doFinalNative(input,off,len);
 			
 		} catch (PKCS11Exception e)
 		{
 			log.error("PKCS11Exception caught:",e);
-			throw new IllegalBlockSizeException("PKCS11Exception caught:"+e);
+			IllegalBlockSizeException ibse = new IllegalBlockSizeException("PKCS11Exception caught:"+e);
+			ibse.initCause(e);
+			throw ibse;
 		}
 		this.count = 0;
 		return ret;
@@ -424,6 +560,18 @@ public class PKCS11CipherSpi extends CipherSpi
 			int output_off) throws ShortBufferException, IllegalBlockSizeException,
 			BadPaddingException
 	{
+		if (this.balancedData != null)
+		{
+			byte[] data = doFinalBalanced(input,off,len);
+			
+			if (output.length - output_off < data.length)
+				throw new ShortBufferException("Output buffer of size ["+
+						(output.length - output_off)+"] is too short for ["+data.length+"] bytes.");
+			
+			System.arraycopy(data,0,output,output_off,data.length);
+			return data.length;
+		}
+		
 		int ret;
 		
 		try
@@ -450,7 +598,9 @@ public class PKCS11CipherSpi extends CipherSpi
 		} catch (PKCS11Exception e)
 		{
 			log.error("PKCS11Exception caught:",e);
-			throw new ShortBufferException("PKCS11 exception:"+e);
+			ShortBufferException sbe = new ShortBufferException("PKCS11 exception:"+e);
+			sbe.initCause(e);
+			throw sbe;
 		}
 		
 		this.count = 0;
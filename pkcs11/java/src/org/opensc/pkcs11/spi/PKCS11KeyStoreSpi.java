@@ -45,6 +45,7 @@ import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -67,6 +68,11 @@ import org.opensc.util.PKCS11Id;
 
 /**
  * This is a JAVA KeyStore, which accesses a slot on a PKCS#11 cryptographic token.
+ * 
+ * The entries of the KeyStore are held in an immutable map, which is
+ * replaced as a whole by {@link #engineLoad(LoadStoreParameter)} and
+ * {@link #engineSetCertificateEntry(String, Certificate)}. Hence, all
+ * read operations may be called concurrently without any locking.
  *
  * @author wglas
  */
@@ -89,17 +95,29 @@ public class PKCS11KeyStoreSpi extends KeyStoreSpi
 			this.privateKey = privateKey;
 		}
 		
-		PKCS11KSEntry(PKCS11Certificate certificate)
+		PKCS11KSEntry(PKCS11Certificate certificate, Certificate decodedCertificate)
 		{
 			this.creationDate = new Date();
+			this.setCertificate(certificate,decodedCertificate);
+		}
+		
+		/**
+		 * @param certificate The certificate object on the token.
+		 * @param decodedCertificate The certificate decoded from the
+		 *            CKA_VALUE attribute of the certificate object.
+		 */
+		void setCertificate(PKCS11Certificate certificate, Certificate decodedCertificate)
+		{
 			this.certificate = certificate;
+			this.decodedCertificate = decodedCertificate;
 		}
 		
-		public Certificate getDecodedCertificate() throws PKCS11Exception, CertificateException
+		/**
+		 * @return The certificate, which has been decoded, when this entry
+		 *         has been read, so no call to the token is involved.
+		 */
+		public Certificate getDecodedCertificate()
 		{
-			if (this.decodedCertificate == null && this.certificate != null)
-				this.decodedCertificate = this.certificate.getCertificate();
-			
 			return this.decodedCertificate;
 		}
 	}
@@ -107,7 +125,12 @@ public class PKCS11KeyStoreSpi extends KeyStoreSpi
 	private final PKCS11Provider provider;
 	private PKCS11SessionStore sessionStore;
     private boolean needToCloseSessionStore;
-	private Map<String,PKCS11KSEntry> entries;
+	/**
+	 * The current, immutable snapshot of all entries.
+	 * Only replaced under the lock of {@link #writeLock}.
+	 */
+	private volatile Map<String,PKCS11KSEntry> entries;
+	private final Object writeLock;
 	
 	/**
 	 * Contruct a PKCS11 KeyStore.
@@ -118,6 +141,7 @@ public class PKCS11KeyStoreSpi extends KeyStoreSpi
 		this.provider = provider;
         this.sessionStore = null;
         this.entries = null;
+        this.writeLock = new Object();
 		this.needToCloseSessionStore = false;
         
 		if (algorithm != "PKCS11")
@@ -139,16 +163,18 @@ public class PKCS11KeyStoreSpi extends KeyStoreSpi
 	/**
 	 * Returns all certificates for the given X500Principal.
 	 * 
+	 * @param snapshot The snapshot of entries to search.
 	 * @param subject The subject to search for.
 	 * @return All certificates, which match this subject.
 	 */
-	private Map<String,PKCS11KSEntry> getAllCertificatesForSubject(X500Principal subject)
+	private static Map<String,PKCS11KSEntry> getAllCertificatesForSubject(Map<String,PKCS11KSEntry> snapshot,
+	                                                                       X500Principal subject)
 	{
 		Map<String,PKCS11KSEntry> ret = new HashMap<String,PKCS11KSEntry>();
 		
 		String subj = subject.toString();
 		
-		PKCS11KSEntry entry = this.entries.get(subj);
+		PKCS11KSEntry entry = snapshot.get(subj);
 		
 		if (entry != null)
 		{
@@ -161,7 +187,7 @@ public class PKCS11KeyStoreSpi extends KeyStoreSpi
 				++i;
 				String name = String.format("%s_%02X",subj,i);
 				
-				entry = this.entries.get(name);
+				entry = snapshot.get(name);
 				if (entry != null) ret.put(name,entry);
 			}
 			while (entry != null && i < MAX_SIMILAR_CERTIFICATES);
@@ -186,7 +212,11 @@ public class PKCS11KeyStoreSpi extends KeyStoreSpi
 	@Override
 	public Certificate[] engineGetCertificateChain(String name)
 	{
-		Certificate endEntity = engineGetCertificate(name);
+		// use a single snapshot for the whole chain, even if the
+		// key store is reloaded concurrently.
+		Map<String,PKCS11KSEntry> snapshot = this.entries;
+		
+		Certificate endEntity = getCertificate(snapshot,name);
 		
 		if (endEntity == null) return null;
 		
@@ -213,7 +243,7 @@ public class PKCS11KeyStoreSpi extends KeyStoreSpi
 			while (!isRootCA(x509Certificate))
 			{
 				Map<String,PKCS11KSEntry> centries =
-					getAllCertificatesForSubject(x509Certificate.getIssuerX500Principal());
+					getAllCertificatesForSubject(snapshot,x509Certificate.getIssuerX500Principal());
 				
 				X509Certificate x509NextCert = null;
 				
@@ -260,19 +290,14 @@ public class PKCS11KeyStoreSpi extends KeyStoreSpi
 	@Override
 	public Certificate engineGetCertificate(String name)
 	{
-		PKCS11KSEntry entry = this.entries.get(name);
+		return getCertificate(this.entries,name);
+	}
+	
+	private static Certificate getCertificate(Map<String,PKCS11KSEntry> snapshot, String name)
+	{
+		PKCS11KSEntry entry = snapshot.get(name);
 		if (entry == null) return null;
-		try
-		{
-			return entry.getDecodedCertificate();
-		} catch (PKCS11Exception e)
-		{
-			log.error("PKCS11 Error decoding Certificate for entry "+name+":",e);
-		} catch (CertificateException e)
-		{
-			log.error("Certificate Error decoding Certificate for entry "+name+":",e);
-		}
-		return null;
+		return entry.getDecodedCertificate();
 	}
 
 	/* (non-Javadoc)
@@ -313,36 +338,45 @@ public class PKCS11KeyStoreSpi extends KeyStoreSpi
 	public void engineSetCertificateEntry(String name, Certificate certificate)
 			throws KeyStoreException
 	{
-	    try
-        {
-	        PKCS11Certificate cert =
-                PKCS11Certificate.storeCertificate(this.sessionStore.getSession(),
-                                                   certificate, name, true);
+	    synchronized (this.writeLock)
+	    {
+	        try
+            {
+	            PKCS11Certificate cert =
+                    PKCS11Certificate.storeCertificate(this.sessionStore.getSession(),
+                                                       certificate, name, true);
             
-            PKCS11KSEntry entry = new PKCS11KSEntry(cert);
+                PKCS11KSEntry entry = new PKCS11KSEntry(cert,certificate);
 
-            String keyName = "ID_" + cert.getId();
+                // copy on write, readers continue to see the old snapshot.
+                Map<String,PKCS11KSEntry> newEntries =
+                    new HashMap<String,PKCS11KSEntry>(this.entries);
+            
+                String keyName = "ID_" + cert.getId();
 
-            PKCS11KSEntry pk_entry = this.entries.get(keyName);
+                PKCS11KSEntry pk_entry = newEntries.get(keyName);
                 
-            if (pk_entry != null)
-            {
-                entry.privateKey = pk_entry.privateKey;
-                this.entries.remove(keyName);
-            }
+                if (pk_entry != null)
+                {
+                    entry.privateKey = pk_entry.privateKey;
+                    newEntries.remove(keyName);
+                }
             
-            if (name == null)
-                this.entries.put(cert.getSubject().toString(),entry);
-            else
-                this.entries.put(name,entry);
+                if (name == null)
+                    newEntries.put(cert.getSubject().toString(),entry);
+                else
+                    newEntries.put(name,entry);
            
-        } catch (CertificateEncodingException e)
-        {
-            throw new KeyStoreException("Error encoding certificate",e);
-        } catch (PKCS11Exception e)
-        {
-            throw new KeyStoreException("Error storing certificate on the token",e);
-        }
+                this.entries = Collections.unmodifiableMap(newEntries);
+            
+            } catch (CertificateEncodingException e)
+            {
+                throw new KeyStoreException("Error encoding certificate",e);
+            } catch (PKCS11Exception e)
+            {
+                throw new KeyStoreException("Error storing certificate on the token",e);
+            }
+	    }
 	}
 
 	/* (non-Javadoc)
@@ -427,25 +461,15 @@ public class PKCS11KeyStoreSpi extends KeyStoreSpi
 		
 		X500Principal subject = x509Certificate.getSubjectX500Principal();
 		
-		Map<String,PKCS11KSEntry> centries = getAllCertificatesForSubject(subject);
+		Map<String,PKCS11KSEntry> centries = getAllCertificatesForSubject(this.entries,subject);
 		
 		for (String name : centries.keySet())
 		{
-			try
-			{
-				PKCS11KSEntry entry = centries.get(name);
-				
-				if (entry.certificate != null &&
-					entry.getDecodedCertificate().equals(certificate))
-					return name;
-				
-			} catch (PKCS11Exception e)
-			{
-				log.error("PKCS11 Error decoding Certificate for entry "+name+":",e);
-			} catch (CertificateException e)
-			{
-				log.error("Certificate Error decoding Certificate for entry "+name+":",e);
-			}
+			PKCS11KSEntry entry = centries.get(name);
+			
+			if (entry.certificate != null &&
+				entry.getDecodedCertificate().equals(certificate))
+				return name;
 		}
 		
 		return null;
@@ -485,30 +509,81 @@ public class PKCS11KeyStoreSpi extends KeyStoreSpi
 	public void engineLoad(LoadStoreParameter param) throws IOException,
 			NoSuchAlgorithmException, CertificateException
 	{
-	    if (this.sessionStore != null)
+	    synchronized (this.writeLock)
 	    {
-	        if (this.needToCloseSessionStore)
-	            this.sessionStore.close();
+	        loadEntries(param);
 	    }
-            
+	}
+
+	/**
+	 * Open the session store and publish a fresh snapshot of all entries
+	 * found on the token. Must be called with {@link #writeLock} held.
+	 * 
+	 * The previous session store is closed only after the new snapshot has
+	 * been published. Certificates are decoded by {@link #readEntries(PKCS11SessionStore)},
+	 * so readers of the previous snapshot still obtain its certificates
+	 * after the close. Its private keys are bound to the closed session, so
+	 * signing or decrypting with them fails and they have to be fetched
+	 * again from the key store. If opening the new store or reading the
+	 * token fails, the previous snapshot and store stay in place.
+	 */
+	private void loadEntries(LoadStoreParameter param) throws IOException,
+			NoSuchAlgorithmException, CertificateException
+	{
+	    PKCS11SessionStore newSessionStore;
+	    boolean newNeedToClose;
+	    
 	    if (param instanceof PKCS11SessionStore)
 	    {
-	        this.sessionStore = (PKCS11SessionStore)param;
-	        this.needToCloseSessionStore = false;
+	        newSessionStore = (PKCS11SessionStore)param;
+	        newNeedToClose = false;
 	    }
 	    else
 	    {
-	        this.sessionStore = new PKCS11SessionStore();
-	        this.needToCloseSessionStore = true;
-	        this.sessionStore.open(this.provider, param);
+	        newSessionStore = new PKCS11SessionStore();
+	        newNeedToClose = true;
+	        newSessionStore.open(this.provider, param);
+	    }
+	    
+	    Map<String,PKCS11KSEntry> newEntries = null;
+	    
+	    try
+	    {
+	        newEntries = readEntries(newSessionStore);
 	    }
+	    finally
+	    {
+	        // do not leak a store, which we opened ourselves.
+	        if (newEntries == null && newNeedToClose)
+	            newSessionStore.close();
+	    }
+	    
+	    PKCS11SessionStore oldSessionStore = this.sessionStore;
+	    boolean oldNeedToClose = this.needToCloseSessionStore;
+	    
+	    this.entries = newEntries;
+	    this.sessionStore = newSessionStore;
+	    this.needToCloseSessionStore = newNeedToClose;
 	    
+	    if (oldSessionStore != null && oldNeedToClose)
+	        oldSessionStore.close();
+	}
+	
+	/**
+	 * Read all certificates and private keys from the session of the given
+	 * store into a new, immutable snapshot. The values of the certificates
+	 * are decoded here, so the snapshot does not need the session to
+	 * return them.
+	 */
+	private Map<String,PKCS11KSEntry> readEntries(PKCS11SessionStore store)
+	    throws IOException, CertificateException
+	{
 	    // OK, the session is up and running, now get the certificates
 	    // and keys.
-	    this.entries = new HashMap<String,PKCS11KSEntry>();
+	    Map<String,PKCS11KSEntry> newEntries = new HashMap<String,PKCS11KSEntry>();
 			
 	    List<PKCS11PrivateKey> privKeys =
-	        PKCS11PrivateKey.getPrivateKeys(this.sessionStore.getSession());
+	        PKCS11PrivateKey.getPrivateKeys(store.getSession());
 			
 	    Map<PKCS11Id,PKCS11KSEntry> privKeysById =
 	        new HashMap<PKCS11Id,PKCS11KSEntry>();
@@ -519,7 +594,7 @@ public class PKCS11KeyStoreSpi extends KeyStoreSpi
 	    }
 			
 	    List<PKCS11Certificate> certificates =
-	        PKCS11Certificate.getCertificates(this.sessionStore.getSession());
+	        PKCS11Certificate.getCertificates(store.getSession());
 			
 	    for (PKCS11Certificate certificate : certificates)
 	    {
@@ -531,7 +606,7 @@ public class PKCS11KeyStoreSpi extends KeyStoreSpi
 				
 	        int i = 1;
 					
-	        while (this.entries.containsKey(name) && i < MAX_SIMILAR_CERTIFICATES)
+	        while (newEntries.containsKey(name) && i < MAX_SIMILAR_CERTIFICATES)
 	        {
 	            ++i;
 	            name = String.format("%s_%02X",subj,i);
@@ -543,16 +618,18 @@ public class PKCS11KeyStoreSpi extends KeyStoreSpi
 	                                           "]found on the token.");
 	        }
 				
-	        PKCS11KSEntry entry = new PKCS11KSEntry(certificate);
+	        Certificate decoded = certificate.getCertificate();
+	        
+	        PKCS11KSEntry entry = new PKCS11KSEntry(certificate,decoded);
 	        PKCS11KSEntry pk_entry = privKeysById.get(certificate.getId());
 				
 	        if (pk_entry != null)
 	        {
 	            entry.privateKey = pk_entry.privateKey;
-	            pk_entry.certificate = certificate;
+	            pk_entry.setCertificate(certificate,decoded);
 	        }
 				
-	        this.entries.put(name,entry);
+	        newEntries.put(name,entry);
 	    }
 	    
 	    for (PKCS11Id id : privKeysById.keySet())
@@ -563,7 +640,9 @@ public class PKCS11KeyStoreSpi extends KeyStoreSpi
 				
 	        String name = "ID_"+id;
 				
-	        this.entries.put(name,entry);
+	        newEntries.put(name,entry);
 	    }
+	    
+	    return Collections.unmodifiableMap(newEntries);
 	}
 }
@@ -25,6 +25,8 @@
 
 package org.opensc.pkcs11.spi;
 
+import java.io.ByteArrayOutputStream;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.InvalidParameterException;
 import java.security.PrivateKey;
@@ -33,9 +35,11 @@ import java.security.SecureRandom;
 import java.security.SignatureException;
 import java.security.SignatureSpi;
 
+import org.opensc.pkcs11.PKCS11LoadBalancedKey;
 import org.opensc.pkcs11.PKCS11Provider;
 import org.opensc.pkcs11.wrap.PKCS11Exception;
 import org.opensc.pkcs11.wrap.PKCS11Mechanism;
+import org.opensc.pkcs11.wrap.PKCS11Session;
 import org.opensc.pkcs11.wrap.PKCS11SessionChild;
 
 /**
@@ -50,6 +54,11 @@ public class PKCS11SignatureSpi extends SignatureSpi
 	PKCS11SessionChild worker;
 	PrivateKey privateKey;
 	PublicKey publicKey;
+	/**
+	 * The data to sign with a load balanced key, which is passed to the
+	 * load balancer by {@link #engineSign()}.
+	 */
+	ByteArrayOutputStream balancedData;
 	
 	private native void initSignNative(long pvh, long shandle, long hsession, long hkey, int algo) throws PKCS11Exception;
 	private native void updateSignNative(long pvh, long shandle, long hsession, byte[] data, int off, int len) throws PKCS11Exception;
@@ -123,6 +132,7 @@ public class PKCS11SignatureSpi extends SignatureSpi
 		this.worker = (PKCS11SessionChild)pubKey;
 		this.publicKey = pubKey;
 		this.privateKey = null;
+		this.balancedData = null;
 		
 		try
 		{
@@ -151,6 +161,25 @@ public class PKCS11SignatureSpi extends SignatureSpi
 	@Override
 	protected void engineInitSign(PrivateKey privKey) throws InvalidKeyException
 	{
+		if (privKey instanceof PKCS11LoadBalancedKey)
+		{
+			if (!this.algorithm.endsWith(privKey.getAlgorithm()))
+				throw new InvalidKeyException("PKCS11 key algorithm ["+
+						privKey.getAlgorithm()+
+						"] is incompatible with signature algorithm ["+
+						this.algorithm+"].");
+			
+			getPKCS11MechanismType();
+			
+			// the data is collected and signed on the least loaded token
+			// by engineSign().
+			this.worker = null;
+			this.publicKey = null;
+			this.privateKey = privKey;
+			this.balancedData = new ByteArrayOutputStream();
+			return;
+		}
+		
 		if (! (privKey instanceof PKCS11SessionChild))
 			throw new InvalidKeyException("PKCS11 signature engine expects a valid PKCS11 object.");
 			
@@ -164,12 +193,24 @@ public class PKCS11SignatureSpi extends SignatureSpi
 		this.worker = (PKCS11SessionChild)privKey;
 		this.publicKey = null;
 		this.privateKey = privKey;
+		this.balancedData = null;
 		
 		try
 		{
-			initSignNative(this.worker.getPvh(),
-                    this.worker.getSlotHandle(),this.worker.getSessionHandle(),
-                    this.worker.getHandle(),pkcs11_alg);
+			try
+			{
+				initSignNative(this.worker.getPvh(),
+                        this.worker.getSlotHandle(),this.worker.getSessionHandle(),
+                        this.worker.getHandle(),pkcs11_alg);
+			} catch (PKCS11Exception e)
+			{
+				// The token might have been logged out by another application.
+				if (!PKCS11Session.reloginIfRequired(this.worker,e)) throw e;
+				
+				initSignNative(this.worker.getPvh(),
+                        this.worker.getSlotHandle(),this.worker.getSessionHandle(),
+                        this.worker.getHandle(),pkcs11_alg);
+			}
 			
 		} catch (PKCS11Exception e)
 		{
@@ -183,6 +224,12 @@ public class PKCS11SignatureSpi extends SignatureSpi
 	@Override
 	protected void engineUpdate(byte b) throws SignatureException
 	{
+		if (this.balancedData != null)
+		{
+			this.balancedData.write(b);
+			return;
+		}
+		
 		if (this.worker == null)
 			throw new SignatureException("Signature not initialized through initSign() or initVerify().");
 		
@@ -208,6 +255,12 @@ public class PKCS11SignatureSpi extends SignatureSpi
 	protected void engineUpdate(byte[] data, int off, int len)
 			throws SignatureException
 	{
+		if (this.balancedData != null)
+		{
+			this.balancedData.write(data,off,len);
+			return;
+		}
+		
 		if (this.worker == null)
 			throw new SignatureException("Signature not initialized through initSign() or initVerify().");
 
@@ -232,6 +285,26 @@ public class PKCS11SignatureSpi extends SignatureSpi
 	@Override
 	protected byte[] engineSign() throws SignatureException
 	{
+		if (this.balancedData != null)
+		{
+			PKCS11LoadBalancedKey key = (PKCS11LoadBalancedKey)this.privateKey;
+			
+			try
+			{
+				return key.getLoadBalancer().sign(this.algorithm,this.balancedData.toByteArray());
+				
+			} catch (SignatureException e)
+			{
+				throw e;
+			} catch (GeneralSecurityException e)
+			{
+				throw new SignatureException("Load balanced signature failed",e);
+			} finally
+			{
+				this.balancedData.reset();
+			}
+		}
+		
 		if (this.worker == null)
 			throw new SignatureException("Signature not initialized through initSign() or initVerify().");
 
@@ -0,0 +1,196 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS11 provider of the OpenSC project http://www.opensc-project.org
+ *
+ * Copyright (C) 2002-2006 ev-i Informationstechnologie GmbH
+ *
+ * Created: Oct 19, 2026
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *
+ ***********************************************************/
+
+package org.opensc.pkcs11.wrap;
+
+import java.util.Arrays;
+
+/**
+ * @author wglas
+ *
+ * This class tracks the login state of a token.
+ *
+ * According to PKCS#11, the login state is shared by all sessions
+ * of an application on the same token and ends, when the last session
+ * on the token is closed. Instances of this class are maintained by the
+ * provider on a per-slot basis and are shared by all sessions opened on
+ * the same slot.
+ *
+ * Additionally, the user PIN of a successful login may be held in order
+ * to transparently re-authenticate, if the token reports
+ * <code>CKR_USER_NOT_LOGGED_IN</code>. The PIN is only held, if this
+ * has been requested through
+ * {@link org.opensc.pkcs11.PKCS11LoadStoreParameter#setRetainUserCredential(boolean)}.
+ * The PIN is wiped, when the user logs out or the last session on the token is closed.
+ *
+ * @see org.opensc.pkcs11.PKCS11Provider#getLoginState(long)
+ */
+public final class PKCS11LoginState
+{
+	private final long slotId;
+
+	private int openSessions;
+
+	private boolean userLoggedIn;
+
+	private boolean SOLoggedIn;
+
+	private boolean userCredentialSet;
+
+	private char[] userCredential;
+
+	/**
+	 * Contructs the login state of the token in the given slot.
+	 *
+	 * @param slotId The ID of the slot.
+	 */
+	public PKCS11LoginState(long slotId)
+	{
+		this.slotId = slotId;
+		this.openSessions = 0;
+		this.userLoggedIn = false;
+		this.SOLoggedIn = false;
+		this.userCredentialSet = false;
+		this.userCredential = null;
+	}
+
+	/**
+	 * @return The ID of the slot, to which this login state belongs.
+	 */
+	public long getSlotId()
+	{
+		return this.slotId;
+	}
+
+	/**
+	 * Called, when a session on the token has been opened.
+	 */
+	synchronized void sessionOpened()
+	{
+		++this.openSessions;
+	}
+
+	/**
+	 * Called, when a session on the token has been closed. If this has
+	 * been the last open session, the token has implicitly logged out.
+	 */
+	synchronized void sessionClosed()
+	{
+		if (this.openSessions > 0)
+			--this.openSessions;
+
+		if (this.openSessions == 0)
+			loggedOut();
+	}
+
+	/**
+	 * @return The number of open sessions on the token.
+	 */
+	public synchronized int getOpenSessions()
+	{
+		return this.openSessions;
+	}
+
+	/**
+	 * @return Returns, whether the user is logged in to the token.
+	 */
+	public synchronized boolean isUserLoggedIn()
+	{
+		return this.userLoggedIn;
+	}
+
+	synchronized void setUserLoggedIn(boolean userLoggedIn)
+	{
+		this.userLoggedIn = userLoggedIn;
+	}
+
+	/**
+	 * @return Returns, whether the security officer is logged in to the token.
+	 */
+	public synchronized boolean isSOLoggedIn()
+	{
+		return this.SOLoggedIn;
+	}
+
+	synchronized void setSOLoggedIn(boolean SOLoggedIn)
+	{
+		this.SOLoggedIn = SOLoggedIn;
+	}
+
+	/**
+	 * Resets the login state and wipes the user credential.
+	 */
+	synchronized void loggedOut()
+	{
+		this.userLoggedIn = false;
+		this.SOLoggedIn = false;
+		clearUserCredential();
+	}
+
+	/**
+	 * Holds the user PIN for transparent re-authentication.
+	 * A copy of the given PIN is stored.
+	 *
+	 * @param pin The user PIN, which has successfully been presented to
+	 *            the token. This parameter may be <code>null</code>, if
+	 *            the token has a protected authentication path.
+	 */
+	public synchronized void setUserCredential(char[] pin)
+	{
+		clearUserCredential();
+
+		this.userCredential = pin == null ? null : pin.clone();
+		this.userCredentialSet = true;
+	}
+
+	/**
+	 * @return Whether a user credential is held for re-authentication.
+	 */
+	public synchronized boolean hasUserCredential()
+	{
+		return this.userCredentialSet;
+	}
+
+	/**
+	 * @return A copy of the user credential, which should be wiped
+	 *         by the caller after use.
+	 */
+	synchronized char[] getUserCredential()
+	{
+		return this.userCredential == null ? null : this.userCredential.clone();
+	}
+
+	/**
+	 * Wipes the held user credential.
+	 */
+	public synchronized void clearUserCredential()
+	{
+		if (this.userCredential != null)
+			Arrays.fill(this.userCredential,'\0');
+
+		this.userCredential = null;
+		this.userCredentialSet = false;
+	}
+}
@@ -284,6 +284,15 @@ public class PKCS11Object extends DestroyableChild implements PKCS11SessionChild
 		return this.label;
 	}
 	
+	/**
+	 * @return The session, to which this object belongs or <code>null</code>,
+	 *         if destroy() has been called before.
+	 */
+	public PKCS11Session getSession()
+	{
+		return (PKCS11Session)getParent();
+	}
+	
 	/**
 	 * @return The underlying PKCS11 security provider.
 	 *         This function throws a runtime exception, if destroy()
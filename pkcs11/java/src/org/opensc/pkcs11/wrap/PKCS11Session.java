@@ -25,6 +25,8 @@
 
 package org.opensc.pkcs11.wrap;
 
+import java.util.Arrays;
+
 import javax.security.auth.DestroyFailedException;
 
 import org.opensc.util.DestroyableHolder;
@@ -52,9 +54,11 @@ public class PKCS11Session extends DestroyableHolder
 	 */
 	protected long handle;
 
-	private boolean userLoggedIn;
-	
-	private boolean SOLoggedIn;
+	/**
+	 * The login state of the token, which is shared with all other
+	 * sessions on the same slot.
+	 */
+	private final PKCS11LoginState loginState;
 	
 	public static final int OPEN_MODE_READ_ONLY = 0;
 	public static final int OPEN_MODE_READ_WRITE = 1;
@@ -79,8 +83,8 @@ public class PKCS11Session extends DestroyableHolder
 		this.pvh = slot.getPvh();
 		this.shandle = slot.getHandle();
 		this.handle = handle;
-		this.userLoggedIn = false;
-		this.SOLoggedIn = false;
+		this.loginState = slot.getLoginState();
+		this.loginState.sessionOpened();
 	}
 
 	private static native long openNative(long pvh, long shandle, int mode) throws PKCS11Exception;
@@ -131,6 +135,10 @@ public class PKCS11Session extends DestroyableHolder
 	/**
 	 * Presents the user PIN to the token. Should only be called after open().
 	 * 
+	 * As the login state is shared among all sessions on a token, no
+	 * PIN is presented to the token, if the user has already logged in
+	 * through another session.
+	 * 
 	 * @param pin The user pin. This paremeter may be <code>null</code>, if the
 	 *            token has a protected authentication path.
 	 *            
@@ -140,17 +148,23 @@ public class PKCS11Session extends DestroyableHolder
 	 */
 	public void loginUser(char[] pin) throws PKCS11Exception
 	{
-		if (this.userLoggedIn)
-			throw new PKCS11Exception("The user is already logged in.");
+		synchronized (this.loginState)
+		{
+			if (this.loginState.isUserLoggedIn()) return;
 
-		loginNative(this.pvh,this.shandle,this.handle,LOGIN_TYPE_USER,Util.translatePin(pin));
+			login(LOGIN_TYPE_USER,pin);
 		
-        this.userLoggedIn = true;
+			this.loginState.setUserLoggedIn(true);
+		}
 	}
 	
 	/**
 	 * Presents the security officer PIN to the token. Should only be called after open().
 	 * 
+	 * As the login state is shared among all sessions on a token, no
+	 * PIN is presented to the token, if the security officer has already
+	 * logged in through another session.
+	 * 
 	 * @param pin The SO pin. This paremeter may be <code>null</code>, if the
 	 *            token has a protected authentication path.
 	 *            
@@ -160,45 +174,144 @@ public class PKCS11Session extends DestroyableHolder
 	 */
 	public void loginSO(char[] pin) throws PKCS11Exception
 	{
-		if (this.SOLoggedIn)
-			throw new PKCS11Exception("The security officer is already logged in.");
+		synchronized (this.loginState)
+		{
+			if (this.loginState.isSOLoggedIn()) return;
 		
-		loginNative(this.pvh,this.shandle,this.handle,LOGIN_TYPE_SO,Util.translatePin(pin));
+			login(LOGIN_TYPE_SO,pin);
 		
-        this.SOLoggedIn = true;
+			this.loginState.setSOLoggedIn(true);
+		}
 	}
 
+	/**
+	 * Call C_Login and treat <code>CKR_USER_ALREADY_LOGGED_IN</code> as
+	 * success, because the token might have been logged in by another
+	 * session without our knowledge.
+	 */
+	private void login(int type, char[] pin) throws PKCS11Exception
+	{
+		try
+		{
+			loginNative(this.pvh,this.shandle,this.handle,type,Util.translatePin(pin));
+		}
+		catch (PKCS11Exception e)
+		{
+			if (e.getErrorCode() != PKCS11Exception.CKR_USER_ALREADY_LOGGED_IN)
+				throw e;
+		}
+	}
+	
+	/**
+	 * Re-authenticates the user using the credential held by the login state
+	 * of the token. This should be called, if the token unexpectedly reports
+	 * <code>CKR_USER_NOT_LOGGED_IN</code>, e.g. after another application has
+	 * logged out the token.
+	 * 
+	 * @return Whether the user has been re-authenticated. If no credential
+	 *         is held by the login state, <code>false</code> is returned.
+	 * @throws PKCS11Exception Upon errors of the underlying PKCS#11 engine.
+	 * 
+	 * @see PKCS11LoginState#setUserCredential(char[])
+	 */
+	public boolean reloginUser() throws PKCS11Exception
+	{
+		synchronized (this.loginState)
+		{
+			if (!this.loginState.hasUserCredential()) return false;
+			
+			char[] pin = this.loginState.getUserCredential();
+			
+			try
+			{
+				this.loginState.setUserLoggedIn(false);
+				login(LOGIN_TYPE_USER,pin);
+				this.loginState.setUserLoggedIn(true);
+			}
+			finally
+			{
+				if (pin != null) Arrays.fill(pin,'\0');
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * Re-authenticates the user on the session of the given object, if the
+	 * given exception is a <code>CKR_USER_NOT_LOGGED_IN</code> error.
+	 * This is used by the SPI implementations in order to transparently
+	 * retry an operation after the token has lost its login state.
+	 * 
+	 * @param child The object, for which an operation failed.
+	 * @param e The exception, which has been caught.
+	 * @return Whether the user has been re-authenticated and the operation
+	 *         should be retried.
+	 * @throws PKCS11Exception Upon errors of the underlying PKCS#11 engine.
+	 */
+	public static boolean reloginIfRequired(PKCS11SessionChild child, PKCS11Exception e) throws PKCS11Exception
+	{
+		if (e.getErrorCode() != PKCS11Exception.CKR_USER_NOT_LOGGED_IN) return false;
+		
+		if (!(child instanceof PKCS11Object)) return false;
+		
+		PKCS11Session session = ((PKCS11Object)child).getSession();
+		
+		if (session == null) return false;
+		
+		return session.reloginUser();
+	}
+	
 	/**
 	 * @return Returns, whether the security officer has successfully logged in
-	 *         through loginSO().
+	 *         to the token through loginSO() on this or another session.
 	 */
 	public boolean isSOLoggedIn()
 	{
-		return this.SOLoggedIn;
+		return this.loginState.isSOLoggedIn();
 	}
 
 	/**
 	 * @return Returns, whether the user has successfully logged in
-	 *         through loginUser().
+	 *         to the token through loginUser() on this or another session.
 	 */
 	public boolean isUserLoggedIn()
 	{
-		return this.userLoggedIn;
+		return this.loginState.isUserLoggedIn();
+	}
+	
+	/**
+	 * @return The login state of the token, which is shared among all
+	 *         sessions on the same slot.
+	 */
+	public PKCS11LoginState getLoginState()
+	{
+		return this.loginState;
 	}
 	
 	private native void logoutNative(long _pvh, long _shandle, long _handle) throws PKCS11Exception;
 	
 	/**
-	 * Logs out from the token.
+	 * Logs out from the token. As the login state is shared among all sessions
+	 * on a token, this logs out all other sessions on the token, too.
 	 */
 	public void logout() throws PKCS11Exception
 	{
-		if (!this.userLoggedIn && ! this.SOLoggedIn) return;
+		synchronized (this.loginState)
+		{
+			if (!this.loginState.isUserLoggedIn() && !this.loginState.isSOLoggedIn()) return;
 		
-		logoutNative(this.pvh,this.shandle,this.handle);
+			try
+			{
+				logoutNative(this.pvh,this.shandle,this.handle);
+			}
+			catch (PKCS11Exception e)
+			{
+				if (e.getErrorCode() != PKCS11Exception.CKR_USER_NOT_LOGGED_IN)
+					throw e;
+			}
 		
-        this.userLoggedIn = false;
-        this.SOLoggedIn = false;
+			this.loginState.loggedOut();
+		}
 	}
 
 	/* (non-Javadoc)
@@ -207,12 +320,14 @@ public class PKCS11Session extends DestroyableHolder
 	@Override
 	public void destroy() throws DestroyFailedException
 	{
-		closeNative(this.pvh,this.shandle,this.handle);
+		if (this.handle != 0)
+		{
+			closeNative(this.pvh,this.shandle,this.handle);
+			this.loginState.sessionClosed();
+		}
         this.handle = 0;
         this.shandle = 0;
         this.pvh = 0;
-        this.userLoggedIn = false;
-        this.SOLoggedIn = false;
 		super.destroy();
 	}
 
@@ -55,6 +55,11 @@ public class PKCS11Slot extends DestroyableHolder
 	 */
 	private long handle;
 	
+	/**
+	 * The login state of the token, which is shared by all sessions.
+	 */
+	private final PKCS11LoginState loginState;
+	
 	private native long initSlotNative(long _pvh, long _id) throws PKCS11Exception;
 	private native void destroySlotNative(long _pvh, long _handle) throws DestroyFailedException;
 	
@@ -73,6 +78,7 @@ public class PKCS11Slot extends DestroyableHolder
 		this.id = id;
 		this.pvh = provider.getPkcs11ModuleHandle();
 		this.handle = initSlotNative(this.pvh,id);
+		this.loginState = provider.getLoginState(id);
 	}
 	
 	private static native long[] enumerateSlotsNative(long pvh) throws PKCS11Exception;
@@ -385,6 +391,15 @@ public class PKCS11Slot extends DestroyableHolder
 		return hasTokenProtectedAuthPathNative(this.pvh,this.handle);
 	}
 			
+	/**
+	 * @return The login state of the token in this slot, which is shared
+	 *         among all sessions on the token.
+	 */
+	public PKCS11LoginState getLoginState()
+	{
+		return this.loginState;
+	}
+	
 	/**
 	 * @return Returns the id of this slot.
 	 */
@@ -62,6 +62,20 @@ struct pkcs11_slot_st
   CK_TOKEN_INFO ck_token_info;
 };
 
+/* class and method IDs resolved once in JNI_OnLoad. */
+typedef struct jniP11_cache_st jniP11_cache_t;
+
+struct jniP11_cache_st
+{
+  jclass attributeClass;
+  jmethodID attributeGetKindID;
+  jmethodID attributeGetDataID;
+  jclass mechanismClass;
+  jmethodID mechanismCtorID;
+};
+
+extern JNIX_INTERNAL_API jniP11_cache_t jniP11_cache;
+
 /* functions in pkcs11_error.c */
 const char JNIX_INTERNAL_API * pkcs11_strerror(int rv);
 
@@ -25,6 +25,86 @@
 
 #include <jniP11private.h>
 
+jniP11_cache_t jniP11_cache;
+
+static jclass jniP11_global_class(JNIEnv *env, const char *name)
+{
+  jclass clazz = (*env)->FindClass(env,name);
+  jclass ret;
+
+  if (!clazz) return 0;
+
+  ret = (jclass)(*env)->NewGlobalRef(env,clazz);
+  (*env)->DeleteLocalRef(env,clazz);
+
+  return ret;
+}
+
+/*
+ * Resolve all class and method IDs used by the native marshalling code
+ * once, when the library is loaded by the VM.
+ */
+JNIEXPORT jint JNICALL JNIX_FUNC_NAME(JNI_OnLoad)(JavaVM *vm, void *reserved)
+{
+  JNIEnv *env;
+
+  if ((*vm)->GetEnv(vm,(void**)&env,JNI_VERSION_1_4) != JNI_OK)
+    return JNI_ERR;
+
+  memset(&jniP11_cache,0,sizeof(jniP11_cache_t));
+
+  jniP11_cache.attributeClass =
+    jniP11_global_class(env,"org/opensc/pkcs11/wrap/PKCS11Attribute");
+
+  if (!jniP11_cache.attributeClass) return JNI_ERR;
+
+  jniP11_cache.attributeGetKindID =
+    (*env)->GetMethodID(env,jniP11_cache.attributeClass,"getKind","()I");
+
+  if (!jniP11_cache.attributeGetKindID) return JNI_ERR;
+
+  jniP11_cache.attributeGetDataID =
+    (*env)->GetMethodID(env,jniP11_cache.attributeClass,"getData","()[B");
+
+  if (!jniP11_cache.attributeGetDataID) return JNI_ERR;
+
+  jniP11_cache.mechanismClass =
+    jniP11_global_class(env,"org/opensc/pkcs11/wrap/PKCS11Mechanism");
+
+  if (!jniP11_cache.mechanismClass) return JNI_ERR;
+
+  jniP11_cache.mechanismCtorID =
+    (*env)->GetMethodID(env,jniP11_cache.mechanismClass,"<init>","(IIII)V");
+
+  if (!jniP11_cache.mechanismCtorID) return JNI_ERR;
+
+  if (jnixCacheExceptionClass(env,"org/opensc/pkcs11/wrap/PKCS11Exception"))
+    return JNI_ERR;
+
+  return JNI_VERSION_1_4;
+}
+
+/*
+ * Release the global references acquired in JNI_OnLoad.
+ */
+JNIEXPORT void JNICALL JNIX_FUNC_NAME(JNI_OnUnload)(JavaVM *vm, void *reserved)
+{
+  JNIEnv *env;
+
+  if ((*vm)->GetEnv(vm,(void**)&env,JNI_VERSION_1_4) != JNI_OK)
+    return;
+
+  jnixReleaseExceptionClasses(env);
+
+  if (jniP11_cache.attributeClass)
+    (*env)->DeleteGlobalRef(env,jniP11_cache.attributeClass);
+
+  if (jniP11_cache.mechanismClass)
+    (*env)->DeleteGlobalRef(env,jniP11_cache.mechanismClass);
+
+  memset(&jniP11_cache,0,sizeof(jniP11_cache_t));
+}
+
 /*
  * Class:     org_opensc_pkcs11_PKCS11Provider
  * Method:    loadPKCS11Module
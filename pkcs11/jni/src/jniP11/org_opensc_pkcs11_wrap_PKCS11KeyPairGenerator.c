@@ -42,7 +42,6 @@ JNIEXPORT jlongArray JNICALL JNIX_FUNC_NAME(Java_org_opensc_pkcs11_wrap_PKCS11Ke
   CK_ATTRIBUTE_PTR pPrivateKeyTemplate;
   CK_MECHANISM keyPairMechanism;
   CK_OBJECT_HANDLE hPublicKey, hPrivateKey;
-  jclass clazz;
   jmethodID getKindID;
   jmethodID getDataID;
   jlong buf[2];
@@ -54,17 +53,8 @@ JNIEXPORT jlongArray JNICALL JNIX_FUNC_NAME(Java_org_opensc_pkcs11_wrap_PKCS11Ke
   slot = pkcs11_slot_from_jhandle(env,shandle);
   if (!slot) return 0;
 
-  clazz = (*env)->FindClass(env,"org/opensc/pkcs11/wrap/PKCS11Attribute");
-
-  if (!clazz) return 0;
-
-  getKindID = (*env)->GetMethodID(env,clazz,"getKind","()I");
-
-  if (!getKindID) return 0;
-
-  getDataID = (*env)->GetMethodID(env,clazz,"getData","()[B");
-
-  if (!getDataID) return 0;
+  getKindID = jniP11_cache.attributeGetKindID;
+  getDataID = jniP11_cache.attributeGetDataID;
 
   ulPublicKeyAttributeCount = (*env)->GetArrayLength(env,pubAttrs);
   pPublicKeyTemplate = alloca(ulPublicKeyAttributeCount * sizeof(CK_ATTRIBUTE));
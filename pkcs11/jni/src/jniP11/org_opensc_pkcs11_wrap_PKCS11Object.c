@@ -35,7 +35,6 @@
 JNIEXPORT jlongArray JNICALL JNIX_FUNC_NAME(Java_org_opensc_pkcs11_wrap_PKCS11Object_enumObjectsNative)
   (JNIEnv *env, jclass jp11obj, jlong mh, jlong shandle, jlong hsession, jobjectArray attrs)
 {
-  jclass clazz;
   jmethodID getKindID,getDataID;
   CK_ULONG ulAttributeCount;
   CK_ATTRIBUTE_PTR pAttributes;
@@ -53,17 +52,8 @@ JNIEXPORT jlongArray JNICALL JNIX_FUNC_NAME(Java_org_opensc_pkcs11_wrap_PKCS11Ob
   slot = pkcs11_slot_from_jhandle(env,shandle);
   if (!slot) return 0;
 
-  clazz = (*env)->FindClass(env,"org/opensc/pkcs11/wrap/PKCS11Attribute");
-
-  if (!clazz) return 0;
-
-  getKindID = (*env)->GetMethodID(env,clazz,"getKind","()I");
-
-  if (!getKindID) return 0;
-
-  getDataID = (*env)->GetMethodID(env,clazz,"getData","()[B");
-
-  if (!getDataID) return 0;
+  getKindID = jniP11_cache.attributeGetKindID;
+  getDataID = jniP11_cache.attributeGetDataID;
 
   ulAttributeCount = (*env)->GetArrayLength(env,attrs);
   pAttributes = alloca(ulAttributeCount * sizeof(CK_ATTRIBUTE));
@@ -411,7 +401,6 @@ JNIEXPORT jlong JNICALL JNIX_FUNC_NAME(Java_org_opensc_pkcs11_wrap_PKCS11Object_
   CK_ULONG ulAttributeCount;
   CK_ATTRIBUTE_PTR pAttributes;
   CK_OBJECT_HANDLE hObject;
-  jclass clazz;
   jmethodID getKindID,getDataID;
   pkcs11_slot_t *slot;
   pkcs11_module_t *mod =  pkcs11_module_from_jhandle(env,mh);
@@ -420,17 +409,8 @@ JNIEXPORT jlong JNICALL JNIX_FUNC_NAME(Java_org_opensc_pkcs11_wrap_PKCS11Object_
   slot = pkcs11_slot_from_jhandle(env,shandle);
   if (!slot) return 0;
 
-  clazz = (*env)->FindClass(env,"org/opensc/pkcs11/wrap/PKCS11Attribute");
-
-  if (!clazz) return 0;
-
-  getKindID = (*env)->GetMethodID(env,clazz,"getKind","()I");
-
-  if (!getKindID) return 0;
-
-   getDataID = (*env)->GetMethodID(env,clazz,"getData","()[B");
-
-  if (!getDataID) return 0;
+  getKindID = jniP11_cache.attributeGetKindID;
+  getDataID = jniP11_cache.attributeGetDataID;
 
   ulAttributeCount = (*env)->GetArrayLength(env,attrs);
   pAttributes = alloca(ulAttributeCount * sizeof(CK_ATTRIBUTE));
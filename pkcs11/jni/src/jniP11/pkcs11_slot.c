@@ -138,13 +138,8 @@ jobjectArray pkcs11_slot_make_jmechanisms(JNIEnv *env, pkcs11_module_t *mod, pkc
   jobjectArray ret;
   int rv;
 
-  clazz = (*env)->FindClass(env,"org/opensc/pkcs11/wrap/PKCS11Mechanism");
-
-  if (!clazz) return 0;
-
-  ctorID = (*env)->GetMethodID(env,clazz,"<init>","(IIII)V");
-
-  if (!ctorID) return 0;
+  clazz = jniP11_cache.mechanismClass;
+  ctorID = jniP11_cache.mechanismCtorID;
 
   ret = (*env)->NewObjectArray(env,n_mechanisms,clazz,NULL /* initialElement */);
 
@@ -174,6 +169,7 @@ jobjectArray pkcs11_slot_make_jmechanisms(JNIEnv *env, pkcs11_module_t *mod, pkc
       if (!m) return 0;
 
       (*env)->SetObjectArrayElement(env,ret,i,m);
+      (*env)->DeleteLocalRef(env,m);
     }
 
   return ret;
@@ -21,12 +21,81 @@
  */
 #include<jnix.h>
 
+typedef struct jnix_exception_class_st
+{
+  const char *class_name;
+  jclass clazz;
+  jmethodID ctorIS;
+} jnix_exception_class_t;
+
+static jnix_exception_class_t jnix_exception_classes[JNIX_MAX_CACHED_EXCEPTION_CLASSES];
+static int jnix_n_exception_classes = 0;
+
+int jnixCacheExceptionClass(JNIEnv *env, const char *class_name)
+{
+  jclass clazz;
+  jnix_exception_class_t *ec;
+
+  if (jnix_n_exception_classes >= JNIX_MAX_CACHED_EXCEPTION_CLASSES)
+    return -1;
+
+  clazz = (*env)->FindClass(env,class_name);
+
+  if (!clazz) return -1;
+
+  ec = &jnix_exception_classes[jnix_n_exception_classes];
+
+  ec->clazz = (jclass)(*env)->NewGlobalRef(env,clazz);
+  (*env)->DeleteLocalRef(env,clazz);
+
+  if (!ec->clazz) return -1;
+
+  /* the (int,String) constructor is optional. */
+  ec->ctorIS = (*env)->GetMethodID(env,ec->clazz,"<init>","(ILjava/lang/String;)V");
+
+  if (!ec->ctorIS)
+    (*env)->ExceptionClear(env);
+
+  ec->class_name = class_name;
+  ++jnix_n_exception_classes;
+
+  return 0;
+}
+
+void jnixReleaseExceptionClasses(JNIEnv *env)
+{
+  int i;
+
+  for (i=0;i<jnix_n_exception_classes;++i)
+    {
+      (*env)->DeleteGlobalRef(env,jnix_exception_classes[i].clazz);
+      memset(&jnix_exception_classes[i],0,sizeof(jnix_exception_class_t));
+    }
+
+  jnix_n_exception_classes = 0;
+}
+
+static jnix_exception_class_t *jnixFindExceptionClass(const char *class_name)
+{
+  int i;
+
+  for (i=0;i<jnix_n_exception_classes;++i)
+    {
+      if (jnix_exception_classes[i].class_name == class_name ||
+          strcmp(jnix_exception_classes[i].class_name,class_name) == 0)
+        return &jnix_exception_classes[i];
+    }
+
+  return 0;
+}
+
 static void jnixThrowExceptionInternal(int *sz,
                                        JNIEnv *env,
                                        const char *class_name,
                                        const char *fmt, va_list ap)
 {
   jclass clazz;
+  jnix_exception_class_t *ec;
   int n;
   char *msg=alloca(*sz);
 
@@ -47,7 +116,12 @@ static void jnixThrowExceptionInternal(int *sz,
 
   *sz = 0;
 
-  clazz = (*env)->FindClass(env,class_name);
+  ec = jnixFindExceptionClass(class_name);
+
+  if (ec)
+    clazz = ec->clazz;
+  else
+    clazz = (*env)->FindClass(env,class_name);
 
   if (!clazz) return;
 
@@ -106,6 +180,7 @@ static void jnixThrowExceptionInternalI(int *sz,
   jstring jmsg;
   jmethodID ctorID;
   jobject e;
+  jnix_exception_class_t *ec;
   
   char *msg=alloca(*sz);
 
@@ -126,13 +201,23 @@ static void jnixThrowExceptionInternalI(int *sz,
 
   *sz = 0;
 
-  clazz = (*env)->FindClass(env,class_name);
+  ec = jnixFindExceptionClass(class_name);
 
-  if (!clazz) return;
+  if (ec && ec->ctorIS)
+    {
+      clazz = ec->clazz;
+      ctorID = ec->ctorIS;
+    }
+  else
+    {
+      clazz = (*env)->FindClass(env,class_name);
 
-  ctorID = (*env)->GetMethodID(env,clazz,"<init>","(ILjava/lang/String;)V");
+      if (!clazz) return;
 
-  if (!ctorID) return;
+      ctorID = (*env)->GetMethodID(env,clazz,"<init>","(ILjava/lang/String;)V");
+
+      if (!ctorID) return;
+    }
 
   jmsg = (*env)->NewStringUTF(env,msg);
 
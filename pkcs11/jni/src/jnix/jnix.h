@@ -73,6 +73,31 @@ JNIX_FUNC_NAME(JNI_OnUnload)(JavaVM *vm, void *reserved);
 
 #include<string.h>
 
+/*! The maximal number of exception classes, which may be cached
+    using jnixCacheExceptionClass().
+*/
+#define JNIX_MAX_CACHED_EXCEPTION_CLASSES 8
+
+/*! Cache a global reference to the exception class of the given fully
+    qualified class name together with the IDs of its constructors.
+    Subsequent calls to the jnixThrowException* functions for this
+    class name do not need to call FindClass and GetMethodID.
+
+    This function should be called from \c JNI_OnLoad, because the
+    cache is not protected against concurrent modifications.
+    The \c class_name must point to a string constant.
+
+    Returns 0 on success or -1, if the class could not be found or
+    the cache is full.
+*/
+int JNIX_INTERNAL_API jnixCacheExceptionClass(JNIEnv *env,
+                                              const char *class_name);
+
+/*! Release all global references acquired by jnixCacheExceptionClass().
+    This function should be called from \c JNI_OnUnload.
+*/
+void JNIX_INTERNAL_API jnixReleaseExceptionClasses(JNIEnv *env);
+
 /*! Throw an exception of the given fully qualified class name
     using the given format and arguments. The formatted string
     is passed to the one-argument constructor of the exception,
@@ -0,0 +1,373 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.application;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.bouncycastle.asn1.ASN1InputStream;
+import org.bouncycastle.asn1.DERObject;
+import org.opensc.pkcs15.AIDs;
+import org.opensc.pkcs15.PKCS15Exception;
+import org.opensc.pkcs15.application.impl.PKCS15Application;
+import org.opensc.pkcs15.asn1.PKCS15Objects;
+import org.opensc.pkcs15.asn1.basic.TokenInfo;
+import org.opensc.pkcs15.asn1.ref.DDO;
+import org.opensc.pkcs15.asn1.ref.Path;
+import org.opensc.pkcs15.asn1.sequence.SequenceOf;
+import org.opensc.pkcs15.token.PathHelper;
+import org.opensc.pkcs15.token.Token;
+import org.opensc.pkcs15.token.TokenContext;
+import org.opensc.pkcs15.token.TokenPath;
+
+/**
+ * Load the PKCS#15 structures of many tokens concurrently.
+ * 
+ * Each token is handled by a single worker, which reads EF(DIR), the
+ * ODF, the TokenInfo and all object directories referenced by the ODF.
+ * The number of tokens processed at the same time is bounded by the
+ * parallelism passed to the constructor. Errors on one token are recorded
+ * in its {@link Result} and do not affect the other tokens.
+ * 
+ * @author wglas
+ */
+public class PKCS15BulkLoader {
+
+    private static final Log log = LogFactory.getLog(PKCS15BulkLoader.class);
+    
+    private static final int ODF_ID = 0x5031;
+    private static final int TOKEN_INFO_ID = 0x5032;
+    
+    private final ApplicationFactory applicationFactory;
+    private final int parallelism;
+    
+    /**
+     * The structures and timings loaded from a single token.
+     */
+    public static class Result {
+        
+        private final Token token;
+        private PKCS15Application application;
+        private PKCS15Objects objects;
+        private TokenInfo tokenInfo;
+        private Exception error;
+        private long dirNanos;
+        private long odfNanos;
+        private long tokenInfoNanos;
+        private long directoriesNanos;
+        private long totalNanos;
+        
+        private Result(Token token) {
+            this.token = token;
+        }
+        
+        /**
+         * @return The token, from which the structures have been loaded.
+         */
+        public Token getToken() {
+            return this.token;
+        }
+        
+        /**
+         * @return The PKCS#15 application found in EF(DIR) or
+         *         <code>null</code>, if loading failed before.
+         */
+        public PKCS15Application getApplication() {
+            return this.application;
+        }
+        
+        /**
+         * @return The ODF with all object directories resolved or
+         *         <code>null</code>, if loading failed before.
+         */
+        public PKCS15Objects getObjects() {
+            return this.objects;
+        }
+        
+        /**
+         * @return The TokenInfo or <code>null</code>, if the token has
+         *         no TokenInfo file or loading failed before.
+         */
+        public TokenInfo getTokenInfo() {
+            return this.tokenInfo;
+        }
+        
+        /**
+         * @return The error, which aborted loading or <code>null</code>,
+         *         if the token has been loaded successfully.
+         */
+        public Exception getError() {
+            return this.error;
+        }
+        
+        /**
+         * @return Whether the token has been loaded successfully.
+         */
+        public boolean isSuccessful() {
+            return this.error == null;
+        }
+        
+        /**
+         * @return The time in nanoseconds spent on reading EF(DIR).
+         */
+        public long getDirNanos() {
+            return this.dirNanos;
+        }
+        
+        /**
+         * @return The time in nanoseconds spent on reading the ODF.
+         */
+        public long getOdfNanos() {
+            return this.odfNanos;
+        }
+        
+        /**
+         * @return The time in nanoseconds spent on reading the TokenInfo.
+         */
+        public long getTokenInfoNanos() {
+            return this.tokenInfoNanos;
+        }
+        
+        /**
+         * @return The time in nanoseconds spent on resolving the
+         *         object directories.
+         */
+        public long getDirectoriesNanos() {
+            return this.directoriesNanos;
+        }
+        
+        /**
+         * @return The time in nanoseconds the worker spent on this token.
+         */
+        public long getTotalNanos() {
+            return this.totalNanos;
+        }
+    }
+    
+    private class Worker implements Callable<Result> {
+        
+        private final Result result;
+        
+        Worker(Token token) {
+            this.result = new Result(token);
+        }
+        
+        @Override
+        public Result call() {
+            
+            long start = System.nanoTime();
+            
+            try {
+                PKCS15BulkLoader.this.load(this.result);
+            } catch (Exception e) {
+                log.warn("Error loading PKCS#15 structures from token ["+this.result.token+"]",e);
+                this.result.error = e;
+            } finally {
+                this.result.totalNanos = System.nanoTime() - start;
+            }
+            
+            return this.result;
+        }
+    }
+    
+    /**
+     * @param applicationFactory The factory used to read EF(DIR).
+     * @param parallelism The maximal number of tokens loaded concurrently.
+     */
+    public PKCS15BulkLoader(ApplicationFactory applicationFactory, int parallelism) {
+        
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Invalid parallelism ["+parallelism+"].");
+        
+        this.applicationFactory = applicationFactory;
+        this.parallelism = parallelism;
+    }
+    
+    private static boolean selectEF(Token token, TokenPath appPath, Path path, int id) throws IOException {
+        
+        try {
+            if (path != null)
+                return PathHelper.selectEF(token,TokenPath.valueOf(path.getPath())) != null;
+            
+            PathHelper.selectDF(token,appPath);
+            return token.selectEF(id) != null;
+            
+        } catch (PKCS15Exception e) {
+            
+            if (e.getErrorCode() == PKCS15Exception.ERROR_FILE_NOT_FOUND)
+                return false;
+            
+            throw e;
+        }
+    }
+    
+    private static void resolve(SequenceOf<?> seq) {
+        
+        // the ODF refers to most directories by path, which is
+        // resolved, when the sequence is accessed.
+        if (seq != null)
+            seq.getSequence();
+    }
+    
+    private void load(Result result) throws IOException {
+        
+        Token token = result.token;
+        long t = System.nanoTime();
+        
+        Application app = this.applicationFactory.newApplication(token,AIDs.PKCS15_AID);
+        
+        if (!(app instanceof PKCS15Application))
+            throw new PKCS15Exception("Token contains no PKCS#15 application.",PKCS15Exception.ERROR_FILE_NOT_FOUND);
+        
+        result.application = (PKCS15Application)app;
+        result.dirNanos = System.nanoTime() - t;
+        
+        TokenPath appPath = TokenPath.valueOf(app.getApplicationTemplate().getPath());
+        DDO ddo = result.application.getDdo();
+        TokenContext context = new TokenContext(token);
+        
+        t = System.nanoTime();
+        
+        token.beginTransaction();
+        
+        try {
+            if (!selectEF(token,appPath,ddo == null ? null : ddo.getOdfPath(),ODF_ID))
+                throw new PKCS15Exception("Token contains no ODF.",PKCS15Exception.ERROR_FILE_NOT_FOUND);
+            
+            result.objects = PKCS15Objects.readInstance(token.readEFData(),context);
+            
+        } finally {
+            token.endTransaction();
+        }
+        
+        result.odfNanos = System.nanoTime() - t;
+        t = System.nanoTime();
+        
+        token.beginTransaction();
+        
+        try {
+            if (selectEF(token,appPath,ddo == null ? null : ddo.getTokenInfoPath(),TOKEN_INFO_ID)) {
+                
+                ASN1InputStream ais = new ASN1InputStream(token.readEFData());
+                
+                try {
+                    DERObject obj = ais.readObject();
+                    
+                    if (obj == null)
+                        throw new IOException("TokenInfo EF of the PKCS#15 application is empty.");
+                    
+                    result.tokenInfo = TokenInfo.getInstance(obj);
+                } finally {
+                    ais.close();
+                }
+            }
+            
+        } finally {
+            token.endTransaction();
+        }
+        
+        result.tokenInfoNanos = System.nanoTime() - t;
+        t = System.nanoTime();
+        
+        PKCS15Objects objs = result.objects;
+        
+        resolve(objs.getPrivateKeys());
+        resolve(objs.getPublicKeys());
+        resolve(objs.getTrustedPublicKeys());
+        resolve(objs.getSecretKeys());
+        resolve(objs.getCertificates());
+        resolve(objs.getTrustedCertificates());
+        resolve(objs.getUsefulCertificates());
+        resolve(objs.getDataObjects());
+        resolve(objs.getAuthObjects());
+        
+        result.directoriesNanos = System.nanoTime() - t;
+    }
+    
+    /**
+     * Load the PKCS#15 structures of the given tokens. Each token is
+     * accessed by a single worker thread only, so the tokens must not be
+     * used by other threads until this method returns.
+     * 
+     * @param tokens The tokens to load.
+     * @return The results in the order of the given tokens.
+     * @throws InterruptedException If the calling thread has been interrupted
+     *                 while waiting for the workers.
+     */
+    public List<Result> load(List<? extends Token> tokens) throws InterruptedException {
+        
+        List<Result> ret = new ArrayList<Result>(tokens.size());
+        
+        if (tokens.isEmpty()) return ret;
+        
+        final AtomicInteger threadNumber = new AtomicInteger();
+        
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(this.parallelism,tokens.size()),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r,"PKCS15BulkLoader-"+threadNumber.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        
+        try {
+            List<Worker> workers = new ArrayList<Worker>(tokens.size());
+            
+            for (Token token : tokens)
+                workers.add(new Worker(token));
+            
+            List<Future<Result>> futures = executor.invokeAll(workers);
+            
+            for (int i=0; i<futures.size(); ++i) {
+                
+                try {
+                    ret.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    // Worker.call() catches all exceptions, so this is an Error.
+                    Result result = workers.get(i).result;
+                    result.error = new IllegalStateException("Worker aborted.",e.getCause());
+                    ret.add(result);
+                }
+            }
+            
+            return ret;
+            
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -23,6 +23,7 @@
 package org.opensc.pkcs15.asn1;
 
 import org.bouncycastle.asn1.DERInteger;
+import org.opensc.pkcs15.asn1.attr.OpaqueObject;
 import org.opensc.pkcs15.asn1.attr.RSAPrivateKeyObject;
 import org.opensc.pkcs15.asn1.attr.RSAPublicKeyObject;
 import org.opensc.pkcs15.asn1.attr.X509CertificateObject;
@@ -46,5 +47,7 @@ public interface Context {
     
     public Directory<Path, X509CertificateObject> getX509CertificateDirectory();
     
+    public Directory<Path, OpaqueObject> getOpaqueObjectDirectory();
+    
     public StreamResolver<Path> getPathResolver();
 }
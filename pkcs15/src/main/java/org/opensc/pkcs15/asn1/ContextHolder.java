@@ -25,6 +25,11 @@ package org.opensc.pkcs15.asn1;
 /**
  * The static thread-local context registry.
  * 
+ * The parsers of this package take the {@link Context} as an explicit
+ * argument. This registry is retained for compatibility with callers
+ * of the single-argument <code>getInstance(Object)</code> methods,
+ * which look up the context registered for the current thread.
+ * 
  * @author wglas
  */
 public abstract class ContextHolder {
@@ -27,6 +27,7 @@ import org.bouncycastle.asn1.ASN1Sequence;
 import org.bouncycastle.asn1.ASN1TaggedObject;
 import org.opensc.pkcs15.asn1.attr.CommonAuthenticationObjectAttributes;
 import org.opensc.pkcs15.asn1.attr.CommonObjectAttributes;
+import org.opensc.pkcs15.asn1.proxy.InstanceFactory;
 
 /**
  * This is the base class of all certificate objects.
@@ -45,6 +46,17 @@ import org.opensc.pkcs15.asn1.attr.CommonObjectAttributes;
  */
 public abstract class PKCS15AuthenticationObject extends ASN1Encodable implements PKCS15Object {
 
+    /**
+     * The typed decoder of this class.
+     */
+    public static final InstanceFactory<PKCS15AuthenticationObject> FACTORY =
+        new InstanceFactory<PKCS15AuthenticationObject>(PKCS15AuthenticationObject.class) {
+            @Override
+            public PKCS15AuthenticationObject getInstance(Object obj, Context context) {
+                return PKCS15AuthenticationObject.getInstance(obj);
+            }
+        };
+
     private CommonObjectAttributes commonObjectAttributes;
     private CommonAuthenticationObjectAttributes commonAuthenticationObjectAttributes;
     
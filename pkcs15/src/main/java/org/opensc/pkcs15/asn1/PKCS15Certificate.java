@@ -28,6 +28,7 @@ import org.bouncycastle.asn1.ASN1TaggedObject;
 import org.opensc.pkcs15.asn1.attr.CommonCertificateAttributes;
 import org.opensc.pkcs15.asn1.attr.CommonObjectAttributes;
 import org.opensc.pkcs15.asn1.attr.SpecificCertificateAttributes;
+import org.opensc.pkcs15.asn1.proxy.InstanceFactory;
 
 /**
  * This is the base class of all certificate objects.
@@ -49,6 +50,17 @@ import org.opensc.pkcs15.asn1.attr.SpecificCertificateAttributes;
  */
 public abstract class PKCS15Certificate extends ASN1Encodable implements PKCS15Object {
 
+    /**
+     * The typed decoder of this class.
+     */
+    public static final InstanceFactory<PKCS15Certificate> FACTORY =
+        new InstanceFactory<PKCS15Certificate>(PKCS15Certificate.class) {
+            @Override
+            public PKCS15Certificate getInstance(Object obj, Context context) {
+                return PKCS15Certificate.getInstance(obj,context);
+            }
+        };
+
     private CommonObjectAttributes commonObjectAttributes;
     private CommonCertificateAttributes commonCertificateAttributes;
     
@@ -62,16 +74,27 @@ public abstract class PKCS15Certificate extends ASN1Encodable implements PKCS15O
     abstract public SpecificCertificateAttributes getSpecificCertificateAttributes();
 
     /**
+     * This method uses the thread-local context stored in {@link ContextHolder}.
+     * 
      * @param obj The ASN.1 object to be deserialized.
      * @return A supported subclass instance of PKCS15Certificate.
      */
     public static PKCS15Certificate getInstance(Object obj) {
+        return getInstance(obj,ContextHolder.getContext());
+    }
+
+    /**
+     * @param obj The ASN.1 object to be deserialized.
+     * @param context The context used to resolve references.
+     * @return A supported subclass instance of PKCS15Certificate.
+     */
+    public static PKCS15Certificate getInstance(Object obj, Context context) {
         
         if (obj instanceof PKCS15Certificate)
             return (PKCS15Certificate)obj;
         
         if (obj instanceof ASN1Sequence) {
-            return PKCS15X509Certificate.getInstance(obj);
+            return PKCS15X509Certificate.getInstance(obj,context);
         }
             
         if (obj instanceof ASN1TaggedObject) {
@@ -0,0 +1,220 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.asn1;
+
+import java.util.Enumeration;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.ASN1TaggedObject;
+import org.bouncycastle.asn1.DEREncodable;
+import org.bouncycastle.asn1.DERTaggedObject;
+import org.opensc.pkcs15.asn1.attr.CommonDataObjectAttributes;
+import org.opensc.pkcs15.asn1.attr.CommonObjectAttributes;
+import org.opensc.pkcs15.asn1.attr.OpaqueObject;
+import org.opensc.pkcs15.asn1.proxy.InstanceFactory;
+
+/**
+ * This is the base class of all data objects.
+ * 
+ * <PRE>
+ * DataType ::= CHOICE {
+ *         opaqueDO     DataObject {Opaque},
+ *         externalIDO  [0] DataObject {ExternalIDO},
+ *         oidDO        [1] DataObject {OidDO},
+ *         ... -- For future extensions
+ *         }
+ * </PRE>
+ * 
+ * <PRE> 
+ * DataObject {DataObjectAttributes} ::= PKCS15Object {
+ *       CommonDataObjectAttributes, NULL, DataObjectAttributes}
+ * </PRE>
+ * 
+ * The value of a data object is usually referenced by a path, so
+ * enumerating the data objects of a token does not read their values.
+ * 
+ * @author wglas
+ */
+public abstract class PKCS15DataObject extends ASN1Encodable implements PKCS15Object {
+
+    /**
+     * The typed decoder of this class.
+     */
+    public static final InstanceFactory<PKCS15DataObject> FACTORY =
+        new InstanceFactory<PKCS15DataObject>(PKCS15DataObject.class) {
+            @Override
+            public PKCS15DataObject getInstance(Object obj, Context context) {
+                return PKCS15DataObject.getInstance(obj,context);
+            }
+        };
+
+    private CommonObjectAttributes commonObjectAttributes;
+    private CommonDataObjectAttributes commonDataObjectAttributes;
+    
+    protected PKCS15DataObject() {
+    }
+    
+    /**
+     * @return The value of this data object, which might be a proxy
+     *         to a value stored in a separate file.
+     */
+    abstract public OpaqueObject getValue();
+    
+    /**
+     * This method uses the thread-local context stored in {@link ContextHolder}.
+     * 
+     * @param obj The ASN.1 object to be deserialized.
+     * @return A supported subclass instance of PKCS15DataObject.
+     */
+    public static PKCS15DataObject getInstance(Object obj) {
+        return getInstance(obj,ContextHolder.getContext());
+    }
+
+    /**
+     * @param obj The ASN.1 object to be deserialized.
+     * @param context The context used to resolve references.
+     * @return A supported subclass instance of PKCS15DataObject.
+     */
+    public static PKCS15DataObject getInstance(Object obj, Context context) {
+        
+        if (obj instanceof PKCS15DataObject)
+            return (PKCS15DataObject)obj;
+        
+        if (obj instanceof ASN1Sequence) {
+            return PKCS15OpaqueDataObject.getInstance(obj,context);
+        }
+            
+        if (obj instanceof ASN1TaggedObject) {
+            
+            ASN1TaggedObject to = (ASN1TaggedObject)obj;
+            
+            switch (to.getTagNo()) {
+            case 0:
+                throw new IllegalArgumentException("ExternalIDO is not supported.");
+            case 1:
+                return PKCS15OidDataObject.getInstance(ASN1Sequence.getInstance(to,false),context);
+                
+            default:
+                throw new IllegalArgumentException("Invalid member tag ["+to.getTagNo()+"] in Data ASN.1 SEQUENCE.");
+            }
+        }
+        
+        throw new IllegalArgumentException("Data must be encoded as An ASN.1 SEQUENCE or TAGGED OBJECT.");
+    }
+    
+    /**
+     * Decode the common members of a data object.
+     * 
+     * @param seq The ASN.1 SEQUENCE of the data object.
+     * @param name The name of the data object type used in messages.
+     * @return The undecoded type attributes.
+     */
+    protected DEREncodable decodeCommonAttributes(ASN1Sequence seq, String name)
+    {
+        Enumeration<Object> objs = seq.getObjects();
+        
+        if (!objs.hasMoreElements())
+            throw new IllegalArgumentException("Missing commonObjectAttributes member in "+name+" SEQUENCE.");
+
+        this.setCommonObjectAttributes(CommonObjectAttributes.getInstance(objs.nextElement()));
+        
+        if (!objs.hasMoreElements())
+            throw new IllegalArgumentException("Missing commonDataObjectAttributes member in "+name+" SEQUENCE.");
+
+        this.setCommonDataObjectAttributes(CommonDataObjectAttributes.getInstance(objs.nextElement()));
+        
+        if (!objs.hasMoreElements())
+            throw new IllegalArgumentException("Missing typeAttributes member in "+name+" SEQUENCE.");
+
+        ASN1TaggedObject to = ASN1TaggedObject.getInstance(objs.nextElement());
+        
+        // skip the NULL subclass attributes.
+        if (to.getTagNo() == 0) {
+            
+            if (!objs.hasMoreElements())
+                throw new IllegalArgumentException("Missing typeAttributes member in "+name+" SEQUENCE.");
+
+            to = ASN1TaggedObject.getInstance(objs.nextElement());
+        }
+        
+        if (to.getTagNo() != 1)
+            throw new IllegalArgumentException("Invalid tag ["+to.getTagNo()+"] in "+name+" SEQUENCE.");
+        
+        return to.getObject();
+    }
+    
+    /**
+     * Encode the common members of a data object.
+     * 
+     * @param typeAttributes The encoded type attributes.
+     * @return The vector of the members of the data object.
+     */
+    protected ASN1EncodableVector encodeCommonAttributes(DEREncodable typeAttributes)
+    {
+        ASN1EncodableVector v = new ASN1EncodableVector();
+
+        if (this.commonObjectAttributes != null)
+            v.add(this.commonObjectAttributes);
+        
+        if (this.commonDataObjectAttributes != null)
+            v.add(this.commonDataObjectAttributes);
+
+        if (typeAttributes != null)
+            v.add(new DERTaggedObject(1,typeAttributes));
+        
+        return v;
+    }
+    
+    /**
+     * @return the commonObjectAttributes
+     */
+    public CommonObjectAttributes getCommonObjectAttributes() {
+        return this.commonObjectAttributes;
+    }
+
+    /**
+     * @param commonObjectAttributes the commonObjectAttributes to set
+     */
+    public void setCommonObjectAttributes(
+            CommonObjectAttributes commonObjectAttributes) {
+        this.commonObjectAttributes = commonObjectAttributes;
+    }
+
+    /**
+     * @return the commonDataObjectAttributes
+     */
+    public CommonDataObjectAttributes getCommonDataObjectAttributes() {
+        return this.commonDataObjectAttributes;
+    }
+
+    /**
+     * @param commonDataObjectAttributes the commonDataObjectAttributes to set
+     */
+    public void setCommonDataObjectAttributes(
+            CommonDataObjectAttributes commonDataObjectAttributes) {
+        this.commonDataObjectAttributes = commonDataObjectAttributes;
+    }
+}
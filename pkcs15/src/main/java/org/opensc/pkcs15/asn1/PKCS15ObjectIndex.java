@@ -0,0 +1,365 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.asn1;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.x509.X509Name;
+import org.opensc.pkcs15.asn1.attr.CommonCertificateAttributes;
+import org.opensc.pkcs15.asn1.attr.CommonKeyAttributes;
+import org.opensc.pkcs15.asn1.attr.CommonObjectAttributes;
+import org.opensc.pkcs15.asn1.attr.X509CertificateAttributes;
+import org.opensc.pkcs15.asn1.attr.X509CertificateObject;
+import org.opensc.pkcs15.asn1.basic.KeyUsageFlags;
+import org.opensc.pkcs15.asn1.sequence.SequenceOf;
+import org.opensc.pkcs15.util.Util;
+
+/**
+ * A lookup index over the objects of a {@link PKCS15Objects} instance.
+ * 
+ * The index maps key and certificate identifiers, labels, the bits of the
+ * {@link KeyUsageFlags} of keys and the issuer and serial number of
+ * X.509 certificates to the corresponding objects. An index is a snapshot,
+ * which is built by {@link PKCS15Objects#getIndex()} on demand and
+ * discarded, when a directory is replaced or written back through
+ * {@link PKCS15Objects#updateEntity(SequenceOf)} or through
+ * {@link org.opensc.pkcs15.asn1.proxy.ReferenceProxy#updateEntity()} of the
+ * directory itself. Objects modified in place without writing back their
+ * directory require a call to {@link PKCS15Objects#invalidateIndex()}.
+ * 
+ * Issuers are compared by the canonical form of their distinguished
+ * names, so a name matches regardless of the ASN.1 string types used
+ * for its encoding.
+ * 
+ * The map from issuer and serial number to certificates is built on the
+ * first call of {@link #getCertificateByIssuerAndSerial(X509Name, BigInteger)},
+ * because it might require reading certificates from the token.
+ * 
+ * @author wglas
+ */
+public class PKCS15ObjectIndex {
+
+    private static final int USAGE_BITS = 16;
+    
+    private final Map<String,List<PKCS15Object>> byId;
+    private final Map<String,List<PKCS15Object>> byLabel;
+    private final List<List<PKCS15Key>> byUsageBit;
+    private final List<PKCS15X509Certificate> x509Certificates;
+    private final int directoryUpdates;
+    private Map<String,PKCS15Certificate> byIssuerAndSerial;
+    
+    /**
+     * Build the index over all directories of the given ODF.
+     * 
+     * @param objs The parsed ODF.
+     * @param directoryUpdates The update count of the directories
+     *                         at the time the index is built.
+     */
+    PKCS15ObjectIndex(PKCS15Objects objs, int directoryUpdates) {
+        
+        this.directoryUpdates = directoryUpdates;
+        this.byId = new HashMap<String,List<PKCS15Object>>();
+        this.byLabel = new HashMap<String,List<PKCS15Object>>();
+        this.byUsageBit = new ArrayList<List<PKCS15Key>>(USAGE_BITS);
+        this.x509Certificates = new ArrayList<PKCS15X509Certificate>();
+        
+        for (int i=0; i<USAGE_BITS; ++i)
+            this.byUsageBit.add(new ArrayList<PKCS15Key>());
+        
+        this.addKeys(objs.getPrivateKeys());
+        this.addKeys(objs.getPublicKeys());
+        this.addKeys(objs.getTrustedPublicKeys());
+        this.addKeys(objs.getSecretKeys());
+        this.addCertificates(objs.getCertificates());
+        this.addCertificates(objs.getTrustedCertificates());
+        this.addCertificates(objs.getUsefulCertificates());
+        this.addObjects(objs.getDataObjects());
+        this.addObjects(objs.getAuthObjects());
+    }
+    
+    private static String idKey(byte[] id) {
+        
+        return Util.asHex(id);
+    }
+    
+    private static String issuerAndSerialKey(X509Name issuer, BigInteger serialNumber) {
+        
+        String name;
+        
+        try {
+            name = new X500Principal(issuer.getDEREncoded()).getName(X500Principal.CANONICAL);
+        } catch (IllegalArgumentException e) {
+            // fall back to the encoding for names, which cannot be parsed.
+            name = Util.asHex(issuer.getDEREncoded());
+        }
+        
+        return name+":"+serialNumber.toString(16);
+    }
+    
+    private static <T> void put(Map<String,List<T>> map, String key, T obj) {
+        
+        List<T> l = map.get(key);
+        
+        if (l == null) {
+            l = new ArrayList<T>(1);
+            map.put(key,l);
+        }
+        
+        l.add(obj);
+    }
+    
+    private static <T> List<T> get(Map<String,List<T>> map, String key) {
+        
+        List<T> l = map.get(key);
+        
+        if (l == null) return Collections.emptyList();
+        
+        return Collections.unmodifiableList(l);
+    }
+    
+    private void addObject(PKCS15Object obj) {
+        
+        CommonObjectAttributes coa = obj.getCommonObjectAttributes();
+        
+        if (coa != null && coa.getLabel() != null)
+            put(this.byLabel,coa.getLabel(),obj);
+    }
+    
+    private void addId(ASN1OctetString id, PKCS15Object obj) {
+        
+        if (id != null)
+            put(this.byId,idKey(id.getOctets()),obj);
+    }
+    
+    private void addObjects(SequenceOf<? extends PKCS15Object> seq) {
+        
+        if (seq == null || seq.getSequence() == null) return;
+        
+        for (PKCS15Object obj : seq.getSequence())
+            this.addObject(obj);
+    }
+    
+    private void addKeys(SequenceOf<? extends PKCS15Key> seq) {
+        
+        if (seq == null || seq.getSequence() == null) return;
+        
+        for (PKCS15Key key : seq.getSequence()) {
+            
+            this.addObject(key);
+            
+            CommonKeyAttributes cka = key.getCommonKeyAttributes();
+            
+            if (cka == null) continue;
+            
+            this.addId(cka.getID(),key);
+            
+            if (cka.getUsage() == null) continue;
+            
+            int usage = cka.getUsage().intValue();
+            
+            for (int i=0; i<USAGE_BITS; ++i)
+                if ((usage & (1 << i)) != 0)
+                    this.byUsageBit.get(i).add(key);
+        }
+    }
+    
+    private void addCertificates(SequenceOf<? extends PKCS15Certificate> seq) {
+        
+        if (seq == null || seq.getSequence() == null) return;
+        
+        for (PKCS15Certificate cert : seq.getSequence()) {
+            
+            this.addObject(cert);
+            
+            CommonCertificateAttributes cca = cert.getCommonCertificateAttributes();
+            
+            if (cca != null)
+                this.addId(cca.getID(),cert);
+            
+            if (cert instanceof PKCS15X509Certificate)
+                this.x509Certificates.add((PKCS15X509Certificate)cert);
+        }
+    }
+    
+    /**
+     * @return The map from issuer and serial number to X.509 certificates,
+     *         which is built upon the first call.
+     */
+    private synchronized Map<String,PKCS15Certificate> getByIssuerAndSerial() {
+        
+        if (this.byIssuerAndSerial != null)
+            return this.byIssuerAndSerial;
+        
+        Map<String,PKCS15Certificate> ret = new HashMap<String,PKCS15Certificate>();
+        
+        for (PKCS15X509Certificate cert : this.x509Certificates) {
+            
+            X509CertificateAttributes attrs = cert.getX509CertificateAttributes();
+            
+            if (attrs == null) continue;
+            
+            X509Name issuer = attrs.getIssuer();
+            BigInteger serialNumber = attrs.getSerialNumber();
+            
+            // the issuer and serial number are optional in the attributes,
+            // so the certificate has to be read, if they are missing.
+            if ((issuer == null || serialNumber == null) && attrs.getValue() != null) {
+                
+                X509CertificateObject value = attrs.getValue();
+                
+                issuer = value.getIssuer();
+                serialNumber = value.getSerialNumber().getValue();
+            }
+            
+            if (issuer != null && serialNumber != null) {
+                
+                String key = issuerAndSerialKey(issuer,serialNumber);
+                
+                if (!ret.containsKey(key))
+                    ret.put(key,cert);
+            }
+        }
+        
+        this.byIssuerAndSerial = ret;
+        return ret;
+    }
+    
+    /**
+     * @return The update count of the directories, for which this
+     *         index has been built.
+     */
+    int getDirectoryUpdates() {
+        
+        return this.directoryUpdates;
+    }
+    
+    /**
+     * @param id A key or certificate identifier.
+     * @return All keys and certificates with the given identifier in
+     *         the order of the ODF, which might be an empty list.
+     */
+    public List<PKCS15Object> getById(byte[] id) {
+        
+        return get(this.byId,idKey(id));
+    }
+    
+    /**
+     * @param id A key identifier.
+     * @return The first private key with the given identifier or
+     *         <code>null</code>, if there is no such key.
+     */
+    public PKCS15PrivateKey getPrivateKeyById(byte[] id) {
+        
+        for (PKCS15Object obj : this.getById(id))
+            if (obj instanceof PKCS15PrivateKey)
+                return (PKCS15PrivateKey)obj;
+        
+        return null;
+    }
+    
+    /**
+     * @param id A certificate identifier, which is usually the identifier
+     *           of the corresponding private key.
+     * @return The first certificate with the given identifier or
+     *         <code>null</code>, if there is no such certificate.
+     */
+    public PKCS15Certificate getCertificateById(byte[] id) {
+        
+        for (PKCS15Object obj : this.getById(id))
+            if (obj instanceof PKCS15Certificate)
+                return (PKCS15Certificate)obj;
+        
+        return null;
+    }
+    
+    /**
+     * @param label A label as stored in the common object attributes.
+     * @return All objects with the given label in the order of the ODF,
+     *         which might be an empty list.
+     */
+    public List<PKCS15Object> getByLabel(String label) {
+        
+        return get(this.byLabel,label);
+    }
+    
+    /**
+     * @param usage A combination of the bit masks defined in {@link KeyUsageFlags}.
+     * @return All keys, which allow all of the given usages, which might
+     *         be an empty list.
+     */
+    public List<PKCS15Key> getKeysByUsage(int usage) {
+        
+        List<PKCS15Key> candidates = null;
+        
+        for (int i=0; i<USAGE_BITS; ++i) {
+            
+            if ((usage & (1 << i)) == 0) continue;
+            
+            List<PKCS15Key> l = this.byUsageBit.get(i);
+            
+            if (candidates == null || l.size() < candidates.size())
+                candidates = l;
+        }
+        
+        if (candidates == null || candidates.isEmpty())
+            return Collections.emptyList();
+        
+        List<PKCS15Key> ret = new ArrayList<PKCS15Key>(candidates.size());
+        
+        for (PKCS15Key key : candidates)
+            if ((key.getCommonKeyAttributes().getUsage().intValue() & usage) == usage)
+                ret.add(key);
+        
+        return ret;
+    }
+    
+    /**
+     * @param usage The required key usages.
+     * @return All keys, which allow all of the given usages, which might
+     *         be an empty list.
+     */
+    public List<PKCS15Key> getKeysByUsage(KeyUsageFlags usage) {
+        
+        return this.getKeysByUsage(usage.intValue());
+    }
+    
+    /**
+     * @param issuer The issuer of the certificate.
+     * @param serialNumber The serial number of the certificate.
+     * @return The certificate with the given issuer and serial number or
+     *         <code>null</code>, if there is no such certificate.
+     */
+    public PKCS15Certificate getCertificateByIssuerAndSerial(X509Name issuer, BigInteger serialNumber) {
+        
+        return this.getByIssuerAndSerial().get(issuerAndSerialKey(issuer,serialNumber));
+    }
+}
@@ -22,16 +22,22 @@
 
 package org.opensc.pkcs15.asn1;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 
 import org.bouncycastle.asn1.ASN1InputStream;
 import org.bouncycastle.asn1.ASN1Object;
 import org.bouncycastle.asn1.ASN1OutputStream;
 import org.bouncycastle.asn1.ASN1TaggedObject;
+import org.bouncycastle.asn1.DEREncodable;
 import org.bouncycastle.asn1.DERObject;
 import org.bouncycastle.asn1.DERTaggedObject;
+import org.opensc.pkcs15.asn1.proxy.AbstractReferenceProxy;
+import org.opensc.pkcs15.asn1.proxy.ReferenceProxy;
 import org.opensc.pkcs15.asn1.ref.PathOrObjectsFactory;
 import org.opensc.pkcs15.asn1.sequence.SequenceOf;
 
@@ -54,30 +60,53 @@ import org.opensc.pkcs15.asn1.sequence.SequenceOf;
  *       }
  * </PRE>
  * 
+ * An instance read by {@link #readLazyInstance(InputStream, Context)} only
+ * indexes the members of the ODF by their tag and decodes each member upon
+ * the first call to its getter. Together with the lazy resolution of
+ * referenced object directories this allows to look up a single object
+ * on a token without decoding all other objects.
+ * 
  * @author wglas
  */
 public class PKCS15Objects {
 
     private static final PathOrObjectsFactory<PKCS15PrivateKey> privateKeysFactory =
-        new PathOrObjectsFactory<PKCS15PrivateKey>(PKCS15PrivateKey.class);
+        new PathOrObjectsFactory<PKCS15PrivateKey>(PKCS15PrivateKey.FACTORY);
 
     private static final PathOrObjectsFactory<PKCS15PublicKey> publicKeysFactory =
-        new PathOrObjectsFactory<PKCS15PublicKey>(PKCS15PublicKey.class);
+        new PathOrObjectsFactory<PKCS15PublicKey>(PKCS15PublicKey.FACTORY);
 
     private static final PathOrObjectsFactory<PKCS15Certificate> certificatesFactory =
-        new PathOrObjectsFactory<PKCS15Certificate>(PKCS15Certificate.class);
+        new PathOrObjectsFactory<PKCS15Certificate>(PKCS15Certificate.FACTORY);
+
+    private static final PathOrObjectsFactory<PKCS15SecretKey> secretKeysFactory =
+        new PathOrObjectsFactory<PKCS15SecretKey>(PKCS15SecretKey.FACTORY);
+
+    private static final PathOrObjectsFactory<PKCS15DataObject> dataObjectsFactory =
+        new PathOrObjectsFactory<PKCS15DataObject>(PKCS15DataObject.FACTORY);
 
     private static final PathOrObjectsFactory<PKCS15AuthenticationObject> authObjectsFactory =
-        new PathOrObjectsFactory<PKCS15AuthenticationObject>(PKCS15AuthenticationObject.class);
+        new PathOrObjectsFactory<PKCS15AuthenticationObject>(PKCS15AuthenticationObject.FACTORY);
     
     private SequenceOf<PKCS15PrivateKey> privateKeys;
     private SequenceOf<PKCS15PublicKey> publicKeys;
     private SequenceOf<PKCS15PublicKey> trustedPublicKeys;
+    private SequenceOf<PKCS15SecretKey> secretKeys;
     private SequenceOf<PKCS15Certificate> certificates;
     private SequenceOf<PKCS15Certificate> trustedCertificates;
     private SequenceOf<PKCS15Certificate> usefulCertificates;
+    private SequenceOf<PKCS15DataObject> dataObjects;
     private SequenceOf<PKCS15AuthenticationObject> authObjects;
     
+    // The encoded ODF and the offsets and lengths of the members, which
+    // have not been decoded yet, indexed by the member tag.
+    private static final int MAX_TAG = 8;
+    private byte[] encoded;
+    private int[] entryOffsets;
+    private int[] entryLengths;
+    private Context context;
+    private volatile PKCS15ObjectIndex index;
+    
     /**
      * Default constructor.
      */
@@ -95,70 +124,228 @@ public class PKCS15Objects {
      */
     public static PKCS15Objects readInstance(InputStream is, Context context) throws IOException
     {
-        ContextHolder.setContext(context);
+        ASN1InputStream ais = new ASN1InputStream(is);
         
-        try
+        PKCS15Objects ret = new PKCS15Objects();
+        
+        DERObject obj;
+        
+        while ((obj = ais.readObject()) != null)
         {
-            ASN1InputStream ais = new ASN1InputStream(is);
+            // The internal END_OF_STREAM object of
+            // ASN1InputStream does not derive from ASN1Object, while
+            // all other meaningful DERObjects do, so leave the loop
+            // if this is not an ASN1Object
+            if (!(obj instanceof ASN1Object))
+                break;
+            
+            if (!(obj instanceof ASN1TaggedObject))
+                throw new IllegalArgumentException("PKCS15Objects must consist of a sequence of ASN.1 TAGGED OBJECTS.");
+            
+            ret.setMember((ASN1TaggedObject)obj,context);
+        }
+        
+        ais.close();
+        return ret;
+    }
+    
+    /**
+     * Read the ODF from an input stream and index its members without
+     * decoding them. Each member is decoded, when it is accessed for the first
+     * time. The stream is closed after reading.
+     * 
+     * @param is The InputStream to read from.
+     * @param context The context used for proxy instantiation, which is
+     *                kept for decoding the members later on.
+     * @return A PKCS15Objects instance.
+     * @throws IOException upon read errors.
+     */
+    public static PKCS15Objects readLazyInstance(InputStream is, Context context) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[256];
+        int n;
         
-            PKCS15Objects ret = new PKCS15Objects();
+        while ((n=is.read(buf)) > 0)
+            bos.write(buf,0,n);
         
-            DERObject obj;
+        is.close();
         
-            while ((obj = ais.readObject()) != null)
-            {
-                // The internal END_OF_STREAM object of
-                // ASN1InputStream does not derive from ASN1Object, while
-                // all other meaningful DERObjects do, so leave the loop
-                // if this is not an ASN1Object
-                if (!(obj instanceof ASN1Object))
-                    break;
-
-                if (!(obj instanceof ASN1TaggedObject))
-                    throw new IllegalArgumentException("PKCS15Objects must consist of a sequence of ASN.1 TAGGED OBJECTS.");
+        PKCS15Objects ret = new PKCS15Objects();
+        
+        ret.encoded = bos.toByteArray();
+        ret.entryOffsets = new int[MAX_TAG+1];
+        ret.entryLengths = new int[MAX_TAG+1];
+        ret.context = context;
+        Arrays.fill(ret.entryOffsets,-1);
+        
+        if (!ret.indexEntries()) {
             
-                ASN1TaggedObject to = (ASN1TaggedObject)obj;
-
-                switch (to.getTagNo())
-                {
-                case 0:
-                    ret.setPrivateKeys(privateKeysFactory.getInstance(to.getObject()));
-                    break;
-                case 1:
-                    ret.setPublicKeys(publicKeysFactory.getInstance(to.getObject()));
-                    break;
-                case 2:
-                    ret.setTrustedPublicKeys(publicKeysFactory.getInstance(to.getObject()));
-                    break;
-                case 3:
-                    throw new IllegalArgumentException("SecretKeys are not supported yet.");
-                case 4:
-                    ret.setCertificates(certificatesFactory.getInstance(to.getObject()));
-                    break;
-                case 5:
-                    ret.setTrustedCertificates(certificatesFactory.getInstance(to.getObject()));
-                    break;
-                case 6:
-                    ret.setUsefulCertificates(certificatesFactory.getInstance(to.getObject()));
-                    break;
-                case 7:
-                    throw new IllegalArgumentException("DataObjects are not supported yet.");
-                case 8:
-                    ret.setAuthObjects(authObjectsFactory.getInstance(to.getObject()));
-                    break;
-                    
-                default:
-                    throw new IllegalArgumentException("Invalid memebr tag ["+to.getTagNo()+"] in PKCS15Objects sequence.");
-               }
+            // fall back to eager decoding for encodings, which are not
+            // definite-length DER, e.g. BER with indefinite lengths.
+            byte[] ba = ret.encoded;
+            ret.encoded = null;
+            return readInstance(new ByteArrayInputStream(ba),context);
+        }
+        
+        return ret;
+    }
+    
+    /**
+     * Index the members of the encoded ODF by their tag.
+     * 
+     * @return Whether the encoding could be indexed.
+     */
+    private boolean indexEntries()
+    {
+        int pos = 0;
+        
+        while (pos < this.encoded.length)
+        {
+            int start = pos;
+            int tag = this.encoded[pos++] & 0xff;
+            
+            // END_OF_STREAM or padding with zeroes.
+            if (tag == 0) break;
+            
+            if ((tag & 0xc0) != 0x80)
+                throw new IllegalArgumentException("PKCS15Objects must consist of a sequence of ASN.1 TAGGED OBJECTS.");
+            
+            // high tag numbers are not part of the ODF definition.
+            if ((tag & 0x1f) == 0x1f || pos >= this.encoded.length)
+                return false;
+            
+            int tagNo = tag & 0x1f;
+            int len = this.encoded[pos++] & 0xff;
+            
+            if (len == 0x80) return false;
+            
+            if (len > 0x80) {
+                
+                int nb = len & 0x7f;
+                
+                if (nb > 3 || pos + nb > this.encoded.length) return false;
+                
+                len = 0;
+                
+                for (int i=0; i<nb; ++i)
+                    len = (len << 8) | (this.encoded[pos++] & 0xff);
             }
             
-            ais.close();
-            return ret;
+            if (pos + len > this.encoded.length) return false;
+            
+            pos += len;
             
-        } finally {
-            ContextHolder.removeContext();
+            checkTag(tagNo);
+            
+            this.entryOffsets[tagNo] = start;
+            this.entryLengths[tagNo] = pos - start;
+        }
+        
+        return true;
+    }
+    
+    private static void checkTag(int tagNo)
+    {
+        if (tagNo > MAX_TAG)
+            throw new IllegalArgumentException("Invalid memebr tag ["+tagNo+"] in PKCS15Objects sequence.");
+    }
+    
+    /**
+     * Decode a member of the ODF and set the corresponding property.
+     * 
+     * @param to The tagged member object.
+     * @param context The context used for proxy instantiation.
+     */
+    private void setMember(ASN1TaggedObject to, Context context)
+    {
+        checkTag(to.getTagNo());
+        
+        switch (to.getTagNo())
+        {
+        case 0:
+            this.setPrivateKeys(privateKeysFactory.getInstance(to.getObject(),context));
+            break;
+        case 1:
+            this.setPublicKeys(publicKeysFactory.getInstance(to.getObject(),context));
+            break;
+        case 2:
+            this.setTrustedPublicKeys(publicKeysFactory.getInstance(to.getObject(),context));
+            break;
+        case 3:
+            this.setSecretKeys(secretKeysFactory.getInstance(to.getObject(),context));
+            break;
+        case 4:
+            this.setCertificates(certificatesFactory.getInstance(to.getObject(),context));
+            break;
+        case 5:
+            this.setTrustedCertificates(certificatesFactory.getInstance(to.getObject(),context));
+            break;
+        case 6:
+            this.setUsefulCertificates(certificatesFactory.getInstance(to.getObject(),context));
+            break;
+        case 7:
+            this.setDataObjects(dataObjectsFactory.getInstance(to.getObject(),context));
+            break;
+        case 8:
+            this.setAuthObjects(authObjectsFactory.getInstance(to.getObject(),context));
+            break;
         }
+    }
+    
+    /**
+     * Decode the member with the given tag, if it has been indexed by
+     * {@link #readLazyInstance(InputStream, Context)} and has not been
+     * decoded or overwritten yet.
+     * 
+     * @param tagNo The tag of the member.
+     */
+    private void decodeEntry(int tagNo)
+    {
+        if (this.encoded == null || this.entryOffsets[tagNo] < 0) return;
         
+        try {
+            ASN1InputStream ais = new ASN1InputStream(
+                    new ByteArrayInputStream(this.encoded,this.entryOffsets[tagNo],this.entryLengths[tagNo]));
+            
+            this.setMember((ASN1TaggedObject)ais.readObject(),this.context);
+            
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Member tag ["+tagNo+"] of PKCS15Objects cannot be decoded.",e);
+        }
+    }
+    
+    /**
+     * Forget the encoding of a lazily read member, because it has
+     * been decoded or overwritten.
+     * 
+     * @param tagNo The tag of the member.
+     */
+    private void dropEntry(int tagNo)
+    {
+        if (this.encoded == null) return;
+        
+        this.entryOffsets[tagNo] = -1;
+        
+        for (int offset : this.entryOffsets)
+            if (offset >= 0) return;
+        
+        // all members decoded, release the encoded ODF.
+        this.encoded = null;
+        this.context = null;
+    }
+    
+    /**
+     * @param seq A sequence of objects.
+     * @return The ASN.1 encoding of the PathOrObjects choice, which is the
+     *         path for proxies and the objects choice otherwise.
+     */
+    private static DEREncodable pathOrObjects(SequenceOf<?> seq)
+    {
+        if (seq instanceof ReferenceProxy)
+            return seq;
+        
+        return new DERTaggedObject(0,seq);
     }
     
     /**
@@ -175,30 +362,34 @@ public class PKCS15Objects {
         // write authentication objects first, in order to be compliant
         // with opensc tokens.
         // (This eases the conception of Unit Tests against opensc
-        if (this.authObjects != null)
-            aos.writeObject(new DERTaggedObject(8,this.authObjects));
         
-         if (this.privateKeys != null)
-            aos.writeObject(new DERTaggedObject(0,this.privateKeys));
+        // members of a lazily read instance are decoded by the getters.
+        if (this.getAuthObjects() != null)
+            aos.writeObject(new DERTaggedObject(8,pathOrObjects(this.authObjects)));
+        
+         if (this.getPrivateKeys() != null)
+            aos.writeObject(new DERTaggedObject(0,pathOrObjects(this.privateKeys)));
         
-        if (this.publicKeys != null)
-            aos.writeObject(new DERTaggedObject(1,this.publicKeys));
+        if (this.getPublicKeys() != null)
+            aos.writeObject(new DERTaggedObject(1,pathOrObjects(this.publicKeys)));
         
-        if (this.trustedPublicKeys != null)
-            aos.writeObject(new DERTaggedObject(2,this.trustedPublicKeys));
+        if (this.getTrustedPublicKeys() != null)
+            aos.writeObject(new DERTaggedObject(2,pathOrObjects(this.trustedPublicKeys)));
         
-        // secret keys to come...
+        if (this.getSecretKeys() != null)
+            aos.writeObject(new DERTaggedObject(3,pathOrObjects(this.secretKeys)));
         
-        if (this.certificates != null)
-            aos.writeObject(new DERTaggedObject(4,this.certificates));
+        if (this.getCertificates() != null)
+            aos.writeObject(new DERTaggedObject(4,pathOrObjects(this.certificates)));
         
-        if (this.trustedCertificates != null)
-            aos.writeObject(new DERTaggedObject(5,this.trustedCertificates));
+        if (this.getTrustedCertificates() != null)
+            aos.writeObject(new DERTaggedObject(5,pathOrObjects(this.trustedCertificates)));
         
-        if (this.usefulCertificates != null)
-            aos.writeObject(new DERTaggedObject(6,this.usefulCertificates));
+        if (this.getUsefulCertificates() != null)
+            aos.writeObject(new DERTaggedObject(6,pathOrObjects(this.usefulCertificates)));
         
-        // data objects to come...
+        if (this.getDataObjects() != null)
+            aos.writeObject(new DERTaggedObject(7,pathOrObjects(this.dataObjects)));
         
         // write END_OF_STREAM
         aos.write(0);
@@ -206,10 +397,86 @@ public class PKCS15Objects {
         aos.close();
     }
     
+    /**
+     * Return the lookup index over the objects of all directories. The
+     * index is built upon the first call and reused until a directory
+     * is replaced by a setter, written back through
+     * {@link #updateEntity(SequenceOf)} or its own
+     * {@link ReferenceProxy#updateEntity()} or {@link #invalidateIndex()}
+     * is called.
+     * 
+     * @return The lookup index.
+     */
+    public PKCS15ObjectIndex getIndex() {
+        
+        PKCS15ObjectIndex ret = this.index;
+        int updates = this.getDirectoryUpdates();
+        
+        if (ret == null || ret.getDirectoryUpdates() != updates) {
+            
+            ret = new PKCS15ObjectIndex(this,updates);
+            this.index = ret;
+        }
+        
+        return ret;
+    }
+    
+    private static int getUpdateCount(SequenceOf<?> directory) {
+        
+        if (directory instanceof AbstractReferenceProxy<?,?>)
+            return ((AbstractReferenceProxy<?,?>)directory).getUpdateCount();
+        
+        return 0;
+    }
+    
+    /**
+     * @return The sum of the update counts of all directories, which are
+     *         stored in separate EFs. As the update counts only increase,
+     *         a changed sum reveals a directory written back after the
+     *         index has been built.
+     */
+    private int getDirectoryUpdates() {
+        
+        return getUpdateCount(this.getPrivateKeys())
+            + getUpdateCount(this.getPublicKeys())
+            + getUpdateCount(this.getTrustedPublicKeys())
+            + getUpdateCount(this.getSecretKeys())
+            + getUpdateCount(this.getCertificates())
+            + getUpdateCount(this.getTrustedCertificates())
+            + getUpdateCount(this.getUsefulCertificates())
+            + getUpdateCount(this.getDataObjects())
+            + getUpdateCount(this.getAuthObjects());
+    }
+    
+    /**
+     * Discard the lookup index after objects of a directory have been
+     * modified in place.
+     */
+    public void invalidateIndex() {
+        
+        this.index = null;
+    }
+    
+    /**
+     * Write back a directory of this ODF, which has been modified, and
+     * discard the lookup index. Directories, which are stored directly
+     * inside the ODF, are written by {@link #writeInstance(OutputStream)}.
+     * 
+     * @param directory One of the directories of this instance.
+     */
+    public void updateEntity(SequenceOf<?> directory) {
+        
+        if (directory instanceof ReferenceProxy)
+            ((ReferenceProxy<?>)directory).updateEntity();
+        
+        this.invalidateIndex();
+    }
+    
     /**
      * @return the privateKeys
      */
     public SequenceOf<PKCS15PrivateKey> getPrivateKeys() {
+        this.decodeEntry(0);
         return this.privateKeys;
     }
 
@@ -217,6 +484,8 @@ public class PKCS15Objects {
      * @param privateKeys the privateKeys to set
      */
     public void setPrivateKeys(SequenceOf<PKCS15PrivateKey> privateKeys) {
+        this.dropEntry(0);
+        this.index = null;
         this.privateKeys = privateKeys;
     }
 
@@ -224,6 +493,7 @@ public class PKCS15Objects {
      * @return the publicKeys
      */
     public SequenceOf<PKCS15PublicKey> getPublicKeys() {
+        this.decodeEntry(1);
         return this.publicKeys;
     }
 
@@ -231,6 +501,8 @@ public class PKCS15Objects {
      * @param publicKeys the publicKeys to set
      */
     public void setPublicKeys(SequenceOf<PKCS15PublicKey> publicKeys) {
+        this.dropEntry(1);
+        this.index = null;
         this.publicKeys = publicKeys;
     }
 
@@ -238,6 +510,7 @@ public class PKCS15Objects {
      * @return the certificates
      */
     public SequenceOf<PKCS15Certificate> getCertificates() {
+        this.decodeEntry(4);
         return this.certificates;
     }
 
@@ -245,6 +518,8 @@ public class PKCS15Objects {
      * @param certificates the certificates to set
      */
     public void setCertificates(SequenceOf<PKCS15Certificate> certificates) {
+        this.dropEntry(4);
+        this.index = null;
         this.certificates = certificates;
     }
 
@@ -252,6 +527,7 @@ public class PKCS15Objects {
      * @return the authObjects
      */
     public SequenceOf<PKCS15AuthenticationObject> getAuthObjects() {
+        this.decodeEntry(8);
         return this.authObjects;
     }
 
@@ -259,6 +535,8 @@ public class PKCS15Objects {
      * @param authObjects the authObjects to set
      */
     public void setAuthObjects(SequenceOf<PKCS15AuthenticationObject> authObjects) {
+        this.dropEntry(8);
+        this.index = null;
         this.authObjects = authObjects;
     }
 
@@ -266,6 +544,7 @@ public class PKCS15Objects {
      * @return the trustedPublicKeys
      */
     public SequenceOf<PKCS15PublicKey> getTrustedPublicKeys() {
+        this.decodeEntry(2);
         return this.trustedPublicKeys;
     }
 
@@ -273,13 +552,33 @@ public class PKCS15Objects {
      * @param trustedPublicKeys the trustedPublicKeys to set
      */
     public void setTrustedPublicKeys(SequenceOf<PKCS15PublicKey> trustedPublicKeys) {
+        this.dropEntry(2);
+        this.index = null;
         this.trustedPublicKeys = trustedPublicKeys;
     }
 
+    /**
+     * @return the secretKeys
+     */
+    public SequenceOf<PKCS15SecretKey> getSecretKeys() {
+        this.decodeEntry(3);
+        return this.secretKeys;
+    }
+
+    /**
+     * @param secretKeys the secretKeys to set
+     */
+    public void setSecretKeys(SequenceOf<PKCS15SecretKey> secretKeys) {
+        this.dropEntry(3);
+        this.index = null;
+        this.secretKeys = secretKeys;
+    }
+
     /**
      * @return the trustedCertificates
      */
     public SequenceOf<PKCS15Certificate> getTrustedCertificates() {
+        this.decodeEntry(5);
         return this.trustedCertificates;
     }
 
@@ -288,6 +587,8 @@ public class PKCS15Objects {
      */
     public void setTrustedCertificates(
             SequenceOf<PKCS15Certificate> trustedCertificates) {
+        this.dropEntry(5);
+        this.index = null;
         this.trustedCertificates = trustedCertificates;
     }
 
@@ -295,6 +596,7 @@ public class PKCS15Objects {
      * @return the usefulCertificates
      */
     public SequenceOf<PKCS15Certificate> getUsefulCertificates() {
+        this.decodeEntry(6);
         return this.usefulCertificates;
     }
 
@@ -303,8 +605,27 @@ public class PKCS15Objects {
      */
     public void setUsefulCertificates(
             SequenceOf<PKCS15Certificate> usefulCertificates) {
+        this.dropEntry(6);
+        this.index = null;
         this.usefulCertificates = usefulCertificates;
     }
+
+    /**
+     * @return the dataObjects
+     */
+    public SequenceOf<PKCS15DataObject> getDataObjects() {
+        this.decodeEntry(7);
+        return this.dataObjects;
+    }
+
+    /**
+     * @param dataObjects the dataObjects to set
+     */
+    public void setDataObjects(SequenceOf<PKCS15DataObject> dataObjects) {
+        this.dropEntry(7);
+        this.index = null;
+        this.dataObjects = dataObjects;
+    }
     
     
 }
@@ -0,0 +1,174 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.asn1;
+
+import java.util.Enumeration;
+
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.ASN1TaggedObject;
+import org.bouncycastle.asn1.DERObject;
+import org.bouncycastle.asn1.DERObjectIdentifier;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERTaggedObject;
+import org.opensc.pkcs15.asn1.attr.OpaqueObject;
+import org.opensc.pkcs15.asn1.attr.OpaqueObjectFactory;
+import org.opensc.pkcs15.asn1.proxy.Directory;
+import org.opensc.pkcs15.asn1.ref.Path;
+
+/**
+ * <PRE>
+ * oidDO [1] DataObject {OidDO}
+ * </PRE>
+ * 
+ * <PRE>
+ * OidDO ::= SEQUENCE {
+ *         id    OBJECT IDENTIFIER,
+ *         value ObjectValue {PKCS15-OPAQUE.&amp;Type}
+ *         }
+ * </PRE>
+ * 
+ * @author wglas
+ */
+public class PKCS15OidDataObject extends PKCS15DataObject {
+
+    private DERObjectIdentifier id;
+    private OpaqueObject value;
+    
+    /**
+     * Default constructor.
+     */
+    public PKCS15OidDataObject() {
+    }
+    
+    /**
+     * This method implements the static getInstance factory pattern by
+     * using the thread-local context stored in {@link ContextHolder}. 
+     * 
+     * @param obj ASN.1 object to be decoded.
+     * @return A PKCS15OidDataObject instance.
+     */
+    static public PKCS15OidDataObject getInstance(Object obj)
+    {
+        return getInstance(obj,ContextHolder.getContext());
+    }
+    
+    /**
+     * @param obj ASN.1 object to be decoded.
+     * @param context The context used to resolve references.
+     * @return A PKCS15OidDataObject instance.
+     */
+    static public PKCS15OidDataObject getInstance(Object obj, Context context)
+    {
+        Directory<Path, OpaqueObject> directory =
+            context == null ? null : context.getOpaqueObjectDirectory();
+        
+        return getInstance(obj,directory);
+    }
+
+    /**
+     * @param obj The ASN.1 object to decode.
+     * @param directory The directory used to resolve referenced values.
+     * @return An instance of PKCS15OidDataObject.
+     */
+    public static PKCS15OidDataObject getInstance (Object obj,
+            Directory<Path, OpaqueObject> directory)
+    {
+        if (obj instanceof PKCS15OidDataObject)
+            return (PKCS15OidDataObject)obj;
+        
+        if (obj instanceof ASN1TaggedObject)
+            obj = ASN1Sequence.getInstance((ASN1TaggedObject)obj,false);
+            
+        if (obj instanceof ASN1Sequence) 
+        {
+            PKCS15OidDataObject ret = new PKCS15OidDataObject();
+            
+            ASN1Sequence oidDO = ASN1Sequence.getInstance(
+                    ret.decodeCommonAttributes((ASN1Sequence)obj,"OidDO"));
+            
+            Enumeration<Object> objs = oidDO.getObjects();
+            
+            if (!objs.hasMoreElements())
+                throw new IllegalArgumentException("Missing id member in OidDO SEQUENCE.");
+            
+            ret.setId(DERObjectIdentifier.getInstance(objs.nextElement()));
+            
+            if (!objs.hasMoreElements())
+                throw new IllegalArgumentException("Missing value member in OidDO SEQUENCE.");
+            
+            ret.setValue(OpaqueObjectFactory.getInstance(objs.nextElement(),directory));
+            
+            return ret;
+        }
+        
+        throw new IllegalArgumentException("OidDO must be encoded as an ASN.1 SEQUENCE.");
+    }
+
+    /* (non-Javadoc)
+     * @see org.bouncycastle.asn1.ASN1Encodable#toASN1Object()
+     */
+    @Override
+    public DERObject toASN1Object() {
+        
+        ASN1EncodableVector v = new ASN1EncodableVector();
+        
+        if (this.id != null)
+            v.add(this.id);
+        
+        if (this.value != null)
+            v.add(OpaqueObjectFactory.toObjectValue(this.value));
+        
+        return new DERTaggedObject(false,1,new DERSequence(this.encodeCommonAttributes(new DERSequence(v))));
+    }
+
+    /**
+     * @return the id
+     */
+    public DERObjectIdentifier getId() {
+        return this.id;
+    }
+
+    /**
+     * @param id the id to set
+     */
+    public void setId(DERObjectIdentifier id) {
+        this.id = id;
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.PKCS15DataObject#getValue()
+     */
+    @Override
+    public OpaqueObject getValue() {
+        return this.value;
+    }
+
+    /**
+     * @param value the value to set
+     */
+    public void setValue(OpaqueObject value) {
+        this.value = value;
+    }
+}
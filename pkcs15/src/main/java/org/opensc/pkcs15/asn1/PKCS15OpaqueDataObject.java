@@ -0,0 +1,128 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.asn1;
+
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.DERObject;
+import org.bouncycastle.asn1.DERSequence;
+import org.opensc.pkcs15.asn1.attr.OpaqueObject;
+import org.opensc.pkcs15.asn1.attr.OpaqueObjectFactory;
+import org.opensc.pkcs15.asn1.proxy.Directory;
+import org.opensc.pkcs15.asn1.ref.Path;
+
+/**
+ * <PRE>
+ * opaqueDO DataObject {Opaque}
+ * </PRE>
+ * 
+ * <PRE>
+ * Opaque ::= ObjectValue {PKCS15-OPAQUE.&amp;Type}
+ * </PRE>
+ * 
+ * @author wglas
+ */
+public class PKCS15OpaqueDataObject extends PKCS15DataObject {
+
+    private OpaqueObject value;
+    
+    /**
+     * Default constructor.
+     */
+    public PKCS15OpaqueDataObject() {
+    }
+    
+    /**
+     * This method implements the static getInstance factory pattern by
+     * using the thread-local context stored in {@link ContextHolder}. 
+     * 
+     * @param obj ASN.1 object to be decoded.
+     * @return A PKCS15OpaqueDataObject instance.
+     */
+    static public PKCS15OpaqueDataObject getInstance(Object obj)
+    {
+        return getInstance(obj,ContextHolder.getContext());
+    }
+    
+    /**
+     * @param obj ASN.1 object to be decoded.
+     * @param context The context used to resolve references.
+     * @return A PKCS15OpaqueDataObject instance.
+     */
+    static public PKCS15OpaqueDataObject getInstance(Object obj, Context context)
+    {
+        Directory<Path, OpaqueObject> directory =
+            context == null ? null : context.getOpaqueObjectDirectory();
+        
+        return getInstance(obj,directory);
+    }
+
+    /**
+     * @param obj The ASN.1 object to decode.
+     * @param directory The directory used to resolve referenced values.
+     * @return An instance of PKCS15OpaqueDataObject.
+     */
+    public static PKCS15OpaqueDataObject getInstance (Object obj,
+            Directory<Path, OpaqueObject> directory)
+    {
+        if (obj instanceof PKCS15OpaqueDataObject)
+            return (PKCS15OpaqueDataObject)obj;
+            
+        if (obj instanceof ASN1Sequence) 
+        {
+            PKCS15OpaqueDataObject ret = new PKCS15OpaqueDataObject();
+            
+            ret.setValue(OpaqueObjectFactory.getInstance(
+                    ret.decodeCommonAttributes((ASN1Sequence)obj,"OpaqueDO"),directory));
+            
+            return ret;
+        }
+        
+        throw new IllegalArgumentException("OpaqueDO must be encoded as an ASN.1 SEQUENCE.");
+    }
+
+    /* (non-Javadoc)
+     * @see org.bouncycastle.asn1.ASN1Encodable#toASN1Object()
+     */
+    @Override
+    public DERObject toASN1Object() {
+        
+        return new DERSequence(this.encodeCommonAttributes(
+                this.value == null ? null : OpaqueObjectFactory.toObjectValue(this.value)));
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.PKCS15DataObject#getValue()
+     */
+    @Override
+    public OpaqueObject getValue() {
+        return this.value;
+    }
+
+    /**
+     * @param value the value to set
+     */
+    public void setValue(OpaqueObject value) {
+        this.value = value;
+    }
+}
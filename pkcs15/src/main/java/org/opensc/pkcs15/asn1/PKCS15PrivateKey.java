@@ -29,6 +29,7 @@ import org.opensc.pkcs15.asn1.attr.CommonKeyAttributes;
 import org.opensc.pkcs15.asn1.attr.CommonObjectAttributes;
 import org.opensc.pkcs15.asn1.attr.CommonPrivateKeyAttributes;
 import org.opensc.pkcs15.asn1.attr.SpecificPrivateKeyAttributes;
+import org.opensc.pkcs15.asn1.proxy.InstanceFactory;
 
 /**
  * This is the base class of all private key objects.
@@ -47,6 +48,17 @@ import org.opensc.pkcs15.asn1.attr.SpecificPrivateKeyAttributes;
  */
 public abstract class PKCS15PrivateKey extends ASN1Encodable implements PKCS15Key {
 
+    /**
+     * The typed decoder of this class.
+     */
+    public static final InstanceFactory<PKCS15PrivateKey> FACTORY =
+        new InstanceFactory<PKCS15PrivateKey>(PKCS15PrivateKey.class) {
+            @Override
+            public PKCS15PrivateKey getInstance(Object obj, Context context) {
+                return PKCS15PrivateKey.getInstance(obj,context);
+            }
+        };
+
     private CommonObjectAttributes commonObjectAttributes;
     private CommonKeyAttributes commonKeyAttributes;
     private CommonPrivateKeyAttributes commonPrivateKeyAttributes;
@@ -61,16 +73,27 @@ public abstract class PKCS15PrivateKey extends ASN1Encodable implements PKCS15Ke
     abstract public SpecificPrivateKeyAttributes getSpecificPrivateKeyAttributes();
     
     /**
+     * This method uses the thread-local context stored in {@link ContextHolder}.
+     * 
      * @param obj The ASN.1 object to be deserialized.
      * @return A supported subclass instance of PKCS15PrivateKey.
      */
     public static PKCS15PrivateKey getInstance(Object obj) {
+        return getInstance(obj,ContextHolder.getContext());
+    }
+
+    /**
+     * @param obj The ASN.1 object to be deserialized.
+     * @param context The context used to resolve references.
+     * @return A supported subclass instance of PKCS15PrivateKey.
+     */
+    public static PKCS15PrivateKey getInstance(Object obj, Context context) {
         
         if (obj instanceof PKCS15PrivateKey)
             return (PKCS15PrivateKey)obj;
         
         if (obj instanceof ASN1Sequence) {
-            return PKCS15RSAPrivateKey.getInstance(obj);
+            return PKCS15RSAPrivateKey.getInstance(obj,context);
         }
             
         if (obj instanceof ASN1TaggedObject) {
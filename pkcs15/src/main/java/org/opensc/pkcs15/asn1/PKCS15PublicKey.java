@@ -29,6 +29,7 @@ import org.opensc.pkcs15.asn1.attr.CommonKeyAttributes;
 import org.opensc.pkcs15.asn1.attr.CommonObjectAttributes;
 import org.opensc.pkcs15.asn1.attr.CommonPublicKeyAttributes;
 import org.opensc.pkcs15.asn1.attr.SpecificPublicKeyAttributes;
+import org.opensc.pkcs15.asn1.proxy.InstanceFactory;
 
 /**
  * <PRE>
@@ -46,6 +47,17 @@ import org.opensc.pkcs15.asn1.attr.SpecificPublicKeyAttributes;
  */
 public abstract class PKCS15PublicKey extends ASN1Encodable implements PKCS15Key {
 
+    /**
+     * The typed decoder of this class.
+     */
+    public static final InstanceFactory<PKCS15PublicKey> FACTORY =
+        new InstanceFactory<PKCS15PublicKey>(PKCS15PublicKey.class) {
+            @Override
+            public PKCS15PublicKey getInstance(Object obj, Context context) {
+                return PKCS15PublicKey.getInstance(obj,context);
+            }
+        };
+
     private CommonObjectAttributes commonObjectAttributes;
     private CommonKeyAttributes commonKeyAttributes;
     private CommonPublicKeyAttributes commonPublicKeyAttributes;
@@ -60,16 +72,27 @@ public abstract class PKCS15PublicKey extends ASN1Encodable implements PKCS15Key
     abstract public SpecificPublicKeyAttributes getSpecificPublicKeyAttributes();
 
     /**
+     * This method uses the thread-local context stored in {@link ContextHolder}.
+     * 
      * @param obj The ASN.1 object to be deserialized.
      * @return A supported subclass instance of PKCS15PublicKey.
      */
     public static PKCS15PublicKey getInstance(Object obj) {
+        return getInstance(obj,ContextHolder.getContext());
+    }
+
+    /**
+     * @param obj The ASN.1 object to be deserialized.
+     * @param context The context used to resolve references.
+     * @return A supported subclass instance of PKCS15PublicKey.
+     */
+    public static PKCS15PublicKey getInstance(Object obj, Context context) {
         
         if (obj instanceof PKCS15PublicKey)
             return (PKCS15PublicKey)obj;
         
         if (obj instanceof ASN1Sequence) {
-            return PKCS15RSAPublicKey.getInstance(obj);
+            return PKCS15RSAPublicKey.getInstance(obj,context);
         }
             
         if (obj instanceof ASN1TaggedObject) {
@@ -82,8 +82,16 @@ public class PKCS15RSAPublicKey extends PKCS15PublicKey {
      */
     static public PKCS15PublicKey getInstance(Object obj)
     {
-        Context context = ContextHolder.getContext();
-        
+        return getInstance(obj,ContextHolder.getContext());
+    }
+    
+    /**
+     * @param obj ASN.1 object to be decoded.
+     * @param context The context used to resolve references.
+     * @return A PKCS15PublicKey object suitable for RSA Private keys.
+     */
+    static public PKCS15PublicKey getInstance(Object obj, Context context)
+    {
         Directory<DERInteger,NullKeyInfo> infoDirectory =
             context == null ? null : context.getNullKeyInfoDirectory();
         
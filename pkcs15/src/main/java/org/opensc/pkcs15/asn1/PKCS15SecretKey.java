@@ -0,0 +1,323 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.asn1;
+
+import java.util.Enumeration;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.ASN1TaggedObject;
+import org.bouncycastle.asn1.DERObject;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERTaggedObject;
+import org.opensc.pkcs15.asn1.attr.CommonKeyAttributes;
+import org.opensc.pkcs15.asn1.attr.CommonObjectAttributes;
+import org.opensc.pkcs15.asn1.attr.CommonSecretKeyAttributes;
+import org.opensc.pkcs15.asn1.attr.GenericSecretKeyAttributes;
+import org.opensc.pkcs15.asn1.attr.OpaqueObject;
+import org.opensc.pkcs15.asn1.proxy.Directory;
+import org.opensc.pkcs15.asn1.proxy.InstanceFactory;
+import org.opensc.pkcs15.asn1.ref.Path;
+
+/**
+ * This is the class of all secret key objects.
+ * 
+ * <PRE>
+ * SecretKeyType ::= CHOICE {
+ *         genericSecretKey SecretKeyObject {GenericSecretKeyAttributes},
+ *         rc2key      [0] SecretKeyObject {GenericSecretKeyAttributes},
+ *         rc4key      [1] SecretKeyObject {GenericSecretKeyAttributes},
+ *         desKey      [2] SecretKeyObject {GenericSecretKeyAttributes},
+ *         des2Key     [3] SecretKeyObject {GenericSecretKeyAttributes},
+ *         des3Key     [4] SecretKeyObject {GenericSecretKeyAttributes},
+ *         castKey     [5] SecretKeyObject {GenericSecretKeyAttributes},
+ *         cast3Key    [6] SecretKeyObject {GenericSecretKeyAttributes},
+ *         cast128Key  [7] SecretKeyObject {GenericSecretKeyAttributes},
+ *         rc5Key      [8] SecretKeyObject {GenericSecretKeyAttributes},
+ *         ideaKey     [9] SecretKeyObject {GenericSecretKeyAttributes},
+ *         skipjackKey [10] SecretKeyObject {GenericSecretKeyAttributes},
+ *         batonKey    [11] SecretKeyObject {GenericSecretKeyAttributes},
+ *         juniperKey  [12] SecretKeyObject {GenericSecretKeyAttributes},
+ *         rc6Key      [13] SecretKeyObject {GenericSecretKeyAttributes},
+ *         otherKey    [14] OtherKey,
+ *         ... -- For future extensions
+ *         }
+ * </PRE>
+ * 
+ * <PRE> 
+ * SecretKeyObject {KeyAttributes} ::= PKCS15Object {
+ *       CommonKeyAttributes, CommonSecretKeyAttributes, KeyAttributes}
+ * </PRE>
+ * 
+ * All choices except <code>otherKey</code> share the same attributes, so
+ * the choice is represented by {@link #getKeyType()}. The tagged choices
+ * are implicitly tagged SEQUENCEs.
+ * 
+ * @author wglas
+ */
+public class PKCS15SecretKey extends ASN1Encodable implements PKCS15Key {
+
+    /**
+     * The typed decoder of this class.
+     */
+    public static final InstanceFactory<PKCS15SecretKey> FACTORY =
+        new InstanceFactory<PKCS15SecretKey>(PKCS15SecretKey.class) {
+            @Override
+            public PKCS15SecretKey getInstance(Object obj, Context context) {
+                return PKCS15SecretKey.getInstance(obj,context);
+            }
+        };
+
+    public static final int GENERIC_SECRET_KEY = -1;
+    public static final int RC2_KEY = 0;
+    public static final int RC4_KEY = 1;
+    public static final int DES_KEY = 2;
+    public static final int DES2_KEY = 3;
+    public static final int DES3_KEY = 4;
+    public static final int CAST_KEY = 5;
+    public static final int CAST3_KEY = 6;
+    public static final int CAST128_KEY = 7;
+    public static final int RC5_KEY = 8;
+    public static final int IDEA_KEY = 9;
+    public static final int SKIPJACK_KEY = 10;
+    public static final int BATON_KEY = 11;
+    public static final int JUNIPER_KEY = 12;
+    public static final int RC6_KEY = 13;
+    
+    private int keyType;
+    private CommonObjectAttributes commonObjectAttributes;
+    private CommonKeyAttributes commonKeyAttributes;
+    private CommonSecretKeyAttributes commonSecretKeyAttributes;
+    private GenericSecretKeyAttributes genericSecretKeyAttributes;
+    
+    /**
+     * Default constructor.
+     */
+    public PKCS15SecretKey() {
+        this.keyType = GENERIC_SECRET_KEY;
+    }
+    
+    /**
+     * This method implements the static getInstance factory pattern by
+     * using the thread-local context stored in {@link ContextHolder}. 
+     * 
+     * @param obj ASN.1 object to be decoded.
+     * @return A PKCS15SecretKey instance.
+     */
+    static public PKCS15SecretKey getInstance(Object obj)
+    {
+        return getInstance(obj,ContextHolder.getContext());
+    }
+    
+    /**
+     * @param obj ASN.1 object to be decoded.
+     * @param context The context used to resolve references.
+     * @return A PKCS15SecretKey instance.
+     */
+    static public PKCS15SecretKey getInstance(Object obj, Context context)
+    {
+        Directory<Path, OpaqueObject> directory =
+            context == null ? null : context.getOpaqueObjectDirectory();
+        
+        return getInstance(obj,directory);
+    }
+
+    /**
+     * @param obj The ASN.1 object to decode.
+     * @param directory The directory used to resolve referenced key values.
+     * @return An instance of PKCS15SecretKey.
+     */
+    public static PKCS15SecretKey getInstance (Object obj,
+            Directory<Path, OpaqueObject> directory)
+    {
+        if (obj instanceof PKCS15SecretKey)
+            return (PKCS15SecretKey)obj;
+            
+        if (obj instanceof ASN1Sequence)
+            return decodeSecretKey(GENERIC_SECRET_KEY,(ASN1Sequence)obj,directory);
+        
+        if (obj instanceof ASN1TaggedObject) {
+            
+            ASN1TaggedObject to = (ASN1TaggedObject)obj;
+            
+            if (to.getTagNo() >= RC2_KEY && to.getTagNo() <= RC6_KEY)
+                return decodeSecretKey(to.getTagNo(),ASN1Sequence.getInstance(to,false),directory);
+            
+            if (to.getTagNo() == 14)
+                throw new IllegalArgumentException("OtherKey is not supported.");
+            
+            throw new IllegalArgumentException("Invalid member tag ["+to.getTagNo()+"] in SecretKey ASN.1 SEQUENCE.");
+        }
+        
+        throw new IllegalArgumentException("SecretKey must be encoded as An ASN.1 SEQUENCE or TAGGED OBJECT.");
+    }
+    
+    private static PKCS15SecretKey decodeSecretKey(int keyType, ASN1Sequence seq,
+            Directory<Path, OpaqueObject> directory)
+    {
+        Enumeration<Object> objs = seq.getObjects();
+        
+        PKCS15SecretKey ret = new PKCS15SecretKey();
+        ret.setKeyType(keyType);
+        
+        if (!objs.hasMoreElements())
+            throw new IllegalArgumentException("Missing commonObjectAttributes member in SecretKey SEQUENCE.");
+
+        ret.setCommonObjectAttributes(CommonObjectAttributes.getInstance(objs.nextElement()));
+        
+        if (!objs.hasMoreElements())
+            throw new IllegalArgumentException("Missing commonKeyAttributes member in SecretKey SEQUENCE.");
+
+        ret.setCommonKeyAttributes(CommonKeyAttributes.getInstance(objs.nextElement()));
+        
+        if (!objs.hasMoreElements())
+            throw new IllegalArgumentException("Missing genericSecretKeyAttributes member in SecretKey SEQUENCE.");
+
+        ASN1TaggedObject to = ASN1TaggedObject.getInstance(objs.nextElement());
+        
+        if (to.getTagNo() == 0) {
+            
+            ret.setCommonSecretKeyAttributes(CommonSecretKeyAttributes.getInstance(to.getObject()));
+            
+            if (!objs.hasMoreElements())
+                throw new IllegalArgumentException("Missing genericSecretKeyAttributes member in SecretKey SEQUENCE.");
+
+            to = ASN1TaggedObject.getInstance(objs.nextElement());
+        }
+        
+        if (to.getTagNo() != 1)
+            throw new IllegalArgumentException("Invalid tag ["+to.getTagNo()+"] in SecretKey SEQUENCE.");
+        
+        ret.setGenericSecretKeyAttributes(GenericSecretKeyAttributes.getInstance(to.getObject(),directory));
+           
+        return ret;
+    }
+    
+    /* (non-Javadoc)
+     * @see org.bouncycastle.asn1.ASN1Encodable#toASN1Object()
+     */
+    @Override
+    public DERObject toASN1Object() {
+        
+        ASN1EncodableVector v = new ASN1EncodableVector();
+
+        if (this.commonObjectAttributes != null)
+            v.add(this.commonObjectAttributes);
+        
+        if (this.commonKeyAttributes != null)
+            v.add(this.commonKeyAttributes);
+
+        if (this.commonSecretKeyAttributes != null)
+            v.add(new DERTaggedObject(0,this.commonSecretKeyAttributes));
+
+        if (this.genericSecretKeyAttributes != null)
+            v.add(new DERTaggedObject(1,this.genericSecretKeyAttributes));
+
+        DERSequence seq = new DERSequence(v);
+        
+        if (this.keyType == GENERIC_SECRET_KEY)
+            return seq;
+        
+        return new DERTaggedObject(false,this.keyType,seq);
+    }
+
+    /**
+     * @return The choice of the secret key type, which is
+     *         {@link #GENERIC_SECRET_KEY} or the tag of the choice.
+     */
+    public int getKeyType() {
+        return this.keyType;
+    }
+
+    /**
+     * @param keyType The choice of the secret key type to set.
+     */
+    public void setKeyType(int keyType) {
+        
+        if (keyType != GENERIC_SECRET_KEY && (keyType < RC2_KEY || keyType > RC6_KEY))
+            throw new IllegalArgumentException("Invalid secret key type ["+keyType+"].");
+        
+        this.keyType = keyType;
+    }
+
+    /**
+     * @return the commonObjectAttributes
+     */
+    public CommonObjectAttributes getCommonObjectAttributes() {
+        return this.commonObjectAttributes;
+    }
+
+    /**
+     * @param commonObjectAttributes the commonObjectAttributes to set
+     */
+    public void setCommonObjectAttributes(
+            CommonObjectAttributes commonObjectAttributes) {
+        this.commonObjectAttributes = commonObjectAttributes;
+    }
+
+    /**
+     * @return the commonKeyAttributes
+     */
+    public CommonKeyAttributes getCommonKeyAttributes() {
+        return this.commonKeyAttributes;
+    }
+
+    /**
+     * @param commonKeyAttributes the commonKeyAttributes to set
+     */
+    public void setCommonKeyAttributes(CommonKeyAttributes commonKeyAttributes) {
+        this.commonKeyAttributes = commonKeyAttributes;
+    }
+
+    /**
+     * @return the commonSecretKeyAttributes
+     */
+    public CommonSecretKeyAttributes getCommonSecretKeyAttributes() {
+        return this.commonSecretKeyAttributes;
+    }
+
+    /**
+     * @param commonSecretKeyAttributes the commonSecretKeyAttributes to set
+     */
+    public void setCommonSecretKeyAttributes(
+            CommonSecretKeyAttributes commonSecretKeyAttributes) {
+        this.commonSecretKeyAttributes = commonSecretKeyAttributes;
+    }
+
+    /**
+     * @return the genericSecretKeyAttributes
+     */
+    public GenericSecretKeyAttributes getGenericSecretKeyAttributes() {
+        return this.genericSecretKeyAttributes;
+    }
+
+    /**
+     * @param genericSecretKeyAttributes the genericSecretKeyAttributes to set
+     */
+    public void setGenericSecretKeyAttributes(
+            GenericSecretKeyAttributes genericSecretKeyAttributes) {
+        this.genericSecretKeyAttributes = genericSecretKeyAttributes;
+    }
+}
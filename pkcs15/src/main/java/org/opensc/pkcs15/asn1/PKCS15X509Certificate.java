@@ -79,8 +79,16 @@ public class PKCS15X509Certificate extends PKCS15Certificate {
      */
     static public PKCS15X509Certificate getInstance(Object obj)
     {
-        Context context = ContextHolder.getContext();
-        
+        return getInstance(obj,ContextHolder.getContext());
+    }
+    
+    /**
+     * @param obj ASN.1 object to be decoded.
+     * @param context The context used to resolve references.
+     * @return A PKCS15X509Certificate object suitable for RSA Private keys.
+     */
+    static public PKCS15X509Certificate getInstance(Object obj, Context context)
+    {
          Directory<Path, X509CertificateObject> keyKirectory =
             context == null ? null : context.getX509CertificateDirectory();
         
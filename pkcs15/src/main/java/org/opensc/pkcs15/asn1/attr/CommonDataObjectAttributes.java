@@ -0,0 +1,139 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.asn1.attr;
+
+import java.util.Enumeration;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.DERObject;
+import org.bouncycastle.asn1.DERObjectIdentifier;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERUTF8String;
+
+/**
+ * <PRE>
+ * CommonDataObjectAttributes ::= SEQUENCE {
+ *         applicationName Label OPTIONAL,
+ *         applicationOID  OBJECT IDENTIFIER OPTIONAL,
+ *         ... -- For future extensions
+ *         } (WITH COMPONENTS {..., applicationName PRESENT}|
+ *            WITH COMPONENTS {..., applicationOID PRESENT})
+ * </PRE>
+ * 
+ * @author wglas
+ */
+public class CommonDataObjectAttributes extends ASN1Encodable {
+
+    private String applicationName;
+    private DERObjectIdentifier applicationOID;
+    
+    /**
+     * Default constructor.
+     */
+    public CommonDataObjectAttributes() {
+        super();
+    }
+
+    /**
+     * @param obj The ASN.1 object to decode.
+     * @return An instance of CommonDataObjectAttributes.
+     */
+    public static CommonDataObjectAttributes getInstance (Object obj)
+    {
+        if (obj instanceof CommonDataObjectAttributes)
+            return (CommonDataObjectAttributes)obj;
+            
+        if (obj instanceof ASN1Sequence) 
+        {
+            ASN1Sequence seq = (ASN1Sequence)obj;
+            
+            Enumeration<Object> objs = seq.getObjects();
+            
+            CommonDataObjectAttributes ret = new CommonDataObjectAttributes();
+            
+            while (objs.hasMoreElements()) {
+                
+                Object o = objs.nextElement();
+                
+                if (o instanceof DERUTF8String) {
+                    ret.setApplicationName(((DERUTF8String)o).getString());
+                } else if (o instanceof DERObjectIdentifier) {
+                    ret.setApplicationOID((DERObjectIdentifier)o);
+                } else
+                    throw new IllegalArgumentException("Invalid member ["+o+"] in CommonDataObjectAttributes ASN.1 SEQUENCE.");
+            }
+               
+            return ret;
+        }
+        
+        throw new IllegalArgumentException("CommonDataObjectAttributes must be encoded as an ASN.1 SEQUENCE.");
+    }
+    
+    /* (non-Javadoc)
+     * @see org.bouncycastle.asn1.ASN1Encodable#toASN1Object()
+     */
+    @Override
+    public DERObject toASN1Object() {
+        
+        ASN1EncodableVector v = new ASN1EncodableVector();
+
+        if (this.applicationName != null)
+            v.add(new DERUTF8String(this.applicationName));
+
+        if (this.applicationOID != null)
+            v.add(this.applicationOID);
+
+        return new DERSequence(v);
+    }
+
+    /**
+     * @return the applicationName
+     */
+    public String getApplicationName() {
+        return this.applicationName;
+    }
+
+    /**
+     * @param applicationName the applicationName to set
+     */
+    public void setApplicationName(String applicationName) {
+        this.applicationName = applicationName;
+    }
+
+    /**
+     * @return the applicationOID
+     */
+    public DERObjectIdentifier getApplicationOID() {
+        return this.applicationOID;
+    }
+
+    /**
+     * @param applicationOID the applicationOID to set
+     */
+    public void setApplicationOID(DERObjectIdentifier applicationOID) {
+        this.applicationOID = applicationOID;
+    }
+}
@@ -0,0 +1,141 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.asn1.attr;
+
+import java.util.Enumeration;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.DERObject;
+import org.bouncycastle.asn1.DERSequence;
+import org.opensc.pkcs15.asn1.Context;
+import org.opensc.pkcs15.asn1.ContextHolder;
+import org.opensc.pkcs15.asn1.proxy.Directory;
+import org.opensc.pkcs15.asn1.ref.Path;
+
+/**
+ * <PRE>
+ * GenericSecretKeyAttributes ::= SEQUENCE {
+ *         value ObjectValue { OCTET STRING },
+ *         ... -- For future extensions
+ *         }
+ * </PRE>
+ * 
+ * @author wglas
+ */
+public class GenericSecretKeyAttributes extends ASN1Encodable {
+
+    private OpaqueObject value;
+    
+    /**
+     * Default constructor.
+     */
+    public GenericSecretKeyAttributes() {
+        super();
+    }
+    
+    /**
+     * This method implements the static getInstance factory pattern by
+     * using the thread-local context stored in {@link ContextHolder}. 
+     * 
+     * @param obj ASN.1 object to be decoded.
+     * @return A GenericSecretKeyAttributes instance.
+     */
+    static public GenericSecretKeyAttributes getInstance(Object obj)
+    {
+        return getInstance(obj,ContextHolder.getContext());
+    }
+    
+    /**
+     * @param obj ASN.1 object to be decoded.
+     * @param context The context used to resolve references.
+     * @return A GenericSecretKeyAttributes instance.
+     */
+    static public GenericSecretKeyAttributes getInstance(Object obj, Context context)
+    {
+        Directory<Path, OpaqueObject> directory =
+            context == null ? null : context.getOpaqueObjectDirectory();
+        
+        return getInstance(obj,directory);
+    }
+
+    /**
+     * @param obj The ASN.1 object to decode.
+     * @param directory The directory used to resolve referenced key values.
+     * @return An instance of GenericSecretKeyAttributes.
+     */
+    public static GenericSecretKeyAttributes getInstance (Object obj,
+            Directory<Path, OpaqueObject> directory)
+    {
+        if (obj instanceof GenericSecretKeyAttributes)
+            return (GenericSecretKeyAttributes)obj;
+            
+        if (obj instanceof ASN1Sequence) 
+        {
+            ASN1Sequence seq = (ASN1Sequence)obj;
+            
+            Enumeration<Object> objs = seq.getObjects();
+            
+            GenericSecretKeyAttributes ret = new GenericSecretKeyAttributes();
+         
+            if (!objs.hasMoreElements())
+                throw new IllegalArgumentException("Missing value member in GenericSecretKeyAttributes SEQUENCE.");
+
+            ret.setValue(OpaqueObjectFactory.getInstance(objs.nextElement(),directory));
+            
+            return ret;
+        }
+        
+        throw new IllegalArgumentException("GenericSecretKeyAttributes must be encoded as an ASN.1 SEQUENCE.");
+    }
+    
+    /* (non-Javadoc)
+     * @see org.bouncycastle.asn1.ASN1Encodable#toASN1Object()
+     */
+    @Override
+    public DERObject toASN1Object() {
+        
+        ASN1EncodableVector v = new ASN1EncodableVector();
+
+        if (this.value != null)
+            v.add(OpaqueObjectFactory.toObjectValue(this.value));
+        
+        return new DERSequence(v);
+    }
+
+    /**
+     * @return the value
+     */
+    public OpaqueObject getValue() {
+        return this.value;
+    }
+
+    /**
+     * @param value the value to set
+     */
+    public void setValue(OpaqueObject value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,45 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.asn1.attr;
+
+import org.bouncycastle.asn1.DEREncodable;
+
+/**
+ * This interface is implemented by opaque values like the payload of
+ * data objects or the value of secret keys and by proxies to such values.
+ * 
+ * @author wglas
+ */
+public interface OpaqueObject extends DEREncodable {
+
+    /**
+     * @return The opaque octets of this value.
+     */
+    public byte[] getData();
+    
+    /**
+     * @param data The opaque octets to set.
+     */
+    public void setData(byte[] data);
+}
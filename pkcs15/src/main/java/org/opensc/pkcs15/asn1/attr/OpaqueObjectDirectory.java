@@ -0,0 +1,109 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.asn1.attr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.bouncycastle.asn1.DEREncodable;
+import org.opensc.pkcs15.asn1.proxy.Directory;
+import org.opensc.pkcs15.asn1.proxy.StreamResolver;
+
+/**
+ * A directory, which reads and writes opaque values as the raw
+ * content of the referenced streams.
+ * 
+ * @author wglas
+ */
+public class OpaqueObjectDirectory<ReferenceType extends DEREncodable>
+implements Directory<ReferenceType,OpaqueObject> {
+
+    private final StreamResolver<ReferenceType> streamResolver;
+    
+    /**
+     * @param streamResolver The resolver used to open the referenced streams.
+     */
+    public OpaqueObjectDirectory(StreamResolver<ReferenceType> streamResolver) {
+        this.streamResolver = streamResolver;
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.proxy.Directory#resolveReference(org.bouncycastle.asn1.DEREncodable)
+     */
+    @Override
+    public OpaqueObject resolveReference(ReferenceType ref) {
+        
+        try {
+            InputStream is = this.streamResolver.readReference(ref);
+            
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buf = new byte[256];
+            int n;
+            
+            try {
+                while ((n=is.read(buf)) > 0)
+                    bos.write(buf,0,n);
+            } finally {
+                is.close();
+            }
+            
+            return new OpaqueObjectImpl(bos.toByteArray());
+            
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Reference ["+ref+"] cannot be read.",e);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.proxy.Directory#updateEntity(org.bouncycastle.asn1.DEREncodable, org.bouncycastle.asn1.DEREncodable)
+     */
+    @Override
+    public void updateEntity(ReferenceType ref, OpaqueObject entity) {
+        
+        try {
+            OutputStream os = this.streamResolver.writeReference(ref);
+            
+            try {
+                byte[] data = entity.getData();
+                
+                if (data != null)
+                    os.write(data);
+            } finally {
+                os.close();
+            }
+            
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Reference ["+ref+"] cannot be written.",e);
+        }
+    }
+
+    /**
+     * @return the streamResolver
+     */
+    public StreamResolver<ReferenceType> getStreamResolver() {
+        return this.streamResolver;
+    }
+}
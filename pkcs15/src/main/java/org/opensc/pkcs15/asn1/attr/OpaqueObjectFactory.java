@@ -0,0 +1,95 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.asn1.attr;
+
+import org.bouncycastle.asn1.DEREncodable;
+import org.bouncycastle.asn1.DERTaggedObject;
+import org.opensc.pkcs15.asn1.Context;
+import org.opensc.pkcs15.asn1.ContextHolder;
+import org.opensc.pkcs15.asn1.proxy.Directory;
+import org.opensc.pkcs15.asn1.proxy.ReferenceProxy;
+import org.opensc.pkcs15.asn1.ref.ObjectValueFactory;
+import org.opensc.pkcs15.asn1.ref.Path;
+
+/**
+ * Decode the ASN.1 <code>ObjectValue {OCTET STRING}</code> choice, which
+ * is used for the values of secret keys and opaque data objects.
+ * 
+ * @author wglas
+ */
+public abstract class OpaqueObjectFactory {
+    
+    private static ObjectValueFactory<OpaqueObject> factory
+    = new ObjectValueFactory<OpaqueObject>(OpaqueObject.class,OpaqueObjectImpl.FACTORY);
+
+    /**
+     * This method implements the static getInstance factory pattern by
+     * using the thread-local context stored in {@link ContextHolder}. 
+     * 
+     * @param obj ASN.1 object to be decoded.
+     * @return An opaque value or a proxy to a referenced opaque value.
+     */
+    static public OpaqueObject getInstance(Object obj)
+    {
+        return getInstance(obj,ContextHolder.getContext());
+    }
+    
+    /**
+     * @param obj ASN.1 object to be decoded.
+     * @param context The context used to resolve references.
+     * @return An opaque value or a proxy to a referenced opaque value.
+     */
+    static public OpaqueObject getInstance(Object obj, Context context)
+    {
+        Directory<Path, OpaqueObject> directory =
+            context == null ? null : context.getOpaqueObjectDirectory();
+        
+        return getInstance(obj,directory);
+    }
+
+    /**
+     * @param obj An ASN.1 object to resolve.
+     * @param directory The directory used to resolve path references.
+     * @return An OpaqueObjectImpl instance or an OpaqueObject proxy
+     *         depending on the type of the ObjectValue. 
+     */
+    public static OpaqueObject getInstance(Object obj,
+            Directory<Path,OpaqueObject> directory) {
+       
+        return factory.getInstance(obj, directory);
+    }
+    
+    /**
+     * @param value An opaque value or a proxy to a referenced opaque value.
+     * @return The ASN.1 encoding of the ObjectValue choice, which is the
+     *         reference for proxies and the direct choice otherwise.
+     */
+    public static DEREncodable toObjectValue(OpaqueObject value) {
+        
+        if (value instanceof ReferenceProxy)
+            return value;
+        
+        return new DERTaggedObject(0,value);
+    }
+}
@@ -0,0 +1,110 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.asn1.attr;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.DERObject;
+import org.bouncycastle.asn1.DEROctetString;
+import org.opensc.pkcs15.asn1.Context;
+import org.opensc.pkcs15.asn1.proxy.InstanceFactory;
+
+/**
+ * An opaque value, which is encoded as an ASN.1 OCTET STRING.
+ * 
+ * @author wglas
+ */
+public class OpaqueObjectImpl extends ASN1Encodable implements OpaqueObject {
+
+    /**
+     * The typed decoder of this class.
+     */
+    public static final InstanceFactory<OpaqueObject> FACTORY =
+        new InstanceFactory<OpaqueObject>(OpaqueObjectImpl.class) {
+            @Override
+            public OpaqueObject getInstance(Object obj, Context context) {
+                return OpaqueObjectImpl.getInstance(obj);
+            }
+        };
+
+    private byte[] data;
+    
+    /**
+     * Default constructor.
+     */
+    public OpaqueObjectImpl() {
+        super();
+    }
+    
+    /**
+     * @param data The opaque octets.
+     */
+    public OpaqueObjectImpl(byte[] data) {
+        super();
+        this.data = data;
+    }
+    
+    /**
+     * @param obj The ASN.1 object to decode.
+     * @return An instance of OpaqueObject.
+     */
+    public static OpaqueObject getInstance(Object obj)
+    {
+        if (obj instanceof OpaqueObject)
+            return (OpaqueObject)obj;
+        
+        if (obj instanceof ASN1OctetString)
+            return new OpaqueObjectImpl(((ASN1OctetString)obj).getOctets());
+        
+        if (obj instanceof byte[])
+            return new OpaqueObjectImpl((byte[])obj);
+        
+        throw new IllegalArgumentException("OpaqueObject must be encoded as an ASN.1 OCTET STRING.");
+    }
+    
+    /* (non-Javadoc)
+     * @see org.bouncycastle.asn1.ASN1Encodable#toASN1Object()
+     */
+    @Override
+    public DERObject toASN1Object() {
+        
+        return new DEROctetString(this.data == null ? new byte[0] : this.data);
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.attr.OpaqueObject#getData()
+     */
+    @Override
+    public byte[] getData() {
+        return this.data;
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.attr.OpaqueObject#setData(byte[])
+     */
+    @Override
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+}
@@ -66,8 +66,16 @@ public abstract class RSAKeyInfoFactory {
      */
     static public NullKeyInfo getInstance(Object obj)
     {
-        Context context = ContextHolder.getContext();
-        
+        return getInstance(obj,ContextHolder.getContext());
+    }
+    
+    /**
+     * @param obj ASN.1 object to be decoded.
+     * @param context The context used to resolve references.
+     * @return A KeyInfo object suitable for RSA Private keys.
+     */
+    static public NullKeyInfo getInstance(Object obj, Context context)
+    {
         Directory<DERInteger,NullKeyInfo> directory =
             context == null ? null : context.getNullKeyInfoDirectory();
         
@@ -37,7 +37,7 @@ import org.opensc.pkcs15.asn1.ref.Path;
 public abstract class RSAPrivateKeyObjectFactory {
     
     private static ObjectValueFactory<RSAPrivateKeyObject> factory
-    = new ObjectValueFactory<RSAPrivateKeyObject>(RSAPrivateKeyObject.class,RSAPrivateKeyObjectImpl.class);
+    = new ObjectValueFactory<RSAPrivateKeyObject>(RSAPrivateKeyObject.class,RSAPrivateKeyObjectImpl.FACTORY);
 
     /**
      * This method implements the static getInstance factory pattern by
@@ -48,8 +48,16 @@ public abstract class RSAPrivateKeyObjectFactory {
      */
     static public RSAPrivateKeyObject getInstance(Object obj)
     {
-        Context context = ContextHolder.getContext();
-        
+        return getInstance(obj,ContextHolder.getContext());
+    }
+    
+    /**
+     * @param obj ASN.1 object to be decoded.
+     * @param context The context used to resolve references.
+     * @return A KeyInfo object suitable for RSA Private keys.
+     */
+    static public RSAPrivateKeyObject getInstance(Object obj, Context context)
+    {
         Directory<Path, RSAPrivateKeyObject> directory =
             context == null ? null : context.getRSAPrivateKeyDirectory();
         
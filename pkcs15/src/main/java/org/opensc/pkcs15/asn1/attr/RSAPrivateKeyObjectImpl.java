@@ -35,6 +35,8 @@ import org.bouncycastle.asn1.DERInteger;
 import org.bouncycastle.asn1.DERObject;
 import org.bouncycastle.asn1.DERSequence;
 import org.bouncycastle.asn1.DERTaggedObject;
+import org.opensc.pkcs15.asn1.Context;
+import org.opensc.pkcs15.asn1.proxy.InstanceFactory;
 
 /**
  * 
@@ -56,6 +58,17 @@ import org.bouncycastle.asn1.DERTaggedObject;
  */
 public class RSAPrivateKeyObjectImpl implements RSAPrivateKeyObject {
 
+    /**
+     * The typed decoder of this class.
+     */
+    public static final InstanceFactory<RSAPrivateKeyObject> FACTORY =
+        new InstanceFactory<RSAPrivateKeyObject>(RSAPrivateKeyObjectImpl.class) {
+            @Override
+            public RSAPrivateKeyObject getInstance(Object obj, Context context) {
+                return RSAPrivateKeyObjectImpl.getInstance(obj);
+            }
+        };
+
     private static final long serialVersionUID = 5880835995320789138L;
     
     private BigInteger crtCoefficient;
@@ -0,0 +1,190 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.asn1.attr;
+
+import java.io.ObjectStreamException;
+import java.math.BigInteger;
+
+import org.bouncycastle.asn1.DERObject;
+import org.opensc.pkcs15.asn1.Context;
+import org.opensc.pkcs15.asn1.helper.DERView;
+import org.opensc.pkcs15.asn1.proxy.InstanceFactory;
+
+/**
+ * A read-only RSA private key object, which decodes the components
+ * from a {@link DERView} each time they are accessed.
+ * 
+ * In contrast to {@link RSAPrivateKeyObjectImpl} no BigInteger is held by
+ * this object, only the encoded key in the backing buffer of the view.
+ * The ASN.1 definition is the same as for {@link RSAPrivateKeyObjectImpl}.
+ * 
+ * @author wglas
+ */
+public class RSAPrivateKeyObjectView implements RSAPrivateKeyObject {
+
+    /**
+     * The typed decoder of this class, which accepts {@link DERView}
+     * instances and falls back to {@link RSAPrivateKeyObjectImpl} for
+     * all other ASN.1 objects.
+     */
+    public static final InstanceFactory<RSAPrivateKeyObject> FACTORY =
+        new InstanceFactory<RSAPrivateKeyObject>(RSAPrivateKeyObjectView.class) {
+            @Override
+            public RSAPrivateKeyObject getInstance(Object obj, Context context) {
+                return RSAPrivateKeyObjectView.getInstance(obj);
+            }
+        };
+
+    private static final long serialVersionUID = -2633373745567010592L;
+    
+    private final transient DERView view;
+    
+    /**
+     * @param view The view of the encoded RSAPrivateKeyObject SEQUENCE.
+     */
+    public RSAPrivateKeyObjectView(DERView view)
+    {
+        if (!view.isConstructed())
+            throw new IllegalArgumentException("RSAPrivateKeyObject must be encoded as an ASN.1 SEQUENCE.");
+        
+        for (int i=0; i<view.size(); ++i) {
+            
+            DERView member = view.get(i);
+            
+            if (!member.isContextSpecific())
+                throw new IllegalArgumentException("RSAPrivateKeyObject member must be encoded as an ASN.1 tagged objects.");
+            
+            if (member.getTagNo() > 7)
+                throw new IllegalArgumentException("Invalid RSAPrivateKeyObject member tag ["+member.getTagNo()+"].");
+        }
+        
+        this.view = view;
+    }
+    
+    /**
+     * @param obj A {@link DERView} or an ASN.1 object to decode.
+     * @return An instance of RSAPrivateKeyObject.
+     */
+    public static RSAPrivateKeyObject getInstance(Object obj)
+    {
+        if (obj instanceof RSAPrivateKeyObject)
+            return (RSAPrivateKeyObject)obj;
+        
+        if (obj instanceof DERView)
+            return new RSAPrivateKeyObjectView((DERView)obj);
+        
+        return RSAPrivateKeyObjectImpl.getInstance(obj);
+    }
+    
+    private BigInteger getComponent(int tagNo) {
+        
+        DERView member = this.view.getTagged(tagNo);
+        
+        return member == null ? null : member.getBigInteger();
+    }
+    
+    @Override
+    public BigInteger getModulus() {
+        
+        return this.getComponent(0);
+    }
+
+    @Override
+    public BigInteger getPublicExponent() {
+        
+        return this.getComponent(1);
+    }
+
+    @Override
+    public BigInteger getPrivateExponent() {
+        
+        return this.getComponent(2);
+    }
+
+    @Override
+    public BigInteger getPrimeP() {
+        
+        return this.getComponent(3);
+    }
+
+    @Override
+    public BigInteger getPrimeQ() {
+        
+        return this.getComponent(4);
+    }
+
+    @Override
+    public BigInteger getPrimeExponentP() {
+        
+        return this.getComponent(5);
+    }
+
+    @Override
+    public BigInteger getPrimeExponentQ() {
+        
+        return this.getComponent(6);
+    }
+
+    @Override
+    public BigInteger getCrtCoefficient() {
+        
+        return this.getComponent(7);
+    }
+
+    @Override
+    public String getAlgorithm() {
+        
+        return "RSA";
+    }
+
+    @Override
+    public String getFormat() {
+        
+        return "PKCS#15";
+    }
+
+    @Override
+    public byte[] getEncoded() {
+        
+        return this.view.getEncoded();
+    }
+
+    @Override
+    public DERObject getDERObject() {
+        
+        return this.view.getDERObject();
+    }
+    
+    /**
+     * Serialize a view as a fully decoded {@link RSAPrivateKeyObjectImpl},
+     * because the backing buffer is not serialized.
+     * 
+     * @return The object written to the stream instead of this view.
+     * @throws ObjectStreamException
+     */
+    protected Object writeReplace() throws ObjectStreamException {
+        
+        return RSAPrivateKeyObjectImpl.getInstance(this.getDERObject());
+    }
+}
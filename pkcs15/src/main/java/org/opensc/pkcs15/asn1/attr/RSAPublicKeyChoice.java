@@ -33,6 +33,8 @@ import org.bouncycastle.asn1.DERObject;
 import org.bouncycastle.asn1.DERTaggedObject;
 import org.bouncycastle.asn1.x509.RSAPublicKeyStructure;
 import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.opensc.pkcs15.asn1.Context;
+import org.opensc.pkcs15.asn1.proxy.InstanceFactory;
 
 /**
  * <PRE>
@@ -46,6 +48,17 @@ import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
  * @author wglas
  */
 public class RSAPublicKeyChoice implements RSAPublicKeyObject {
+
+    /**
+     * The typed decoder of this class.
+     */
+    public static final InstanceFactory<RSAPublicKeyObject> FACTORY =
+        new InstanceFactory<RSAPublicKeyObject>(RSAPublicKeyChoice.class) {
+            @Override
+            public RSAPublicKeyObject getInstance(Object obj, Context context) {
+                return RSAPublicKeyChoice.getInstance(obj);
+            }
+        };
     
     private static final long serialVersionUID = -2447991123936660233L;
 
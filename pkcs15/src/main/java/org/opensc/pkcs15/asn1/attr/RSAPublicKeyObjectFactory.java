@@ -35,7 +35,7 @@ import org.opensc.pkcs15.asn1.ref.Path;
 public abstract class RSAPublicKeyObjectFactory {
     
     private static ObjectValueFactory<RSAPublicKeyObject> factory
-    = new ObjectValueFactory<RSAPublicKeyObject>(RSAPublicKeyObject.class,RSAPublicKeyChoice.class);
+    = new ObjectValueFactory<RSAPublicKeyObject>(RSAPublicKeyObject.class,RSAPublicKeyChoice.FACTORY);
 
     /**
      * @param obj An ASN.1 object to resolve.
@@ -75,8 +75,16 @@ public class X509CertificateAttributes extends ASN1Encodable implements Specific
      */
     public static X509CertificateAttributes getInstance (Object obj)
     {
-        Context context = ContextHolder.getContext();
-        
+        return getInstance(obj,ContextHolder.getContext());
+    }
+    
+    /**
+     * @param obj The ASN.1 object to decode.
+     * @param context The context used to resolve references.
+     * @return An instance of CommonPublicKeyAttributes.
+     */
+    public static X509CertificateAttributes getInstance (Object obj, Context context)
+    {
         Directory<Path, X509CertificateObject> directory =
             context == null ? null : context.getX509CertificateDirectory();
         
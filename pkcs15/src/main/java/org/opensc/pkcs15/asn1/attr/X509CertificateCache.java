@@ -0,0 +1,228 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.asn1.attr;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.bouncycastle.asn1.x509.X509CertificateStructure;
+import org.opensc.pkcs15.asn1.helper.DERView;
+import org.opensc.pkcs15.util.Util;
+
+/**
+ * A size-bounded cache of decoded X.509 certificates keyed by the SHA-256
+ * digest of their DER encoding.
+ * 
+ * Identical certificates stored on many tokens, e.g. the certificates of
+ * intermediate CAs, share a single decoded instance. The least recently
+ * used certificates are evicted first. The process-wide instance used by
+ * {@link X509CertificateObjectImpl} is returned by {@link #getDefault()}.
+ * 
+ * @author wglas
+ */
+public class X509CertificateCache {
+
+    /**
+     * The default maximal number of certificates held in the cache.
+     */
+    public static final int DEFAULT_MAX_SIZE = 256;
+    
+    private static final X509CertificateCache defaultCache =
+        new X509CertificateCache(DEFAULT_MAX_SIZE);
+    
+    private final LinkedHashMap<String,X509Certificate> cache;
+    private volatile int maxSize;
+    private long hits;
+    private long misses;
+    
+    /**
+     * @param maxSize The maximal number of certificates held in the cache.
+     */
+    public X509CertificateCache(int maxSize) {
+        
+        if (maxSize < 0)
+            throw new IllegalArgumentException("Negative cache size ["+maxSize+"].");
+        
+        this.cache = new LinkedHashMap<String,X509Certificate>(16,0.75f,true);
+        this.maxSize = maxSize;
+    }
+    
+    /**
+     * @return The process-wide certificate cache.
+     */
+    public static X509CertificateCache getDefault() {
+        return defaultCache;
+    }
+    
+    private static MessageDigest newDigest() {
+        
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by the JCE.",e);
+        }
+    }
+    
+    /**
+     * Return the decoded certificate for the given structure. If an identical
+     * certificate has been decoded before, the cached instance is returned.
+     * 
+     * @param cert The ASN.1 structure of the certificate.
+     * @return The decoded certificate.
+     * @throws CertificateParsingException If the certificate cannot be decoded.
+     */
+    public X509Certificate getCertificate(X509CertificateStructure cert) throws CertificateParsingException {
+        
+        String key = Util.asHex(newDigest().digest(cert.getDEREncoded()));
+        
+        X509Certificate ret = this.lookup(key);
+        
+        if (ret != null) return ret;
+        
+        return this.store(key,new org.bouncycastle.jce.provider.X509CertificateObject(cert));
+    }
+    
+    /**
+     * Return the decoded certificate for the given view of its DER encoding.
+     * The certificate is decoded only, if no identical certificate
+     * has been cached before.
+     * 
+     * @param view A view of the DER encoded certificate.
+     * @return The decoded certificate.
+     * @throws CertificateParsingException If the certificate cannot be decoded.
+     */
+    public X509Certificate getCertificate(DERView view) throws CertificateParsingException {
+        
+        MessageDigest md = newDigest();
+        view.updateDigest(md);
+        
+        String key = Util.asHex(md.digest());
+        
+        X509Certificate ret = this.lookup(key);
+        
+        if (ret != null) return ret;
+        
+        X509CertificateStructure cert;
+        
+        try {
+            cert = X509CertificateStructure.getInstance(view.getDERObject());
+        } catch (IllegalArgumentException e) {
+            throw new CertificateParsingException(e.toString());
+        }
+        
+        return this.store(key,new org.bouncycastle.jce.provider.X509CertificateObject(cert));
+    }
+    
+    private synchronized X509Certificate lookup(String key) {
+        
+        X509Certificate ret = this.cache.get(key);
+        
+        if (ret != null)
+            ++this.hits;
+        else
+            ++this.misses;
+        
+        return ret;
+    }
+    
+    private synchronized X509Certificate store(String key, X509Certificate decoded) {
+        
+        // decoding happens outside of the lock, a concurrent decoding of the
+        // same certificate is resolved in favor of the first cached instance.
+        X509Certificate ret = this.cache.get(key);
+        
+        if (ret != null) return ret;
+        
+        if (this.maxSize > 0) {
+            
+            this.cache.put(key,decoded);
+            this.evict();
+        }
+        
+        return decoded;
+    }
+    
+    private void evict() {
+        
+        Iterator<X509Certificate> it = this.cache.values().iterator();
+        
+        while (this.cache.size() > this.maxSize && it.hasNext()) {
+            
+            it.next();
+            it.remove();
+        }
+    }
+    
+    /**
+     * Drop all cached certificates.
+     */
+    public synchronized void clear() {
+        this.cache.clear();
+    }
+    
+    /**
+     * @return The number of certificates currently held in the cache.
+     */
+    public synchronized int size() {
+        return this.cache.size();
+    }
+    
+    /**
+     * @return The maximal number of certificates held in the cache.
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+    
+    /**
+     * @param maxSize The maximal number of certificates held in the cache.
+     *                A size of 0 disables caching.
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        
+        if (maxSize < 0)
+            throw new IllegalArgumentException("Negative cache size ["+maxSize+"].");
+        
+        this.maxSize = maxSize;
+        this.evict();
+    }
+    
+    /**
+     * @return The number of lookups, which returned a cached certificate.
+     */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+    
+    /**
+     * @return The number of lookups, which had to decode the certificate.
+     */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+}
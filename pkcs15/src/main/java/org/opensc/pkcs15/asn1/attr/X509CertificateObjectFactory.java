@@ -35,7 +35,7 @@ import org.opensc.pkcs15.asn1.ref.Path;
 public abstract class X509CertificateObjectFactory {
     
     private static ObjectValueFactory<X509CertificateObject> factory
-    = new ObjectValueFactory<X509CertificateObject>(X509CertificateObject.class,X509CertificateObjectImpl.class);
+    = new ObjectValueFactory<X509CertificateObject>(X509CertificateObject.class,X509CertificateObjectImpl.FACTORY);
 
     /**
      * @param obj An ASN.1 object to resolve.
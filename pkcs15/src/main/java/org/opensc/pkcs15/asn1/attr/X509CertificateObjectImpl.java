@@ -35,16 +35,34 @@ import org.bouncycastle.asn1.x509.TBSCertificateStructure;
 import org.bouncycastle.asn1.x509.Time;
 import org.bouncycastle.asn1.x509.X509CertificateStructure;
 import org.bouncycastle.asn1.x509.X509Name;
+import org.opensc.pkcs15.asn1.Context;
+import org.opensc.pkcs15.asn1.proxy.InstanceFactory;
 
 /**
  * This is an adapter for mapping bouncycastle's X509CertificateStructure to
  * out interface X509CertificateObject.
  * 
+ * The decoded certificate returned by {@link #getX509Certificate()} is
+ * memoized per instance and shared with identical certificates through
+ * the {@link X509CertificateCache}.
+ * 
  * @author wglas
  */
 public class X509CertificateObjectImpl implements X509CertificateObject {
+
+    /**
+     * The typed decoder of this class.
+     */
+    public static final InstanceFactory<X509CertificateObject> FACTORY =
+        new InstanceFactory<X509CertificateObject>(X509CertificateObjectImpl.class) {
+            @Override
+            public X509CertificateObject getInstance(Object obj, Context context) {
+                return X509CertificateObjectImpl.getInstance(obj);
+            }
+        };
     
     private final X509CertificateStructure delegate;
+    private volatile X509Certificate certificate;
     
     /**
      * @param delegate The bouncycastle ASN.1 object to wrap.
@@ -159,7 +177,16 @@ public class X509CertificateObjectImpl implements X509CertificateObject {
      */
     @Override
     public X509Certificate getX509Certificate() throws CertificateParsingException {
-        return new org.bouncycastle.jce.provider.X509CertificateObject(this.delegate);
+        
+        X509Certificate ret = this.certificate;
+        
+        if (ret == null) {
+            
+            ret = X509CertificateCache.getDefault().getCertificate(this.delegate);
+            this.certificate = ret;
+        }
+        
+        return ret;
     }
 
     /* (non-Javadoc)
@@ -0,0 +1,229 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.asn1.attr;
+
+import java.security.cert.Certificate;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+
+import org.bouncycastle.asn1.DERBitString;
+import org.bouncycastle.asn1.DERInteger;
+import org.bouncycastle.asn1.DERObject;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.asn1.x509.TBSCertificateStructure;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.asn1.x509.X509CertificateStructure;
+import org.bouncycastle.asn1.x509.X509Name;
+import org.opensc.pkcs15.asn1.Context;
+import org.opensc.pkcs15.asn1.helper.DERView;
+import org.opensc.pkcs15.asn1.proxy.InstanceFactory;
+
+/**
+ * A read-only X.509 certificate object backed by a {@link DERView}
+ * of the encoded certificate.
+ * 
+ * The bouncycastle structure of the certificate is decoded upon the
+ * first call to one of the structural accessors. {@link #getX509Certificate()}
+ * looks up the certificate in the {@link X509CertificateCache} by the
+ * digest of the encoding and does not decode the structure at all, if an
+ * identical certificate has been decoded before.
+ * 
+ * @author wglas
+ */
+public class X509CertificateObjectView implements X509CertificateObject {
+
+    /**
+     * The typed decoder of this class, which accepts {@link DERView}
+     * instances and falls back to {@link X509CertificateObjectImpl} for
+     * all other ASN.1 objects.
+     */
+    public static final InstanceFactory<X509CertificateObject> FACTORY =
+        new InstanceFactory<X509CertificateObject>(X509CertificateObjectView.class) {
+            @Override
+            public X509CertificateObject getInstance(Object obj, Context context) {
+                return X509CertificateObjectView.getInstance(obj);
+            }
+        };
+    
+    private final DERView view;
+    private volatile X509CertificateStructure structure;
+    private volatile X509Certificate certificate;
+    
+    /**
+     * @param view The view of the encoded certificate.
+     */
+    public X509CertificateObjectView(DERView view)
+    {
+        if (!view.isConstructed() || !view.isUniversal())
+            throw new IllegalArgumentException("X509Certificate must be encoded as an ASN.1 SEQUENCE.");
+        
+        this.view = view;
+    }
+    
+    /**
+     * @param obj A {@link DERView} or an ASN.1 object to decode.
+     * @return An X509CertificateObject instance.
+     */
+    public static X509CertificateObject getInstance(Object obj)
+    {
+        if (obj instanceof X509CertificateObject)
+            return (X509CertificateObject) obj;
+        
+        if (obj instanceof DERView)
+            return new X509CertificateObjectView((DERView)obj);
+        
+        return X509CertificateObjectImpl.getInstance(obj);
+    }
+    
+    private X509CertificateStructure getStructure() {
+        
+        X509CertificateStructure ret = this.structure;
+        
+        if (ret == null) {
+            
+            ret = X509CertificateStructure.getInstance(this.view.getDERObject());
+            this.structure = ret;
+        }
+        
+        return ret;
+    }
+    
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.attr.X509CertificateObject#getEndDate()
+     */
+    @Override
+    public Time getEndDate() {
+        return this.getStructure().getEndDate();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.attr.X509CertificateObject#getIssuer()
+     */
+    @Override
+    public X509Name getIssuer() {
+        return this.getStructure().getIssuer();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.attr.X509CertificateObject#getSerialNumber()
+     */
+    @Override
+    public DERInteger getSerialNumber() {
+        return this.getStructure().getSerialNumber();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.attr.X509CertificateObject#getSignature()
+     */
+    @Override
+    public DERBitString getSignature() {
+        return this.getStructure().getSignature();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.attr.X509CertificateObject#getSignatureAlgorithm()
+     */
+    @Override
+    public AlgorithmIdentifier getSignatureAlgorithm() {
+        return this.getStructure().getSignatureAlgorithm();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.attr.X509CertificateObject#getStartDate()
+     */
+    @Override
+    public Time getStartDate() {
+        return this.getStructure().getStartDate();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.attr.X509CertificateObject#getSubject()
+     */
+    @Override
+    public X509Name getSubject() {
+        return this.getStructure().getSubject();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.attr.X509CertificateObject#getSubjectPublicKeyInfo()
+     */
+    @Override
+    public SubjectPublicKeyInfo getSubjectPublicKeyInfo() {
+        return this.getStructure().getSubjectPublicKeyInfo();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.attr.X509CertificateObject#getTBSCertificate()
+     */
+    @Override
+    public TBSCertificateStructure getTBSCertificate() {
+        return this.getStructure().getTBSCertificate();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.attr.X509CertificateObject#getVersion()
+     */
+    @Override
+    public int getVersion() {
+        return this.getStructure().getVersion();
+    }
+
+    /* (non-Javadoc)
+     * @see org.bouncycastle.asn1.DEREncodable#getDERObject()
+     */
+    @Override
+    public DERObject getDERObject() {
+        
+        X509CertificateStructure s = this.structure;
+        
+        return s != null ? s.getDERObject() : this.view.getDERObject();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.attr.X509CertificateObject#getX509Certificate()
+     */
+    @Override
+    public X509Certificate getX509Certificate() throws CertificateParsingException {
+        
+        X509Certificate ret = this.certificate;
+        
+        if (ret == null) {
+            
+            ret = X509CertificateCache.getDefault().getCertificate(this.view);
+            this.certificate = ret;
+        }
+        
+        return ret;
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.attr.CertificateObject#getCertificate()
+     */
+    @Override
+    public Certificate getCertificate() throws CertificateParsingException {
+        
+        return this.getX509Certificate();
+    }
+}
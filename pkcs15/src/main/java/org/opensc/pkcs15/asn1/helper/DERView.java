@@ -0,0 +1,402 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.asn1.helper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import org.bouncycastle.asn1.ASN1InputStream;
+import org.bouncycastle.asn1.DERObject;
+
+/**
+ * A read-only view of a DER encoded TLV inside of a byte buffer.
+ * 
+ * Unlike {@link ASN1InputStream}, a view does not build an object tree.
+ * Only the header of the TLV is parsed on construction, the members of a
+ * constructed TLV are indexed by their offsets on first access and share
+ * the buffer with their parent. The content is decoded only by the
+ * accessor methods like {@link #getBigInteger()}, which therefore copy
+ * just the bytes of the accessed field.
+ * 
+ * The buffer must not be modified while views on it are in use.
+ * 
+ * @author wglas
+ */
+public final class DERView {
+
+    private static final int[] EMPTY = new int[0];
+    
+    private final byte[] buffer;
+    private final int offset;
+    private final int identifier;
+    private final int tagNo;
+    private final int contentOffset;
+    private final int contentLength;
+    private volatile int[] memberOffsets;
+    
+    /**
+     * Parse the TLV header at the given offset.
+     * 
+     * @param buffer The backing buffer.
+     * @param offset The offset of the identifier octet.
+     * @param limit The end of the enclosing content.
+     */
+    private DERView(byte[] buffer, int offset, int limit) {
+        
+        if (offset < 0 || limit > buffer.length || offset >= limit)
+            throw new IllegalArgumentException("DER TLV at offset ["+offset+"] exceeds the buffer.");
+        
+        int pos = offset;
+        
+        this.buffer = buffer;
+        this.offset = offset;
+        this.identifier = buffer[pos++] & 0xff;
+        
+        int t = this.identifier & 0x1f;
+        
+        if (t == 0x1f) {
+            
+            // high tag number form.
+            t = 0;
+            int b;
+            
+            do {
+                if (pos >= limit || t > (Integer.MAX_VALUE >> 7))
+                    throw new IllegalArgumentException("Invalid DER tag at offset ["+offset+"].");
+                
+                b = buffer[pos++] & 0xff;
+                t = (t << 7) | (b & 0x7f);
+                
+            } while ((b & 0x80) != 0);
+        }
+        
+        this.tagNo = t;
+        
+        if (pos >= limit)
+            throw new IllegalArgumentException("Missing DER length at offset ["+offset+"].");
+        
+        int len = buffer[pos++] & 0xff;
+        
+        if (len == 0x80)
+            throw new IllegalArgumentException("Indefinite length at offset ["+offset+"] is not allowed in DER.");
+        
+        if (len > 0x80) {
+            
+            int nb = len & 0x7f;
+            
+            if (nb > 4 || pos + nb > limit)
+                throw new IllegalArgumentException("Invalid DER length at offset ["+offset+"].");
+            
+            len = 0;
+            
+            for (int i=0; i<nb; ++i)
+                len = (len << 8) | (buffer[pos++] & 0xff);
+            
+            if (len < 0)
+                throw new IllegalArgumentException("Invalid DER length at offset ["+offset+"].");
+        }
+        
+        if (len > limit - pos)
+            throw new IllegalArgumentException("DER content at offset ["+offset+"] exceeds the enclosing length.");
+        
+        this.contentOffset = pos;
+        this.contentLength = len;
+    }
+    
+    /**
+     * @param buffer A buffer, which starts with a DER encoded TLV.
+     * @return A view of the first TLV in the buffer.
+     */
+    public static DERView getInstance(byte[] buffer) {
+        
+        return new DERView(buffer,0,buffer.length);
+    }
+    
+    /**
+     * @param buffer The backing buffer.
+     * @param offset The offset of the TLV in the buffer.
+     * @param length The number of bytes available for the TLV.
+     * @return A view of the TLV at the given offset.
+     */
+    public static DERView getInstance(byte[] buffer, int offset, int length) {
+        
+        return new DERView(buffer,offset,offset+length);
+    }
+    
+    /**
+     * Read an InputStream into a single buffer and close the stream.
+     * 
+     * @param is The InputStream to read from.
+     * @return A view of the first TLV in the stream.
+     * @throws IOException upon read errors.
+     */
+    public static DERView readInstance(InputStream is) throws IOException {
+        
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[256];
+        int n;
+        
+        try {
+            while ((n=is.read(buf)) > 0)
+                bos.write(buf,0,n);
+        } finally {
+            is.close();
+        }
+        
+        return getInstance(bos.toByteArray());
+    }
+    
+    /**
+     * @return The identifier octet including the class and constructed bits.
+     */
+    public int getIdentifier() {
+        return this.identifier;
+    }
+    
+    /**
+     * @return The tag number without the class and constructed bits.
+     */
+    public int getTagNo() {
+        return this.tagNo;
+    }
+    
+    /**
+     * @return Whether this is a constructed TLV.
+     */
+    public boolean isConstructed() {
+        return (this.identifier & 0x20) != 0;
+    }
+    
+    /**
+     * @return Whether the tag is of the context-specific class.
+     */
+    public boolean isContextSpecific() {
+        return (this.identifier & 0xc0) == 0x80;
+    }
+    
+    /**
+     * @return Whether the tag is of the universal class.
+     */
+    public boolean isUniversal() {
+        return (this.identifier & 0xc0) == 0;
+    }
+    
+    /**
+     * @return The number of content bytes.
+     */
+    public int getContentLength() {
+        return this.contentLength;
+    }
+    
+    /**
+     * @return The number of bytes of the whole TLV.
+     */
+    public int getEncodedLength() {
+        return this.contentOffset + this.contentLength - this.offset;
+    }
+    
+    /**
+     * @return The offset of the TLV in the backing buffer.
+     */
+    public int getOffset() {
+        return this.offset;
+    }
+    
+    private int[] getMemberOffsets() {
+        
+        int[] ret = this.memberOffsets;
+        
+        if (ret != null) return ret;
+        
+        if (!this.isConstructed()) {
+            ret = EMPTY;
+        }
+        else {
+            
+            int[] offsets = new int[8];
+            int n = 0;
+            int pos = this.contentOffset;
+            int end = this.contentOffset + this.contentLength;
+            
+            while (pos < end) {
+                
+                if (n == offsets.length)
+                    offsets = Arrays.copyOf(offsets,n*2);
+                
+                offsets[n++] = pos;
+                
+                DERView member = new DERView(this.buffer,pos,end);
+                pos = member.contentOffset + member.contentLength;
+            }
+            
+            ret = Arrays.copyOf(offsets,n);
+        }
+        
+        // indexing is idempotent, so a concurrent indexing is harmless.
+        this.memberOffsets = ret;
+        return ret;
+    }
+    
+    /**
+     * @return The number of members of a constructed TLV or 0 for
+     *         a primitive TLV.
+     */
+    public int size() {
+        return this.getMemberOffsets().length;
+    }
+    
+    /**
+     * @param i The index of the member.
+     * @return A view of the member, which shares the backing buffer.
+     */
+    public DERView get(int i) {
+        
+        int[] offsets = this.getMemberOffsets();
+        
+        if (i < 0 || i >= offsets.length)
+            throw new IndexOutOfBoundsException("Member index ["+i+"] of DER TLV with ["+offsets.length+"] members.");
+        
+        return new DERView(this.buffer,offsets[i],this.contentOffset+this.contentLength);
+    }
+    
+    /**
+     * @param tagNo A context-specific tag number.
+     * @return The first member with the given context-specific tag or
+     *         <code>null</code>, if there is no such member.
+     */
+    public DERView getTagged(int tagNo) {
+        
+        int[] offsets = this.getMemberOffsets();
+        
+        for (int i=0; i<offsets.length; ++i) {
+            
+            DERView member = new DERView(this.buffer,offsets[i],this.contentOffset+this.contentLength);
+            
+            if (member.isContextSpecific() && member.tagNo == tagNo)
+                return member;
+        }
+        
+        return null;
+    }
+    
+    /**
+     * @return An InputStream over the content bytes, which does not copy
+     *         the backing buffer.
+     */
+    public InputStream getContentStream() {
+        
+        return new ByteArrayInputStream(this.buffer,this.contentOffset,this.contentLength);
+    }
+    
+    /**
+     * @return A copy of the content bytes.
+     */
+    public byte[] getContent() {
+        
+        return Arrays.copyOfRange(this.buffer,this.contentOffset,this.contentOffset+this.contentLength);
+    }
+    
+    /**
+     * @return A copy of the whole TLV.
+     */
+    public byte[] getEncoded() {
+        
+        return Arrays.copyOfRange(this.buffer,this.offset,this.contentOffset+this.contentLength);
+    }
+    
+    /**
+     * @param os The stream to write the whole TLV to.
+     * @throws IOException upon write errors.
+     */
+    public void writeEncoded(OutputStream os) throws IOException {
+        
+        os.write(this.buffer,this.offset,this.getEncodedLength());
+    }
+    
+    /**
+     * Pass the whole TLV to a message digest without copying it.
+     * 
+     * @param md The digest to update.
+     */
+    public void updateDigest(MessageDigest md) {
+        
+        md.update(this.buffer,this.offset,this.getEncodedLength());
+    }
+    
+    /**
+     * Decode the content as an INTEGER. An explicitly tagged INTEGER
+     * is decoded from the single member of the tagged TLV.
+     * 
+     * @return The value of the INTEGER.
+     */
+    public BigInteger getBigInteger() {
+        
+        if (this.isConstructed()) {
+            
+            if (this.size() != 1)
+                throw new IllegalArgumentException("Tagged DER INTEGER at offset ["+this.offset+"] must have exactly one member.");
+            
+            return this.get(0).getBigInteger();
+        }
+        
+        if (this.contentLength == 0)
+            throw new IllegalArgumentException("Empty DER INTEGER at offset ["+this.offset+"].");
+        
+        return new BigInteger(this.getContent());
+    }
+    
+    /**
+     * Decode this TLV using bouncycastle's {@link ASN1InputStream}.
+     * 
+     * @return The bouncycastle object tree of this TLV.
+     */
+    public DERObject getDERObject() {
+        
+        try {
+            ASN1InputStream ais = new ASN1InputStream(
+                    new ByteArrayInputStream(this.buffer,this.offset,this.getEncodedLength()));
+            
+            return ais.readObject();
+            
+        } catch (IOException e) {
+            throw new IllegalArgumentException("DER TLV at offset ["+this.offset+"] cannot be decoded.",e);
+        }
+    }
+    
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        
+        return "DERView[identifier=0x"+Integer.toHexString(this.identifier)+
+            ",tagNo="+this.tagNo+",length="+this.contentLength+"]";
+    }
+}
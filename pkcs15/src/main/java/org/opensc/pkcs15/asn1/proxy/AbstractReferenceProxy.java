@@ -0,0 +1,302 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+package org.opensc.pkcs15.asn1.proxy;
+
+import org.bouncycastle.asn1.DEREncodable;
+import org.bouncycastle.asn1.DERObject;
+import org.opensc.pkcs15.asn1.Context;
+import org.opensc.pkcs15.asn1.ContextHolder;
+
+/**
+ * The common base class of the lazy references returned by
+ * {@link ReferenceProxyFactory}.
+ * 
+ * The reference is resolved by means of the directory upon the first call
+ * to a method of the entity interface, which is implemented by subclasses
+ * by delegating to {@link #resolveEntity()}. A reference is serialized as
+ * the original reference and not as the content of the referenced entity.
+ * 
+ * Resolution is thread-safe and single-flight: if several threads access
+ * an unresolved reference, only one of them calls the directory, while the
+ * others wait for and share its result or its failure. Whether a failed
+ * resolution is retried by later calls is controlled by the failure cache
+ * time passed in by {@link ReferenceProxyFactory}.
+ * 
+ * @param <ReferenceType> The type of the reference.
+ * @param <EntityType> The interface of the referenced entity.
+ * 
+ * @author wglas
+ */
+public abstract class AbstractReferenceProxy<ReferenceType extends DEREncodable,EntityType extends DEREncodable>
+implements ReferenceProxy<EntityType> {
+
+    private final ReferenceType reference;
+    private final String entityName;
+    private final Directory<ReferenceType,EntityType> directory;
+    private final Context context;
+    private volatile EntityType resolvedEntity;
+    private volatile long failureCacheMillis;
+    
+    // the following fields are guarded by this.
+    private boolean resolving;
+    private int generation;
+    private RuntimeException failure;
+    private int failureGeneration;
+    private long failureTime;
+    private int updateCount;
+    
+    /**
+     * @param reference The reference to resolve.
+     * @param entityName The name of the entity interface used in messages.
+     * @param directory The directory used for dereferencing the reference.
+     */
+    protected AbstractReferenceProxy(ReferenceType reference, String entityName,
+            Directory<ReferenceType,EntityType> directory)
+    {
+        this.reference = reference;
+        this.entityName = entityName;
+        this.directory = directory;
+        // save the context, because proxy dereference might be undertaken
+        // at a later moment. It is passed to directories, which do not
+        // carry their own context, see ContextDirectory.
+        this.context = ContextHolder.getContext();
+    }
+    
+    /**
+     * @param failureCacheMillis The time in milliseconds, during which a
+     *           failed resolution is rethrown without calling the directory
+     *           again. 0 means to retry on each call, a negative value
+     *           means to never retry.
+     */
+    public void setFailureCacheMillis(long failureCacheMillis) {
+        this.failureCacheMillis = failureCacheMillis;
+    }
+    
+    /**
+     * @return The time in milliseconds, during which a failed resolution
+     *         is rethrown without calling the directory again.
+     */
+    public long getFailureCacheMillis() {
+        return this.failureCacheMillis;
+    }
+    
+    /**
+     * @return The reference, which is resolved by this proxy.
+     */
+    public ReferenceType getReference() {
+        return this.reference;
+    }
+    
+    /**
+     * @return The directory used for dereferencing the reference.
+     */
+    protected Directory<ReferenceType,EntityType> getDirectory() {
+        return this.directory;
+    }
+    
+    /**
+     * @return The context, which was registered when this proxy has
+     *         been created.
+     */
+    protected Context getContext() {
+        return this.context;
+    }
+    
+    /**
+     * @return Whether the reference has already been resolved successfully.
+     */
+    public boolean isResolved() {
+        return this.resolvedEntity != null;
+    }
+    
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.proxy.ReferenceProxy#resolveEntity()
+     */
+    @Override
+    public EntityType resolveEntity() {
+        
+        EntityType ret = this.resolvedEntity;
+        
+        if (ret != null) return ret;
+        
+        if (this.directory == null)
+            throw new IllegalArgumentException("Try to resolve a proxy with directory specified.");
+        
+        synchronized (this) {
+            
+            while (true) {
+                
+                if (this.resolvedEntity != null)
+                    return this.resolvedEntity;
+                
+                if (this.failure != null && this.isFailureCached())
+                    throw this.rethrowFailure();
+                
+                if (!this.resolving) break;
+                
+                // wait for the resolution in progress and share its result.
+                int gen = this.generation;
+                
+                try {
+                    while (this.resolving && this.generation == gen)
+                        this.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the resolution of reference ["+this.reference+"].",e);
+                }
+                
+                if (this.resolvedEntity != null)
+                    return this.resolvedEntity;
+                
+                if (this.failure != null && this.failureGeneration == gen)
+                    throw this.rethrowFailure();
+            }
+            
+            this.resolving = true;
+        }
+        
+        RuntimeException error = null;
+        
+        try {
+            ret = this.resolve();
+            
+            if (ret == null)
+                error = new IllegalArgumentException("The reference ["+this.reference+"] could not be resolved.");
+            
+        } catch (RuntimeException e) {
+            error = e;
+        } finally {
+            this.finishResolution(ret,error);
+        }
+        
+        if (error != null)
+            throw error;
+        
+        return ret;
+    }
+    
+    private synchronized void finishResolution(EntityType entity, RuntimeException error) {
+        
+        if (entity != null && error == null) {
+            this.resolvedEntity = entity;
+            this.failure = null;
+        }
+        else {
+            // error is null, if the directory threw an Error.
+            this.failure = error != null ? error :
+                new IllegalStateException("Resolution of reference ["+this.reference+"] aborted.");
+            this.failureGeneration = this.generation;
+            this.failureTime = System.currentTimeMillis();
+        }
+        
+        this.resolving = false;
+        ++this.generation;
+        this.notifyAll();
+    }
+    
+    private EntityType resolve() {
+        
+        if (this.context != null && this.directory instanceof ContextDirectory<?,?>) {
+            
+            @SuppressWarnings("unchecked")
+            ContextDirectory<ReferenceType,EntityType> d =
+                (ContextDirectory<ReferenceType,EntityType>)this.directory;
+            
+            return d.resolveReference(this.reference,this.context);
+        }
+        
+        return this.directory.resolveReference(this.reference);
+    }
+    
+    private boolean isFailureCached() {
+        
+        long millis = this.failureCacheMillis;
+        
+        if (millis < 0) return true;
+        if (millis == 0) return false;
+        
+        return System.currentTimeMillis() - this.failureTime < millis;
+    }
+    
+    private RuntimeException rethrowFailure() {
+        
+        return new IllegalArgumentException("Resolution of reference ["+this.reference+"] failed: "+this.failure.getMessage(),this.failure);
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.proxy.ReferenceProxy#updateEntity()
+     */
+    @Override
+    public void updateEntity() {
+        
+        this.directory.updateEntity(this.reference,this.resolveEntity());
+        
+        synchronized (this) {
+            ++this.updateCount;
+        }
+    }
+    
+    /**
+     * @return The number of successful calls to {@link #updateEntity()}
+     *         on this proxy, which allows callers to detect, that the
+     *         referenced entity has been written back.
+     */
+    public synchronized int getUpdateCount() {
+        return this.updateCount;
+    }
+
+    /* (non-Javadoc)
+     * @see org.bouncycastle.asn1.DEREncodable#getDERObject()
+     */
+    @Override
+    public DERObject getDERObject() {
+        
+        // A proxy is serialized by its original reference.
+        return this.reference.getDERObject();
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return this.resolveEntity().hashCode();
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return this.resolveEntity().equals(obj);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        
+        return "Reference{"+this.entityName+"}["+this.reference+"]";
+    }
+}
@@ -0,0 +1,46 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.asn1.proxy;
+
+import org.bouncycastle.asn1.DEREncodable;
+import org.opensc.pkcs15.asn1.Context;
+
+/**
+ * A directory, which decodes the resolved entities using a context
+ * supplied by the caller, if the directory has not been constructed
+ * with a context of its own.
+ * 
+ * @author wglas
+ */
+public interface ContextDirectory<ReferenceType extends DEREncodable, EntityType extends DEREncodable>
+extends Directory<ReferenceType, EntityType> {
+
+    /**
+     * @param ref The reference to resolve.
+     * @param context The context used for decoding the entity, if this
+     *                directory does not carry a context of its own.
+     * @return The resolved entity or null, of the reference could not be resolved. 
+     */
+    EntityType resolveReference(ReferenceType ref, Context context);
+}
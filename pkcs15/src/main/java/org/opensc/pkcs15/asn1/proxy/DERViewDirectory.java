@@ -0,0 +1,112 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.asn1.proxy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.bouncycastle.asn1.ASN1OutputStream;
+import org.bouncycastle.asn1.DEREncodable;
+import org.opensc.pkcs15.asn1.Context;
+import org.opensc.pkcs15.asn1.helper.DERView;
+
+/**
+ * An adapter for using a StreamResolver as a Directory, which reads each
+ * referenced stream into a single buffer and passes a {@link DERView}
+ * of it to the instance factory instead of a bouncycastle object tree.
+ * 
+ * The instance factory has to accept {@link DERView} instances, like the
+ * <code>FACTORY</code> members of the view-based implementations
+ * {@link org.opensc.pkcs15.asn1.attr.RSAPrivateKeyObjectView} and
+ * {@link org.opensc.pkcs15.asn1.attr.X509CertificateObjectView}.
+ * 
+ * @author wglas
+ */
+public class DERViewDirectory<ReferenceType extends DEREncodable, EntityType extends DEREncodable> implements Directory<ReferenceType, EntityType> {
+
+    private final StreamResolver<ReferenceType> streamResolver;
+    private final InstanceFactory<EntityType> instanceFactory;
+    private final Context context;
+    
+    /**
+     * @param streamResolver The resolver used to open the referenced streams.
+     * @param instanceFactory The typed factory, which decodes the views.
+     * @param context The context passed to the instance factory.
+     */
+    public DERViewDirectory(StreamResolver<ReferenceType> streamResolver,
+            InstanceFactory<EntityType> instanceFactory, Context context) {
+        
+        this.streamResolver = streamResolver;
+        this.instanceFactory = instanceFactory;
+        this.context = context;
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.proxy.Directory#resolveReference(org.bouncycastle.asn1.DEREncodable)
+     */
+    @Override
+    public EntityType resolveReference(ReferenceType ref) {
+        
+        try {
+            DERView view = DERView.readInstance(this.streamResolver.readReference(ref));
+            
+            return this.instanceFactory.getInstance(view,this.context);
+            
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Reference ["+ref+"] cannot be read.",e);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.proxy.Directory#updateEntity(org.bouncycastle.asn1.DEREncodable, org.bouncycastle.asn1.DEREncodable)
+     */
+    @Override
+    public void updateEntity(ReferenceType ref, EntityType entity) {
+        
+        try {
+            OutputStream os = this.streamResolver.writeReference(ref);
+            ASN1OutputStream aos = new ASN1OutputStream(os);
+            
+            aos.writeObject(entity);
+            aos.close();
+            
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Reference ["+ref+"] cannot be written.",e);
+        }
+    }
+    
+    /**
+     * @return the streamResolver
+     */
+    public StreamResolver<ReferenceType> getStreamResolver() {
+        return this.streamResolver;
+    }
+
+    /**
+     * @return the instanceFactory
+     */
+    public InstanceFactory<EntityType> getInstanceFactory() {
+        return this.instanceFactory;
+    }
+}
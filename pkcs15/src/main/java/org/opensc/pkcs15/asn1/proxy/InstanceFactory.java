@@ -22,81 +22,76 @@
 
 package org.opensc.pkcs15.asn1.proxy;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 
 import org.opensc.pkcs15.asn1.Context;
 import org.opensc.pkcs15.asn1.ContextHolder;
 
 /**
- * This class helps to instantiate ASN1 class by their
- * <code>static getInstance(Object)</code> method.  
+ * This class decodes ASN.1 objects to instances of a given type.
+ * 
+ * ASN.1 classes, which are decoded by {@link org.opensc.pkcs15.asn1.sequence.SequenceOfFactory}
+ * or by directories, provide a public static <code>FACTORY</code> member,
+ * which is an anonymous subclass calling the static
+ * <code>getInstance(Object)</code> method of the class directly.
+ * Classes without such a member may still be decoded by a
+ * {@link ReflectiveInstanceFactory}.
+ * 
+ * The context used to resolve references is passed explicitly to
+ * {@link #getInstance(Object, Context)}. {@link #getInstance(Object)}
+ * is retained for compatibility and takes the context from the
+ * {@link ContextHolder}.
+ * 
+ * Code, which used to construct an instance factory for a class, may
+ * call the deprecated {@link #forClass(Class)} instead.
  * 
  * @author wglas
  */
-public class InstanceFactory<T> {
+public abstract class InstanceFactory<T> {
 
     private final Class<?> clazz;
-    private final Method getInstanceMethod;
     
     /**
-     * @param clazz The ASN.1 class on which the static <code>getInstace(Object)</code> method is
-     *              is invoked. Note, that this might be the class of an actual implementation
+     * @param clazz The ASN.1 class, which is decoded by this factory.
+     *              This might be the class of an actual implementation
      *              or a factory class, if T is an interface.
      */
-    public InstanceFactory (Class<?> clazz)
+    protected InstanceFactory (Class<?> clazz)
     {
         this.clazz = clazz;
-     
-        try {
-            this.getInstanceMethod = this.clazz.getMethod("getInstance",Object.class);
-            
-            if (!Modifier.isStatic(this.getInstanceMethod .getModifiers()) ||
-                    !Modifier.isPublic(this.getInstanceMethod .getModifiers()) )
-                throw new IllegalArgumentException("Method ["+clazz.getName()+".getInstance(Object)] is not static public.");
-            
-        } catch (NoSuchMethodException e) {
-            throw new IllegalArgumentException("Class ["+clazz.getName()+"] has no static getInstance(Object) method.",e);
-        }
     }
     
+    /**
+     * @param clazz The ASN.1 class on which the static <code>getInstace(Object)</code> method is
+     *              is invoked. Note, that this might be the class of an actual implementation
+     *              or a factory class, if T is an interface.
+     * @return A {@link ReflectiveInstanceFactory} for the given class.
+     * 
+     * @deprecated Use the <code>FACTORY</code> member of the ASN.1 class or
+     *             construct a {@link ReflectiveInstanceFactory}.
+     */
+    @Deprecated
+    public static <T> InstanceFactory<T> forClass(Class<?> clazz)
+    {
+        return new ReflectiveInstanceFactory<T>(clazz);
+    }
     
     /**
      * @param obj An ASN.1 object.
+     * @param context The context used to resolve references, which
+     *                may be <code>null</code> for context-free objects.
      * @return A parsed instance of type T.
      */
-    public T getInstance(Object obj)
-    {
-        try {
-            return (T)this.getInstanceMethod.invoke(null,obj);
-        } catch (InvocationTargetException e) {
-            
-            if (e.getCause() instanceof RuntimeException)
-                throw (RuntimeException)e.getCause();
-            
-            throw new IllegalArgumentException("Method ["+this.getInstanceMethod+"] has thrown an checked exception.",e);
-            
-        } catch (IllegalAccessException e) {
-            
-            throw new IllegalArgumentException("Illegal access to method ["+this.getInstanceMethod+"].",e);
-        }
-    }
+    public abstract T getInstance(Object obj, Context context);
 
     /**
      * @param obj An ASN.1 object.
-     * @return A parsed instance of type T.
+     * @return A parsed instance of type T using the context bound to the
+     *         current thread by {@link ContextHolder}.
      */
-    public T getInstance(Object obj, Context context)
+    public T getInstance(Object obj)
     {
-        ContextHolder.setContext(context);
-        
-        try
-        {
-            return this.getInstance(obj);
-        } finally {
-            ContextHolder.removeContext();
-        }
+        return this.getInstance(obj,ContextHolder.getContext());
     }
 
     /**
@@ -107,9 +102,14 @@ public class InstanceFactory<T> {
     }
 
     /**
-     * @return the getInstanceMethod
+     * @return The static <code>getInstance(Object)</code> method invoked by
+     *         a {@link ReflectiveInstanceFactory} or <code>null</code>, if this
+     *         factory decodes instances without reflection.
+     * 
+     * @deprecated Typed factories do not use reflection.
      */
+    @Deprecated
     public Method getGetInstanceMethod() {
-        return this.getInstanceMethod;
+        return null;
     }
 }
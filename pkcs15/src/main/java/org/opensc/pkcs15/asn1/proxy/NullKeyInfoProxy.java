@@ -0,0 +1,67 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+package org.opensc.pkcs15.asn1.proxy;
+
+import org.bouncycastle.asn1.DEREncodable;
+import org.bouncycastle.asn1.DERNull;
+import org.opensc.pkcs15.asn1.basic.NullKeyInfo;
+import org.opensc.pkcs15.asn1.basic.Operations;
+
+/**
+ * A lazy reference to a {@link NullKeyInfo}.
+ * 
+ * @author wglas
+ */
+public class NullKeyInfoProxy<ReferenceType extends DEREncodable>
+extends AbstractReferenceProxy<ReferenceType,NullKeyInfo>
+implements NullKeyInfo {
+
+    /**
+     * @param reference The reference to resolve.
+     * @param directory The directory used for dereferencing the reference.
+     */
+    public NullKeyInfoProxy(ReferenceType reference,
+            Directory<ReferenceType,NullKeyInfo> directory) {
+        super(reference,"NullKeyInfo",directory);
+    }
+
+    @Override
+    public DERNull getParameters() {
+        return this.resolveEntity().getParameters();
+    }
+
+    @Override
+    public void setParameters(DERNull parameters) {
+        this.resolveEntity().setParameters(parameters);
+    }
+
+    @Override
+    public Operations getSupportedOperations() {
+        return this.resolveEntity().getSupportedOperations();
+    }
+
+    @Override
+    public void setSupportedOperations(Operations supportedOperations) {
+        this.resolveEntity().setSupportedOperations(supportedOperations);
+    }
+}
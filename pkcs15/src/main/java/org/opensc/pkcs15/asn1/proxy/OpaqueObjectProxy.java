@@ -0,0 +1,56 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.asn1.proxy;
+
+import org.bouncycastle.asn1.DEREncodable;
+import org.opensc.pkcs15.asn1.attr.OpaqueObject;
+
+/**
+ * A lazy reference to an {@link OpaqueObject}.
+ * 
+ * @author wglas
+ */
+public class OpaqueObjectProxy<ReferenceType extends DEREncodable>
+extends AbstractReferenceProxy<ReferenceType,OpaqueObject>
+implements OpaqueObject {
+
+    /**
+     * @param reference The reference to resolve.
+     * @param directory The directory used for dereferencing the reference.
+     */
+    public OpaqueObjectProxy(ReferenceType reference,
+            Directory<ReferenceType,OpaqueObject> directory) {
+        super(reference,"OpaqueObject",directory);
+    }
+
+    @Override
+    public byte[] getData() {
+        return this.resolveEntity().getData();
+    }
+
+    @Override
+    public void setData(byte[] data) {
+        this.resolveEntity().setData(data);
+    }
+}
@@ -0,0 +1,104 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+package org.opensc.pkcs15.asn1.proxy;
+
+import java.math.BigInteger;
+
+import org.bouncycastle.asn1.DEREncodable;
+import org.opensc.pkcs15.asn1.attr.RSAPrivateKeyObject;
+
+/**
+ * A lazy reference to an {@link RSAPrivateKeyObject}.
+ * 
+ * @author wglas
+ */
+public class RSAPrivateKeyObjectProxy<ReferenceType extends DEREncodable>
+extends AbstractReferenceProxy<ReferenceType,RSAPrivateKeyObject>
+implements RSAPrivateKeyObject {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param reference The reference to resolve.
+     * @param directory The directory used for dereferencing the reference.
+     */
+    public RSAPrivateKeyObjectProxy(ReferenceType reference,
+            Directory<ReferenceType,RSAPrivateKeyObject> directory) {
+        super(reference,"RSAPrivateKeyObject",directory);
+    }
+
+    @Override
+    public BigInteger getCrtCoefficient() {
+        return this.resolveEntity().getCrtCoefficient();
+    }
+
+    @Override
+    public BigInteger getPrimeExponentP() {
+        return this.resolveEntity().getPrimeExponentP();
+    }
+
+    @Override
+    public BigInteger getPrimeExponentQ() {
+        return this.resolveEntity().getPrimeExponentQ();
+    }
+
+    @Override
+    public BigInteger getPrimeP() {
+        return this.resolveEntity().getPrimeP();
+    }
+
+    @Override
+    public BigInteger getPrimeQ() {
+        return this.resolveEntity().getPrimeQ();
+    }
+
+    @Override
+    public BigInteger getPublicExponent() {
+        return this.resolveEntity().getPublicExponent();
+    }
+
+    @Override
+    public BigInteger getPrivateExponent() {
+        return this.resolveEntity().getPrivateExponent();
+    }
+
+    @Override
+    public BigInteger getModulus() {
+        return this.resolveEntity().getModulus();
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return this.resolveEntity().getAlgorithm();
+    }
+
+    @Override
+    public byte[] getEncoded() {
+        return this.resolveEntity().getEncoded();
+    }
+
+    @Override
+    public String getFormat() {
+        return this.resolveEntity().getFormat();
+    }
+}
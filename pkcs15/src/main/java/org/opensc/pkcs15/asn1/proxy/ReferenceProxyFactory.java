@@ -22,110 +22,107 @@
 
 package org.opensc.pkcs15.asn1.proxy;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
-
 import org.bouncycastle.asn1.DEREncodable;
-import org.opensc.pkcs15.asn1.Context;
-import org.opensc.pkcs15.asn1.ContextHolder;
+import org.opensc.pkcs15.asn1.attr.OpaqueObject;
+import org.opensc.pkcs15.asn1.attr.RSAPrivateKeyObject;
+import org.opensc.pkcs15.asn1.attr.RSAPublicKeyObject;
+import org.opensc.pkcs15.asn1.attr.X509CertificateObject;
+import org.opensc.pkcs15.asn1.basic.NullKeyInfo;
+import org.opensc.pkcs15.asn1.sequence.SequenceOf;
 
 /**
  * A static factory for referenced entities.
  * 
+ * The returned proxies are instances of hand-written subclasses of
+ * {@link AbstractReferenceProxy}, one for each supported entity interface,
+ * which delegate the methods of the entity interface to the resolved entity
+ * without reflection.
+ * 
+ * Failed resolutions are not cached by default, so each access to a proxy,
+ * whose reference could not be resolved, calls the directory again. This
+ * may be changed for all factories by {@link #setDefaultFailureCacheMillis(long)}
+ * or for a single factory by {@link #setFailureCacheMillis(long)}.
+ * 
  * @author wglas
  */
 public class ReferenceProxyFactory<ReferenceType extends DEREncodable,EntityType extends DEREncodable> {
 
-    private static class DirectoryInvocationHandler<ReferenceType extends DEREncodable,EntityType extends DEREncodable>
-    implements InvocationHandler
-    {
-        private final ReferenceType reference;
-        private final String entityName;
-        private final Directory<ReferenceType,EntityType> directory;
-        private final Context context;
-        private EntityType resolvedEntity;
-        
-        DirectoryInvocationHandler(ReferenceType reference, String entityName,
-                Directory<ReferenceType,EntityType> directory)
-        {
-            this.reference = reference;
-            this.entityName = entityName;
-            this.directory = directory;
-            // save the context, because proxy dereference might be undertaken
-            // at a later moment.
-            this.context = ContextHolder.getContext();
-            this.resolvedEntity = null;
-        }
-        
-        @Override
-        public Object invoke(Object proxy, Method method, Object[] args)
-                throws Throwable {
-           
-            // A proxy is serialized by its original reference.
-            if (method.getParameterTypes().length == 0 &&
-                    method.getName().equals("getDERObject"))
-                return this.reference.getDERObject();
-            
-            if (method.getParameterTypes().length == 0 &&
-                    method.getName().equals("toString")) {
-                
-                return "Reference{"+this.entityName+"}["+this.reference+"]";
-            }
-
-            if (this.resolvedEntity == null) {
-                
-                if (this.directory == null)
-                    throw new IllegalArgumentException("Try to resolve a proxy with directory specified.");
-                
-                Context oldContext = null;
-                
-                if (this.context != null) {
-                    
-                    oldContext = ContextHolder.getContext();
-                    ContextHolder.setContext(this.context);
-                }
-                
-                try {
-                    this.resolvedEntity =
-                        this.directory.resolveReference(this.reference);
-                }
-                finally {
-                    
-                    if (this.context != null) {
-                        ContextHolder.removeContext();
-                        if (oldContext != null)
-                            ContextHolder.setContext(oldContext);
-                    }
-                }
-                
-                if (this.resolvedEntity == null)
-                    throw new IllegalArgumentException("The reference ["+this.reference+"] could not be resolved.");
-            }
-                
-            // Implement the marker interface ReferenceProxy#resolveEntity().
-            if (method.getParameterTypes().length == 0 &&
-                    method.getName().equals("resolveEntity"))
-                return this.resolvedEntity;
-            
-            // Implement the marker interface ReferenceProxy#updateEntity().
-            if (method.getParameterTypes().length == 0 &&
-                    method.getName().equals("updateEntity")) {
-                this.directory.updateEntity(this.reference,this.resolvedEntity);
-                return null;
-            }
-                
-            return method.invoke(this.resolvedEntity,args);
-        }
+    private static enum Kind {
+        X509_CERTIFICATE,
+        RSA_PUBLIC_KEY,
+        RSA_PRIVATE_KEY,
+        NULL_KEY_INFO,
+        OPAQUE_OBJECT,
+        SEQUENCE_OF
     }
     
-    private final Class<?>[] interfaces;
+    private static volatile long defaultFailureCacheMillis = 0L;
+    
+    private final Kind kind;
     private final Class<EntityType> entityInterface;
+    private volatile long failureCacheMillis;
     
+    /**
+     * @param entityInterface The interface implemented by the returned proxies.
+     * @throws IllegalArgumentException If no lazy reference class exists
+     *                    for the given interface.
+     */
     public ReferenceProxyFactory(Class<EntityType> entityInterface)
     {
-        this.interfaces = new Class<?>[] {entityInterface,ReferenceProxy.class};
+        if (entityInterface == X509CertificateObject.class)
+            this.kind = Kind.X509_CERTIFICATE;
+        else if (entityInterface == RSAPublicKeyObject.class)
+            this.kind = Kind.RSA_PUBLIC_KEY;
+        else if (entityInterface == RSAPrivateKeyObject.class)
+            this.kind = Kind.RSA_PRIVATE_KEY;
+        else if (entityInterface == NullKeyInfo.class)
+            this.kind = Kind.NULL_KEY_INFO;
+        else if (entityInterface == OpaqueObject.class)
+            this.kind = Kind.OPAQUE_OBJECT;
+        else if (entityInterface == SequenceOf.class)
+            this.kind = Kind.SEQUENCE_OF;
+        else
+            throw new IllegalArgumentException("No reference proxy implementation for interface ["+entityInterface.getName()+"].");
+        
         this.entityInterface = entityInterface;
+        this.failureCacheMillis = defaultFailureCacheMillis;
+    }
+    
+    /**
+     * @param millis The failure cache time of factories created afterwards.
+     * 
+     * @see #setFailureCacheMillis(long)
+     */
+    public static void setDefaultFailureCacheMillis(long millis)
+    {
+        defaultFailureCacheMillis = millis;
+    }
+    
+    /**
+     * @return The failure cache time of newly created factories.
+     */
+    public static long getDefaultFailureCacheMillis()
+    {
+        return defaultFailureCacheMillis;
+    }
+    
+    /**
+     * @param millis The time in milliseconds, during which proxies created
+     *           afterwards rethrow a failed resolution without calling the
+     *           directory again. 0 means to retry on each access,
+     *           a negative value means to never retry.
+     */
+    public void setFailureCacheMillis(long millis)
+    {
+        this.failureCacheMillis = millis;
+    }
+    
+    /**
+     * @return The failure cache time of proxies created by this factory.
+     */
+    public long getFailureCacheMillis()
+    {
+        return this.failureCacheMillis;
     }
     
     /**
@@ -137,14 +134,44 @@ public class ReferenceProxyFactory<ReferenceType extends DEREncodable,EntityType
      * @return An instance of EntityType, which delegates to a resolved entity. 
      * @throws IllegalArgumentException
      */
+    @SuppressWarnings("unchecked")
     public EntityType getProxy(ReferenceType reference, Directory<ReferenceType,EntityType> directory)
     throws IllegalArgumentException
     {
-        return (EntityType)
-        Proxy.newProxyInstance(ReferenceProxyFactory.class.getClassLoader(),
-                this.interfaces,
-                new DirectoryInvocationHandler<ReferenceType,EntityType>(reference,
-                        this.entityInterface.getSimpleName(),directory));
+        // EntityType is the interface selected by this.kind, so the
+        // directory resolves instances of the proxied interface.
+        Directory<ReferenceType,?> d = directory;
+        AbstractReferenceProxy<ReferenceType,?> proxy;
+        
+        switch (this.kind) {
+        
+        case X509_CERTIFICATE:
+            proxy = new X509CertificateObjectProxy<ReferenceType>(reference,
+                    (Directory<ReferenceType,X509CertificateObject>)d);
+            break;
+        case RSA_PUBLIC_KEY:
+            proxy = new RSAPublicKeyObjectProxy<ReferenceType>(reference,
+                    (Directory<ReferenceType,RSAPublicKeyObject>)d);
+            break;
+        case RSA_PRIVATE_KEY:
+            proxy = new RSAPrivateKeyObjectProxy<ReferenceType>(reference,
+                    (Directory<ReferenceType,RSAPrivateKeyObject>)d);
+            break;
+        case NULL_KEY_INFO:
+            proxy = new NullKeyInfoProxy<ReferenceType>(reference,
+                    (Directory<ReferenceType,NullKeyInfo>)d);
+            break;
+        case OPAQUE_OBJECT:
+            proxy = new OpaqueObjectProxy<ReferenceType>(reference,
+                    (Directory<ReferenceType,OpaqueObject>)d);
+            break;
+        default:
+            proxy = new SequenceOfProxy<ReferenceType,DEREncodable>(reference,
+                    (Directory<ReferenceType,SequenceOf<DEREncodable>>)d);
+        }
+        
+        proxy.setFailureCacheMillis(this.failureCacheMillis);
+        return (EntityType)proxy;
     }
     
     /**
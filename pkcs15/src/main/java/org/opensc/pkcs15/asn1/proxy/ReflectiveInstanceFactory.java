@@ -0,0 +1,129 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.asn1.proxy;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.opensc.pkcs15.asn1.Context;
+import org.opensc.pkcs15.asn1.ContextHolder;
+
+/**
+ * This class instantiates ASN.1 classes by invoking their
+ * <code>static getInstance(Object,Context)</code> or
+ * <code>static getInstance(Object)</code> method by reflection.
+ * 
+ * If the class only provides the latter, the context is bound to
+ * the {@link ContextHolder} for the duration of the call.
+ * 
+ * It is used for classes, which do not provide a typed <code>FACTORY</code>
+ * member, see {@link InstanceFactory}.
+ * 
+ * @author wglas
+ */
+public class ReflectiveInstanceFactory<T> extends InstanceFactory<T> {
+
+    private final Method getInstanceMethod;
+    private final Method getContextInstanceMethod;
+    
+    /**
+     * @param clazz The ASN.1 class on which the static <code>getInstace(Object)</code> method is
+     *              is invoked. Note, that this might be the class of an actual implementation
+     *              or a factory class, if T is an interface.
+     */
+    public ReflectiveInstanceFactory (Class<?> clazz)
+    {
+        super(clazz);
+     
+        try {
+            this.getInstanceMethod = clazz.getMethod("getInstance",Object.class);
+            
+            if (!Modifier.isStatic(this.getInstanceMethod .getModifiers()) ||
+                    !Modifier.isPublic(this.getInstanceMethod .getModifiers()) )
+                throw new IllegalArgumentException("Method ["+clazz.getName()+".getInstance(Object)] is not static public.");
+            
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Class ["+clazz.getName()+"] has no static getInstance(Object) method.",e);
+        }
+        
+        Method m;
+        
+        try {
+            m = clazz.getMethod("getInstance",Object.class,Context.class);
+            
+            if (!Modifier.isStatic(m.getModifiers()))
+                m = null;
+            
+        } catch (NoSuchMethodException e) {
+            m = null;
+        }
+        
+        this.getContextInstanceMethod = m;
+    }
+    
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.proxy.InstanceFactory#getInstance(java.lang.Object, org.opensc.pkcs15.asn1.Context)
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public T getInstance(Object obj, Context context)
+    {
+        try {
+            if (this.getContextInstanceMethod != null)
+                return (T)this.getContextInstanceMethod.invoke(null,obj,context);
+            
+            Context oldContext = ContextHolder.getContext();
+            ContextHolder.setContext(context);
+            
+            try {
+                return (T)this.getInstanceMethod.invoke(null,obj);
+            } finally {
+                if (oldContext == null)
+                    ContextHolder.removeContext();
+                else
+                    ContextHolder.setContext(oldContext);
+            }
+        } catch (InvocationTargetException e) {
+            
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            
+            throw new IllegalArgumentException("Method ["+this.getInstanceMethod+"] has thrown an checked exception.",e);
+            
+        } catch (IllegalAccessException e) {
+            
+            throw new IllegalArgumentException("Illegal access to method ["+this.getInstanceMethod+"].",e);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.proxy.InstanceFactory#getGetInstanceMethod()
+     */
+    @SuppressWarnings("deprecation")
+    @Override
+    public Method getGetInstanceMethod() {
+        return this.getInstanceMethod;
+    }
+}
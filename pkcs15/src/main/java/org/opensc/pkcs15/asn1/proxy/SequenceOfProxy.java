@@ -0,0 +1,95 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+package org.opensc.pkcs15.asn1.proxy;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.bouncycastle.asn1.DEREncodable;
+import org.opensc.pkcs15.asn1.sequence.SequenceOf;
+import org.opensc.pkcs15.asn1.sequence.SequenceOfStreamResolverDirectory;
+
+/**
+ * A lazy reference to a {@link SequenceOf}.
+ * 
+ * Iterating over an unresolved sequence, which is stored in a stream,
+ * decodes the members on demand and does not resolve this proxy.
+ * 
+ * @author wglas
+ */
+public class SequenceOfProxy<ReferenceType extends DEREncodable,EntityType extends DEREncodable>
+extends AbstractReferenceProxy<ReferenceType,SequenceOf<EntityType>>
+implements SequenceOf<EntityType> {
+
+    /**
+     * @param reference The reference to resolve.
+     * @param directory The directory used for dereferencing the reference.
+     */
+    public SequenceOfProxy(ReferenceType reference,
+            Directory<ReferenceType,SequenceOf<EntityType>> directory) {
+        super(reference,"SequenceOf",directory);
+    }
+
+    @Override
+    public List<EntityType> getSequence() {
+        return this.resolveEntity().getSequence();
+    }
+
+    @Override
+    public void setSequence(List<EntityType> sequence) {
+        this.resolveEntity().setSequence(sequence);
+    }
+
+    @Override
+    public void addEntity(EntityType e) {
+        this.resolveEntity().addEntity(e);
+    }
+
+    /**
+     * If this proxy has not been resolved yet and the sequence is stored in
+     * a stream, each call re-reads the EF and returns freshly decoded
+     * elements, which are not shared with the resolved sequence.
+     * Modifications of these elements are therefore lost, when
+     * {@link #updateEntity()} is called.
+     * 
+     * @return An iterator over the members of the sequence.
+     */
+    @Override
+    public Iterator<EntityType> iterator() {
+        
+        if (!this.isResolved() &&
+                this.getDirectory() instanceof SequenceOfStreamResolverDirectory<?,?>) {
+            
+            @SuppressWarnings("unchecked")
+            SequenceOfStreamResolverDirectory<ReferenceType,EntityType> d =
+                (SequenceOfStreamResolverDirectory<ReferenceType,EntityType>)this.getDirectory();
+            
+            if (d.getContext() != null)
+                return d.iterateReference(this.getReference());
+            
+            return d.iterateReference(this.getReference(),this.getContext());
+        }
+        
+        return this.resolveEntity().iterator();
+    }
+}
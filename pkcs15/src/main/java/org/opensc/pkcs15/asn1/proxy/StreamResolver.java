@@ -44,6 +44,12 @@ public interface StreamResolver<ReferenceType extends DEREncodable> {
     InputStream readReference(ReferenceType ref) throws IOException;
     
     /**
+     * Implementations may buffer the written data until the returned
+     * stream is closed, so the data is only guaranteed to be stored after
+     * a successful call to {@link OutputStream#close()}. Implementations
+     * must not hold resources like an exclusive card transaction beyond
+     * the calls of the returned stream.
+     * 
      * @param ref The reference to store to.
       * @return An OutputStream which writes to the resolved entity.
      */
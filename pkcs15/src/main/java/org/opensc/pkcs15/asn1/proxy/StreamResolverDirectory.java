@@ -27,29 +27,55 @@ import java.io.IOException;
 import org.bouncycastle.asn1.ASN1InputStream;
 import org.bouncycastle.asn1.ASN1OutputStream;
 import org.bouncycastle.asn1.DEREncodable;
+import org.opensc.pkcs15.asn1.Context;
 
 /**
  * An adapter for using a StreamResolver as a Directory.
  * 
  * @author wglas
  */
-public class StreamResolverDirectory<ReferenceType extends DEREncodable, EntityType extends DEREncodable> implements Directory<ReferenceType, EntityType> {
+public class StreamResolverDirectory<ReferenceType extends DEREncodable, EntityType extends DEREncodable> implements ContextDirectory<ReferenceType, EntityType> {
 
     private final StreamResolver<ReferenceType> streamResolver;
     private final InstanceFactory<EntityType> instanceFactory;
+    private final Context context;
     
+    /**
+     * Construct a directory, which decodes the entities by invoking the
+     * static <code>getInstance(Object)</code> method of a class by reflection.
+     * 
+     * @param streamResolver The resolver used to open the referenced streams.
+     * @param clazz The ASN.1 class which is instantiated.
+     */
     public StreamResolverDirectory(StreamResolver<ReferenceType> streamResolver,
             Class<?> clazz) {
         
-        this.streamResolver = streamResolver;
-        this.instanceFactory = new InstanceFactory<EntityType>(clazz);
+        this(streamResolver,new ReflectiveInstanceFactory<EntityType>(clazz),null);
     }
 
+    /**
+     * @param streamResolver The resolver used to open the referenced streams.
+     * @param instanceFactory The typed factory, which decodes the entities.
+     */
     public StreamResolverDirectory(StreamResolver<ReferenceType> streamResolver,
             InstanceFactory<EntityType> instanceFactory) {
         
+        this(streamResolver,instanceFactory,null);
+    }
+
+    /**
+     * @param streamResolver The resolver used to open the referenced streams.
+     * @param instanceFactory The typed factory, which decodes the entities.
+     * @param context The context passed to the instance factory or
+     *                <code>null</code> in order to use the context
+     *                registered by {@link org.opensc.pkcs15.asn1.ContextHolder}.
+     */
+    public StreamResolverDirectory(StreamResolver<ReferenceType> streamResolver,
+            InstanceFactory<EntityType> instanceFactory, Context context) {
+        
         this.streamResolver = streamResolver;
         this.instanceFactory = instanceFactory;
+        this.context = context;
     }
 
    /* (non-Javadoc)
@@ -58,11 +84,25 @@ public class StreamResolverDirectory<ReferenceType extends DEREncodable, EntityT
     @Override
     public EntityType resolveReference(ReferenceType ref) {
        
+        return this.resolveReference(ref,null);
+    }
+    
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.proxy.ContextDirectory#resolveReference(org.bouncycastle.asn1.DEREncodable, org.opensc.pkcs15.asn1.Context)
+     */
+    @Override
+    public EntityType resolveReference(ReferenceType ref, Context context) {
+       
+        Context ctx = this.context != null ? this.context : context;
+        
         try {
             
             ASN1InputStream ais = new ASN1InputStream(this.streamResolver.readReference(ref));
             
-            return this.instanceFactory.getInstance(ais.readObject());
+            if (ctx == null)
+                return this.instanceFactory.getInstance(ais.readObject());
+            
+            return this.instanceFactory.getInstance(ais.readObject(),ctx);
             
         } catch (IOException e) {
             throw new IllegalArgumentException("Reference ["+ref+"] cannot be read.",e);
@@ -93,6 +133,14 @@ public class StreamResolverDirectory<ReferenceType extends DEREncodable, EntityT
         return this.streamResolver;
     }
 
+    /**
+     * @return The context passed to the instance factory, which
+     *         might be <code>null</code>.
+     */
+    public Context getContext() {
+        return this.context;
+    }
+
     /**
      * @return the instanceFactory
      */
@@ -0,0 +1,116 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+package org.opensc.pkcs15.asn1.proxy;
+
+import java.security.cert.Certificate;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+
+import org.bouncycastle.asn1.DERBitString;
+import org.bouncycastle.asn1.DEREncodable;
+import org.bouncycastle.asn1.DERInteger;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.asn1.x509.TBSCertificateStructure;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.asn1.x509.X509Name;
+import org.opensc.pkcs15.asn1.attr.X509CertificateObject;
+
+/**
+ * A lazy reference to an {@link X509CertificateObject}.
+ * 
+ * @author wglas
+ */
+public class X509CertificateObjectProxy<ReferenceType extends DEREncodable>
+extends AbstractReferenceProxy<ReferenceType,X509CertificateObject>
+implements X509CertificateObject {
+
+    /**
+     * @param reference The reference to resolve.
+     * @param directory The directory used for dereferencing the reference.
+     */
+    public X509CertificateObjectProxy(ReferenceType reference,
+            Directory<ReferenceType,X509CertificateObject> directory) {
+        super(reference,"X509CertificateObject",directory);
+    }
+
+    @Override
+    public X509Certificate getX509Certificate() throws CertificateParsingException {
+        return this.resolveEntity().getX509Certificate();
+    }
+
+    @Override
+    public Certificate getCertificate() throws CertificateParsingException {
+        return this.resolveEntity().getCertificate();
+    }
+
+    @Override
+    public TBSCertificateStructure getTBSCertificate() {
+        return this.resolveEntity().getTBSCertificate();
+    }
+
+    @Override
+    public int getVersion() {
+        return this.resolveEntity().getVersion();
+    }
+
+    @Override
+    public DERInteger getSerialNumber() {
+        return this.resolveEntity().getSerialNumber();
+    }
+
+    @Override
+    public X509Name getIssuer() {
+        return this.resolveEntity().getIssuer();
+    }
+
+    @Override
+    public Time getStartDate() {
+        return this.resolveEntity().getStartDate();
+    }
+
+    @Override
+    public Time getEndDate() {
+        return this.resolveEntity().getEndDate();
+    }
+
+    @Override
+    public X509Name getSubject() {
+        return this.resolveEntity().getSubject();
+    }
+
+    @Override
+    public SubjectPublicKeyInfo getSubjectPublicKeyInfo() {
+        return this.resolveEntity().getSubjectPublicKeyInfo();
+    }
+
+    @Override
+    public AlgorithmIdentifier getSignatureAlgorithm() {
+        return this.resolveEntity().getSignatureAlgorithm();
+    }
+
+    @Override
+    public DERBitString getSignature() {
+        return this.resolveEntity().getSignature();
+    }
+}
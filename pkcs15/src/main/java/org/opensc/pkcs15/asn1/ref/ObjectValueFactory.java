@@ -25,6 +25,7 @@ package org.opensc.pkcs15.asn1.ref;
 import org.bouncycastle.asn1.ASN1TaggedObject;
 import org.bouncycastle.asn1.DEREncodable;
 import org.opensc.pkcs15.asn1.proxy.Directory;
+import org.opensc.pkcs15.asn1.proxy.InstanceFactory;
 
 /**
  * Decode the ASN.1 <code>ObjectValue {RSAPrivateKeyObject}</code> choice.
@@ -57,6 +58,18 @@ public class ObjectValueFactory<EntityType extends DEREncodable> extends Referen
         super(clazz,implClazz);
     }
     
+    /**
+     * Construct a factory for ASN.1 ObjectValues.
+     * 
+     * @param clazz The class of the EntityType interface, which is implemented by direct
+     *              objects and proxies to indirect references.  
+     * @param instanceFactory The typed factory, which decodes direct objects.  
+     */
+    public ObjectValueFactory(Class<EntityType> clazz, InstanceFactory<EntityType> instanceFactory)
+    {
+        super(clazz,instanceFactory);
+    }
+    
     /**
      * @param obj An ASN.1 object to resolve.
      * @param directory The directory used to resolve path references.
@@ -28,6 +28,7 @@ import org.bouncycastle.asn1.DEREncodable;
 import org.opensc.pkcs15.asn1.Context;
 import org.opensc.pkcs15.asn1.ContextHolder;
 import org.opensc.pkcs15.asn1.proxy.Directory;
+import org.opensc.pkcs15.asn1.proxy.InstanceFactory;
 import org.opensc.pkcs15.asn1.proxy.ReferenceProxyFactory;
 import org.opensc.pkcs15.asn1.proxy.StreamResolver;
 import org.opensc.pkcs15.asn1.sequence.SequenceOf;
@@ -66,7 +67,24 @@ public class PathOrObjectsFactory<EntityType extends DEREncodable> {
     @SuppressWarnings("unchecked")
     public PathOrObjectsFactory(Class<EntityType> clazz)
     {
-        this.sequenceOfFactory = new SequenceOfFactory(clazz);
+        this(new SequenceOfFactory(clazz));
+    }
+    
+    /**
+     * Construct a factory for ASN.1 ObjectValues.
+     * 
+     * @param instanceFactory The typed factory, which decodes the members of
+     *              the sequence.  
+     */
+    public PathOrObjectsFactory(InstanceFactory<EntityType> instanceFactory)
+    {
+        this(new SequenceOfFactory<EntityType>(instanceFactory));
+    }
+    
+    @SuppressWarnings("unchecked")
+    private PathOrObjectsFactory(SequenceOfFactory sequenceOfFactory)
+    {
+        this.sequenceOfFactory = sequenceOfFactory;
         this.pathProxyFactory = new ReferenceProxyFactory<Path,SequenceOf>(SequenceOf.class);
         this.entityName = this.pathProxyFactory.getEntityInterface().getSimpleName();
     }
@@ -76,10 +94,30 @@ public class PathOrObjectsFactory<EntityType extends DEREncodable> {
      * @param pathResolver The stream resolver used to resolve path references.
      * @return An instance or a proxy depending on the type of the ReferencedValue. 
      */
-    @SuppressWarnings("unchecked")
     public SequenceOf<EntityType> getInstance(Object obj,
             StreamResolver<Path> pathResolver) {
         
+        return this.decode(obj,pathResolver,ContextHolder.getContext());
+    }
+    
+    /**
+     * @param obj An ASN.1 object to resolve.
+     * @param context The context, which supplies the path resolver and
+     *                which is passed to the decoder of the members.
+     * @return An instance or a proxy depending on the type of the ReferencedValue. 
+     */
+    public SequenceOf<EntityType> getInstance(Object obj, Context context) {
+        
+        StreamResolver<Path> pathResolver =
+            context == null ? null : context.getPathResolver();
+        
+        return this.decode(obj,pathResolver,context);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private SequenceOf<EntityType> decode(Object obj,
+            StreamResolver<Path> pathResolver, Context context) {
+        
         if (obj instanceof SequenceOf)
             return (SequenceOf<EntityType>) obj;
         
@@ -88,7 +126,7 @@ public class PathOrObjectsFactory<EntityType extends DEREncodable> {
         // Choice 1: indirect / Path 
         if (obj instanceof ASN1Sequence) {
             return this.pathProxyFactory.getProxy(Path.getInstance(obj),
-            (Directory<Path, SequenceOf>)new SequenceOfStreamResolverDirectory(pathResolver,this.sequenceOfFactory));
+            (Directory<Path, SequenceOf>)new SequenceOfStreamResolverDirectory(pathResolver,this.sequenceOfFactory,context));
         }
         
         if (obj instanceof ASN1TaggedObject) {
@@ -99,7 +137,7 @@ public class PathOrObjectsFactory<EntityType extends DEREncodable> {
             
             case 0:
                 // Choice 3: direct
-                return this.sequenceOfFactory.getInstance(to.getObject());
+                return this.sequenceOfFactory.getInstance(to.getObject(),context);
                 
             case 1:
                 // Choice 4: indirect-protected
@@ -126,11 +164,6 @@ public class PathOrObjectsFactory<EntityType extends DEREncodable> {
      */
     public SequenceOf<EntityType> getInstance(Object obj) {
 
-        Context context = ContextHolder.getContext();
-        
-        StreamResolver<Path> pathResolver =
-            context == null ? null : context.getPathResolver();
-        
-        return this.getInstance(obj,pathResolver);
+        return this.getInstance(obj,ContextHolder.getContext());
     }
 }
@@ -25,6 +25,7 @@ package org.opensc.pkcs15.asn1.ref;
 import org.bouncycastle.asn1.ASN1Sequence;
 import org.bouncycastle.asn1.DEREncodable;
 import org.opensc.pkcs15.asn1.proxy.Directory;
+import org.opensc.pkcs15.asn1.proxy.InstanceFactory;
 import org.opensc.pkcs15.asn1.proxy.ReferenceProxyFactory;
 
 /**
@@ -67,10 +68,27 @@ public class ReferencedValueFactory<EntityType extends DEREncodable> {
      *              by direct objects.  
      */
     public ReferencedValueFactory(Class<EntityType> clazz, Class<?> implClazz)
+    {
+        this(clazz,new URLDirectory<EntityType>(implClazz));
+    }
+    
+    /**
+     * Construct a factory for ASN.1 ObjectValues.
+     * 
+     * @param clazz The class of the EntityType interface, which is implemented by direct
+     *              objects and proxies to indirect references.  
+     * @param instanceFactory The typed factory, which decodes direct objects.  
+     */
+    public ReferencedValueFactory(Class<EntityType> clazz, InstanceFactory<EntityType> instanceFactory)
+    {
+        this(clazz,new URLDirectory<EntityType>(instanceFactory));
+    }
+    
+    private ReferencedValueFactory(Class<EntityType> clazz, URLDirectory<EntityType> urlDirectory)
     {
         this.pathProxyFactory = new ReferenceProxyFactory<Path,EntityType>(clazz);
         this.urlProxyFactory = new ReferenceProxyFactory<URL,EntityType>(clazz);
-        this.urlDirectory = new URLDirectory<EntityType>(implClazz);
+        this.urlDirectory = urlDirectory;
         this.entityName = this.pathProxyFactory.getEntityInterface().getSimpleName();
     }
     
@@ -22,6 +22,7 @@
 
 package org.opensc.pkcs15.asn1.sequence;
 
+import java.util.Iterator;
 import java.util.List;
 
 import org.bouncycastle.asn1.DEREncodable;
@@ -30,11 +31,14 @@ import org.bouncycastle.asn1.DEREncodable;
  * An ASN.1 SEQUENCE OF, which may be read from an InputStream in
  * or to decode referenced <code>PathOrObjects</code> instances.
  * 
+ * Iterating over a sequence, which has been loaded lazily from a referenced
+ * file, decodes the members one by one without materializing the whole list.
+ * 
  * @author wglas
  *
  * @param <EntityType>
  */
-public interface SequenceOf<EntityType extends DEREncodable> extends DEREncodable {
+public interface SequenceOf<EntityType extends DEREncodable> extends DEREncodable, Iterable<EntityType> {
 
     /**
      * @return the sequence
@@ -51,4 +55,10 @@ public interface SequenceOf<EntityType extends DEREncodable> extends DEREncodabl
      */
     public void addEntity(EntityType e);
 
+    /**
+     * @return An iterator over the members of this sequence, which does not
+     *         support removal for sequences read from a stream.
+     */
+    public Iterator<EntityType> iterator();
+
 }
\ No newline at end of file
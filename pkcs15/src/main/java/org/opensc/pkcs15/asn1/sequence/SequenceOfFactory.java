@@ -26,7 +26,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.bouncycastle.asn1.ASN1InputStream;
 import org.bouncycastle.asn1.ASN1Object;
@@ -34,7 +36,10 @@ import org.bouncycastle.asn1.ASN1OutputStream;
 import org.bouncycastle.asn1.ASN1Sequence;
 import org.bouncycastle.asn1.DEREncodable;
 import org.bouncycastle.asn1.DERObject;
+import org.opensc.pkcs15.asn1.Context;
+import org.opensc.pkcs15.asn1.ContextHolder;
 import org.opensc.pkcs15.asn1.proxy.InstanceFactory;
+import org.opensc.pkcs15.asn1.proxy.ReflectiveInstanceFactory;
 
 /**
  * This class decode/encodes a SEQUENCE OF.
@@ -46,21 +51,110 @@ public class SequenceOfFactory<EntityType extends DEREncodable> {
     private final InstanceFactory<EntityType> instanceFactory;
     
     /**
+     * An iterator, which decodes one member of a sequence from
+     * an InputStream per call to {@link #next()}.
+     */
+    private class StreamIterator implements Iterator<EntityType> {
+        
+        private final ASN1InputStream ais;
+        private final Context context;
+        private EntityType nextEntity;
+        private boolean eof;
+        
+        StreamIterator(InputStream is, Context context) {
+            this.ais = new ASN1InputStream(is);
+            this.context = context;
+        }
+        
+        private void fetch() {
+            
+            if (this.nextEntity != null || this.eof) return;
+            
+            Context ctx = this.context != null ? this.context : ContextHolder.getContext();
+            
+            try {
+                DERObject obj = this.ais.readObject();
+                
+                // see readInstance() for the END_OF_STREAM check.
+                if (obj == null || !(obj instanceof ASN1Object)) {
+                    this.eof = true;
+                    this.ais.close();
+                }
+                else
+                    this.nextEntity = SequenceOfFactory.this.instanceFactory.getInstance(obj,ctx);
+                
+            } catch (IOException e) {
+                this.eof = true;
+                throw new IllegalArgumentException("SequenceOf{"+SequenceOfFactory.this.instanceFactory.getClazz().getSimpleName()+"} cannot be read.",e);
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            this.fetch();
+            return this.nextEntity != null;
+        }
+
+        @Override
+        public EntityType next() {
+            
+            this.fetch();
+            
+            if (this.nextEntity == null)
+                throw new NoSuchElementException();
+            
+            EntityType ret = this.nextEntity;
+            this.nextEntity = null;
+            return ret;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Members of a streamed SequenceOf cannot be removed.");
+        }
+    }
+    
+    /**
+     * @param instanceFactory The typed factory, which decodes the members
+     *              of the sequence.
+     */
+    public SequenceOfFactory(InstanceFactory<EntityType> instanceFactory) {
+        this.instanceFactory = instanceFactory;
+    }
+    
+    /**
+     * Construct a factory, which decodes the members by invoking the
+     * static <code>getInstance(Object)</code> method of a class by reflection.
+     * 
      * @param clazz The ASN.1 class which is instantiated. Note,
      *              that this might be the class of an actual implementation or
      *              a factory class,
      *              if EntityType is an interface.
+     *              
+     * @see #SequenceOfFactory(InstanceFactory)
      */
     public SequenceOfFactory(Class<?> clazz) {
-        this.instanceFactory = new InstanceFactory<EntityType>(clazz);
+        this.instanceFactory = new ReflectiveInstanceFactory<EntityType>(clazz);
     }
     
     /**
+     * Decode a sequence using the context registered by {@link ContextHolder}.
+     * 
      * @param obj The ASN.1 object to decode.
      * @return A decoded SequenceOf instance.
      */
     public SequenceOf<EntityType> getInstance(Object obj) {
         
+        return this.getInstance(obj,ContextHolder.getContext());
+    }
+    
+    /**
+     * @param obj The ASN.1 object to decode.
+     * @param context The context passed to the decoder of the members.
+     * @return A decoded SequenceOf instance.
+     */
+    public SequenceOf<EntityType> getInstance(Object obj, Context context) {
+        
         if (obj instanceof SequenceOf) {
             return (SequenceOf<EntityType>)obj;
         }
@@ -77,7 +171,7 @@ public class SequenceOfFactory<EntityType extends DEREncodable> {
                 
                 Object o = objs.nextElement();
                 
-                ret.addEntity(this.instanceFactory.getInstance(o));
+                ret.addEntity(this.instanceFactory.getInstance(o,context));
             }
             
             return ret;
@@ -88,7 +182,8 @@ public class SequenceOfFactory<EntityType extends DEREncodable> {
     
     
     /**
-     * Read an sequence from an InputStream and close the stream after reading.
+     * Read an sequence from an InputStream and close the stream after reading
+     * using the context registered by {@link ContextHolder}.
      * 
      * @param is The InputStream to read from.
      * @return The SequenceOf instance, which is the concatenation of all objects in
@@ -97,6 +192,20 @@ public class SequenceOfFactory<EntityType extends DEREncodable> {
      */
     public SequenceOf<EntityType> readInstance(InputStream is) throws IOException {
         
+        return this.readInstance(is,ContextHolder.getContext());
+    }
+    
+    /**
+     * Read an sequence from an InputStream and close the stream after reading.
+     * 
+     * @param is The InputStream to read from.
+     * @param context The context passed to the decoder of the members.
+     * @return The SequenceOf instance, which is the concatenation of all objects in
+     *         the given InputStream.
+     * @throws IOException
+     */
+    public SequenceOf<EntityType> readInstance(InputStream is, Context context) throws IOException {
+        
         ASN1InputStream ais = new ASN1InputStream(is);
         
         DERObject obj;
@@ -111,12 +220,28 @@ public class SequenceOfFactory<EntityType extends DEREncodable> {
             if (!(obj instanceof ASN1Object))
                 break;
             
-            ret.addEntity(this.instanceFactory.getInstance(obj));
+            ret.addEntity(this.instanceFactory.getInstance(obj,context));
         }
         is.close();
         return ret;
     }
         
+    /**
+     * Iterate over the sequence stored in an InputStream without reading
+     * the whole sequence in advance. The stream is closed, when the end of
+     * the sequence is reached.
+     * 
+     * @param is The InputStream to read from.
+     * @param context The context passed to the decoder of the members
+     *                or <code>null</code> in order to use the context
+     *                registered by {@link ContextHolder}.
+     * @return An iterator, which decodes the members of the sequence on demand.
+     */
+    public Iterator<EntityType> iterateInstance(InputStream is, Context context) {
+        
+        return new StreamIterator(is,context);
+    }
+    
     /**
      * Write all elements of the supplied SequenceOf to the given OutputStream. 
      * 
@@ -23,6 +23,8 @@
 package org.opensc.pkcs15.asn1.sequence;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import org.bouncycastle.asn1.ASN1Encodable;
@@ -97,4 +99,15 @@ implements SequenceOf<EntityType> {
  
         this.sequence.add(e);
     }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.sequence.SequenceOf#iterator()
+     */
+    public Iterator<EntityType> iterator() {
+        
+        if (this.sequence == null)
+            return Collections.<EntityType>emptyList().iterator();
+        
+        return this.sequence.iterator();
+    }
 }
@@ -25,9 +25,11 @@ package org.opensc.pkcs15.asn1.sequence;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Iterator;
 
 import org.bouncycastle.asn1.DEREncodable;
-import org.opensc.pkcs15.asn1.proxy.Directory;
+import org.opensc.pkcs15.asn1.Context;
+import org.opensc.pkcs15.asn1.proxy.ContextDirectory;
 import org.opensc.pkcs15.asn1.proxy.StreamResolver;
 
 /**
@@ -36,23 +38,37 @@ import org.opensc.pkcs15.asn1.proxy.StreamResolver;
  * @author wglas
  */
 public class SequenceOfStreamResolverDirectory<ReferenceType extends DEREncodable, EntityType extends DEREncodable>
-implements Directory<ReferenceType, SequenceOf<EntityType>> {
+implements ContextDirectory<ReferenceType, SequenceOf<EntityType>> {
 
     private final StreamResolver<ReferenceType> streamResolver;
     private final SequenceOfFactory<EntityType> sequenceOfFactory;
+    private final Context context;
     
     public SequenceOfStreamResolverDirectory(StreamResolver<ReferenceType> streamResolver,
             Class<Object> clazz) {
         
-        this.streamResolver = streamResolver;
-        this.sequenceOfFactory = new SequenceOfFactory<EntityType>(clazz);
+        this(streamResolver,new SequenceOfFactory<EntityType>(clazz),null);
     }
 
     public SequenceOfStreamResolverDirectory(StreamResolver<ReferenceType> streamResolver,
             SequenceOfFactory<EntityType> sequenceOfFactory) {
         
+        this(streamResolver,sequenceOfFactory,null);
+    }
+
+    /**
+     * @param streamResolver The resolver used to open the referenced streams.
+     * @param sequenceOfFactory The factory, which decodes the sequences.
+     * @param context The context passed to the decoder of the members or
+     *                <code>null</code> in order to use the context
+     *                registered by {@link org.opensc.pkcs15.asn1.ContextHolder}.
+     */
+    public SequenceOfStreamResolverDirectory(StreamResolver<ReferenceType> streamResolver,
+            SequenceOfFactory<EntityType> sequenceOfFactory, Context context) {
+        
         this.streamResolver = streamResolver;
         this.sequenceOfFactory = sequenceOfFactory;
+        this.context = context;
     }
 
     /* (non-Javadoc)
@@ -61,11 +77,60 @@ implements Directory<ReferenceType, SequenceOf<EntityType>> {
     @Override
     public SequenceOf<EntityType> resolveReference(ReferenceType ref) {
        
+        return this.resolveReference(ref,null);
+    }
+    
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.proxy.ContextDirectory#resolveReference(org.bouncycastle.asn1.DEREncodable, org.opensc.pkcs15.asn1.Context)
+     */
+    @Override
+    public SequenceOf<EntityType> resolveReference(ReferenceType ref, Context context) {
+       
+        Context ctx = this.context != null ? this.context : context;
+        
         try {
             
             InputStream is = this.streamResolver.readReference(ref);
             
-            return this.sequenceOfFactory.readInstance(is);
+            if (ctx == null)
+                return this.sequenceOfFactory.readInstance(is);
+            
+            return this.sequenceOfFactory.readInstance(is,ctx);
+            
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Reference ["+ref+"] cannot be read.",e);
+        }
+    }
+    
+    /**
+     * Iterate over the referenced sequence without decoding all members
+     * in advance.
+     * 
+     * @param ref The reference to the sequence.
+     * @return An iterator, which decodes the members of the sequence on demand.
+     */
+    public Iterator<EntityType> iterateReference(ReferenceType ref) {
+        
+        return this.iterateReference(ref,this.context);
+    }
+    
+    /**
+     * Iterate over the referenced sequence without decoding all members
+     * in advance.
+     * 
+     * @param ref The reference to the sequence.
+     * @param context The context passed to the decoder of the members or
+     *                <code>null</code> in order to use the context
+     *                registered by {@link org.opensc.pkcs15.asn1.ContextHolder}.
+     * @return An iterator, which decodes the members of the sequence on demand.
+     */
+    public Iterator<EntityType> iterateReference(ReferenceType ref, Context context) {
+        
+        try {
+            
+            InputStream is = this.streamResolver.readReference(ref);
+            
+            return this.sequenceOfFactory.iterateInstance(is,context);
             
         } catch (IOException e) {
             throw new IllegalArgumentException("Reference ["+ref+"] cannot be read.",e);
@@ -95,6 +160,14 @@ implements Directory<ReferenceType, SequenceOf<EntityType>> {
         return this.streamResolver;
     }
 
+    /**
+     * @return The context passed to the decoder of the members, which
+     *         might be <code>null</code>.
+     */
+    public Context getContext() {
+        return this.context;
+    }
+
     /**
      * @return the sequenceOfFactory
      */
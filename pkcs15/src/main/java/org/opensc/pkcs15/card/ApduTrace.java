@@ -0,0 +1,246 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+package org.opensc.pkcs15.card;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.smartcardio.ATR;
+
+/**
+ * A recorded sequence of command/response APDU pairs together with the
+ * time the card took to answer each command.
+ *
+ * The trace file format is a compact binary format consisting of a magic
+ * number, a version, the ATR of the card and the list of entries, where the
+ * APDUs are stored as length-prefixed byte arrays.
+ *
+ * @author wglas
+ */
+public class ApduTrace {
+
+    private static final int MAGIC = 0x41504454; // "APDT"
+    private static final int VERSION = 1;
+
+    /**
+     * The maximal length of a stored byte array, which is the length of an
+     * extended command APDU with 65535 bytes of data and an extended Le.
+     */
+    private static final int MAX_APDU_LENGTH = 4 + 3 + 65535 + 2;
+
+    /**
+     * A single recorded command/response pair.
+     */
+    public static final class Entry {
+
+        private final byte[] command;
+        private final byte[] response;
+        private final long nanos;
+
+        /**
+         * @param command The bytes of the command APDU.
+         * @param response The bytes of the response APDU including the status word.
+         * @param nanos The time in nanoseconds the card took to answer.
+         */
+        public Entry(byte[] command, byte[] response, long nanos) {
+            this.command = command.clone();
+            this.response = response.clone();
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return The bytes of the command APDU.
+         */
+        public byte[] getCommand() {
+            return this.command.clone();
+        }
+
+        /**
+         * @return The bytes of the response APDU including the status word.
+         */
+        public byte[] getResponse() {
+            return this.response.clone();
+        }
+
+        /**
+         * @return The time in nanoseconds the card took to answer.
+         */
+        public long getNanos() {
+            return this.nanos;
+        }
+
+        boolean matches(byte[] cmd) {
+            return Arrays.equals(this.command,cmd);
+        }
+
+        byte[] getResponseInternal() {
+            return this.response;
+        }
+    }
+
+    private final ATR atr;
+    private final List<Entry> entries;
+
+    /**
+     * @param atr The ATR of the card, on which the trace has been recorded.
+     */
+    public ApduTrace(ATR atr) {
+        this.atr = atr;
+        this.entries = new ArrayList<Entry>();
+    }
+
+    /**
+     * @return The ATR of the card, on which the trace has been recorded.
+     */
+    public ATR getATR() {
+        return this.atr;
+    }
+
+    /**
+     * @param entry A command/response pair to append to the trace.
+     */
+    public synchronized void add(Entry entry) {
+        this.entries.add(entry);
+    }
+
+    /**
+     * @return An unmodifiable copy of the recorded entries.
+     */
+    public synchronized List<Entry> getEntries() {
+        return Collections.unmodifiableList(new ArrayList<Entry>(this.entries));
+    }
+
+    /**
+     * @return The number of recorded command/response pairs.
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * @return The accumulated time in nanoseconds the card spent answering
+     *         the recorded commands.
+     */
+    public synchronized long getTotalNanos() {
+
+        long ret = 0;
+
+        for (Entry entry : this.entries)
+            ret += entry.getNanos();
+
+        return ret;
+    }
+
+    private static void writeBytes(DataOutputStream dos, byte[] ba) throws IOException {
+
+        dos.writeInt(ba.length);
+        dos.write(ba);
+    }
+
+    private static byte[] readBytes(DataInputStream dis) throws IOException {
+
+        int n = dis.readInt();
+
+        if (n < 0 || n > MAX_APDU_LENGTH)
+            throw new IOException("Invalid length ["+n+"] in APDU trace.");
+
+        byte[] ret = new byte[n];
+        dis.readFully(ret);
+        return ret;
+    }
+
+    /**
+     * Write this trace in the compact binary trace format.
+     *
+     * @param os The stream to write to, which is flushed but not closed.
+     * @throws IOException Upon I/O errors.
+     */
+    public synchronized void write(OutputStream os) throws IOException {
+
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os));
+
+        dos.writeInt(MAGIC);
+        dos.writeInt(VERSION);
+        writeBytes(dos,this.atr.getBytes());
+        dos.writeInt(this.entries.size());
+
+        for (Entry entry : this.entries) {
+
+            writeBytes(dos,entry.command);
+            writeBytes(dos,entry.response);
+            dos.writeLong(entry.nanos);
+        }
+
+        dos.flush();
+    }
+
+    /**
+     * Read a trace in the compact binary trace format.
+     *
+     * The stream is read unbuffered and exactly up to the end of the trace,
+     * so the caller may continue reading after the trace. Pass a buffered
+     * stream for reading large traces efficiently.
+     *
+     * @param is The stream to read from, which is not closed.
+     * @return The trace read from the stream.
+     * @throws IOException Upon I/O errors or an invalid format.
+     */
+    public static ApduTrace read(InputStream is) throws IOException {
+
+        DataInputStream dis = new DataInputStream(is);
+
+        if (dis.readInt() != MAGIC)
+            throw new IOException("Stream does not contain an APDU trace.");
+
+        int version = dis.readInt();
+
+        if (version != VERSION)
+            throw new IOException("Unsupported APDU trace version ["+version+"].");
+
+        ApduTrace ret = new ApduTrace(new ATR(readBytes(dis)));
+
+        int n = dis.readInt();
+
+        if (n < 0)
+            throw new IOException("Invalid number of entries ["+n+"] in APDU trace.");
+
+        for (int i=0; i<n; ++i) {
+
+            byte[] command = readBytes(dis);
+            byte[] response = readBytes(dis);
+            long nanos = dis.readLong();
+
+            ret.entries.add(new Entry(command,response,nanos));
+        }
+
+        return ret;
+    }
+}
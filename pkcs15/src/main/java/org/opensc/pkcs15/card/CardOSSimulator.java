@@ -0,0 +1,574 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+package org.opensc.pkcs15.card;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.smartcardio.CommandAPDU;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.opensc.pkcs15.PKCS15Exception;
+import org.opensc.pkcs15.token.PathHelper;
+import org.opensc.pkcs15.token.TokenFileAcl;
+import org.opensc.pkcs15.util.Util;
+
+/**
+ * A pure-Java simulation of the subset of a Siemens CardOS 4.3b card,
+ * which is used by {@link org.opensc.pkcs15.token.impl.CardOSToken} and
+ * by the CardOS reset script.
+ *
+ * The following commands are supported:
+ * <ul>
+ *   <li>SELECT FILE by FID, parent DF and path with or without FCI.</li>
+ *   <li>READ BINARY and UPDATE BINARY with offsets.</li>
+ *   <li>CREATE FILE and DELETE FILE.</li>
+ *   <li>GET DATA for the version, life cycle, package and ROM
+ *       information as well as the personalization commands of the
+ *       reset script, which switch to the administration life cycle,
+ *       install packages and format the card.</li>
+ * </ul>
+ *
+ * Secure messaging MACs and access conditions other than
+ * {@link TokenFileAcl#AC_NEVER} are not verified.
+ *
+ * @author wglas
+ */
+public class CardOSSimulator {
+
+    private static final Log log = LogFactory.getLog(CardOSSimulator.class);
+
+    /**
+     * The life cycle state of a card in operational mode.
+     */
+    public static final int LIFE_CYCLE_OPERATIONAL = 0x34;
+
+    /**
+     * The life cycle state of a card in administration mode.
+     */
+    public static final int LIFE_CYCLE_ADMINISTRATION = 0x20;
+
+    private static final int MF_BODY_SIZE = 0x8000;
+
+    private static final byte[] VERSION = new byte[] { (byte)0xC8, 0x08 };
+
+    private static final byte[] PACKAGE_INFO = new byte[] {
+        (byte)0xE1, 0x09, 0x01, 0x04, 0x13, 0x02, (byte)0xC8, 0x08, (byte)0x8F, 0x01, 0x01
+    };
+
+    private static final byte[] ROM_INFO = new byte[] {
+        0x00, 0x00, 0x00, 0x00, 0x00, 0x00
+    };
+
+    private static abstract class SimFile {
+
+        final int fid;
+        final SimDF parent;
+        final byte[] acl;
+
+        SimFile(int fid, SimDF parent, byte[] acl) {
+            this.fid = fid;
+            this.parent = parent;
+            this.acl = acl;
+        }
+
+        int getAc(int i) {
+            return i < this.acl.length ? ((int)this.acl[i]) & 0xff : TokenFileAcl.AC_ALWAYS;
+        }
+
+        abstract byte[] getFCI();
+    }
+
+    private static final class SimDF extends SimFile {
+
+        final int size;
+        final Map<Integer,SimFile> children;
+
+        SimDF(int fid, SimDF parent, int size, byte[] acl) {
+            super(fid,parent,acl);
+            this.size = size;
+            this.children = new LinkedHashMap<Integer,SimFile>();
+        }
+
+        @Override
+        byte[] getFCI() {
+
+            int nacl = this.parent == null ? 10 : 8;
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            bos.write(0x81); bos.write(0x02); bos.write(this.size>>8); bos.write(this.size);
+            bos.write(0x83); bos.write(0x02); bos.write(this.fid>>8); bos.write(this.fid);
+            bos.write(0x86); bos.write(nacl);
+
+            for (int i=0;i<nacl;++i)
+                bos.write(this.getAc(i));
+
+            return bos.toByteArray();
+        }
+    }
+
+    private static final class SimEF extends SimFile {
+
+        final byte[] data;
+
+        SimEF(int fid, SimDF parent, int size, byte[] acl) {
+            super(fid,parent,acl);
+            this.data = new byte[size];
+        }
+
+        @Override
+        byte[] getFCI() {
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            bos.write(0x80); bos.write(0x02); bos.write(this.data.length>>8); bos.write(this.data.length);
+            bos.write(0x83); bos.write(0x02); bos.write(this.fid>>8); bos.write(this.fid);
+            bos.write(0x86); bos.write(9);
+
+            for (int i=0;i<9;++i)
+                bos.write(this.getAc(i));
+
+            return bos.toByteArray();
+        }
+    }
+
+    /**
+     * An internal exception carrying the status word to return.
+     */
+    private static final class StatusException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        final int sw;
+
+        StatusException(int sw) {
+            this.sw = sw;
+        }
+    }
+
+    private SimDF mf;
+    private SimDF currentDF;
+    private SimEF currentEF;
+    private int lifeCycle;
+    private int apduCount;
+
+    /**
+     * Construct a simulator in administration mode with an empty MF.
+     */
+    public CardOSSimulator() {
+        this(LIFE_CYCLE_ADMINISTRATION);
+    }
+
+    /**
+     * @param lifeCycle The initial life cycle state, one of
+     *                  {@link #LIFE_CYCLE_OPERATIONAL} or
+     *                  {@link #LIFE_CYCLE_ADMINISTRATION}.
+     */
+    public CardOSSimulator(int lifeCycle) {
+        this.lifeCycle = lifeCycle;
+        this.format();
+    }
+
+    private void format() {
+
+        this.mf = new SimDF(PathHelper.MF_ID,null,MF_BODY_SIZE,new byte[10]);
+        this.currentDF = this.mf;
+        this.currentEF = null;
+    }
+
+    /**
+     * @return The current life cycle state of the card.
+     */
+    public synchronized int getLifeCycle() {
+        return this.lifeCycle;
+    }
+
+    /**
+     * @return The number of APDUs processed so far.
+     */
+    public synchronized int getApduCount() {
+        return this.apduCount;
+    }
+
+    private static byte[] response(byte[] data, int sw) {
+
+        byte[] ret = new byte[data.length+2];
+        System.arraycopy(data,0,ret,0,data.length);
+        ret[data.length] = (byte)(sw>>8);
+        ret[data.length+1] = (byte)sw;
+        return ret;
+    }
+
+    private static byte[] fciResponse(SimFile file, CommandAPDU cmd) {
+
+        if ((cmd.getP2() & 0x0C) == 0x0C)
+            return response(new byte[0],PKCS15Exception.ERROR_OK);
+
+        byte[] fci = file.getFCI();
+        byte[] ret = new byte[fci.length+2];
+        ret[0] = 0x6F;
+        ret[1] = (byte)fci.length;
+        System.arraycopy(fci,0,ret,2,fci.length);
+        return response(ret,PKCS15Exception.ERROR_OK);
+    }
+
+    private static void checkAccess(SimFile file, int i) throws StatusException {
+
+        if (file.getAc(i) == TokenFileAcl.AC_NEVER)
+            throw new StatusException(PKCS15Exception.ERROR_ACCES_DENIED);
+    }
+
+    private static int fidAt(byte[] data, int i) {
+
+        return ((((int)data[i])&0xff)<<8) | (((int)data[i+1])&0xff);
+    }
+
+    private void select(SimFile file) {
+
+        if (file instanceof SimEF) {
+            this.currentDF = file.parent;
+            this.currentEF = (SimEF)file;
+        }
+        else {
+            this.currentDF = (SimDF)file;
+            this.currentEF = null;
+        }
+    }
+
+    private SimFile lookupPath(SimDF start, byte[] data) throws StatusException {
+
+        if (data.length == 0 || data.length % 2 != 0)
+            throw new StatusException(PKCS15Exception.ERROR_LC_INVALID);
+
+        SimFile file = start;
+
+        for (int i=0; i<data.length; i+=2) {
+
+            if (!(file instanceof SimDF))
+                throw new StatusException(PKCS15Exception.ERROR_FILE_NOT_FOUND);
+
+            file = ((SimDF)file).children.get(fidAt(data,i));
+
+            if (file == null)
+                throw new StatusException(PKCS15Exception.ERROR_FILE_NOT_FOUND);
+        }
+
+        return file;
+    }
+
+    private byte[] selectFile(CommandAPDU cmd) throws StatusException {
+
+        byte[] data = cmd.getData();
+        SimFile file;
+
+        switch (cmd.getP1()) {
+
+        case 0x00:
+            if (data.length == 0 || (data.length == 2 && fidAt(data,0) == PathHelper.MF_ID))
+                file = this.mf;
+            else if (data.length == 2)
+                file = this.currentDF.children.get(fidAt(data,0));
+            else
+                throw new StatusException(PKCS15Exception.ERROR_LC_INVALID);
+            break;
+
+        case 0x01:
+        case 0x02:
+            if (data.length != 2)
+                throw new StatusException(PKCS15Exception.ERROR_LC_INVALID);
+
+            file = this.currentDF.children.get(fidAt(data,0));
+
+            if (file != null && (file instanceof SimDF) != (cmd.getP1() == 0x01))
+                file = null;
+            break;
+
+        case 0x03:
+            if (this.currentDF.parent == null)
+                throw new StatusException(PKCS15Exception.ERROR_FILE_NOT_FOUND);
+
+            file = this.currentDF.parent;
+            break;
+
+        case 0x08:
+            file = this.lookupPath(this.mf,data);
+            break;
+
+        case 0x09:
+            file = this.lookupPath(this.currentDF,data);
+            break;
+
+        default:
+            throw new StatusException(PKCS15Exception.ERROR_P1_P2_INVALID);
+        }
+
+        if (file == null)
+            throw new StatusException(PKCS15Exception.ERROR_FILE_NOT_FOUND);
+
+        this.select(file);
+
+        return fciResponse(file,cmd);
+    }
+
+    private static int getOffset(CommandAPDU cmd) throws StatusException {
+
+        if ((cmd.getP1() & 0x80) != 0)
+            throw new StatusException(PKCS15Exception.ERROR_P1_P2_INVALID);
+
+        return (cmd.getP1() << 8) | cmd.getP2();
+    }
+
+    private SimEF getCurrentEF() throws StatusException {
+
+        if (this.currentEF == null)
+            throw new StatusException(PKCS15Exception.ERROR_BS_NO_CURRENT_EF);
+
+        return this.currentEF;
+    }
+
+    private byte[] readBinary(CommandAPDU cmd) throws StatusException {
+
+        SimEF ef = this.getCurrentEF();
+        checkAccess(ef,0);
+
+        int offset = getOffset(cmd);
+
+        if (offset > ef.data.length)
+            throw new StatusException(PKCS15Exception.ERROR_P1_P2_INVALID);
+
+        int n = Math.min(cmd.getNe(),ef.data.length-offset);
+
+        return response(Arrays.copyOfRange(ef.data,offset,offset+n),PKCS15Exception.ERROR_OK);
+    }
+
+    private byte[] updateBinary(CommandAPDU cmd) throws StatusException {
+
+        SimEF ef = this.getCurrentEF();
+        checkAccess(ef,1);
+
+        int offset = getOffset(cmd);
+        byte[] data = cmd.getData();
+
+        if (offset > ef.data.length)
+            throw new StatusException(PKCS15Exception.ERROR_P1_P2_INVALID);
+
+        if (offset + data.length > ef.data.length)
+            throw new StatusException(PKCS15Exception.ERROR_MEMORY_OVERFLOW);
+
+        System.arraycopy(data,0,ef.data,offset,data.length);
+
+        return response(new byte[0],PKCS15Exception.ERROR_OK);
+    }
+
+    private byte[] createFile(CommandAPDU cmd) throws StatusException {
+
+        byte[] data = cmd.getData();
+
+        if (data.length < 2 || data[0] != 0x62 || (((int)data[1])&0xff) != data.length-2)
+            throw new StatusException(PKCS15Exception.ERROR_LC_TLV_MISMATCH);
+
+        int size = -1;
+        int descriptor = -1;
+        int fid = -1;
+        byte[] acl = new byte[0];
+
+        int pos = 2;
+
+        while (pos + 1 < data.length) {
+
+            int tag = ((int)data[pos]) & 0xff;
+            int n = ((int)data[pos+1]) & 0xff;
+            pos += 2;
+
+            if (pos + n > data.length)
+                throw new StatusException(PKCS15Exception.ERROR_LC_TLV_MISMATCH);
+
+            switch (tag) {
+            case 0x80:
+            case 0x81:
+                if (n != 2) throw new StatusException(PKCS15Exception.ERROR_INVALID_PARAMETER);
+                size = fidAt(data,pos);
+                break;
+            case 0x82:
+                descriptor = ((int)data[pos]) & 0xff;
+                break;
+            case 0x83:
+                if (n != 2) throw new StatusException(PKCS15Exception.ERROR_INVALID_PARAMETER);
+                fid = fidAt(data,pos);
+                break;
+            case 0x86:
+                acl = Arrays.copyOfRange(data,pos,pos+n);
+                break;
+            default:
+                break;
+            }
+
+            pos += n;
+        }
+
+        if (size < 0 || descriptor < 0 || fid < 0)
+            throw new StatusException(PKCS15Exception.ERROR_INVALID_PARAMETER);
+
+        checkAccess(this.currentDF,7);
+
+        if (this.currentDF.children.containsKey(fid))
+            throw new StatusException(PKCS15Exception.ERROR_FILE_EXISTS);
+
+        SimFile file;
+
+        if (descriptor == 0x38)
+            file = new SimDF(fid,this.currentDF,size,acl);
+        else
+            file = new SimEF(fid,this.currentDF,size,acl);
+
+        this.currentDF.children.put(fid,file);
+
+        // CREATE FILE selects the new file.
+        this.select(file);
+
+        return response(new byte[0],PKCS15Exception.ERROR_OK);
+    }
+
+    private byte[] deleteFile(CommandAPDU cmd) throws StatusException {
+
+        byte[] data = cmd.getData();
+
+        if (data.length != 2)
+            throw new StatusException(PKCS15Exception.ERROR_LC_INVALID);
+
+        SimFile file = this.currentDF.children.get(fidAt(data,0));
+
+        if (file == null)
+            throw new StatusException(PKCS15Exception.ERROR_FILE_NOT_FOUND);
+
+        checkAccess(file,5);
+
+        this.currentDF.children.remove(file.fid);
+
+        if (this.currentEF == file)
+            this.currentEF = null;
+
+        return response(new byte[0],PKCS15Exception.ERROR_OK);
+    }
+
+    private byte[] getData(CommandAPDU cmd) throws StatusException {
+
+        if (cmd.getP1() != 0x01)
+            throw new StatusException(PKCS15Exception.ERROR_P1_P2_INVALID);
+
+        switch (cmd.getP2()) {
+        case 0x82:
+            return response(VERSION,PKCS15Exception.ERROR_OK);
+        case 0x83:
+            return response(new byte[] { (byte)this.lifeCycle },PKCS15Exception.ERROR_OK);
+        case 0x88:
+            return response(PACKAGE_INFO,PKCS15Exception.ERROR_OK);
+        case 0x96:
+            return response(ROM_INFO,PKCS15Exception.ERROR_OK);
+        default:
+            throw new StatusException(PKCS15Exception.ERROR_DATA_OBJECT_NOT_FOUND);
+        }
+    }
+
+    private byte[] personalization(CommandAPDU cmd) throws StatusException {
+
+        switch (cmd.getINS()) {
+
+        case 0x06:
+            // FORMAT, only allowed in administration mode.
+            if (this.lifeCycle != LIFE_CYCLE_ADMINISTRATION)
+                throw new StatusException(PKCS15Exception.ERROR_INVALID_COMMAND);
+
+            this.format();
+            break;
+
+        case 0x40:
+            // PHASE CONTROL, switch to administration mode.
+            this.lifeCycle = LIFE_CYCLE_ADMINISTRATION;
+            break;
+
+        case 0x20:
+        case 0x24:
+            // package installation and authentication, MACs are not verified.
+            break;
+
+        default:
+            throw new StatusException(PKCS15Exception.ERROR_INS_INVALID);
+        }
+
+        return response(new byte[0],PKCS15Exception.ERROR_OK);
+    }
+
+    /**
+     * Process a single command APDU.
+     *
+     * @param apdu The bytes of the command APDU.
+     * @return The bytes of the response APDU including the status word.
+     */
+    public synchronized byte[] process(byte[] apdu) {
+
+        ++this.apduCount;
+
+        try {
+            CommandAPDU cmd;
+
+            try {
+                cmd = new CommandAPDU(apdu);
+            } catch (IllegalArgumentException e) {
+                throw new StatusException(PKCS15Exception.ERROR_LC_INVALID);
+            }
+
+            if (cmd.getCLA() == 0x84)
+                return this.personalization(cmd);
+
+            if (cmd.getCLA() != 0x00)
+                throw new StatusException(PKCS15Exception.ERROR_CLA_INVALID);
+
+            switch (cmd.getINS()) {
+            case 0xA4:
+                return this.selectFile(cmd);
+            case 0xB0:
+                return this.readBinary(cmd);
+            case 0xD6:
+                return this.updateBinary(cmd);
+            case 0xE0:
+                return this.createFile(cmd);
+            case 0xE4:
+                return this.deleteFile(cmd);
+            case 0xCA:
+                return this.getData(cmd);
+            default:
+                throw new StatusException(PKCS15Exception.ERROR_INS_INVALID);
+            }
+
+        } catch (StatusException e) {
+
+            if (log.isDebugEnabled())
+                log.debug("Command ["+Util.asHex(apdu)+"] failed with status [0x"+Integer.toHexString(e.sw)+"].");
+
+            return response(new byte[0],e.sw);
+        }
+    }
+}
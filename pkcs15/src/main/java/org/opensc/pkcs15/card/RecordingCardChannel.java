@@ -0,0 +1,122 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+package org.opensc.pkcs15.card;
+
+import java.nio.ByteBuffer;
+
+import javax.smartcardio.Card;
+import javax.smartcardio.CardChannel;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+
+/**
+ * A card channel, which forwards all APDUs to another channel and records
+ * the command/response pairs together with the response times.
+ *
+ * @author wglas
+ */
+public class RecordingCardChannel extends CardChannel {
+
+    private final CardChannel channel;
+    private final ApduTrace trace;
+
+    /**
+     * @param channel The channel to forward the APDUs to.
+     */
+    public RecordingCardChannel(CardChannel channel) {
+        this(channel,new ApduTrace(channel.getCard().getATR()));
+    }
+
+    /**
+     * @param channel The channel to forward the APDUs to.
+     * @param trace The trace to append the recorded APDUs to.
+     */
+    public RecordingCardChannel(CardChannel channel, ApduTrace trace) {
+        super();
+        this.channel = channel;
+        this.trace = trace;
+    }
+
+    /**
+     * @return The trace of the APDUs recorded so far.
+     */
+    public ApduTrace getTrace() {
+        return this.trace;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.CardChannel#transmit(javax.smartcardio.CommandAPDU)
+     */
+    @Override
+    public ResponseAPDU transmit(CommandAPDU command) throws CardException {
+
+        long start = System.nanoTime();
+
+        ResponseAPDU resp = this.channel.transmit(command);
+
+        this.trace.add(new ApduTrace.Entry(command.getBytes(),resp.getBytes(),System.nanoTime()-start));
+
+        return resp;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.CardChannel#transmit(java.nio.ByteBuffer, java.nio.ByteBuffer)
+     */
+    @Override
+    public int transmit(ByteBuffer command, ByteBuffer response) throws CardException {
+
+        byte[] cmd = new byte[command.remaining()];
+        command.get(cmd);
+
+        ResponseAPDU resp = this.transmit(new CommandAPDU(cmd));
+        byte[] ba = resp.getBytes();
+
+        response.put(ba);
+        return ba.length;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.CardChannel#close()
+     */
+    @Override
+    public void close() throws CardException {
+        this.channel.close();
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.CardChannel#getCard()
+     */
+    @Override
+    public Card getCard() {
+        return this.channel.getCard();
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.CardChannel#getChannelNumber()
+     */
+    @Override
+    public int getChannelNumber() {
+        return this.channel.getChannelNumber();
+    }
+}
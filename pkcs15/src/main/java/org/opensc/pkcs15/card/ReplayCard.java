@@ -0,0 +1,248 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+package org.opensc.pkcs15.card;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import javax.smartcardio.ATR;
+import javax.smartcardio.Card;
+import javax.smartcardio.CardChannel;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+
+import org.opensc.pkcs15.util.Util;
+
+/**
+ * A card stand-in, which serves the responses of a recorded {@link ApduTrace}.
+ *
+ * The commands sent to the basic channel of this card have to be identical
+ * to the recorded commands in the recorded order, otherwise a
+ * {@link CardException} is thrown. Optionally, each response is delayed
+ * by the recorded response time or by a fixed synthetic latency.
+ *
+ * @author wglas
+ */
+public class ReplayCard extends Card {
+
+    private final ATR atr;
+    private final List<ApduTrace.Entry> entries;
+    private final ReplayCardChannel basicChannel;
+    private int position;
+    private boolean recordedLatency;
+    private long syntheticLatencyNanos;
+
+    private class ReplayCardChannel extends CardChannel {
+
+        @Override
+        public ResponseAPDU transmit(CommandAPDU command) throws CardException {
+
+            return new ResponseAPDU(ReplayCard.this.replay(command.getBytes()));
+        }
+
+        @Override
+        public int transmit(ByteBuffer command, ByteBuffer response) throws CardException {
+
+            byte[] cmd = new byte[command.remaining()];
+            command.get(cmd);
+
+            byte[] resp = ReplayCard.this.replay(cmd);
+            response.put(resp);
+            return resp.length;
+        }
+
+        @Override
+        public void close() throws CardException {
+            throw new IllegalStateException("The basic channel cannot be closed.");
+        }
+
+        @Override
+        public Card getCard() {
+            return ReplayCard.this;
+        }
+
+        @Override
+        public int getChannelNumber() {
+            return 0;
+        }
+    }
+
+    /**
+     * @param trace The recorded trace to serve.
+     */
+    public ReplayCard(ApduTrace trace) {
+        super();
+        this.atr = trace.getATR();
+        this.entries = trace.getEntries();
+        this.basicChannel = new ReplayCardChannel();
+        this.position = 0;
+    }
+
+    private byte[] replay(byte[] cmd) throws CardException {
+
+        ApduTrace.Entry entry;
+        long latency;
+
+        synchronized (this) {
+
+            if (this.position >= this.entries.size())
+                throw new CardException("Command ["+Util.asHex(cmd)+"] exceeds the recorded trace of ["+this.entries.size()+"] APDUs.");
+
+            entry = this.entries.get(this.position);
+
+            if (!entry.matches(cmd))
+                throw new CardException("Command ["+Util.asHex(cmd)+"] at position ["+this.position+
+                        "] differs from recorded command ["+Util.asHex(entry.getCommand())+"].");
+
+            ++this.position;
+
+            latency = this.recordedLatency ? entry.getNanos() : this.syntheticLatencyNanos;
+        }
+
+        if (latency > 0) {
+
+            try {
+                Thread.sleep(latency / 1000000L,(int)(latency % 1000000L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CardException("Interrupted while simulating card latency.",e);
+            }
+        }
+
+        return entry.getResponseInternal().clone();
+    }
+
+    /**
+     * @param recordedLatency Whether to delay each response by the recorded
+     *                        response time of the card.
+     */
+    public synchronized void setRecordedLatency(boolean recordedLatency) {
+        this.recordedLatency = recordedLatency;
+    }
+
+    /**
+     * @return Whether each response is delayed by the recorded response time.
+     */
+    public synchronized boolean isRecordedLatency() {
+        return this.recordedLatency;
+    }
+
+    /**
+     * @param syntheticLatencyNanos A fixed delay in nanoseconds applied to
+     *                        each response, if the recorded latency is not used.
+     */
+    public synchronized void setSyntheticLatencyNanos(long syntheticLatencyNanos) {
+        this.syntheticLatencyNanos = syntheticLatencyNanos;
+    }
+
+    /**
+     * @return The fixed delay in nanoseconds applied to each response, if the
+     *         recorded latency is not used.
+     */
+    public synchronized long getSyntheticLatencyNanos() {
+        return this.syntheticLatencyNanos;
+    }
+
+    /**
+     * @return The number of APDUs replayed so far.
+     */
+    public synchronized int getPosition() {
+        return this.position;
+    }
+
+    /**
+     * @return Whether all recorded APDUs have been replayed.
+     */
+    public synchronized boolean isComplete() {
+        return this.position == this.entries.size();
+    }
+
+    /**
+     * Restart the replay at the first recorded APDU.
+     */
+    public synchronized void rewind() {
+        this.position = 0;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.Card#getATR()
+     */
+    @Override
+    public ATR getATR() {
+        return this.atr;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.Card#getProtocol()
+     */
+    @Override
+    public String getProtocol() {
+        return "T=1";
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.Card#getBasicChannel()
+     */
+    @Override
+    public CardChannel getBasicChannel() {
+        return this.basicChannel;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.Card#openLogicalChannel()
+     */
+    @Override
+    public CardChannel openLogicalChannel() throws CardException {
+        throw new CardException("Logical channels are not supported by a replayed card.");
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.Card#beginExclusive()
+     */
+    @Override
+    public void beginExclusive() throws CardException {
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.Card#endExclusive()
+     */
+    @Override
+    public void endExclusive() throws CardException {
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.Card#transmitControlCommand(int, byte[])
+     */
+    @Override
+    public byte[] transmitControlCommand(int controlCode, byte[] command) throws CardException {
+        throw new CardException("Control commands are not supported by a replayed card.");
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.Card#disconnect(boolean)
+     */
+    @Override
+    public void disconnect(boolean reset) throws CardException {
+    }
+}
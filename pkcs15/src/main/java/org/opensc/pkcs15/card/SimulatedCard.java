@@ -0,0 +1,299 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.card;
+
+import java.nio.ByteBuffer;
+
+import javax.smartcardio.ATR;
+import javax.smartcardio.Card;
+import javax.smartcardio.CardChannel;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+
+import org.opensc.pkcs15.PKCS15Exception;
+import org.opensc.pkcs15.token.impl.CardOSToken;
+
+/**
+ * A card, which forwards the APDUs sent to its basic channel to a
+ * {@link CardOSSimulator} and presents the ATR of a CardOS 4.3b card.
+ *
+ * Each APDU may be delayed by a configurable latency and the lengths
+ * of command and response APDUs may be limited in order to simulate
+ * readers or cards without support for extended length APDUs.
+ * Commands exceeding the configured limits are answered with
+ * {@link PKCS15Exception#ERROR_LC_INVALID} without reaching the simulator.
+ *
+ * @author wglas
+ */
+public class SimulatedCard extends Card {
+
+    /**
+     * The maximal length of an extended command APDU.
+     */
+    public static final int MAX_EXTENDED_COMMAND_LENGTH = 65544;
+
+    /**
+     * The maximal number of data bytes in an extended response APDU.
+     */
+    public static final int MAX_EXTENDED_RESPONSE_LENGTH = 65536;
+
+    private final CardOSSimulator simulator;
+    private final SimulatedCardChannel basicChannel;
+    private long latencyNanos;
+    private int maxCommandLength;
+    private int maxResponseLength;
+    private boolean connected;
+    private Thread exclusiveOwner;
+
+    private class SimulatedCardChannel extends CardChannel {
+
+        @Override
+        public ResponseAPDU transmit(CommandAPDU command) throws CardException {
+
+            return new ResponseAPDU(SimulatedCard.this.transmit(command.getBytes()));
+        }
+
+        @Override
+        public int transmit(ByteBuffer command, ByteBuffer response) throws CardException {
+
+            byte[] cmd = new byte[command.remaining()];
+            command.get(cmd);
+
+            byte[] resp = SimulatedCard.this.transmit(cmd);
+            response.put(resp);
+            return resp.length;
+        }
+
+        @Override
+        public void close() throws CardException {
+            throw new IllegalStateException("The basic channel cannot be closed.");
+        }
+
+        @Override
+        public Card getCard() {
+            return SimulatedCard.this;
+        }
+
+        @Override
+        public int getChannelNumber() {
+            return 0;
+        }
+    }
+
+    /**
+     * Construct a card connected to a new simulator with an empty MF.
+     */
+    public SimulatedCard() {
+        this(new CardOSSimulator());
+    }
+
+    /**
+     * @param simulator The simulator to forward the APDUs to.
+     */
+    public SimulatedCard(CardOSSimulator simulator) {
+        super();
+        this.simulator = simulator;
+        this.basicChannel = new SimulatedCardChannel();
+        this.maxCommandLength = MAX_EXTENDED_COMMAND_LENGTH;
+        this.maxResponseLength = MAX_EXTENDED_RESPONSE_LENGTH;
+        this.connected = true;
+    }
+
+    private static byte[] status(int sw) {
+
+        return new byte[] { (byte)(sw>>8), (byte)sw };
+    }
+
+    private byte[] transmit(byte[] cmd) throws CardException {
+
+        long latency;
+
+        synchronized (this) {
+
+            if (!this.connected)
+                throw new IllegalStateException("The simulated card has been disconnected.");
+
+            if (this.exclusiveOwner != null && this.exclusiveOwner != Thread.currentThread())
+                throw new CardException("The simulated card is used exclusively by another thread.");
+
+            latency = this.latencyNanos;
+
+            if (cmd.length > this.maxCommandLength)
+                return status(PKCS15Exception.ERROR_LC_INVALID);
+
+            try {
+                if (new CommandAPDU(cmd).getNe() > this.maxResponseLength)
+                    return status(PKCS15Exception.ERROR_LC_INVALID);
+            } catch (IllegalArgumentException e) {
+                return status(PKCS15Exception.ERROR_LC_INVALID);
+            }
+        }
+
+        if (latency > 0) {
+
+            try {
+                Thread.sleep(latency / 1000000L,(int)(latency % 1000000L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CardException("Interrupted while simulating card latency.",e);
+            }
+        }
+
+        return this.simulator.process(cmd);
+    }
+
+    /**
+     * @return The simulator, which processes the APDUs of this card.
+     */
+    public CardOSSimulator getSimulator() {
+        return this.simulator;
+    }
+
+    /**
+     * @param latencyNanos The delay in nanoseconds applied to each APDU.
+     */
+    public synchronized void setLatencyNanos(long latencyNanos) {
+        this.latencyNanos = latencyNanos;
+    }
+
+    /**
+     * @return The delay in nanoseconds applied to each APDU.
+     */
+    public synchronized long getLatencyNanos() {
+        return this.latencyNanos;
+    }
+
+    /**
+     * @param maxCommandLength The maximal length of a command APDU
+     *              including the header. Use 261 in order to simulate
+     *              a reader without extended length support.
+     */
+    public synchronized void setMaxCommandLength(int maxCommandLength) {
+        this.maxCommandLength = maxCommandLength;
+    }
+
+    /**
+     * @return The maximal length of a command APDU including the header.
+     */
+    public synchronized int getMaxCommandLength() {
+        return this.maxCommandLength;
+    }
+
+    /**
+     * @param maxResponseLength The maximal number of response data bytes,
+     *              which may be requested by a command APDU.
+     */
+    public synchronized void setMaxResponseLength(int maxResponseLength) {
+        this.maxResponseLength = maxResponseLength;
+    }
+
+    /**
+     * @return The maximal number of response data bytes, which may be
+     *         requested by a command APDU.
+     */
+    public synchronized int getMaxResponseLength() {
+        return this.maxResponseLength;
+    }
+
+    /**
+     * @return Whether this card has not been disconnected yet.
+     */
+    public synchronized boolean isConnected() {
+        return this.connected;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.Card#getATR()
+     */
+    @Override
+    public ATR getATR() {
+        return CardOSToken.CARDOS_4_3_b_ATR;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.Card#getProtocol()
+     */
+    @Override
+    public String getProtocol() {
+        return "T=1";
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.Card#getBasicChannel()
+     */
+    @Override
+    public CardChannel getBasicChannel() {
+        return this.basicChannel;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.Card#openLogicalChannel()
+     */
+    @Override
+    public CardChannel openLogicalChannel() throws CardException {
+        throw new CardException("Logical channels are not supported by a simulated card.");
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.Card#beginExclusive()
+     */
+    @Override
+    public synchronized void beginExclusive() throws CardException {
+
+        if (this.exclusiveOwner != null)
+            throw new CardException("The simulated card is already used exclusively.");
+
+        this.exclusiveOwner = Thread.currentThread();
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.Card#endExclusive()
+     */
+    @Override
+    public synchronized void endExclusive() throws CardException {
+
+        if (this.exclusiveOwner != Thread.currentThread())
+            throw new IllegalStateException("The simulated card is not used exclusively by this thread.");
+
+        this.exclusiveOwner = null;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.Card#transmitControlCommand(int, byte[])
+     */
+    @Override
+    public byte[] transmitControlCommand(int controlCode, byte[] command) throws CardException {
+        throw new CardException("Control commands are not supported by a simulated card.");
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.Card#disconnect(boolean)
+     */
+    @Override
+    public synchronized void disconnect(boolean reset) throws CardException {
+        this.connected = false;
+        this.exclusiveOwner = null;
+    }
+}
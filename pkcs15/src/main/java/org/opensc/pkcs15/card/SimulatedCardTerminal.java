@@ -0,0 +1,220 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.card;
+
+import javax.smartcardio.Card;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardNotPresentException;
+import javax.smartcardio.CardTerminal;
+
+/**
+ * A card terminal, into which a {@link CardOSSimulator} may be inserted
+ * and from which it may be removed again.
+ *
+ * The latency and the APDU length limits configured for this terminal are
+ * applied to each {@link SimulatedCard} returned by {@link #connect(String)}.
+ *
+ * @author wglas
+ */
+public class SimulatedCardTerminal extends CardTerminal {
+
+    private final String name;
+    private CardOSSimulator simulator;
+    private SimulatedCard card;
+    private long latencyNanos;
+    private int maxCommandLength;
+    private int maxResponseLength;
+
+    /**
+     * Construct an empty terminal.
+     *
+     * @param name The name of the terminal.
+     */
+    public SimulatedCardTerminal(String name) {
+        this(name,null);
+    }
+
+    /**
+     * @param name The name of the terminal.
+     * @param simulator The initially inserted card or <code>null</code>,
+     *                  if the terminal is empty.
+     */
+    public SimulatedCardTerminal(String name, CardOSSimulator simulator) {
+        super();
+        this.name = name;
+        this.simulator = simulator;
+        this.maxCommandLength = SimulatedCard.MAX_EXTENDED_COMMAND_LENGTH;
+        this.maxResponseLength = SimulatedCard.MAX_EXTENDED_RESPONSE_LENGTH;
+    }
+
+    /**
+     * Insert a card into this terminal.
+     *
+     * @param simulator The card to insert.
+     * @throws IllegalStateException If a card is already present.
+     */
+    public synchronized void insertCard(CardOSSimulator simulator) {
+
+        if (this.simulator != null)
+            throw new IllegalStateException("A card is already present in terminal ["+this.name+"].");
+
+        this.simulator = simulator;
+        this.notifyAll();
+    }
+
+    /**
+     * Remove the card from this terminal. A card returned by
+     * {@link #connect(String)} is disconnected, so any further
+     * APDU sent to it fails.
+     *
+     * @return The removed card or <code>null</code>, if the terminal was empty.
+     */
+    public synchronized CardOSSimulator removeCard() {
+
+        CardOSSimulator ret = this.simulator;
+
+        if (this.card != null) {
+
+            try {
+                this.card.disconnect(false);
+            } catch (CardException e) {
+                // not thrown by a simulated card.
+            }
+            this.card = null;
+        }
+
+        this.simulator = null;
+        this.notifyAll();
+        return ret;
+    }
+
+    /**
+     * @param latencyNanos The delay in nanoseconds applied to each APDU
+     *                     sent to cards connected afterwards.
+     */
+    public synchronized void setLatencyNanos(long latencyNanos) {
+        this.latencyNanos = latencyNanos;
+    }
+
+    /**
+     * @param maxCommandLength The maximal length of a command APDU for
+     *                     cards connected afterwards.
+     */
+    public synchronized void setMaxCommandLength(int maxCommandLength) {
+        this.maxCommandLength = maxCommandLength;
+    }
+
+    /**
+     * @param maxResponseLength The maximal number of response data bytes
+     *                     for cards connected afterwards.
+     */
+    public synchronized void setMaxResponseLength(int maxResponseLength) {
+        this.maxResponseLength = maxResponseLength;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.CardTerminal#getName()
+     */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.CardTerminal#connect(java.lang.String)
+     */
+    @Override
+    public synchronized Card connect(String protocol) throws CardException {
+
+        if (this.simulator == null)
+            throw new CardNotPresentException("No card present in terminal ["+this.name+"].");
+
+        if (!"*".equals(protocol) && !"T=1".equals(protocol))
+            throw new CardException("Protocol ["+protocol+"] is not supported by a simulated card.");
+
+        if (this.card == null || !this.card.isConnected()) {
+
+            this.card = new SimulatedCard(this.simulator);
+            this.card.setLatencyNanos(this.latencyNanos);
+            this.card.setMaxCommandLength(this.maxCommandLength);
+            this.card.setMaxResponseLength(this.maxResponseLength);
+        }
+
+        return this.card;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.CardTerminal#isCardPresent()
+     */
+    @Override
+    public synchronized boolean isCardPresent() throws CardException {
+        return this.simulator != null;
+    }
+
+    private synchronized boolean waitForCard(boolean present, long timeout) throws CardException {
+
+        if (timeout < 0)
+            throw new IllegalArgumentException("Negative timeout ["+timeout+"].");
+
+        long end = System.currentTimeMillis() + timeout;
+
+        try {
+            while ((this.simulator != null) != present) {
+
+                if (timeout == 0) {
+                    this.wait();
+                }
+                else {
+                    long remaining = end - System.currentTimeMillis();
+
+                    if (remaining <= 0)
+                        return false;
+
+                    this.wait(remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CardException("Interrupted while waiting for a card.",e);
+        }
+
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.CardTerminal#waitForCardPresent(long)
+     */
+    @Override
+    public boolean waitForCardPresent(long timeout) throws CardException {
+        return this.waitForCard(true,timeout);
+    }
+
+    /* (non-Javadoc)
+     * @see javax.smartcardio.CardTerminal#waitForCardAbsent(long)
+     */
+    @Override
+    public boolean waitForCardAbsent(long timeout) throws CardException {
+        return this.waitForCard(false,timeout);
+    }
+}
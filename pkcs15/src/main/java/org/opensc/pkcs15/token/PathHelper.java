@@ -37,7 +37,7 @@ public abstract class PathHelper {
      * The path of the master file on a token.
      */
     public static final int MF_ID = 0x3F00;
-    public static final TokenPath MF_PATH = new TokenPath(MF_ID);
+    public static final TokenPath MF_PATH = new TokenPath(MF_ID).intern();
     
     /**
      * @param id A file ID consisting of 2 unsigned bytes.
@@ -93,6 +93,21 @@ public abstract class PathHelper {
         return l;
     }
     
+    /**
+     * Decide, whether a single select by absolute path is cheaper than
+     * navigating step by step from the current file.
+     * 
+     * @param current The path of the current file on the token.
+     * @param l The length of the common trunk of <code>current</code> and <code>path</code>.
+     * @param path The absolute path to select.
+     * @return Whether {@link Token#selectPath(TokenPath)} should be used.
+     */
+    private static boolean preferSelectPath(final TokenPath current, int l, final TokenPath path)
+    {
+        // one SELECT per level up and one SELECT per level down.
+        return (current.getLength() - l) + (path.getLength() - l) > 1;
+    }
+    
     /**
      * Select a token file by an absolute path.
      * 
@@ -106,7 +121,7 @@ public abstract class PathHelper {
         TokenFile current = token.getCurrentFile();
         
         if (current == null) {
-            current = token.selectMF();
+            return token.selectPath(path);
         } 
         
         // find common trunk.
@@ -115,14 +130,24 @@ public abstract class PathHelper {
         if (l <1)
             throw new IOException("The path ["+path+"] is not a subpath of the MF.");
         
-        // chdir up.
-        while (current.getPath().getLength() > l)
-            current = token.selectParentDF();
+        if (preferSelectPath(current.getPath(),l,path))
+            return token.selectPath(path);
         
-        // chdir down.
-        while (current.getPath().getLength() < path.getLength())
-        {
-            current = token.select(path.getID(current.getPath().getLength()));
+        // keep the card for the steps below.
+        token.beginTransaction();
+        
+        try {
+            // chdir up.
+            while (current.getPath().getLength() > l)
+                current = token.selectParentDF();
+        
+            // chdir down.
+            while (current.getPath().getLength() < path.getLength())
+            {
+                current = token.select(path.getID(current.getPath().getLength()));
+            }
+        } finally {
+            token.endTransaction();
         }
             
         return current;
@@ -140,34 +165,39 @@ public abstract class PathHelper {
     {
         TokenFile current = token.getCurrentFile();
         
-        if (current == null) {
-            current = token.selectMF();
-        }
+        int l = 0;
         
-        // find common trunk.
-        int l = commonTrunkLength(current.getPath(),path);
+        if (current != null) {
+            
+            // find common trunk.
+            l = commonTrunkLength(current.getPath(),path);
         
-        if (l<1)
-            throw new IOException("The path ["+path+"] is not a subpath of the MF.");
+            if (l<1)
+                throw new IOException("The path ["+path+"] is not a subpath of the MF.");
 
-        if (l == path.getLength() && l == current.getPath().getLength()) {
+            if (l == path.getLength() && l == current.getPath().getLength()) {
+            
+                if (current instanceof EF)
+                    return (EF)current;
+            
+                throw new IOException("The current file ["+path+"] is not an EF.");
+            }
+        }
+        
+        if (current == null || preferSelectPath(current.getPath(),l,path)) {
+            
+            current = token.selectPath(path);
             
             if (current instanceof EF)
                 return (EF)current;
             
-            throw new IOException("The current file ["+path+"] is not an EF.");
+            throw new IOException("The file ["+path+"] is not an EF.");
         }
             
-        // chdir up.
-        while (current.getPath().getLength() > l)
-            current = token.selectParentDF();
+        // an ancestor of the current file is always a DF.
+        if (path.getLength() <= l)
+            throw new IOException("The file ["+path+"] is not an EF.");
         
-        // chdir down.
-        while (current.getPath().getLength() < path.getLength()-1)
-        {
-            current = token.select(path.getID(current.getPath().getLength()));
-        }
-            
         return token.selectEF(path.getTailID());
     }
     
@@ -183,35 +213,39 @@ public abstract class PathHelper {
     {
         TokenFile current = token.getCurrentFile();
         
-        if (current == null) {
-            current = token.selectMF();
-        }
-
-        // find common trunk.
-        int l = commonTrunkLength(current.getPath(),path);
+        int l = 0;
         
-        if (l<1)
-            throw new IOException("The path ["+path+"] is not a subpath of the MF.");
+        if (current != null) {
+            
+            // find common trunk.
+            l = commonTrunkLength(current.getPath(),path);
+        
+            if (l<1)
+                throw new IOException("The path ["+path+"] is not a subpath of the MF.");
 
-        if (l==path.getLength() && l == current.getPath().getLength()) {
+            if (l==path.getLength() && l == current.getPath().getLength()) {
+            
+                if (current instanceof DF)
+                    return (DF)current;
+            
+                throw new IOException("The current file ["+path+"] is not a DF.");
+            }
+        }
+        
+        if (current == null || preferSelectPath(current.getPath(),l,path)) {
+            
+            current = token.selectPath(path);
             
             if (current instanceof DF)
                 return (DF)current;
             
-            throw new IOException("The current file ["+path+"] is not a DF.");
+            throw new IOException("The file ["+path+"] is not a DF.");
         }
             
-        // chdir up.
-        while (current.getPath().getLength() > l)
-            current = token.selectParentDF();
-        
+        // chdir up, which already reaches the requested parent DF.
+        if (current.getPath().getLength() > l)
+            return token.selectParentDF();
         
-        // chdir down.
-        while (current.getPath().getLength() < path.getLength()-1)
-        {
-            current = token.select(path.getID(current.getPath().getLength()-1));
-        }
-            
         return token.selectDF(path.getTailID());
     }
 
@@ -44,6 +44,29 @@ public interface Token extends Closeable {
      */
     void reset() throws IOException;
     
+    /**
+     * Start a transaction, which gives this token exclusive access to the
+     * underlying card until the matching call to {@link #endTransaction()}.
+     * 
+     * Transactions should bracket groups of commands, which rely on the
+     * current file of the token, like selecting a file and reading its
+     * content. Calls may be nested, only the outermost pair of calls
+     * acquires and releases the card.
+     * 
+     * Software token implementations may implement this as a no-op.
+     * 
+     * @throws IOException Upon errors acquiring the card.
+     */
+    void beginTransaction() throws IOException;
+    
+    /**
+     * End a transaction started by {@link #beginTransaction()}.
+     * 
+     * @throws IOException Upon errors releasing the card.
+     * @throws IllegalStateException If no transaction is in progress.
+     */
+    void endTransaction() throws IOException;
+    
     /**
      * @return The current file on the token.
      * @throws IOException Upon errors.
@@ -59,6 +82,18 @@ public interface Token extends Closeable {
      */
     TokenFile select(int path) throws IOException;
     
+    /**
+     * Select a file (DF or EF) by an absolute path starting at the MF.
+     * 
+     * Implementations should reach the file in a single operation, if
+     * possible, e.g. by one SELECT FILE by path command on a hardware token.
+     * 
+     * @param path The absolute path of the file to select.
+     * @return The new current file on the token.
+     * @throws IOException Upon card errors or if the file does not exist.
+     */
+    TokenFile selectPath(TokenPath path) throws IOException;
+    
     /**
      * Select the parent DF of the current DF.
      * 
@@ -109,6 +144,19 @@ public interface Token extends Closeable {
      */
     OutputStream writeEFData() throws IOException;
     
+    /**
+     * Write to a part of the content of the current EF. In contrast to
+     * {@link #writeEFData()}, the content before the given offset and
+     * after the written bytes is left untouched.
+     * 
+     * @param offset The position in the current EF, at which writing starts.
+     * @return An output stream, which writes to the content of the current EF
+     *         starting at the given offset.
+     * @throws IOException Upon card errors, when the current file is not an EF
+     *                     or when the offset lies beyond the size of the EF.
+     */
+    OutputStream writeEFData(long offset) throws IOException;
+    
     /**
      * Create an elementary file as child of the current DF.
      * 
@@ -23,19 +23,26 @@
 package org.opensc.pkcs15.token;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
 import org.bouncycastle.asn1.DERInteger;
 import org.opensc.pkcs15.asn1.Context;
-import org.opensc.pkcs15.asn1.attr.RSAKeyInfoFactory;
+import org.opensc.pkcs15.asn1.attr.OpaqueObject;
+import org.opensc.pkcs15.asn1.attr.OpaqueObjectDirectory;
 import org.opensc.pkcs15.asn1.attr.RSAPrivateKeyObject;
+import org.opensc.pkcs15.asn1.attr.RSAPrivateKeyObjectImpl;
+import org.opensc.pkcs15.asn1.attr.RSAPrivateKeyObjectView;
 import org.opensc.pkcs15.asn1.attr.RSAPublicKeyChoice;
 import org.opensc.pkcs15.asn1.attr.RSAPublicKeyObject;
 import org.opensc.pkcs15.asn1.attr.X509CertificateObject;
 import org.opensc.pkcs15.asn1.attr.X509CertificateObjectImpl;
+import org.opensc.pkcs15.asn1.attr.X509CertificateObjectView;
 import org.opensc.pkcs15.asn1.basic.NullKeyInfo;
+import org.opensc.pkcs15.asn1.proxy.DERViewDirectory;
 import org.opensc.pkcs15.asn1.proxy.Directory;
 import org.opensc.pkcs15.asn1.proxy.StreamResolver;
 import org.opensc.pkcs15.asn1.proxy.StreamResolverDirectory;
@@ -45,21 +52,36 @@ import org.opensc.pkcs15.asn1.ref.Path;
  * This implementation of a PKCS#15 context resolves token files an the ASN.1
  * stream located in EFs therein.
  * 
+ * If {@link #setUseDERViews(boolean)} is enabled, referenced private keys
+ * and certificates are returned as read-only objects backed by a
+ * {@link org.opensc.pkcs15.asn1.helper.DERView} of the EF content instead
+ * of a decoded bouncycastle object tree.
+ * 
  * @author wglas
  */
 public class TokenContext implements Context {
     
     private final Token token;
     private final TokenStreamResolver streamResolver;
+    private volatile boolean useDERViews;
     
     private class TokenStreamResolver implements StreamResolver<Path>
     {
         @Override
         public InputStream readReference(Path ref) throws IOException {
           
-            PathHelper.selectEF(TokenContext.this.token,new TokenPath(ref.getPath()));
+            InputStream is;
+            
+            // select and read without interleaving commands of other applications.
+            TokenContext.this.token.beginTransaction();
             
-            InputStream is = TokenContext.this.token.readEFData();
+            try {
+                PathHelper.selectEF(TokenContext.this.token,TokenPath.valueOf(ref.getPath()));
+            
+                is = TokenContext.this.token.readEFData();
+            } finally {
+                TokenContext.this.token.endTransaction();
+            }
             
             if (ref.getIndex() == null || ref.getLength() == null)
                 return is;
@@ -75,18 +97,108 @@ public class TokenContext implements Context {
         @Override
         public OutputStream writeReference(Path ref) throws IOException {
             
-            PathHelper.selectEF(TokenContext.this.token,new TokenPath(ref.getPath()));
+            OutputStream os = new TransactionOutputStream(ref);
             
-            OutputStream os = TokenContext.this.token.writeEFData();
+            if (ref.getIndex() != null && ref.getLength() != null)
+                os = new SubRangeOutputStream(os,ref.getLength().intValue());
             
-            if (ref.getIndex() == null || ref.getLength() == null)
-                return os;
-           
-            throw new UnsupportedOperationException("Writing to a sub-stream is not yet implemented.");
+            return os;
         }
         
     }
     
+    /**
+     * An output stream, which buffers the written data and stores it to
+     * the referenced EF on close. Selecting the EF and writing the data
+     * take place in a single transaction on the token, so the card is not
+     * held, while the caller produces the data.
+     */
+    private class TransactionOutputStream extends ByteArrayOutputStream
+    {
+        private final Path ref;
+        private boolean closed;
+        
+        TransactionOutputStream(Path ref) {
+            super();
+            this.ref = ref;
+        }
+
+        @Override
+        public void close() throws IOException {
+            
+            if (this.closed) return;
+            this.closed = true;
+            
+            Token token = TokenContext.this.token;
+            
+            // select and write without interleaving commands of other applications.
+            token.beginTransaction();
+            
+            try {
+                PathHelper.selectEF(token,TokenPath.valueOf(this.ref.getPath()));
+                
+                OutputStream os;
+                
+                if (this.ref.getIndex() == null || this.ref.getLength() == null)
+                    os = token.writeEFData();
+                else
+                    os = token.writeEFData(this.ref.getIndex().longValue());
+                
+                try {
+                    os.write(this.buf,0,this.count);
+                } finally {
+                    os.close();
+                }
+            } finally {
+                token.endTransaction();
+            }
+        }
+    }
+    
+    /**
+     * An output stream, which writes at most the given number of bytes
+     * and pads the remainder of the sub-range with zeroes on close.
+     */
+    private static class SubRangeOutputStream extends FilterOutputStream
+    {
+        private int remaining;
+        
+        SubRangeOutputStream(OutputStream os, int length) {
+            super(os);
+            this.remaining = length;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            
+            if (this.remaining <= 0)
+                throw new IOException("Data exceeds the length of the sub-range of the EF.");
+            
+            this.out.write(b);
+            --this.remaining;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            
+            if (len > this.remaining)
+                throw new IOException("Data exceeds the length of the sub-range of the EF.");
+            
+            this.out.write(b,off,len);
+            this.remaining -= len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            
+            if (this.remaining > 0) {
+                this.out.write(new byte[this.remaining]);
+                this.remaining = 0;
+            }
+            super.close();
+        }
+    }
+    
     public TokenContext(Token token) {
         this.token = token;
         this.streamResolver = new TokenStreamResolver();
@@ -115,7 +227,10 @@ public class TokenContext implements Context {
     @Override
     public Directory<Path, RSAPrivateKeyObject> getRSAPrivateKeyDirectory() {
         
-        return new StreamResolverDirectory<Path, RSAPrivateKeyObject>(this.streamResolver,RSAKeyInfoFactory.class);
+        if (this.useDERViews)
+            return new DERViewDirectory<Path, RSAPrivateKeyObject>(this.streamResolver,RSAPrivateKeyObjectView.FACTORY,this);
+        
+        return new StreamResolverDirectory<Path, RSAPrivateKeyObject>(this.streamResolver,RSAPrivateKeyObjectImpl.FACTORY,this);
     }
 
     /* (non-Javadoc)
@@ -124,7 +239,7 @@ public class TokenContext implements Context {
     @Override
     public Directory<Path, RSAPublicKeyObject> getRSAPublicKeyDirectory() {
         
-        return new StreamResolverDirectory<Path, RSAPublicKeyObject>(this.streamResolver,RSAPublicKeyChoice.class);
+        return new StreamResolverDirectory<Path, RSAPublicKeyObject>(this.streamResolver,RSAPublicKeyChoice.FACTORY,this);
     }
 
     /* (non-Javadoc)
@@ -133,7 +248,36 @@ public class TokenContext implements Context {
     @Override
     public Directory<Path, X509CertificateObject> getX509CertificateDirectory() {
         
-        return new StreamResolverDirectory<Path, X509CertificateObject>(this.streamResolver,X509CertificateObjectImpl.class);
+        if (this.useDERViews)
+            return new DERViewDirectory<Path, X509CertificateObject>(this.streamResolver,X509CertificateObjectView.FACTORY,this);
+        
+        return new StreamResolverDirectory<Path, X509CertificateObject>(this.streamResolver,X509CertificateObjectImpl.FACTORY,this);
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.asn1.Context#getOpaqueObjectDirectory()
+     */
+    @Override
+    public Directory<Path, OpaqueObject> getOpaqueObjectDirectory() {
+        
+        return new OpaqueObjectDirectory<Path>(this.streamResolver);
+    }
+
+    /**
+     * @return Whether referenced private keys and certificates are
+     *         returned as read-only views of the EF content.
+     */
+    public boolean isUseDERViews() {
+        return this.useDERViews;
+    }
+
+    /**
+     * @param useDERViews Whether referenced private keys and certificates
+     *           are returned as read-only views of the EF content. This
+     *           affects directories, which are requested afterwards.
+     */
+    public void setUseDERViews(boolean useDERViews) {
+        this.useDERViews = useDERViews;
     }
 
     /**
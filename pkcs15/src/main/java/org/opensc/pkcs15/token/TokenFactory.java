@@ -60,4 +60,18 @@ public abstract class TokenFactory {
      */
     public abstract Token newSoftwareToken(File file) throws IOException;    
     
+    /**
+     * @return A new token containing only an empty MF, which holds its
+     *         whole content on the heap.
+     */
+    public abstract Token newMemoryToken();
+    
+    /**
+     * @param file A zip file or a directory containing the token infrastructure,
+     *             which is imported into the new token.
+     * @return A token instance, which holds its whole content on the heap.
+     * @throws IOException Upon errors.
+     */
+    public abstract Token newMemoryToken(File file) throws IOException;
+    
 }
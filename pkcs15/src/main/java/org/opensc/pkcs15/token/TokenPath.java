@@ -22,12 +22,27 @@
 
 package org.opensc.pkcs15.token;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.Arrays;
 
 import org.opensc.pkcs15.util.Util;
 
 /**
+ * An immutable path of file IDs on a token.
+ * 
+ * Paths with up to four 16-bit IDs, which covers virtually all PKCS#15
+ * structures, are packed into a single <code>long</code>, so equality
+ * checks and the derivation of parents and children do not need to
+ * allocate any arrays. Longer paths fall back to an array of IDs.
+ * 
+ * Frequently used paths may be registered with {@link #intern()}, after which
+ * {@link #getChild(int)}, {@link #getParent()} and {@link #valueOf(byte[])}
+ * return the interned instance instead of allocating a new path.
+ * 
  * @author wglas
  *
  */
@@ -35,8 +50,51 @@ public class TokenPath implements Serializable {
 
     private static final long serialVersionUID = -3849759447788334500L;
 
+    /**
+     * The serialized form of this class still consists of the array of IDs.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("parts",int[].class)
+    };
+    
+    private static final int MAX_PACKED_LENGTH = 4;
+    
+    private static final int INTERN_TABLE_SIZE = 1024;
+    
+    /**
+     * A direct-mapped table of interned paths. Entries are replaced on
+     * collisions, which is safe because paths are immutable and only
+     * consist of final fields.
+     */
+    private static final TokenPath[] interned = new TokenPath[INTERN_TABLE_SIZE];
+    
+    private final long packed;
+    private final int length;
     private final int[] parts;
     
+    private transient TokenPath parent;
+    private transient String string;
+    private transient int[] serialParts;
+    
+    private static boolean isPackable(int id) {
+        return (id & ~0xffff) == 0;
+    }
+    
+    private static long pack(long packed, int i, int id) {
+        return packed | (((long)id) << (16 * (MAX_PACKED_LENGTH-1-i)));
+    }
+    
+    private static int unpack(long packed, int i) {
+        return (int)(packed >>> (16 * (MAX_PACKED_LENGTH-1-i))) & 0xffff;
+    }
+    
+    private TokenPath(long packed, int length) {
+        
+        this.packed = packed;
+        this.length = length;
+        this.parts = null;
+    }
+    
     /**
      * Crate a token path relative to the root of the token.
      * 
@@ -44,7 +102,7 @@ public class TokenPath implements Serializable {
      */
     public TokenPath(int id) {
         
-        this.parts = new int[] { id };
+        this(new int[] { id });
     }
     
     /**
@@ -54,8 +112,25 @@ public class TokenPath implements Serializable {
      */
     public TokenPath(final TokenPath path, int id) {
         
-        this.parts = Arrays.copyOf(path.parts,path.getLength()+1);
-        this.parts[path.getLength()] = id;
+        if (path.parts == null && path.length < MAX_PACKED_LENGTH && isPackable(id)) {
+            
+            this.packed = pack(path.packed,path.length,id);
+            this.length = path.length + 1;
+            this.parts = null;
+        }
+        else {
+            
+            int[] ids = new int[path.length+1];
+            
+            for (int i=0; i<path.length; ++i)
+                ids[i] = path.getID(i);
+            
+            ids[path.length] = id;
+            
+            this.packed = 0L;
+            this.length = ids.length;
+            this.parts = ids;
+        }
     }
 
     /**
@@ -71,11 +146,23 @@ public class TokenPath implements Serializable {
     public TokenPath(final byte[] ba) {
         
         int l = ba.length/2;
-        this.parts = new int[l];
         
-        for (int i=0; i<l; ++i) {
+        if (l <= MAX_PACKED_LENGTH) {
+            
+            this.packed = packBytes(ba,l);
+            this.length = l;
+            this.parts = null;
+        }
+        else {
+            
+            this.packed = 0L;
+            this.length = l;
+            this.parts = new int[l];
+        
+            for (int i=0; i<l; ++i) {
 
-            this.parts[i] = ((((int)ba[2*i])&0xff) << 8) | (((int)ba[2*i+1])&0xff);
+                this.parts[i] = ((((int)ba[2*i])&0xff) << 8) | (((int)ba[2*i+1])&0xff);
+            }
         }
     }
 
@@ -88,22 +175,157 @@ public class TokenPath implements Serializable {
      */
     protected TokenPath(final int[] ids) {
         
-        this.parts = ids;
+        long p = 0L;
+        boolean packable = ids.length <= MAX_PACKED_LENGTH;
+        
+        for (int i=0; packable && i<ids.length; ++i) {
+            
+            if (isPackable(ids[i]))
+                p = pack(p,i,ids[i]);
+            else
+                packable = false;
+        }
+        
+        this.length = ids.length;
+        
+        if (packable) {
+            this.packed = p;
+            this.parts = null;
+        }
+        else {
+            this.packed = 0L;
+            this.parts = ids;
+        }
     }
-
+    
+    private static long packBytes(final byte[] ba, int l) {
+        
+        long p = 0L;
+        
+        for (int i=0; i<l; ++i) {
+            
+            p = pack(p,i,((((int)ba[2*i])&0xff) << 8) | (((int)ba[2*i+1])&0xff));
+        }
+        
+        return p;
+    }
+    
+    private static int internIndex(long packed, int length) {
+        
+        long h = packed * 0x9E3779B97F4A7C15L + length;
+        return (int)(h >>> 32) & (INTERN_TABLE_SIZE-1);
+    }
+    
+    private static TokenPath lookup(long packed, int length) {
+        
+        TokenPath ret = interned[internIndex(packed,length)];
+        
+        if (ret != null && ret.parts == null && ret.packed == packed && ret.length == length)
+            return ret;
+        
+        return null;
+    }
+    
+    /**
+     * Register this path as a frequently used path.
+     * 
+     * @return The interned instance equal to this path, which is this
+     *         instance, if no equal path has been interned before.
+     */
+    public TokenPath intern() {
+        
+        // paths, which are not packed are rare and not interned.
+        if (this.parts != null) return this;
+        
+        TokenPath ret = lookup(this.packed,this.length);
+        
+        if (ret != null) return ret;
+        
+        interned[internIndex(this.packed,this.length)] = this;
+        return this;
+    }
+    
+    /**
+     * Return a path consisting of the given array of path components,
+     * preferably an interned instance.
+     * 
+     * @param ba The components of the path as MSB first pairs of bytes.
+     * @return The path for the given components.
+     * 
+     * @see #TokenPath(byte[])
+     */
+    public static TokenPath valueOf(final byte[] ba) {
+        
+        int l = ba.length/2;
+        
+        if (l <= MAX_PACKED_LENGTH) {
+            
+            long p = packBytes(ba,l);
+            TokenPath ret = lookup(p,l);
+            
+            return ret != null ? ret : new TokenPath(p,l);
+        }
+        
+        return new TokenPath(ba);
+    }
+    
+    /**
+     * @param id The ID of the child.
+     * @return The path of the child with the given ID of this path,
+     *         preferably an interned instance.
+     */
+    public TokenPath getChild(int id) {
+        
+        if (this.parts == null && this.length < MAX_PACKED_LENGTH && isPackable(id)) {
+            
+            long p = pack(this.packed,this.length,id);
+            TokenPath ret = lookup(p,this.length+1);
+            
+            if (ret != null) return ret;
+            
+            ret = new TokenPath(p,this.length+1);
+            
+            // prefer an interned parent for later calls to getParent().
+            TokenPath internedParent = lookup(this.packed,this.length);
+            ret.parent = internedParent != null ? internedParent : this;
+            return ret;
+        }
+        
+        return new TokenPath(this,id);
+    }
+    
     /**
      * @return The parent of this path.
      */
     public TokenPath getParent() {
         
-        return new TokenPath(Arrays.copyOf(this.parts,this.parts.length-1));
+        TokenPath ret = this.parent;
+        
+        if (ret != null) return ret;
+        
+        if (this.length < 1)
+            throw new IndexOutOfBoundsException("The empty path has no parent.");
+        
+        if (this.parts == null) {
+            
+            long p = this.packed & ~pack(0L,this.length-1,0xffff);
+            ret = lookup(p,this.length-1);
+            
+            if (ret == null)
+                ret = new TokenPath(p,this.length-1);
+        }
+        else
+            ret = new TokenPath(Arrays.copyOf(this.parts,this.length-1));
+        
+        this.parent = ret;
+        return ret;
     }
     
     /**
      * @return The last path id of this token.
      */
     public int getTailID() {
-        return this.parts[this.parts.length-1];
+        return this.getID(this.length-1);
     }
     
     /**
@@ -111,7 +333,14 @@ public class TokenPath implements Serializable {
      * @return The IDs of the path segment no. <code>i</code>.
      */
     public int getID(int i) {
-        return this.parts[i];
+        
+        if (this.parts != null)
+            return this.parts[i];
+        
+        if (i < 0 || i >= this.length)
+            throw new ArrayIndexOutOfBoundsException(i);
+        
+        return unpack(this.packed,i);
     }
     
     /**
@@ -119,7 +348,33 @@ public class TokenPath implements Serializable {
      */
     public int getLength() {
         
-        return this.parts.length;
+        return this.length;
+    }
+    
+    /**
+     * @param other Another path.
+     * @return Whether this path is equal to or an ancestor of the
+     *         given path.
+     */
+    public boolean isPrefixOf(final TokenPath other) {
+        
+        if (this.length > other.length)
+            return false;
+        
+        if (this.parts == null && other.parts == null) {
+            
+            if (this.length == 0) return true;
+            
+            long mask = -1L << (16 * (MAX_PACKED_LENGTH - this.length));
+            
+            return (other.packed & mask) == this.packed;
+        }
+        
+        for (int i=0; i<this.length; ++i)
+            if (this.getID(i) != other.getID(i))
+                return false;
+        
+        return true;
     }
     
     /**
@@ -136,12 +391,14 @@ public class TokenPath implements Serializable {
      */
     public byte[] toByteArray() {
         
-        byte[] ret = new byte[this.parts.length * 2];
+        byte[] ret = new byte[this.length * 2];
         
-        for (int i=0; i<this.parts.length; ++i) {
+        for (int i=0; i<this.length; ++i) {
             
-            ret[2*i]   = (byte)(this.parts[i]>>8);
-            ret[2*i+1] = (byte)(this.parts[i]);
+            int id = this.getID(i);
+            
+            ret[2*i]   = (byte)(id>>8);
+            ret[2*i+1] = (byte)(id);
             
         }
         return ret;
@@ -154,11 +411,18 @@ public class TokenPath implements Serializable {
      */
     public void appendToStringBuffer(StringBuffer sb) {
         
-        for (int i=0;i<this.parts.length;++i)
+        if (this.string != null) {
+            sb.append(this.string);
+            return;
+        }
+        
+        for (int i=0;i<this.length;++i)
         {
+            int id = this.getID(i);
+            
             if (i > 0) sb.append('/');
-            Util.appendHexByte(sb,this.parts[i]>>8); 
-            Util.appendHexByte(sb,this.parts[i]); 
+            Util.appendHexByte(sb,id>>8); 
+            Util.appendHexByte(sb,id); 
         }
       
     }
@@ -169,11 +433,19 @@ public class TokenPath implements Serializable {
     @Override
     public String toString() {
         
-        StringBuffer sb = new StringBuffer();
+        String ret = this.string;
         
-        this.appendToStringBuffer(sb);
-     
-        return sb.toString();
+        if (ret == null) {
+            
+            StringBuffer sb = new StringBuffer(5*this.length);
+        
+            this.appendToStringBuffer(sb);
+            
+            ret = sb.toString();
+            this.string = ret;
+        }
+        
+        return ret;
     }
 
     /* (non-Javadoc)
@@ -181,7 +453,11 @@ public class TokenPath implements Serializable {
      */
     @Override
     public int hashCode() {
-        return Arrays.hashCode(this.parts);
+        
+        if (this.parts != null)
+            return Arrays.hashCode(this.parts);
+        
+        return (int)(this.packed ^ (this.packed >>> 32)) * 31 + this.length;
     }
 
     /* (non-Javadoc)
@@ -196,6 +472,45 @@ public class TokenPath implements Serializable {
         if (getClass() != obj.getClass())
             return false;
         TokenPath other = (TokenPath) obj;
+        
+        if (this.parts == null && other.parts == null)
+            return this.packed == other.packed && this.length == other.length;
+        
+        // a packable path is never stored as an array.
+        if (this.parts == null || other.parts == null)
+            return false;
+        
         return Arrays.equals(this.parts, other.parts);
     }
+    
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        
+        int[] ids = this.parts;
+        
+        if (ids == null) {
+            
+            ids = new int[this.length];
+            
+            for (int i=0; i<this.length; ++i)
+                ids[i] = unpack(this.packed,i);
+        }
+        
+        ObjectOutputStream.PutField fields = oos.putFields();
+        fields.put("parts",ids);
+        oos.writeFields();
+    }
+    
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        
+        ObjectInputStream.GetField fields = ois.readFields();
+        this.serialParts = (int[])fields.get("parts",null);
+        
+        if (this.serialParts == null)
+            throw new IOException("Serialized token path contains no IDs.");
+    }
+    
+    private Object readResolve() {
+        
+        return new TokenPath(this.serialParts);
+    }
 }
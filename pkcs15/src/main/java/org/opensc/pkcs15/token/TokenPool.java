@@ -0,0 +1,497 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+
+package org.opensc.pkcs15.token;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.smartcardio.Card;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardTerminal;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A pool of hardware tokens in a set of card terminals, which hands out
+ * exclusive leases on the tokens to worker threads.
+ *
+ * The pool opens a token for each terminal, which contains a card
+ * recognized by the {@link TokenFactory}. Terminals are examined by
+ * {@link #refresh()}, which is called by a background thread started
+ * through {@link #start(long)} or by {@link #acquire(long)} if no token
+ * is idle. Tokens, whose card has been removed or which have been
+ * invalidated by a lease holder, are discarded and reopened as soon
+ * as a card is present again. An invalidated token is reopened only
+ * after its lease has been released, so that the card is not connected
+ * twice while the lease holder still uses it.
+ *
+ * @author wglas
+ */
+public class TokenPool {
+
+    private static final Log log = LogFactory.getLog(TokenPool.class);
+
+    private final TokenFactory tokenFactory;
+    private final List<CardTerminal> terminals;
+    private final Map<CardTerminal,Slot> slots;
+    private final LinkedList<Slot> idle;
+    private final Map<CardTerminal,Boolean> unrecognized;
+    private final Object refreshLock;
+
+    private int leasedCount;
+    private int waiting;
+    private int maxWaiting;
+    private long totalLeases;
+    private long retiredLifeNanos;
+    private long retiredLeasedNanos;
+    private boolean closed;
+    private Thread watcher;
+
+    /**
+     * A token opened in one of the terminals.
+     */
+    private class Slot {
+
+        final CardTerminal terminal;
+        final Card card;
+        final Token token;
+        final long created;
+        long leasedNanos;
+        long leaseStart;
+        boolean leased;
+        boolean valid;
+
+        Slot(CardTerminal terminal, Card card, Token token) {
+            this.terminal = terminal;
+            this.card = card;
+            this.token = token;
+            this.created = System.nanoTime();
+            this.valid = true;
+        }
+
+        long getLeasedNanos(long now) {
+            return this.leased ? this.leasedNanos + now - this.leaseStart : this.leasedNanos;
+        }
+    }
+
+    /**
+     * An exclusive lease on a token of the pool.
+     */
+    public class Lease {
+
+        private final Slot slot;
+        private boolean released;
+
+        private Lease(Slot slot) {
+            this.slot = slot;
+        }
+
+        /**
+         * @return The leased token, which must not be used after
+         *         {@link #release()} has been called.
+         */
+        public Token getToken() {
+
+            if (this.released)
+                throw new IllegalStateException("The lease of the token in terminal ["+this.slot.terminal.getName()+"] has already been released.");
+
+            return this.slot.token;
+        }
+
+        /**
+         * @return The terminal, which contains the card of the leased token.
+         */
+        public CardTerminal getTerminal() {
+            return this.slot.terminal;
+        }
+
+        /**
+         * Mark the token as broken, e.g. after an I/O error. The token is
+         * discarded on release and the card is reopened by the next
+         * refresh of the pool.
+         */
+        public void invalidate() {
+
+            synchronized (TokenPool.this) {
+                this.slot.valid = false;
+            }
+        }
+
+        /**
+         * Return the token to the pool. Subsequent calls are ignored.
+         */
+        public void release() {
+
+            synchronized (TokenPool.this) {
+
+                if (this.released) return;
+                this.released = true;
+
+                TokenPool.this.releaseSlot(this.slot);
+            }
+        }
+    }
+
+    /**
+     * @param tokenFactory The factory used to open the tokens.
+     * @param terminals The terminals to watch.
+     */
+    public TokenPool(TokenFactory tokenFactory, List<? extends CardTerminal> terminals) {
+        super();
+        this.tokenFactory = tokenFactory;
+        this.terminals = new ArrayList<CardTerminal>(terminals);
+        this.slots = new HashMap<CardTerminal,Slot>();
+        this.idle = new LinkedList<Slot>();
+        this.unrecognized = new HashMap<CardTerminal,Boolean>();
+        this.refreshLock = new Object();
+    }
+
+    private void releaseSlot(Slot slot) {
+
+        long now = System.nanoTime();
+
+        slot.leasedNanos += now - slot.leaseStart;
+        slot.leased = false;
+        --this.leasedCount;
+
+        if (slot.valid && !this.closed && this.slots.get(slot.terminal) == slot) {
+
+            this.idle.addLast(slot);
+            this.notify();
+        }
+        else
+            this.retire(slot,now);
+    }
+
+    /**
+     * Remove the slot from the pool and disconnect the card,
+     * if the slot is not leased.
+     */
+    private void retire(Slot slot, long now) {
+
+        if (this.slots.get(slot.terminal) == slot)
+            this.slots.remove(slot.terminal);
+
+        this.idle.remove(slot);
+
+        if (slot.leased) {
+            slot.valid = false;
+            return;
+        }
+
+        this.retiredLifeNanos += now - slot.created;
+        this.retiredLeasedNanos += slot.leasedNanos;
+
+        try {
+            slot.card.disconnect(true);
+        } catch (CardException e) {
+            log.warn("Error disconnecting card in terminal ["+slot.terminal.getName()+"]",e);
+        } catch (IllegalStateException e) {
+            // card has already been disconnected.
+        }
+    }
+
+    /**
+     * Examine all terminals, discard tokens of removed cards and open
+     * tokens for newly inserted cards.
+     */
+    public void refresh() {
+
+        synchronized (this.refreshLock) {
+
+            for (CardTerminal terminal : this.terminals) {
+
+                boolean present;
+
+                try {
+                    present = terminal.isCardPresent();
+                } catch (CardException e) {
+                    log.warn("Error querying terminal ["+terminal.getName()+"]",e);
+                    present = false;
+                }
+
+                synchronized (this) {
+
+                    if (this.closed) return;
+
+                    Slot slot = this.slots.get(terminal);
+
+                    // an invalidated token is still in use by its lease holder,
+                    // so we must not connect to the card before it is released.
+                    if (slot != null && present && !slot.valid && slot.leased)
+                        continue;
+
+                    if (slot != null && (!present || !slot.valid)) {
+
+                        log.info("Discarding token in terminal ["+terminal.getName()+"].");
+                        this.retire(slot,System.nanoTime());
+                        slot = null;
+                    }
+
+                    if (!present)
+                        this.unrecognized.remove(terminal);
+
+                    if (!present || slot != null || this.unrecognized.containsKey(terminal))
+                        continue;
+                }
+
+                Slot slot = this.open(terminal);
+
+                if (slot == null) continue;
+
+                synchronized (this) {
+
+                    if (this.closed) {
+                        this.retire(slot,System.nanoTime());
+                        return;
+                    }
+
+                    this.slots.put(terminal,slot);
+                    this.idle.addLast(slot);
+                    this.notify();
+                }
+            }
+        }
+    }
+
+    private Slot open(CardTerminal terminal) {
+
+        Card card;
+
+        try {
+            card = terminal.connect("*");
+        } catch (CardException e) {
+            log.warn("Error connecting to card in terminal ["+terminal.getName()+"]",e);
+            return null;
+        }
+
+        try {
+            Token token = this.tokenFactory.newHardwareToken(card);
+
+            log.info("Opened token in terminal ["+terminal.getName()+"].");
+            return new Slot(terminal,card,token);
+
+        } catch (IOException e) {
+
+            log.warn("Ignoring unrecognized card in terminal ["+terminal.getName()+"]: "+e.getMessage());
+
+            synchronized (this) {
+                this.unrecognized.put(terminal,Boolean.TRUE);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Lease an idle token, waiting until one becomes available.
+     *
+     * @param timeout The maximal time to wait in milliseconds,
+     *                0 meaning to wait forever.
+     * @return A lease on a token or <code>null</code>, if the timeout elapsed.
+     * @throws InterruptedException If the calling thread has been interrupted.
+     * @throws IllegalStateException If the pool has been closed.
+     */
+    public Lease acquire(long timeout) throws InterruptedException {
+
+        if (timeout < 0)
+            throw new IllegalArgumentException("Negative timeout ["+timeout+"].");
+
+        boolean refreshed = false;
+        long end = System.currentTimeMillis() + timeout;
+
+        while (true) {
+
+            synchronized (this) {
+
+                if (this.closed)
+                    throw new IllegalStateException("The token pool has been closed.");
+
+                if (!this.idle.isEmpty()) {
+
+                    Slot slot = this.idle.removeFirst();
+
+                    slot.leased = true;
+                    slot.leaseStart = System.nanoTime();
+                    ++this.leasedCount;
+                    ++this.totalLeases;
+
+                    return new Lease(slot);
+                }
+
+                if (refreshed || this.watcher != null) {
+
+                    long remaining = end - System.currentTimeMillis();
+
+                    if (timeout != 0 && remaining <= 0)
+                        return null;
+
+                    ++this.waiting;
+
+                    if (this.waiting > this.maxWaiting)
+                        this.maxWaiting = this.waiting;
+
+                    try {
+                        this.wait(timeout == 0 ? 0 : remaining);
+                    } finally {
+                        --this.waiting;
+                    }
+
+                    continue;
+                }
+            }
+
+            // without a watcher, open newly inserted cards once before waiting.
+            this.refresh();
+            refreshed = true;
+        }
+    }
+
+    /**
+     * Start a background thread, which refreshes the pool periodically.
+     *
+     * @param pollMillis The interval between two refreshes in milliseconds.
+     */
+    public synchronized void start(final long pollMillis) {
+
+        if (this.watcher != null)
+            throw new IllegalStateException("The token pool is already being watched.");
+
+        this.watcher = new Thread("TokenPool watcher") {
+
+            @Override
+            public void run() {
+
+                while (!TokenPool.this.isClosed()) {
+
+                    TokenPool.this.refresh();
+
+                    try {
+                        Thread.sleep(pollMillis);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+            }
+        };
+
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+    }
+
+    /**
+     * Stop the background thread and discard all tokens. Leased tokens
+     * are discarded on release.
+     */
+    public void close() {
+
+        Thread t;
+
+        synchronized (this) {
+
+            if (this.closed) return;
+            this.closed = true;
+
+            long now = System.nanoTime();
+
+            for (Iterator<Slot> it = new ArrayList<Slot>(this.slots.values()).iterator(); it.hasNext();)
+                this.retire(it.next(),now);
+
+            t = this.watcher;
+            this.notifyAll();
+        }
+
+        if (t != null)
+            t.interrupt();
+    }
+
+    /**
+     * @return Whether {@link #close()} has been called.
+     */
+    public synchronized boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * @return The number of tokens currently opened in the pool.
+     */
+    public synchronized int getTokenCount() {
+        return this.slots.size();
+    }
+
+    /**
+     * @return The number of tokens currently leased, including leased
+     *         tokens, which have already been discarded.
+     */
+    public synchronized int getLeasedCount() {
+        return this.leasedCount;
+    }
+
+    /**
+     * @return The number of threads currently waiting for a token.
+     */
+    public synchronized int getQueueDepth() {
+        return this.waiting;
+    }
+
+    /**
+     * @return The maximal number of threads, which waited for a token
+     *         at the same time.
+     */
+    public synchronized int getMaxQueueDepth() {
+        return this.maxWaiting;
+    }
+
+    /**
+     * @return The number of leases handed out so far.
+     */
+    public synchronized long getTotalLeases() {
+        return this.totalLeases;
+    }
+
+    /**
+     * @return The fraction of the lifetime of all tokens ever opened by
+     *         this pool, during which they have been leased, a value between
+     *         0 and 1.
+     */
+    public synchronized double getUtilization() {
+
+        long now = System.nanoTime();
+        long life = this.retiredLifeNanos;
+        long leased = this.retiredLeasedNanos;
+
+        for (Slot slot : this.slots.values()) {
+
+            life += now - slot.created;
+            leased += slot.getLeasedNanos(now);
+        }
+
+        return life == 0 ? 0.0 : (double)leased / (double)life;
+    }
+}
@@ -0,0 +1,402 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+package org.opensc.pkcs15.token.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.opensc.pkcs15.token.DF;
+import org.opensc.pkcs15.token.DFAcl;
+import org.opensc.pkcs15.token.EF;
+import org.opensc.pkcs15.token.EFAcl;
+import org.opensc.pkcs15.token.MF;
+import org.opensc.pkcs15.token.Token;
+import org.opensc.pkcs15.token.TokenFile;
+import org.opensc.pkcs15.token.TokenPath;
+
+/**
+ * A token decorator, which caches the content of EFs by their path.
+ *
+ * The cache holds at most the configured number of bytes and evicts the
+ * least recently read EFs first. Writes, file creation and deletion as well
+ * as a reset of the token invalidate the affected entries, as long as they
+ * are issued through this decorator. If the underlying card is removed or
+ * modified by other means, {@link #invalidateAll()} has to be called.
+ *
+ * @author wglas
+ */
+public class CachingToken implements Token {
+
+    private static final Log log = LogFactory.getLog(CachingToken.class);
+
+    /**
+     * The default size budget of the cache in bytes.
+     */
+    public static final long DEFAULT_MAX_CACHE_SIZE = 64 * 1024L;
+
+    private final Token delegate;
+    private final long maxCacheSize;
+    private final LinkedHashMap<TokenPath,byte[]> cache;
+    private long cacheSize;
+
+    /**
+     * @param delegate The token, which is decorated.
+     */
+    public CachingToken(Token delegate) {
+        this(delegate,DEFAULT_MAX_CACHE_SIZE);
+    }
+
+    /**
+     * @param delegate The token, which is decorated.
+     * @param maxCacheSize The maximal number of bytes held in the cache.
+     */
+    public CachingToken(Token delegate, long maxCacheSize) {
+        super();
+        this.delegate = delegate;
+        this.maxCacheSize = maxCacheSize;
+        this.cache = new LinkedHashMap<TokenPath,byte[]>(16,0.75f,true);
+        this.cacheSize = 0;
+    }
+
+    /**
+     * Drop all cached EF contents, e.g. after the card has been removed.
+     */
+    public synchronized void invalidateAll() {
+
+        this.cache.clear();
+        this.cacheSize = 0;
+    }
+
+    /**
+     * Drop the cached content of the file with the given path and of all
+     * files below this path.
+     *
+     * @param path The path of an EF or DF.
+     */
+    public synchronized void invalidate(TokenPath path) {
+
+        Iterator<Map.Entry<TokenPath,byte[]>> it = this.cache.entrySet().iterator();
+
+        while (it.hasNext()) {
+
+            Map.Entry<TokenPath,byte[]> entry = it.next();
+
+            if (path.isPrefixOf(entry.getKey())) {
+
+                this.cacheSize -= entry.getValue().length;
+                it.remove();
+            }
+        }
+    }
+
+    private synchronized byte[] getCached(TokenPath path) {
+
+        return this.cache.get(path);
+    }
+
+    private synchronized void putCached(TokenPath path, byte[] data) {
+
+        if (data.length > this.maxCacheSize) return;
+
+        byte[] old = this.cache.put(path,data);
+
+        if (old != null)
+            this.cacheSize -= old.length;
+
+        this.cacheSize += data.length;
+
+        Iterator<byte[]> it = this.cache.values().iterator();
+
+        while (this.cacheSize > this.maxCacheSize && it.hasNext()) {
+
+            this.cacheSize -= it.next().length;
+            it.remove();
+        }
+    }
+
+    /**
+     * @return The number of bytes currently held in the cache.
+     */
+    public synchronized long getCacheSize() {
+        return this.cacheSize;
+    }
+
+    /**
+     * @return The maximal number of bytes held in the cache.
+     */
+    public long getMaxCacheSize() {
+        return this.maxCacheSize;
+    }
+
+    /**
+     * @return The decorated token.
+     */
+    public Token getDelegate() {
+        return this.delegate;
+    }
+
+    private TokenPath getCurrentPath() throws IOException {
+
+        TokenFile current = this.delegate.getCurrentFile();
+
+        if (current == null)
+            throw new IOException("No current EF selected.");
+
+        return current.getPath();
+    }
+
+    private TokenPath getChildPath(int path) throws IOException {
+
+        return this.getCurrentPath().getChild(path);
+    }
+
+    /**
+     * An output stream, which invalidates the cache entry of the
+     * written EF once more after the data has been written.
+     */
+    private class InvalidatingOutputStream extends FilterOutputStream {
+
+        private final TokenPath path;
+
+        InvalidatingOutputStream(OutputStream out, TokenPath path) {
+            super(out);
+            this.path = path;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b,off,len);
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            try {
+                super.close();
+            } finally {
+                CachingToken.this.invalidate(this.path);
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#readEFData()
+     */
+    @Override
+    public InputStream readEFData() throws IOException {
+
+        TokenPath path = this.getCurrentPath();
+
+        byte[] data = this.getCached(path);
+
+        if (data == null) {
+
+            InputStream is = this.delegate.readEFData();
+
+            try {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                byte[] buf = new byte[1024];
+                int n;
+
+                while ((n=is.read(buf))>0)
+                    bos.write(buf,0,n);
+
+                data = bos.toByteArray();
+
+            } finally {
+                is.close();
+            }
+
+            this.putCached(path,data);
+        }
+        else if (log.isDebugEnabled())
+            log.debug("Serving content of EF ["+path+"] from cache.");
+
+        return new ByteArrayInputStream(data);
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#writeEFData()
+     */
+    @Override
+    public OutputStream writeEFData() throws IOException {
+
+        TokenPath path = this.getCurrentPath();
+        this.invalidate(path);
+
+        return new InvalidatingOutputStream(this.delegate.writeEFData(),path);
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#writeEFData(long)
+     */
+    @Override
+    public OutputStream writeEFData(long offset) throws IOException {
+
+        TokenPath path = this.getCurrentPath();
+        this.invalidate(path);
+
+        return new InvalidatingOutputStream(this.delegate.writeEFData(offset),path);
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#createDF(int, long, org.opensc.pkcs15.token.DFAcl)
+     */
+    @Override
+    public DF createDF(int path, long size, DFAcl acl) throws IOException {
+
+        this.invalidate(this.getChildPath(path));
+        return this.delegate.createDF(path,size,acl);
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#createEF(int, long, org.opensc.pkcs15.token.EFAcl)
+     */
+    @Override
+    public EF createEF(int path, long size, EFAcl acl) throws IOException {
+
+        this.invalidate(this.getChildPath(path));
+        return this.delegate.createEF(path,size,acl);
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#deleteDF(int)
+     */
+    @Override
+    public void deleteDF(int path) throws IOException {
+
+        this.invalidate(this.getChildPath(path));
+        this.delegate.deleteDF(path);
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#deleteEF(int)
+     */
+    @Override
+    public void deleteEF(int path) throws IOException {
+
+        this.invalidate(this.getChildPath(path));
+        this.delegate.deleteEF(path);
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#reset()
+     */
+    @Override
+    public void reset() throws IOException {
+
+        this.invalidateAll();
+        this.delegate.reset();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#beginTransaction()
+     */
+    @Override
+    public void beginTransaction() throws IOException {
+        this.delegate.beginTransaction();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#endTransaction()
+     */
+    @Override
+    public void endTransaction() throws IOException {
+        this.delegate.endTransaction();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#getCurrentFile()
+     */
+    @Override
+    public TokenFile getCurrentFile() throws IOException {
+        return this.delegate.getCurrentFile();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#select(int)
+     */
+    @Override
+    public TokenFile select(int path) throws IOException {
+        return this.delegate.select(path);
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#selectPath(org.opensc.pkcs15.token.TokenPath)
+     */
+    @Override
+    public TokenFile selectPath(TokenPath path) throws IOException {
+        return this.delegate.selectPath(path);
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#selectDF(int)
+     */
+    @Override
+    public DF selectDF(int path) throws IOException {
+        return this.delegate.selectDF(path);
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#selectEF(int)
+     */
+    @Override
+    public EF selectEF(int path) throws IOException {
+        return this.delegate.selectEF(path);
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#selectMF()
+     */
+    @Override
+    public MF selectMF() throws IOException {
+        return this.delegate.selectMF();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#selectParentDF()
+     */
+    @Override
+    public DF selectParentDF() throws IOException {
+        return this.delegate.selectParentDF();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#close()
+     */
+    @Override
+    public void close() throws IOException {
+
+        this.invalidateAll();
+        this.delegate.close();
+    }
+}
@@ -28,6 +28,7 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 
 import javax.smartcardio.ATR;
@@ -59,6 +60,10 @@ import org.opensc.pkcs15.util.Util;
 /**
  * A token  implementation for Siemens CardOS 4.3b tokens.
  * 
+ * A token may be handed from one thread to another between transactions.
+ * A transaction belongs to the thread, which started it, and other
+ * threads calling {@link #beginTransaction()} wait until it has ended.
+ * 
  * @author wglas
  */
 public class CardOSToken implements Token {
@@ -73,6 +78,7 @@ public class CardOSToken implements Token {
                 });
     
     private static final int DEFAULT_LE = 252;
+    private static final int MAX_UPDATE_BINARY_OFFSET = 0x7fff;
     private static final int DEFAULT_EXTENDED_LE = 65532;
     
     private static final String DEFAULT_RESET_RESOURCE = "classpath:org/opensc/pkcs15/scripts/cardos/v43b_reset.ser";
@@ -80,6 +86,8 @@ public class CardOSToken implements Token {
     
     private CardChannel channel;
     private TokenFile currentFile;
+    private int transactionDepth;
+    private Thread transactionOwner;
     
     /**
      * @param channel The card channel to use.
@@ -108,12 +116,73 @@ public class CardOSToken implements Token {
         
         Command cmd = parser.parseScript(r);
  
+        this.beginTransaction();
+        
         try {
             while (cmd != null) {
                 cmd = cmd.execute(this.channel);
             }
         } catch (CardException e) {
             throw new PKCS15Exception("Error executing reset script ["+res+"].",e);
+        } finally {
+            this.endTransaction();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#beginTransaction()
+     */
+    @Override
+    public synchronized void beginTransaction() throws IOException {
+        
+        Thread current = Thread.currentThread();
+        
+        while (this.transactionDepth > 0 && this.transactionOwner != current) {
+            
+            try {
+                this.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the card transaction of another thread.");
+            }
+        }
+        
+        if (this.transactionDepth == 0) {
+            
+            try {
+                this.channel.getCard().beginExclusive();
+            } catch (CardException e) {
+                throw new PKCS15Exception("Error acquiring exclusive access to card",e);
+            }
+            
+            this.transactionOwner = current;
+        }
+        
+        ++this.transactionDepth;
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#endTransaction()
+     */
+    @Override
+    public synchronized void endTransaction() throws IOException {
+        
+        if (this.transactionDepth <= 0)
+            throw new IllegalStateException("No card transaction in progress.");
+        
+        if (this.transactionOwner != Thread.currentThread())
+            throw new IllegalStateException("The card transaction has been started by another thread.");
+        
+        if (--this.transactionDepth == 0) {
+            
+            this.transactionOwner = null;
+            this.notifyAll();
+            
+            try {
+                this.channel.getCard().endExclusive();
+            } catch (CardException e) {
+                throw new PKCS15Exception("Error releasing exclusive access to card",e);
+            }
         }
     }
 
@@ -188,6 +257,8 @@ public class CardOSToken implements Token {
         // CREATE FILE, P1=0x00, P2=0x00, ID -> read current EF from position 0.
         CommandAPDU cmd = new CommandAPDU(0x00,0xE0,0x00,0x00,data,DEFAULT_LE);
         
+        this.beginTransaction();
+        
         try {
             ResponseAPDU resp = this.channel.transmit(cmd);
             
@@ -196,9 +267,11 @@ public class CardOSToken implements Token {
             
         } catch (CardException e) {
             throw new PKCS15Exception("Error sending CREATE FILE for DF ["+PathHelper.formatPathAppend(this.currentFile.getPath(),path)+"]",e);
+        } finally {
+            this.endTransaction();
         }
 
-        return new DF(new TokenPath(this.currentFile.getPath(),path),size,acl);
+        return new DF(this.currentFile.getPath().getChild(path),size,acl);
     }
 
     /* (non-Javadoc)
@@ -271,7 +344,7 @@ public class CardOSToken implements Token {
             throw new PKCS15Exception("Error sending CREATE FILE for EF ["+PathHelper.formatPathAppend(this.currentFile.getPath(),path)+"]",e);
         }
 
-        return new EF(new TokenPath(this.currentFile.getPath(),path),size,acl);
+        return new EF(this.currentFile.getPath().getChild(path),size,acl);
     }
 
     /* (non-Javadoc)
@@ -338,6 +411,11 @@ public class CardOSToken implements Token {
         try {
             ResponseAPDU resp = this.channel.transmit(cmd);
 
+            // SW1=0x62 is a warning, which still carries data, e.g. 0x6282
+            // "end of file reached before reading Le bytes".
+            if (resp.getSW() != PKCS15Exception.ERROR_OK && resp.getSW1() != 0x62)
+                throw new PKCS15Exception("READ BINARY for EF ["+this.currentFile.getPath()+"] returned error",resp.getSW());
+            
             return new ByteArrayInputStream(resp.getData());
             
         } catch (CardException e) {
@@ -379,6 +457,56 @@ public class CardOSToken implements Token {
         // SELECT FILE, P1=0x00, P2=0x00, ID -> select EF or DF
         CommandAPDU cmd = new CommandAPDU(0x00,0xA4,0x00,0x00,PathHelper.idToPath(path),DEFAULT_LE);
         
+        return this.selectFileInternal(cmd,this.currentFile.getPath().getChild(path));
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#selectPath(org.opensc.pkcs15.token.TokenPath)
+     */
+    @Override
+    public TokenFile selectPath(TokenPath path) throws IOException {
+        
+        if (path.getLength() < 1 || path.getID(0) != PathHelper.MF_ID)
+            throw new IOException("The path ["+path+"] is not a subpath of the MF.");
+        
+        if (path.getLength() == 1)
+            return this.selectMF();
+        
+        // the current DF is the parent of the current file, if an EF is selected.
+        TokenPath currentDF = null;
+        
+        if (this.currentFile instanceof EF)
+            currentDF = this.currentFile.getPath().getParent();
+        else if (this.currentFile != null)
+            currentDF = this.currentFile.getPath();
+        
+        CommandAPDU cmd;
+        
+        if (currentDF != null && currentDF.getLength() > 1 &&
+                PathHelper.commonTrunkLength(currentDF,path) == currentDF.getLength() &&
+                path.getLength() > currentDF.getLength()) {
+            
+            // SELECT FILE, P1=0x09, P2=0x00, path without current DF -> select relative to the current DF
+            byte[] ba = path.toByteArray();
+            byte[] rel = new byte[ba.length - 2*currentDF.getLength()];
+            System.arraycopy(ba,2*currentDF.getLength(),rel,0,rel.length);
+            
+            cmd = new CommandAPDU(0x00,0xA4,0x09,0x00,rel,DEFAULT_LE);
+        }
+        else {
+            // SELECT FILE, P1=0x08, P2=0x00, path without MF -> select from MF
+            byte[] ba = path.toByteArray();
+            byte[] abs = new byte[ba.length - 2];
+            System.arraycopy(ba,2,abs,0,abs.length);
+            
+            cmd = new CommandAPDU(0x00,0xA4,0x08,0x00,abs,DEFAULT_LE);
+        }
+        
+        return this.selectFileInternal(cmd,path);
+    }
+
+    private TokenFile selectFileInternal(CommandAPDU cmd, TokenPath targetPath) throws IOException {
+        
         try {
             ResponseAPDU resp = this.channel.transmit(cmd);
             
@@ -415,8 +543,8 @@ public class CardOSToken implements Token {
                     if (n!=2)
                         throw new IOException("Invalid length ["+n+"] of FCI tag 0x83.");
                     int tpath = dis.readUnsignedShort();
-                    if (tpath != path)
-                        throw new IOException("File ID ["+PathHelper.formatID(tpath)+"] reported by SELECT FILE differs from requested ID ["+PathHelper.formatID(path)+"].");
+                    if (tpath != targetPath.getTailID())
+                        throw new IOException("File ID ["+PathHelper.formatID(tpath)+"] reported by SELECT FILE differs from requested ID ["+PathHelper.formatID(targetPath.getTailID())+"].");
                     break;
                
                 case 0x81:
@@ -451,11 +579,11 @@ public class CardOSToken implements Token {
             }
             
             if (fileSize >= 0)
-                this.currentFile = new EF(new TokenPath(this.currentFile.getPath(),path),fileSize,
+                this.currentFile = new EF(targetPath,fileSize,
                         acRead,acUpdate,acAppend,acDeactivate,acActivate,
                         acDelete,acAdmin,acIncrease,acDecrease);
             else if (bodySize >= 0)
-                this.currentFile = new DF(new TokenPath(this.currentFile.getPath(),path),bodySize,
+                this.currentFile = new DF(targetPath,bodySize,
                         acRead,acUpdate,acAppend,acDeactivate,acActivate,
                         acDelete,acAdmin,acIncrease);
             else
@@ -556,7 +684,7 @@ public class CardOSToken implements Token {
         // SELECT FILE, P1=0x01, P2=0x00, no data -> select DF
         CommandAPDU cmd = new CommandAPDU(0x00,0xA4,0x01,0x00,PathHelper.idToPath(path),DEFAULT_LE);
         
-        return this.selectDFInternal(cmd,new TokenPath(this.currentFile.getPath(),path));
+        return this.selectDFInternal(cmd,this.currentFile.getPath().getChild(path));
     }
     
     /* (non-Javadoc)
@@ -635,7 +763,7 @@ public class CardOSToken implements Token {
                 }
             }
             
-            EF ef = new EF(new TokenPath(this.currentFile.getPath(),path),fileSize,
+            EF ef = new EF(this.currentFile.getPath().getChild(path),fileSize,
                     acRead,acUpdate,acAppend,acDeactivate,acActivate,
                     acDelete,acAdmin,acIncrease,acDecrease);
 
@@ -749,10 +877,12 @@ public class CardOSToken implements Token {
     private class EFOutputStream extends ByteArrayOutputStream {
 
         private final TokenPath pathToWrite;
+        private final int offset;
         private int lastFlushPos;
         
-        EFOutputStream(final TokenPath pathToWrite) {
+        EFOutputStream(final TokenPath pathToWrite, int offset) {
             this.pathToWrite = pathToWrite;
+            this.offset = offset;
         }
         
         /* (non-Javadoc)
@@ -768,8 +898,14 @@ public class CardOSToken implements Token {
             
             super.close();
             
-            // UPDATE BINARY, P1=0x00, P2=0x00, ID -> read current EF from position 0.
-            CommandAPDU cmd = new CommandAPDU(0x00,0xD6,0x00,0x00,this.toByteArray(),DEFAULT_LE);
+            int pos = this.offset + this.lastFlushPos;
+            
+            if (pos > MAX_UPDATE_BINARY_OFFSET)
+                throw new PKCS15Exception("Offset ["+pos+"] for UPDATE BINARY of EF ["+this.pathToWrite+"] is too large.",PKCS15Exception.ERROR_INVALID_PARAMETER);
+            
+            // UPDATE BINARY, P1/P2=offset, data written since the last flush.
+            CommandAPDU cmd = new CommandAPDU(0x00,0xD6,pos>>8,pos&0xff,
+                    this.buf,this.lastFlushPos,this.count-this.lastFlushPos,DEFAULT_LE);
             
             try {
                 ResponseAPDU resp = CardOSToken.this.channel.transmit(cmd);
@@ -804,7 +940,22 @@ public class CardOSToken implements Token {
         if (this.currentFile == null)
             throw new IOException("No current EF selected."); 
         
-        return new EFOutputStream(this.currentFile.getPath());
+        return new EFOutputStream(this.currentFile.getPath(),0);
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#writeEFData(long)
+     */
+    @Override
+    public OutputStream writeEFData(long offset) throws IOException {
+        
+        if (!(this.currentFile instanceof EF))
+            throw new IOException("No current EF selected."); 
+        
+        if (offset < 0 || offset > this.currentFile.getSize() || offset > MAX_UPDATE_BINARY_OFFSET)
+            throw new PKCS15Exception("Illegal offset ["+offset+"] for EF ["+this.currentFile.getPath()+"].",PKCS15Exception.ERROR_INVALID_PARAMETER);
+        
+        return new EFOutputStream(this.currentFile.getPath(),(int)offset);
     }
 
 }
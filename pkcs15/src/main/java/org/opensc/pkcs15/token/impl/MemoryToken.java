@@ -0,0 +1,776 @@
+/***********************************************************
+ * $Id$
+ *
+ * PKCS#15 cryptographic provider of the opensc project.
+ * http://www.opensc-project.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Created: 19.10.2026
+ *
+ ***********************************************************/
+
+package org.opensc.pkcs15.token.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.opensc.pkcs15.PKCS15Exception;
+import org.opensc.pkcs15.token.DF;
+import org.opensc.pkcs15.token.DFAcl;
+import org.opensc.pkcs15.token.EF;
+import org.opensc.pkcs15.token.EFAcl;
+import org.opensc.pkcs15.token.MF;
+import org.opensc.pkcs15.token.PathHelper;
+import org.opensc.pkcs15.token.Token;
+import org.opensc.pkcs15.token.TokenFile;
+import org.opensc.pkcs15.token.TokenFileAcl;
+import org.opensc.pkcs15.token.TokenPath;
+
+/**
+ * A token, which holds its whole file system on the heap.
+ *
+ * The directory layout of {@link SoftwareToken} may be imported from a
+ * directory or a zip archive and exported again. A snapshot creates an
+ * independent deep copy of the token, which allows to populate a template
+ * token once and to hand out copies to many concurrent users.
+ *
+ * Access conditions are stored with each file. Since this token knows no
+ * authentication state, only {@link TokenFileAcl#AC_NEVER} is enforced.
+ * The directory and zip layouts carry no access conditions, so imported
+ * files are always accessible and exports contain the plain file content.
+ *
+ * @author wglas
+ */
+public class MemoryToken implements Token {
+
+    private static final MFAclImpl DEFAULT_MF_ACL =
+        new MFAclImpl(TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,
+                TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,
+                TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,
+                TokenFileAcl.AC_ALWAYS);
+
+    private static final DFAclImpl DEFAULT_DF_ACL =
+        new DFAclImpl(TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,
+                TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,
+                TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS);
+
+    private static final EFAclImpl DEFAULT_EF_ACL =
+        new EFAclImpl(TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,
+                TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,
+                TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS);
+
+    /**
+     * A node in the file tree.
+     */
+    private static abstract class Node {
+
+        final Node parent;
+
+        Node(Node parent) {
+            this.parent = parent;
+        }
+
+        abstract TokenFile getFile();
+
+        abstract Node copy(Node newParent);
+    }
+
+    private static final class DFNode extends Node {
+
+        final DF file;
+        final Map<Integer,Node> children;
+
+        DFNode(Node parent, DF file) {
+            super(parent);
+            this.file = file;
+            this.children = new LinkedHashMap<Integer,Node>();
+        }
+
+        @Override
+        TokenFile getFile() {
+            return this.file;
+        }
+
+        @Override
+        Node copy(Node newParent) {
+
+            DFNode ret = new DFNode(newParent,this.file);
+
+            for (Map.Entry<Integer,Node> entry : this.children.entrySet())
+                ret.children.put(entry.getKey(),entry.getValue().copy(ret));
+
+            return ret;
+        }
+    }
+
+    private static final class EFNode extends Node {
+
+        EF file;
+        byte[] data;
+        int length;
+
+        EFNode(Node parent, EF file, byte[] data, int length) {
+            super(parent);
+            this.file = file;
+            this.data = data;
+            this.length = length;
+        }
+
+        @Override
+        TokenFile getFile() {
+            return this.file;
+        }
+
+        @Override
+        Node copy(Node newParent) {
+            return new EFNode(newParent,this.file,Arrays.copyOf(this.data,this.length),this.length);
+        }
+
+        void write(int pos, byte[] b, int off, int len) {
+
+            int end = pos + len;
+
+            if (end > this.data.length)
+                this.data = Arrays.copyOf(this.data,Math.max(end,2*this.data.length));
+
+            System.arraycopy(b,off,this.data,pos,len);
+
+            if (end > this.length)
+                this.length = end;
+
+            // grow the reported size like a file in the file system.
+            if (this.length > this.file.getSize())
+                this.file = new EF(this.file.getPath(),this.length,this.file);
+        }
+    }
+
+    private DFNode mf;
+    private Node current;
+
+    /**
+     * Construct a token, which contains only an empty master file.
+     */
+    public MemoryToken() {
+        super();
+        this.mf = newMF();
+        this.current = this.mf;
+    }
+
+    private MemoryToken(DFNode mf) {
+        super();
+        this.mf = mf;
+        this.current = mf;
+    }
+
+    private static DFNode newMF() {
+        return new DFNode(null,new MF(PathHelper.MF_PATH,0,DEFAULT_MF_ACL));
+    }
+
+    private DFNode getCurrentDF() {
+
+        if (this.current instanceof DFNode)
+            return (DFNode)this.current;
+
+        return (DFNode)this.current.parent;
+    }
+
+    private EFNode getCurrentEF() throws IOException {
+
+        if (this.current instanceof EFNode)
+            return (EFNode)this.current;
+
+        throw new IOException("File ["+this.current.getFile().getPath()+"] is not an EF.");
+    }
+
+    private static void checkAccess(int ac, String operation, TokenPath path) throws IOException {
+
+        if (ac == TokenFileAcl.AC_NEVER)
+            throw new PKCS15Exception(operation+" of file ["+path+"] is never allowed.",PKCS15Exception.ERROR_ACCES_DENIED);
+    }
+
+    private Node getChild(int path) {
+
+        return this.getCurrentDF().children.get(path);
+    }
+
+    private void checkCreate(DFNode df, int path) throws IOException {
+
+        TokenPath p = df.file.getPath();
+
+        checkAccess(df.file.getAcCreate(),"Creation of a child",p);
+
+        if (df.children.containsKey(path))
+            throw new PKCS15Exception("File ["+PathHelper.formatPathAppend(p,path)+"] already exists.",PKCS15Exception.ERROR_FILE_EXISTS);
+    }
+
+    private Node removeChild(int path, Class<? extends Node> type) throws IOException {
+
+        DFNode df = this.getCurrentDF();
+        Node node = df.children.get(path);
+
+        if (node == null)
+            throw new PKCS15Exception("File ["+PathHelper.formatPathAppend(df.file.getPath(),path)+"] does not exist.",PKCS15Exception.ERROR_FILE_NOT_FOUND);
+
+        if (!type.isInstance(node))
+            throw new IOException("File ["+node.getFile().getPath()+"] has the wrong type for deletion.");
+
+        checkAccess(node.getFile().getAcDelete(),"Deletion",node.getFile().getPath());
+
+        // deselect deleted subtree.
+        for (Node n = this.current; n != null; n = n.parent)
+            if (n == node) {
+                this.current = df;
+                break;
+            }
+
+        df.children.remove(path);
+        return node;
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#reset()
+     */
+    @Override
+    public synchronized void reset() throws IOException {
+
+        this.mf = newMF();
+        this.current = this.mf;
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#beginTransaction()
+     */
+    @Override
+    public void beginTransaction() throws IOException {
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#endTransaction()
+     */
+    @Override
+    public void endTransaction() throws IOException {
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#close()
+     */
+    @Override
+    public void close() throws IOException {
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#getCurrentFile()
+     */
+    @Override
+    public synchronized TokenFile getCurrentFile() throws IOException {
+
+        return this.current.getFile();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#select(int)
+     */
+    @Override
+    public synchronized TokenFile select(int path) throws IOException {
+
+        Node node = this.getChild(path);
+
+        if (node == null) return null;
+
+        this.current = node;
+        return node.getFile();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#selectPath(org.opensc.pkcs15.token.TokenPath)
+     */
+    @Override
+    public synchronized TokenFile selectPath(TokenPath path) throws IOException {
+
+        if (path.getLength() < 1 || path.getID(0) != PathHelper.MF_ID)
+            throw new IOException("The path ["+path+"] is not a subpath of the MF.");
+
+        Node node = this.mf;
+
+        for (int i=1; i<path.getLength() && node != null; ++i) {
+
+            if (!(node instanceof DFNode))
+                node = null;
+            else
+                node = ((DFNode)node).children.get(path.getID(i));
+        }
+
+        if (node == null)
+            throw new PKCS15Exception("File ["+path+"] does not exist.",PKCS15Exception.ERROR_FILE_NOT_FOUND);
+
+        this.current = node;
+        return node.getFile();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#selectParentDF()
+     */
+    @Override
+    public synchronized DF selectParentDF() throws IOException {
+
+        DFNode df = this.getCurrentDF();
+
+        if (this.current == df) {
+
+            if (df.parent == null)
+                throw new PKCS15Exception("The MF has no parent DF.",PKCS15Exception.ERROR_FILE_NOT_FOUND);
+
+            df = (DFNode)df.parent;
+        }
+
+        this.current = df;
+        return df.file;
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#selectDF(int)
+     */
+    @Override
+    public synchronized DF selectDF(int path) throws IOException {
+
+        Node node = this.getChild(path);
+
+        if (node == null) return null;
+
+        if (!(node instanceof DFNode))
+            throw new IOException("File ["+node.getFile().getPath()+"] is not a DF.");
+
+        this.current = node;
+        return ((DFNode)node).file;
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#selectEF(int)
+     */
+    @Override
+    public synchronized EF selectEF(int path) throws IOException {
+
+        Node node = this.getChild(path);
+
+        if (node == null) return null;
+
+        if (!(node instanceof EFNode))
+            throw new IOException("File ["+node.getFile().getPath()+"] is not an EF.");
+
+        this.current = node;
+        return ((EFNode)node).file;
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#selectMF()
+     */
+    @Override
+    public synchronized MF selectMF() throws IOException {
+
+        this.current = this.mf;
+        return (MF)this.mf.file;
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#readEFData()
+     */
+    @Override
+    public synchronized InputStream readEFData() throws IOException {
+
+        EFNode ef = this.getCurrentEF();
+
+        checkAccess(ef.file.getAcRead(),"Reading",ef.file.getPath());
+
+        return new ByteArrayInputStream(Arrays.copyOf(ef.data,ef.length));
+    }
+
+    /**
+     * An output stream, which writes through to the content of an EF.
+     */
+    private class EFOutputStream extends OutputStream {
+
+        private final EFNode ef;
+        private int pos;
+
+        EFOutputStream(EFNode ef, int pos) {
+            this.ef = ef;
+            this.pos = pos;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+
+            this.write(new byte[] { (byte)b },0,1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+
+            synchronized (MemoryToken.this) {
+                this.ef.write(this.pos,b,off,len);
+            }
+            this.pos += len;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#writeEFData()
+     */
+    @Override
+    public synchronized OutputStream writeEFData() throws IOException {
+
+        EFNode ef = this.getCurrentEF();
+
+        checkAccess(ef.file.getAcUpdate(),"Update",ef.file.getPath());
+
+        ef.length = 0;
+
+        return new EFOutputStream(ef,0);
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#writeEFData(long)
+     */
+    @Override
+    public synchronized OutputStream writeEFData(long offset) throws IOException {
+
+        EFNode ef = this.getCurrentEF();
+
+        checkAccess(ef.file.getAcUpdate(),"Update",ef.file.getPath());
+
+        if (offset < 0 || offset > ef.length)
+            throw new PKCS15Exception("Illegal offset ["+offset+"] for EF ["+ef.file.getPath()+"].",PKCS15Exception.ERROR_INVALID_PARAMETER);
+
+        return new EFOutputStream(ef,(int)offset);
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#createEF(int, long, org.opensc.pkcs15.token.EFAcl)
+     */
+    @Override
+    public synchronized EF createEF(int path, long size, EFAcl acl) throws IOException {
+
+        DFNode df = this.getCurrentDF();
+        this.checkCreate(df,path);
+
+        if (size < 0 || size > Integer.MAX_VALUE)
+            throw new PKCS15Exception("Illegal size ["+size+"] for EF ["+PathHelper.formatPathAppend(df.file.getPath(),path)+"].",PKCS15Exception.ERROR_INVALID_PARAMETER);
+
+        EF ef = new EF(df.file.getPath().getChild(path),size,acl);
+        df.children.put(path,new EFNode(df,ef,new byte[(int)size],0));
+
+        return ef;
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#createDF(int, long, org.opensc.pkcs15.token.DFAcl)
+     */
+    @Override
+    public synchronized DF createDF(int path, long size, DFAcl acl) throws IOException {
+
+        DFNode df = this.getCurrentDF();
+        this.checkCreate(df,path);
+
+        DF child = new DF(df.file.getPath().getChild(path),size,acl);
+        df.children.put(path,new DFNode(df,child));
+
+        return child;
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#deleteDF(int)
+     */
+    @Override
+    public synchronized void deleteDF(int path) throws IOException {
+
+        this.removeChild(path,DFNode.class);
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#deleteEF(int)
+     */
+    @Override
+    public synchronized void deleteEF(int path) throws IOException {
+
+        this.removeChild(path,EFNode.class);
+    }
+
+    /**
+     * @return An independent deep copy of this token, which has the MF
+     *         selected as current file.
+     */
+    public synchronized MemoryToken snapshot() {
+
+        return new MemoryToken((DFNode)this.mf.copy(null));
+    }
+
+    private static int parseID(String name) throws IOException {
+
+        if (name.length() != 4)
+            throw new IOException("Invalid file name ["+name+"] in token layout.");
+
+        try {
+            return Integer.parseInt(name,16);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid file name ["+name+"] in token layout.");
+        }
+    }
+
+    private static byte[] readAll(InputStream is, int sizeHint) throws IOException {
+
+        byte[] buf = new byte[Math.max(sizeHint,256)];
+        int length = 0;
+        int n;
+
+        while ((n=is.read(buf,length,buf.length-length)) > 0) {
+
+            length += n;
+
+            if (length == buf.length)
+                buf = Arrays.copyOf(buf,2*buf.length);
+        }
+
+        return Arrays.copyOf(buf,length);
+    }
+
+    private DFNode makeDFs(String[] names, int n) throws IOException {
+
+        if (n < 1 || parseID(names[0]) != PathHelper.MF_ID)
+            throw new IOException("The token layout does not start with the MF ["+PathHelper.formatID(PathHelper.MF_ID)+"].");
+
+        DFNode df = this.mf;
+
+        for (int i=1; i<n; ++i) {
+
+            int id = parseID(names[i]);
+            Node node = df.children.get(id);
+
+            if (node == null) {
+                node = new DFNode(df,new DF(df.file.getPath().getChild(id),0,DEFAULT_DF_ACL));
+                df.children.put(id,node);
+            }
+            else if (!(node instanceof DFNode))
+                throw new IOException("File ["+node.getFile().getPath()+"] is not a DF.");
+
+            df = (DFNode)node;
+        }
+
+        return df;
+    }
+
+    private void putEF(DFNode df, int id, byte[] data) {
+
+        EF ef = new EF(df.file.getPath().getChild(id),data.length,DEFAULT_EF_ACL);
+        df.children.put(id,new EFNode(df,ef,data,data.length));
+    }
+
+    private void importDirectory(File dir, DFNode df) throws IOException {
+
+        File[] files = dir.listFiles();
+
+        if (files == null)
+            throw new IOException("Cannot list directory ["+dir+"].");
+
+        Arrays.sort(files);
+
+        for (File file : files) {
+
+            int id = parseID(file.getName());
+
+            if (file.isDirectory()) {
+
+                DFNode child = new DFNode(df,new DF(df.file.getPath().getChild(id),0,DEFAULT_DF_ACL));
+                df.children.put(id,child);
+                this.importDirectory(file,child);
+            }
+            else {
+
+                FileInputStream fis = new FileInputStream(file);
+
+                try {
+                    this.putEF(df,id,readAll(fis,(int)file.length()));
+                } finally {
+                    fis.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Import a token from the directory layout used by {@link SoftwareToken}.
+     *
+     * @param directory A directory, which contains the directory of the MF
+     *                  named <code>3F00</code>.
+     * @return A new token with the content of the directory.
+     * @throws IOException Upon I/O errors or an invalid file layout.
+     */
+    public static MemoryToken fromDirectory(File directory) throws IOException {
+
+        MemoryToken ret = new MemoryToken();
+
+        File mfFile = new File(directory,PathHelper.formatID(PathHelper.MF_ID));
+
+        if (mfFile.isDirectory())
+            ret.importDirectory(mfFile,ret.mf);
+
+        return ret;
+    }
+
+    /**
+     * Import a token from a zip archive containing the directory layout
+     * used by {@link SoftwareToken}.
+     *
+     * @param is An input stream of a zip archive, which is closed by this method.
+     * @return A new token with the content of the zip archive.
+     * @throws IOException Upon I/O errors or an invalid file layout.
+     */
+    public static MemoryToken fromZip(InputStream is) throws IOException {
+
+        MemoryToken ret = new MemoryToken();
+
+        ZipInputStream zis = new ZipInputStream(is);
+
+        try {
+            ZipEntry ze;
+
+            while ((ze = zis.getNextEntry()) != null) {
+
+                String[] names = ze.getName().split("/");
+
+                // skip empty components of leading or trailing slashes.
+                int start = 0;
+                while (start < names.length && names[start].length() == 0)
+                    ++start;
+
+                String[] parts = Arrays.copyOfRange(names,start,names.length);
+
+                if (ze.isDirectory()) {
+                    ret.makeDFs(parts,parts.length);
+                }
+                else {
+                    DFNode df = ret.makeDFs(parts,parts.length-1);
+                    ret.putEF(df,parseID(parts[parts.length-1]),readAll(zis,(int)ze.getSize()));
+                }
+            }
+        } finally {
+            zis.close();
+        }
+
+        return ret;
+    }
+
+    /**
+     * Import a token from a directory or a zip archive.
+     *
+     * @param file A directory or zip file containing the token layout.
+     * @return A new token with the content of the given file.
+     * @throws IOException Upon I/O errors or an invalid file layout.
+     */
+    public static MemoryToken fromFile(File file) throws IOException {
+
+        if (file.isDirectory())
+            return fromDirectory(file);
+
+        return fromZip(new FileInputStream(file));
+    }
+
+    private static String formatName(Node node) {
+
+        return String.format(Locale.US,"%04X",node.getFile().getPath().getTailID());
+    }
+
+    private static void exportDirectory(DFNode df, File dir) throws IOException {
+
+        if (!dir.isDirectory() && !dir.mkdir())
+            throw new IOException("Cannot create directory ["+dir+"].");
+
+        for (Node node : df.children.values()) {
+
+            File file = new File(dir,formatName(node));
+
+            if (node instanceof DFNode)
+                exportDirectory((DFNode)node,file);
+            else {
+                EFNode ef = (EFNode)node;
+                FileOutputStream fos = new FileOutputStream(file);
+
+                try {
+                    fos.write(ef.data,0,ef.length);
+                } finally {
+                    fos.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Export the content of this token to the directory layout used by
+     * {@link SoftwareToken}.
+     *
+     * @param directory The directory, which will contain the MF directory.
+     * @throws IOException Upon I/O errors.
+     */
+    public synchronized void exportToDirectory(File directory) throws IOException {
+
+        exportDirectory(this.mf,new File(directory,formatName(this.mf)));
+    }
+
+    private static void exportZip(DFNode df, String prefix, ZipOutputStream zos) throws IOException {
+
+        String name = prefix + formatName(df) + "/";
+
+        zos.putNextEntry(new ZipEntry(name));
+        zos.closeEntry();
+
+        for (Node node : df.children.values()) {
+
+            if (node instanceof DFNode)
+                exportZip((DFNode)node,name,zos);
+            else {
+                EFNode ef = (EFNode)node;
+
+                zos.putNextEntry(new ZipEntry(name + formatName(ef)));
+                zos.write(ef.data,0,ef.length);
+                zos.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * Export the content of this token to a zip archive with the directory
+     * layout used by {@link SoftwareToken}.
+     *
+     * @param os The output stream to write the zip archive to, which is
+     *           finished but not closed by this method.
+     * @throws IOException Upon I/O errors.
+     */
+    public synchronized void exportToZip(OutputStream os) throws IOException {
+
+        ZipOutputStream zos = new ZipOutputStream(os);
+        exportZip(this.mf,"",zos);
+        zos.finish();
+    }
+}
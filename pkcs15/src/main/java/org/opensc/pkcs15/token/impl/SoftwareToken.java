@@ -25,11 +25,17 @@ package org.opensc.pkcs15.token.impl;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Locale;
+import java.util.Map;
 
+import org.opensc.pkcs15.PKCS15Exception;
 import org.opensc.pkcs15.token.DF;
 import org.opensc.pkcs15.token.DFAcl;
 import org.opensc.pkcs15.token.EF;
@@ -43,16 +49,115 @@ import org.opensc.pkcs15.token.TokenPath;
 import org.opensc.pkcs15.util.Util;
 
 /**
+ * A token, which stores DFs as directories and EFs as files of a file system.
+ * 
+ * The existence, size and access conditions of the files are kept in an
+ * in-memory index, which is populated lazily and updated by the modifying
+ * operations of this token. Changes made to the directory by other processes
+ * are recognized after the configured maximal age of the index entries or
+ * after a call to {@link #invalidateMetadata()}.
+ * 
  * @author wglas
  *
  */
 public class SoftwareToken implements Token {
 
+    /**
+     * The default maximal age of the cached metadata of a file in milliseconds.
+     */
+    public static final long DEFAULT_MAX_METADATA_AGE = 1000L;
+    
     private static final String MF_PATH_STRING = "3F00";
     private File directory;
     private File currentFile;
     private File mfFile;
     private TokenPath currentPath;
+    private final long maxMetadataAge;
+    private final Map<TokenPath,FileInfo> metadata;
+    
+    /**
+     * The metadata of a file as queried from the file system.
+     */
+    private static final class FileInfo {
+        
+        final TokenPath path;
+        final boolean exists;
+        final boolean directory;
+        final boolean mf;
+        final long length;
+        final boolean readable;
+        final boolean writable;
+        final boolean parentWritable;
+        final long timestamp;
+        private TokenFile tokenFile;
+        
+        FileInfo(TokenPath path, File file, boolean mf, boolean parentWritable) {
+            
+            this.path = path;
+            this.exists = file.exists();
+            this.directory = this.exists && file.isDirectory();
+            this.mf = mf;
+            this.length = this.exists ? file.length() : 0L;
+            this.readable = this.exists && file.canRead();
+            this.writable = this.exists && file.canWrite();
+            this.parentWritable = parentWritable;
+            this.timestamp = System.currentTimeMillis();
+        }
+        
+        boolean isFile() {
+            return this.exists && !this.directory;
+        }
+        
+        TokenFile getTokenFile() {
+            
+            if (this.tokenFile != null)
+                return this.tokenFile;
+            
+            int r = this.readable ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER;
+            int w = this.writable ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER;
+            int pw = this.parentWritable ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER;
+            
+            if (this.mf)
+                this.tokenFile = new MF(this.path,this.length,
+                        TokenFileAcl.AC_ALWAYS,w,w,w,w,w,pw,w,w,w);
+            else if (this.directory)
+                this.tokenFile = new DF(this.path,this.length,
+                        TokenFileAcl.AC_ALWAYS,w,w,w,w,w,pw,w);
+            else
+                this.tokenFile = new EF(this.path,this.length,
+                        r,w,w,w,w,w,w,pw,w);
+            
+            return this.tokenFile;
+        }
+    }
+    
+    /**
+     * An output stream, which drops the metadata of the written EF on close.
+     */
+    private class InvalidatingOutputStream extends FilterOutputStream {
+        
+        private final TokenPath path;
+        
+        InvalidatingOutputStream(OutputStream os, TokenPath path) {
+            super(os);
+            this.path = path;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b,off,len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            
+            try {
+                super.close();
+            } finally {
+                SoftwareToken.this.metadata.remove(this.path);
+            }
+        }
+    }
     
     private static File appendToFile(final File file, final int relPath)
     {
@@ -60,10 +165,23 @@ public class SoftwareToken implements Token {
     }
     
     /**
-     * @param directory
+     * @param directory The directory containing the MF of the token.
      */
     public SoftwareToken(File directory) {
+        this(directory,DEFAULT_MAX_METADATA_AGE);
+    }
+    
+    /**
+     * @param directory The directory containing the MF of the token.
+     * @param maxMetadataAge The maximal age in milliseconds of cached
+     *              file metadata before the file system is queried again.
+     *              A value of 0 disables caching, a negative value lets
+     *              cached metadata never expire.
+     */
+    public SoftwareToken(File directory, long maxMetadataAge) {
         super();
+        this.maxMetadataAge = maxMetadataAge;
+        this.metadata = new HashMap<TokenPath,FileInfo>();
         this.directory = directory;
         this.mfFile = new File(this.directory,MF_PATH_STRING);
         this.currentFile = this.mfFile;
@@ -73,12 +191,70 @@ public class SoftwareToken implements Token {
             this.mfFile.mkdir();
     }
     
+    private FileInfo getInfo(TokenPath path, File file) {
+        
+        FileInfo info = this.metadata.get(path);
+        
+        if (info != null &&
+                (this.maxMetadataAge < 0 || System.currentTimeMillis() - info.timestamp <= this.maxMetadataAge))
+            return info;
+        
+        boolean mf = path.getLength() == 1;
+        boolean parentWritable;
+        
+        if (mf)
+            parentWritable = this.directory.canWrite();
+        else
+            parentWritable = this.getInfo(path.getParent(),file.getParentFile()).writable;
+        
+        info = new FileInfo(path,file,mf,parentWritable);
+        
+        if (this.maxMetadataAge != 0)
+            this.metadata.put(path,info);
+        
+        return info;
+    }
+    
+    /**
+     * Drop the metadata of the given file and all its descendants
+     * as well as the metadata of its parent, whose size changes
+     * when files are created or deleted.
+     */
+    private void invalidateMetadata(TokenPath path) {
+        
+        for (Iterator<TokenPath> it = this.metadata.keySet().iterator(); it.hasNext();) {
+            
+            if (path.isPrefixOf(it.next()))
+                it.remove();
+        }
+        
+        if (path.getLength() > 1)
+            this.metadata.remove(path.getParent());
+    }
+    
+    /**
+     * Drop all cached file metadata, e.g. after the directory of the
+     * token has been modified by another process.
+     */
+    public void invalidateMetadata() {
+        
+        this.metadata.clear();
+    }
+    
+    /**
+     * @return The maximal age in milliseconds of cached file metadata.
+     */
+    public long getMaxMetadataAge() {
+        return this.maxMetadataAge;
+    }
+
     /* (non-Javadoc)
      * @see org.opensc.pkcs15.token.Token#reset()
      */
     @Override
     public void reset() throws IOException {
         
+        this.metadata.clear();
         this.currentFile = this.mfFile;
         this.currentPath = PathHelper.MF_PATH;
         
@@ -88,6 +264,20 @@ public class SoftwareToken implements Token {
         this.mfFile.mkdir();
     }
 
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#beginTransaction()
+     */
+    @Override
+    public void beginTransaction() throws IOException {
+    }
+    
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#endTransaction()
+     */
+    @Override
+    public void endTransaction() throws IOException {
+    }
+
     /* (non-Javadoc)
      * @see org.opensc.pkcs15.token.Token#close()
      */
@@ -103,12 +293,13 @@ public class SoftwareToken implements Token {
     public EF createEF(int path, long size, EFAcl acl) throws IOException {
         
         File file = appendToFile(this.currentFile,path);
+        TokenPath efPath = this.currentPath.getChild(path);
+        
+        this.invalidateMetadata(efPath);
         
         if (!file.createNewFile())
             throw new IOException("Cannot create file ["+file.getCanonicalPath()+"].");
         
-        TokenPath efPath = new TokenPath(this.currentPath,path);
-        
         return new EF(efPath,file.length(),acl);
     }
 
@@ -119,12 +310,13 @@ public class SoftwareToken implements Token {
     public DF createDF(int path, long size, DFAcl acl) throws IOException {
         
        File file = appendToFile(this.currentFile,path);
+       TokenPath dfPath = this.currentPath.getChild(path);
+        
+        this.invalidateMetadata(dfPath);
         
         if (!file.mkdir())
             throw new IOException("Cannot create directory ["+file.getCanonicalPath()+"].");
         
-        TokenPath dfPath = new TokenPath(this.currentPath,path);
-        
         return new DF(dfPath,file.length(),acl);
     }
 
@@ -135,10 +327,13 @@ public class SoftwareToken implements Token {
     public void deleteDF(int path) throws IOException {
         
         File file = appendToFile(this.currentFile,path);
+        TokenPath dfPath = this.currentPath.getChild(path);
         
-        if (!file.isDirectory())
+        if (!this.getInfo(dfPath,file).directory)
             throw new IOException("File ["+file.getCanonicalPath()+"] is not a directory.");
         
+        this.invalidateMetadata(dfPath);
+        
         if (!file.delete())
             throw new IOException("Cannot delete directory ["+file.getCanonicalPath()+"].");
         
@@ -151,10 +346,13 @@ public class SoftwareToken implements Token {
     public void deleteEF(int path) throws IOException {
         
         File file = appendToFile(this.currentFile,path);
+        TokenPath efPath = this.currentPath.getChild(path);
         
-        if (!file.isFile())
+        if (!this.getInfo(efPath,file).isFile())
             throw new IOException("File ["+file.getCanonicalPath()+"] is not an oridnary file.");
         
+        this.invalidateMetadata(efPath);
+        
         if (!file.delete())
             throw new IOException("Cannot delete file ["+file.getCanonicalPath()+"].");
         
@@ -166,48 +364,7 @@ public class SoftwareToken implements Token {
     @Override
     public TokenFile getCurrentFile() throws IOException {
         
-        boolean r = this.currentFile.canRead();
-        boolean w = this.currentFile.canWrite();
-        boolean pw = this.currentFile.getParentFile().canWrite();
-        
-        if (this.currentFile.equals(this.mfFile))
-            return new MF(this.currentPath,
-                    this.currentFile.length(),
-                    TokenFileAcl.AC_ALWAYS,
-                    w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                    w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                    w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                    w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                    w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                    pw ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                    w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                    w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                    w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER);
-        
-        if (this.currentFile.isDirectory())
-            return new DF(this.currentPath,
-                    this.currentFile.length(),
-                    TokenFileAcl.AC_ALWAYS,
-                    w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                    w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                    w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                    w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                    w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                    pw ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                    w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER);
-        
-        return new EF(this.currentPath,
-                this.currentFile.length(),
-                r ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                pw ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER,
-                w ? TokenFileAcl.AC_ALWAYS : TokenFileAcl.AC_NEVER);
-        
+        return this.getInfo(this.currentPath,this.currentFile).getTokenFile();
     }
 
     /* (non-Javadoc)
@@ -226,13 +383,40 @@ public class SoftwareToken implements Token {
     public TokenFile select(int path) throws IOException {
         
         File file = appendToFile(this.currentFile,path);
+        TokenPath childPath = this.currentPath.getChild(path);
+        FileInfo info = this.getInfo(childPath,file);
+        
+        if (!info.exists) return null;
+        
+        this.currentFile = file;
+        this.currentPath = childPath;
+        
+        return info.getTokenFile();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#selectPath(org.opensc.pkcs15.token.TokenPath)
+     */
+    @Override
+    public TokenFile selectPath(TokenPath path) throws IOException {
+        
+        if (path.getLength() < 1 || path.getID(0) != PathHelper.MF_ID)
+            throw new IOException("The path ["+path+"] is not a subpath of the MF.");
+        
+        File file = this.mfFile;
         
-        if (!file.exists()) return null;
+        for (int i=1; i<path.getLength(); ++i)
+            file = appendToFile(file,path.getID(i));
+        
+        FileInfo info = this.getInfo(path,file);
+        
+        if (!info.exists)
+            throw new PKCS15Exception("File ["+path+"] does not exist.",PKCS15Exception.ERROR_FILE_NOT_FOUND);
         
         this.currentFile = file;
-        this.currentPath = new TokenPath(this.currentPath,path);
+        this.currentPath = path;
         
-        return this.getCurrentFile();
+        return info.getTokenFile();
     }
 
     /* (non-Javadoc)
@@ -242,17 +426,19 @@ public class SoftwareToken implements Token {
     public DF selectDF(int path) throws IOException {
         
         File file = appendToFile(this.currentFile,path);
+        TokenPath childPath = this.currentPath.getChild(path);
+        FileInfo info = this.getInfo(childPath,file);
         
-        if (!file.exists())
+        if (!info.exists)
             return null;
         
-        if (!file.isDirectory())
+        if (!info.directory)
             throw new IOException("File ["+file.getCanonicalPath()+"] is not a directory.");
         
         this.currentFile = file;
-        this.currentPath = new TokenPath(this.currentPath,path);
+        this.currentPath = childPath;
         
-        return (DF)this.getCurrentFile();
+        return (DF)info.getTokenFile();
     }
 
     /* (non-Javadoc)
@@ -262,14 +448,16 @@ public class SoftwareToken implements Token {
     public DF selectParentDF() throws IOException {
         
         File file = this.currentFile.getParentFile();
+        TokenPath parentPath = this.currentPath.getParent();
+        FileInfo info = this.getInfo(parentPath,file);
         
-        if (!file.isDirectory())
+        if (!info.directory)
             throw new IOException("File ["+file.getCanonicalPath()+"] is not a directory.");
         
         this.currentFile = file;
-        this.currentPath = this.currentPath.getParent();
+        this.currentPath = parentPath;
         
-        return (DF)this.getCurrentFile();
+        return (DF)info.getTokenFile();
     }
 
     /* (non-Javadoc)
@@ -279,17 +467,19 @@ public class SoftwareToken implements Token {
     public EF selectEF(int path) throws IOException {
         
         File file = appendToFile(this.currentFile,path);
+        TokenPath childPath = this.currentPath.getChild(path);
+        FileInfo info = this.getInfo(childPath,file);
         
-        if (!file.exists())
+        if (!info.exists)
             return null;
         
-        if (!file.isFile())
+        if (!info.isFile())
             throw new IOException("File ["+file.getCanonicalPath()+"] is not an oridinary file.");
         
         this.currentFile = file;
-        this.currentPath = new TokenPath(this.currentPath,path);
+        this.currentPath = childPath;
         
-        return (EF)this.getCurrentFile();
+        return (EF)info.getTokenFile();
     }
 
     /* (non-Javadoc)
@@ -309,10 +499,49 @@ public class SoftwareToken implements Token {
     @Override
     public OutputStream writeEFData() throws IOException {
         
+        this.metadata.remove(this.currentPath);
+        
         if (!this.currentFile.delete())
             throw new IOException("Cannot delete EF ["+this.currentFile+"] before writing.");
         
-        return new FileOutputStream(this.currentFile);
+        return new InvalidatingOutputStream(new FileOutputStream(this.currentFile),this.currentPath);
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.Token#writeEFData(long)
+     */
+    @Override
+    public OutputStream writeEFData(long offset) throws IOException {
+        
+        if (!this.getInfo(this.currentPath,this.currentFile).isFile())
+            throw new IOException("File ["+this.currentFile.getCanonicalPath()+"] is not an oridinary file.");
+        
+        final RandomAccessFile raf = new RandomAccessFile(this.currentFile,"rw");
+        
+        if (offset < 0 || offset > raf.length()) {
+            raf.close();
+            throw new PKCS15Exception("Illegal offset ["+offset+"] for EF ["+this.currentPath+"].",PKCS15Exception.ERROR_INVALID_PARAMETER);
+        }
+        
+        raf.seek(offset);
+        
+        return new InvalidatingOutputStream(new OutputStream() {
+
+            @Override
+            public void write(int b) throws IOException {
+                raf.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                raf.write(b,off,len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                raf.close();
+            }
+        },this.currentPath);
     }
 
 }
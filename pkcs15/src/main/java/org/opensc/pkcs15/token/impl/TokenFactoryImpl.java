@@ -61,4 +61,22 @@ public class TokenFactoryImpl extends TokenFactory {
         return new SoftwareToken(file);
     }
 
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.TokenFactory#newMemoryToken()
+     */
+    @Override
+    public Token newMemoryToken() {
+        
+        return new MemoryToken();
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensc.pkcs15.token.TokenFactory#newMemoryToken(java.io.File)
+     */
+    @Override
+    public Token newMemoryToken(File file) throws IOException {
+        
+        return MemoryToken.fromFile(file);
+    }
+
 }
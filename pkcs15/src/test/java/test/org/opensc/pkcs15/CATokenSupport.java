@@ -0,0 +1,68 @@
+package test.org.opensc.pkcs15;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.opensc.pkcs15.asn1.PKCS15Objects;
+import org.opensc.pkcs15.token.PathHelper;
+import org.opensc.pkcs15.token.Token;
+import org.opensc.pkcs15.token.TokenContext;
+import org.opensc.pkcs15.token.TokenPath;
+import org.opensc.pkcs15.token.impl.MemoryToken;
+
+public abstract class CATokenSupport extends TestCase {
+
+    private static final TokenPath ODF_PATH =
+        new TokenPath(new byte[]{0x3F,0x00,0x50,0x15,0x50,0x31});
+
+    protected MemoryToken token;
+
+    public CATokenSupport() {
+        super();
+    }
+
+    public CATokenSupport(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+
+        this.token = loadToken();
+    }
+
+    /**
+     * @return A fresh copy of the test CA token.
+     */
+    protected static MemoryToken loadToken() throws IOException
+    {
+        return MemoryToken.fromZip(CATokenSupport.class.getClassLoader().
+                getResourceAsStream("test/org/opensc/pkcs15/test-ca.zip"));
+    }
+
+    /**
+     * Select the ODF of the PKCS#15 application on the given token.
+     */
+    protected static void selectODF(Token token) throws IOException
+    {
+        PathHelper.selectEF(token,ODF_PATH);
+    }
+
+    /**
+     * @return The PKCS#15 objects read from the ODF of the given token.
+     */
+    protected static PKCS15Objects readObjects(Token token, TokenContext context) throws IOException
+    {
+        selectODF(token);
+
+        return PKCS15Objects.readInstance(token.readEFData(),context);
+    }
+
+    /**
+     * @return The PKCS#15 objects read from the ODF of the given token.
+     */
+    protected static PKCS15Objects readObjects(Token token) throws IOException
+    {
+        return readObjects(token,new TokenContext(token));
+    }
+}
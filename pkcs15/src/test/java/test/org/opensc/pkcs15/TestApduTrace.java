@@ -0,0 +1,113 @@
+package test.org.opensc.pkcs15;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.smartcardio.CardException;
+import javax.smartcardio.CommandAPDU;
+
+import junit.framework.TestCase;
+
+import org.opensc.pkcs15.card.ApduTrace;
+import org.opensc.pkcs15.card.RecordingCardChannel;
+import org.opensc.pkcs15.card.ReplayCard;
+import org.opensc.pkcs15.token.MF;
+import org.opensc.pkcs15.token.PathHelper;
+import org.opensc.pkcs15.token.Token;
+import org.opensc.pkcs15.token.TokenFactory;
+import org.opensc.pkcs15.token.impl.CardOSToken;
+
+public class TestApduTrace extends TestCase {
+
+    private static TokenFactory tokenFactory = TokenFactory.newInstance();
+
+    private static final byte[] SELECT_MF =
+        new CommandAPDU(0x00,0xA4,0x00,0x00,252).getBytes();
+
+    private static final byte[] MF_FCI = new byte[] {
+        0x6F, 0x14,
+        (byte)0x81, 0x02, 0x10, 0x00,
+        (byte)0x83, 0x02, 0x3F, 0x00,
+        (byte)0x86, 0x0A, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        (byte)0x90, 0x00
+    };
+
+    private ApduTrace trace;
+
+    protected void setUp() throws Exception {
+
+        this.trace = new ApduTrace(CardOSToken.CARDOS_4_3_b_ATR);
+        this.trace.add(new ApduTrace.Entry(SELECT_MF,MF_FCI,1000000L));
+    }
+
+    public void testReplay() throws IOException
+    {
+        ReplayCard card = new ReplayCard(this.trace);
+        Token token = tokenFactory.newHardwareToken(card);
+
+        MF mf = token.selectMF();
+
+        assertEquals(PathHelper.MF_PATH,mf.getPath());
+        assertEquals(0x1000,mf.getSize());
+        assertTrue(card.isComplete());
+
+        try {
+            token.selectMF();
+            fail("Replaying beyond the end of the trace succeeded.");
+        } catch (IOException e) {
+            // expected.
+        }
+    }
+
+    public void testRecordAndReadBack() throws IOException, CardException
+    {
+        ReplayCard card = new ReplayCard(this.trace);
+        card.setRecordedLatency(true);
+
+        RecordingCardChannel channel = new RecordingCardChannel(card.getBasicChannel());
+        Token token = new CardOSToken(channel);
+
+        token.selectMF();
+
+        ApduTrace recorded = channel.getTrace();
+
+        assertEquals(1,recorded.size());
+        assertTrue(recorded.getTotalNanos() >= 1000000L);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        recorded.write(bos);
+
+        ApduTrace read = ApduTrace.read(new ByteArrayInputStream(bos.toByteArray()));
+
+        assertEquals(CardOSToken.CARDOS_4_3_b_ATR,read.getATR());
+        assertEquals(1,read.size());
+        assertEquals(recorded.getTotalNanos(),read.getTotalNanos());
+        assertEquals(MF_FCI.length,read.getEntries().get(0).getResponse().length);
+    }
+
+    public void testReadStopsAtEndOfTrace() throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        this.trace.write(bos);
+        int traceLength = bos.size();
+        bos.write(0x42);
+
+        ByteArrayInputStream is = new ByteArrayInputStream(bos.toByteArray());
+        ApduTrace.read(is);
+
+        // the byte after the trace is still available to the caller.
+        assertEquals(0x42,is.read());
+
+        // a corrupt length prefix of the ATR must not be allocated.
+        byte[] corrupt = bos.toByteArray();
+        corrupt[8] = 0x7F;
+
+        try {
+            ApduTrace.read(new ByteArrayInputStream(corrupt,0,traceLength));
+            fail("Reading a trace with a corrupt length succeeded.");
+        } catch (IOException e) {
+            // expected.
+        }
+    }
+}
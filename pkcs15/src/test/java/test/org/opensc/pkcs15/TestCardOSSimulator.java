@@ -0,0 +1,210 @@
+package test.org.opensc.pkcs15;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import javax.smartcardio.Card;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+
+import junit.framework.TestCase;
+
+import org.opensc.pkcs15.AIDs;
+import org.opensc.pkcs15.PKCS15Exception;
+import org.opensc.pkcs15.application.Application;
+import org.opensc.pkcs15.application.ApplicationFactory;
+import org.opensc.pkcs15.card.CardOSSimulator;
+import org.opensc.pkcs15.card.SimulatedCard;
+import org.opensc.pkcs15.card.SimulatedCardTerminal;
+import org.opensc.pkcs15.token.EF;
+import org.opensc.pkcs15.token.PathHelper;
+import org.opensc.pkcs15.token.Token;
+import org.opensc.pkcs15.token.TokenFactory;
+import org.opensc.pkcs15.token.TokenFileAcl;
+import org.opensc.pkcs15.token.TokenPath;
+import org.opensc.pkcs15.token.impl.EFAclImpl;
+
+public class TestCardOSSimulator extends TestCase {
+
+    private static TokenFactory tokenFactory = TokenFactory.newInstance();
+    private static ApplicationFactory applicationFactory = ApplicationFactory.newInstance();
+
+    private static final EFAclImpl EF_ACL =
+        new EFAclImpl(TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,
+                TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,
+                TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS);
+
+    private SimulatedCardTerminal terminal;
+
+    protected void setUp() throws Exception {
+
+        this.terminal = new SimulatedCardTerminal("Simulated reader 0",
+                new CardOSSimulator(CardOSSimulator.LIFE_CYCLE_OPERATIONAL));
+    }
+
+    public void testApplicationCreation() throws IOException, CardException
+    {
+        Token token = tokenFactory.newHardwareToken(this.terminal.connect("*"));
+
+        token.reset();
+
+        Application app = applicationFactory.createApplication(token,AIDs.PKCS15_AID);
+
+        assertNotNull(app);
+
+        List<Application> apps = applicationFactory.listApplications(token);
+
+        assertNotNull(apps);
+        assertEquals(1,apps.size());
+        assertEquals(AIDs.PKCS15_AID,apps.get(0).getAID());
+    }
+
+    public void testReadWriteEF() throws IOException, CardException
+    {
+        Token token = tokenFactory.newHardwareToken(this.terminal.connect("*"));
+
+        token.selectMF();
+        token.createEF(0x2F01,8,EF_ACL);
+
+        EF ef = PathHelper.selectEF(token,new TokenPath(new byte[]{0x3F,0x00,0x2F,0x01}));
+        assertEquals(8,ef.getSize());
+
+        OutputStream os = token.writeEFData(2);
+        os.write(new byte[] { 0x01,0x02,0x03 });
+        os.close();
+
+        InputStream is = token.readEFData();
+        byte[] data = new byte[8];
+        assertEquals(8,is.read(data));
+        assertEquals(0x00,data[1]);
+        assertEquals(0x03,data[4]);
+
+        os = token.writeEFData(6);
+        os.write(new byte[] { 0x01,0x02,0x03 });
+
+        try {
+            os.close();
+            fail("Writing beyond the end of an EF succeeded.");
+        } catch (PKCS15Exception e) {
+            assertEquals(PKCS15Exception.ERROR_MEMORY_OVERFLOW,e.getErrorCode());
+        }
+    }
+
+    public void testTransaction() throws Exception
+    {
+        final Token token = tokenFactory.newHardwareToken(this.terminal.connect("*"));
+
+        token.beginTransaction();
+        token.beginTransaction();
+        token.selectMF();
+        token.endTransaction();
+
+        final Exception[] result = new Exception[1];
+
+        Thread other = new Thread() {
+            public void run() {
+                try {
+                    token.selectMF();
+                } catch (Exception e) {
+                    result[0] = e;
+                }
+            }
+        };
+        other.start();
+        other.join();
+
+        assertNotNull("Transaction of another thread did not block the card.",result[0]);
+
+        token.endTransaction();
+
+        try {
+            token.endTransaction();
+            fail("Ending a transaction, which has not been started, succeeded.");
+        } catch (IllegalStateException e) {
+            // expected.
+        }
+
+        token.selectMF();
+    }
+
+    public void testTransactionOfOtherThread() throws Exception
+    {
+        final Token token = tokenFactory.newHardwareToken(this.terminal.connect("*"));
+
+        token.beginTransaction();
+
+        final Exception[] result = new Exception[1];
+
+        Thread other = new Thread() {
+            public void run() {
+                try {
+                    token.beginTransaction();
+                    token.selectMF();
+                    token.endTransaction();
+                } catch (Exception e) {
+                    result[0] = e;
+                }
+            }
+        };
+        other.start();
+
+        // the other thread waits for our transaction to end.
+        long deadline = System.currentTimeMillis() + 10000L;
+
+        while (other.getState() != Thread.State.WAITING) {
+
+            if (other.getState() == Thread.State.TERMINATED)
+                fail("The other thread did not wait for our transaction, error: "+result[0]);
+
+            if (System.currentTimeMillis() > deadline)
+                fail("The other thread did not block on our transaction, state: "+other.getState());
+
+            Thread.sleep(1);
+        }
+
+        token.endTransaction();
+        other.join(10000L);
+
+        assertFalse("The other thread did not finish its transaction.",other.isAlive());
+        assertNull(result[0]);
+    }
+
+    public void testLimitsAndRemoval() throws IOException, CardException
+    {
+        this.terminal.setMaxResponseLength(256);
+
+        Card card = this.terminal.connect("T=1");
+        Token token = tokenFactory.newHardwareToken(card);
+
+        token.selectMF();
+        token.createEF(0x2F01,8,EF_ACL);
+        token.selectEF(0x2F01);
+
+        // READ BINARY with an extended Le exceeds the response length limit.
+        ResponseAPDU resp = card.getBasicChannel().transmit(new CommandAPDU(0x00,0xB0,0x00,0x00,65536));
+        assertEquals(PKCS15Exception.ERROR_LC_INVALID,resp.getSW());
+
+        try {
+            token.readEFData();
+            fail("Reading with an extended length APDU succeeded.");
+        } catch (PKCS15Exception e) {
+            assertEquals(PKCS15Exception.ERROR_LC_INVALID,e.getErrorCode());
+        }
+
+        CardOSSimulator simulator = this.terminal.removeCard();
+
+        assertFalse(this.terminal.isCardPresent());
+        assertFalse(((SimulatedCard)card).isConnected());
+        assertFalse(this.terminal.waitForCardPresent(1));
+
+        this.terminal.insertCard(simulator);
+
+        token = tokenFactory.newHardwareToken(this.terminal.connect("*"));
+        token.selectMF();
+        assertNotNull(token.selectEF(0x2F01));
+        assertTrue(simulator.getApduCount() > 0);
+    }
+}
@@ -0,0 +1,61 @@
+package test.org.opensc.pkcs15;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.opensc.pkcs15.asn1.PKCS15Objects;
+import org.opensc.pkcs15.asn1.PKCS15X509Certificate;
+import org.opensc.pkcs15.asn1.attr.RSAPrivateKeyObject;
+import org.opensc.pkcs15.asn1.attr.RSAPrivateKeyObjectImpl;
+import org.opensc.pkcs15.asn1.attr.RSAPrivateKeyObjectView;
+import org.opensc.pkcs15.asn1.attr.X509CertificateObject;
+import org.opensc.pkcs15.asn1.attr.X509CertificateObjectView;
+import org.opensc.pkcs15.asn1.helper.DERView;
+import org.opensc.pkcs15.asn1.proxy.ReferenceProxy;
+import org.opensc.pkcs15.token.TokenContext;
+
+public class TestDERView extends CATokenSupport {
+
+    private PKCS15Objects readObjects(boolean useDERViews) throws IOException
+    {
+        TokenContext context = new TokenContext(this.token);
+        context.setUseDERViews(useDERViews);
+
+        return readObjects(this.token,context);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testDERViews() throws Exception
+    {
+        PKCS15Objects objs = this.readObjects(false);
+        PKCS15Objects views = this.readObjects(true);
+
+        X509CertificateObject cert = ((PKCS15X509Certificate)objs.getCertificates().getSequence().get(0)).
+            getX509CertificateAttributes().getValue();
+        X509CertificateObject certView = ((PKCS15X509Certificate)views.getCertificates().getSequence().get(0)).
+            getX509CertificateAttributes().getValue();
+
+        assertTrue(((ReferenceProxy<X509CertificateObject>)certView).resolveEntity() instanceof X509CertificateObjectView);
+        assertEquals(cert.getSubject(),certView.getSubject());
+        assertEquals(cert.getX509Certificate(),certView.getX509Certificate());
+
+        RSAPrivateKeyObjectImpl key = new RSAPrivateKeyObjectImpl();
+        key.setModulus(BigInteger.valueOf(3233));
+        key.setPublicExponent(BigInteger.valueOf(17));
+        key.setPrivateExponent(BigInteger.valueOf(2753));
+        key.setPrimeP(BigInteger.valueOf(61));
+        key.setPrimeQ(BigInteger.valueOf(53));
+        key.setPrimeExponentP(BigInteger.valueOf(53));
+        key.setPrimeExponentQ(BigInteger.valueOf(49));
+        key.setCrtCoefficient(BigInteger.valueOf(38));
+
+        RSAPrivateKeyObject keyView = RSAPrivateKeyObjectView.getInstance(DERView.getInstance(key.getEncoded()));
+
+        assertTrue(keyView instanceof RSAPrivateKeyObjectView);
+        assertEquals(key.getModulus(),keyView.getModulus());
+        assertEquals(key.getPrivateExponent(),keyView.getPrivateExponent());
+        assertEquals(key.getCrtCoefficient(),keyView.getCrtCoefficient());
+        assertTrue(Arrays.equals(key.getEncoded(),keyView.getEncoded()));
+    }
+}
@@ -0,0 +1,112 @@
+package test.org.opensc.pkcs15;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.opensc.pkcs15.AIDs;
+import org.opensc.pkcs15.application.Application;
+import org.opensc.pkcs15.application.ApplicationFactory;
+import org.opensc.pkcs15.asn1.PKCS15Objects;
+import org.opensc.pkcs15.token.PathHelper;
+import org.opensc.pkcs15.token.Token;
+import org.opensc.pkcs15.token.TokenContext;
+import org.opensc.pkcs15.token.TokenFileAcl;
+import org.opensc.pkcs15.token.TokenPath;
+import org.opensc.pkcs15.token.impl.EFAclImpl;
+import org.opensc.pkcs15.token.impl.MemoryToken;
+
+public class TestMemoryToken extends CATokenSupport {
+
+    private static ApplicationFactory applicationFactory = ApplicationFactory.newInstance();
+
+    private static byte[] readFully(InputStream is) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        byte[] buf = new byte[4096];
+        int n;
+
+        while ((n=is.read(buf))>0) {
+
+            bos.write(buf,0,n);
+        }
+        is.close();
+        return bos.toByteArray();
+    }
+
+    public void testPKCS15Objects() throws IOException
+    {
+        List<Application> apps = applicationFactory.listApplications(this.token);
+
+        assertNotNull(apps);
+        assertEquals(1,apps.size());
+        assertEquals(AIDs.PKCS15_AID,apps.get(0).getAID());
+
+        Application app = applicationFactory.newApplication(this.token,AIDs.PKCS15_AID);
+
+        PathHelper.selectDF(this.token,new TokenPath(app.getApplicationTemplate().getPath()));
+
+        this.token.selectEF(0x5031);
+
+        PKCS15Objects objs = PKCS15Objects.readInstance(this.token.readEFData(),new TokenContext(this.token));
+
+        assertEquals(1,objs.getPrivateKeys().getSequence().size());
+        assertEquals(1,objs.getCertificates().getSequence().size());
+    }
+
+    public void testSnapshot() throws IOException
+    {
+        TokenPath path = new TokenPath(new byte[]{0x3F,0x00,0x50,0x15,0x44,0x01});
+
+        PathHelper.selectEF(this.token,path);
+        byte[] original = readFully(this.token.readEFData());
+
+        Token copy = this.token.snapshot();
+
+        PathHelper.selectEF(copy,path);
+        OutputStream os = copy.writeEFData();
+        os.write(new byte[] { 0x01,0x02 });
+        os.close();
+
+        assertEquals(2,readFully(copy.readEFData()).length);
+        assertEquals(original.length,readFully(this.token.readEFData()).length);
+    }
+
+    public void testCreateDeleteAndExport() throws IOException
+    {
+        PathHelper.selectDF(this.token,new TokenPath(new byte[]{0x3F,0x00,0x50,0x15}));
+
+        EFAclImpl acl = new EFAclImpl(TokenFileAcl.AC_NEVER,TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,
+                TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,
+                TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS);
+
+        this.token.createEF(0x4405,16,acl);
+        assertEquals(TokenFileAcl.AC_NEVER,this.token.selectEF(0x4405).getAcRead());
+
+        try {
+            this.token.readEFData();
+            fail("Reading an EF with AC_NEVER succeeded.");
+        } catch (IOException e) {
+            // expected.
+        }
+
+        this.token.selectParentDF();
+        this.token.deleteEF(0x4403);
+        assertNull(this.token.selectEF(0x4403));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        this.token.exportToZip(bos);
+
+        MemoryToken imported = MemoryToken.fromZip(new ByteArrayInputStream(bos.toByteArray()));
+
+        PathHelper.selectDF(imported,new TokenPath(new byte[]{0x3F,0x00,0x50,0x15}));
+        assertNotNull(imported.selectEF(0x4405));
+        imported.selectParentDF();
+        assertNull(imported.selectEF(0x4403));
+        assertNotNull(imported.selectEF(0x4401));
+    }
+}
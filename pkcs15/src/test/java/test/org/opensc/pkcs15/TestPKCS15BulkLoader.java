@@ -0,0 +1,58 @@
+package test.org.opensc.pkcs15;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.opensc.pkcs15.application.ApplicationFactory;
+import org.opensc.pkcs15.application.PKCS15BulkLoader;
+import org.opensc.pkcs15.token.PathHelper;
+import org.opensc.pkcs15.token.TokenPath;
+import org.opensc.pkcs15.token.impl.MemoryToken;
+
+public class TestPKCS15BulkLoader extends CATokenSupport {
+
+    private static ApplicationFactory applicationFactory = ApplicationFactory.newInstance();
+
+    public void testEmptyTokenInfo() throws Exception
+    {
+        MemoryToken token = loadToken();
+
+        PathHelper.selectEF(token,new TokenPath(new byte[]{0x3F,0x00,0x50,0x15,0x50,0x32}));
+        token.writeEFData().close();
+
+        PKCS15BulkLoader loader = new PKCS15BulkLoader(applicationFactory,1);
+
+        PKCS15BulkLoader.Result result = loader.load(Collections.singletonList(token)).get(0);
+
+        assertTrue(result.getError() instanceof IOException);
+        assertNull(result.getTokenInfo());
+    }
+
+    public void testBulkLoader() throws Exception
+    {
+        List<MemoryToken> tokens = new ArrayList<MemoryToken>();
+
+        for (int i=0; i<3; ++i)
+            tokens.add(loadToken());
+
+        PKCS15BulkLoader loader = new PKCS15BulkLoader(applicationFactory,2);
+
+        List<PKCS15BulkLoader.Result> results = loader.load(tokens);
+
+        assertEquals(3,results.size());
+
+        for (int i=0; i<3; ++i) {
+
+            PKCS15BulkLoader.Result result = results.get(i);
+
+            assertSame(tokens.get(i),result.getToken());
+            assertNull(result.getError());
+            assertNotNull(result.getTokenInfo());
+            assertEquals(1,result.getObjects().getPrivateKeys().getSequence().size());
+            assertEquals(1,result.getObjects().getCertificates().getSequence().size());
+            assertTrue(result.getTotalNanos() >= result.getOdfNanos() + result.getDirectoriesNanos());
+        }
+    }
+}
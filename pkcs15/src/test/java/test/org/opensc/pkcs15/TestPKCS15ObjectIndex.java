@@ -0,0 +1,110 @@
+package test.org.opensc.pkcs15;
+
+import java.math.BigInteger;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bouncycastle.asn1.DERObject;
+import org.bouncycastle.asn1.DERObjectIdentifier;
+import org.bouncycastle.asn1.DERPrintableString;
+import org.bouncycastle.asn1.DERUTF8String;
+import org.bouncycastle.asn1.x509.X509Name;
+import org.bouncycastle.asn1.x509.X509NameEntryConverter;
+import org.opensc.pkcs15.asn1.PKCS15Key;
+import org.opensc.pkcs15.asn1.PKCS15ObjectIndex;
+import org.opensc.pkcs15.asn1.PKCS15Objects;
+import org.opensc.pkcs15.asn1.PKCS15PrivateKey;
+import org.opensc.pkcs15.asn1.PKCS15X509Certificate;
+import org.opensc.pkcs15.asn1.attr.X509CertificateObject;
+import org.opensc.pkcs15.asn1.proxy.AbstractReferenceProxy;
+import org.opensc.pkcs15.asn1.proxy.ReferenceProxy;
+
+public class TestPKCS15ObjectIndex extends CATokenSupport {
+
+    public void testObjectIndex() throws Exception
+    {
+        PKCS15Objects objs = readObjects(this.token);
+
+        PKCS15PrivateKey key = objs.getPrivateKeys().getSequence().get(0);
+        PKCS15X509Certificate cert = (PKCS15X509Certificate)objs.getCertificates().getSequence().get(0);
+
+        byte[] id = key.getCommonKeyAttributes().getID().getOctets();
+
+        PKCS15ObjectIndex index = objs.getIndex();
+        assertSame(index,objs.getIndex());
+
+        // building the index does not read the certificate.
+        assertFalse(((AbstractReferenceProxy<?,?>)cert.getX509CertificateAttributes().getValue()).isResolved());
+
+        assertSame(key,index.getPrivateKeyById(id));
+        assertSame(cert,index.getCertificateById(id));
+        assertTrue(index.getById(new byte[]{0x01,0x02,0x03}).isEmpty());
+
+        String label = key.getCommonObjectAttributes().getLabel();
+        assertTrue(index.getByLabel(label).contains(key));
+
+        int usage = key.getCommonKeyAttributes().getUsage().intValue();
+        List<PKCS15Key> keys = index.getKeysByUsage(usage);
+        assertTrue(keys.contains(key));
+
+        X509Certificate x509 = cert.getX509CertificateAttributes().getValue().getX509Certificate();
+        X509CertificateObject value = cert.getX509CertificateAttributes().getValue();
+        assertSame(cert,index.getCertificateByIssuerAndSerial(value.getIssuer(),x509.getSerialNumber()));
+        assertNull(index.getCertificateByIssuerAndSerial(value.getIssuer(),x509.getSerialNumber().add(BigInteger.ONE)));
+
+        // relabel the key in place and write back the directory.
+        key.getCommonObjectAttributes().setLabel("relabelled");
+        objs.updateEntity(objs.getPrivateKeys());
+
+        PKCS15ObjectIndex updated = objs.getIndex();
+        assertNotSame(index,updated);
+        assertSame(key,updated.getByLabel("relabelled").get(0));
+        assertFalse(updated.getByLabel(label).contains(key));
+
+        // writing back the directory through its own proxy drops the index as well.
+        key.getCommonObjectAttributes().setLabel("proxied");
+        ((ReferenceProxy<?>)objs.getPrivateKeys()).updateEntity();
+
+        updated = objs.getIndex();
+        assertSame(key,updated.getByLabel("proxied").get(0));
+        assertTrue(updated.getByLabel("relabelled").isEmpty());
+
+        // replacing a directory drops the index as well.
+        objs.setCertificates(null);
+        assertNull(objs.getIndex().getCertificateById(id));
+    }
+
+    private static X509Name reencode(X509Name name, X509NameEntryConverter converter)
+    {
+        return new X509Name(name.getOIDs(),name.getValues(),converter);
+    }
+
+    public void testIssuerEncoding() throws Exception
+    {
+        PKCS15Objects objs = readObjects(this.token);
+
+        PKCS15X509Certificate cert = (PKCS15X509Certificate)objs.getCertificates().getSequence().get(0);
+        X509CertificateObject value = cert.getX509CertificateAttributes().getValue();
+        BigInteger serialNumber = value.getSerialNumber().getValue();
+
+        X509Name printable = reencode(value.getIssuer(),new X509NameEntryConverter() {
+            public DERObject getConvertedValue(DERObjectIdentifier oid, String value) {
+                return new DERPrintableString(value);
+            }
+        });
+
+        X509Name utf8 = reencode(value.getIssuer(),new X509NameEntryConverter() {
+            public DERObject getConvertedValue(DERObjectIdentifier oid, String value) {
+                return new DERUTF8String(value);
+            }
+        });
+
+        assertFalse(Arrays.equals(printable.getDEREncoded(),utf8.getDEREncoded()));
+
+        // the issuer matches regardless of the string types of its encoding.
+        PKCS15ObjectIndex index = objs.getIndex();
+        assertSame(cert,index.getCertificateByIssuerAndSerial(printable,serialNumber));
+        assertSame(cert,index.getCertificateByIssuerAndSerial(utf8,serialNumber));
+    }
+}
@@ -0,0 +1,145 @@
+package test.org.opensc.pkcs15;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.bouncycastle.asn1.DEROctetString;
+import org.opensc.pkcs15.asn1.ContextHolder;
+import org.opensc.pkcs15.asn1.PKCS15Certificate;
+import org.opensc.pkcs15.asn1.PKCS15DataObject;
+import org.opensc.pkcs15.asn1.PKCS15Objects;
+import org.opensc.pkcs15.asn1.PKCS15OpaqueDataObject;
+import org.opensc.pkcs15.asn1.PKCS15SecretKey;
+import org.opensc.pkcs15.asn1.attr.CommonDataObjectAttributes;
+import org.opensc.pkcs15.asn1.attr.CommonKeyAttributes;
+import org.opensc.pkcs15.asn1.attr.CommonObjectAttributes;
+import org.opensc.pkcs15.asn1.attr.GenericSecretKeyAttributes;
+import org.opensc.pkcs15.asn1.attr.OpaqueObject;
+import org.opensc.pkcs15.asn1.attr.OpaqueObjectImpl;
+import org.opensc.pkcs15.asn1.proxy.AbstractReferenceProxy;
+import org.opensc.pkcs15.asn1.proxy.ReferenceProxyFactory;
+import org.opensc.pkcs15.asn1.ref.Path;
+import org.opensc.pkcs15.asn1.sequence.SequenceOfImpl;
+import org.opensc.pkcs15.token.PathHelper;
+import org.opensc.pkcs15.token.TokenContext;
+import org.opensc.pkcs15.token.TokenFileAcl;
+import org.opensc.pkcs15.token.TokenPath;
+import org.opensc.pkcs15.token.impl.EFAclImpl;
+
+public class TestPKCS15Objects extends CATokenSupport {
+
+    public void testLazyPKCS15Objects() throws IOException
+    {
+        selectODF(this.token);
+
+        PKCS15Objects objs = PKCS15Objects.readLazyInstance(this.token.readEFData(),new TokenContext(this.token));
+
+        assertTrue(objs.getCertificates() instanceof AbstractReferenceProxy);
+
+        Iterator<PKCS15Certificate> it = objs.getCertificates().iterator();
+        assertTrue(it.hasNext());
+        assertNotNull(it.next());
+        assertFalse(it.hasNext());
+
+        // iterating does not materialize the referenced directory.
+        assertFalse(((AbstractReferenceProxy<?,?>)objs.getCertificates()).isResolved());
+
+        assertEquals(1,objs.getPrivateKeys().getSequence().size());
+        assertEquals(1,objs.getCertificates().getSequence().size());
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        objs.writeInstance(bos);
+
+        PKCS15Objects copy = PKCS15Objects.readInstance(new ByteArrayInputStream(bos.toByteArray()),new TokenContext(this.token));
+
+        assertEquals(1,copy.getPrivateKeys().getSequence().size());
+        assertNotNull(copy.getAuthObjects());
+    }
+
+    public void testSecretKeysAndDataObjects() throws IOException
+    {
+        PathHelper.selectDF(this.token,new TokenPath(new byte[]{0x3F,0x00,0x50,0x15}));
+
+        EFAclImpl acl = new EFAclImpl(TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,
+                TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,
+                TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS,TokenFileAcl.AC_ALWAYS);
+
+        this.token.createEF(0x4410,16,acl);
+        this.token.selectEF(0x4410);
+        OutputStream os = this.token.writeEFData();
+        os.write(new byte[] { 0x01,0x02,0x03 });
+        os.close();
+
+        PKCS15OpaqueDataObject dataObject = new PKCS15OpaqueDataObject();
+        dataObject.setCommonObjectAttributes(new CommonObjectAttributes());
+        dataObject.getCommonObjectAttributes().setLabel("payload");
+        dataObject.setCommonDataObjectAttributes(new CommonDataObjectAttributes());
+        dataObject.getCommonDataObjectAttributes().setApplicationName("test");
+        Path path = new Path();
+        path.setPath(new byte[]{0x3F,0x00,0x50,0x15,0x44,0x10});
+        dataObject.setValue(new ReferenceProxyFactory<Path,OpaqueObject>(OpaqueObject.class).
+                getProxy(path,new TokenContext(this.token).getOpaqueObjectDirectory()));
+
+        PKCS15SecretKey secretKey = new PKCS15SecretKey();
+        secretKey.setKeyType(PKCS15SecretKey.DES3_KEY);
+        secretKey.setCommonObjectAttributes(new CommonObjectAttributes());
+        secretKey.setCommonKeyAttributes(new CommonKeyAttributes());
+        secretKey.getCommonKeyAttributes().setID(new DEROctetString(new byte[]{0x45}));
+        secretKey.setGenericSecretKeyAttributes(new GenericSecretKeyAttributes());
+        secretKey.getGenericSecretKeyAttributes().setValue(new OpaqueObjectImpl(new byte[24]));
+
+        PKCS15Objects objs = new PKCS15Objects();
+        objs.setDataObjects(new SequenceOfImpl<PKCS15DataObject>(Collections.<PKCS15DataObject>singletonList(dataObject)));
+        objs.setSecretKeys(new SequenceOfImpl<PKCS15SecretKey>(Collections.singletonList(secretKey)));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        objs.writeInstance(bos);
+
+        PKCS15Objects read = PKCS15Objects.readLazyInstance(new ByteArrayInputStream(bos.toByteArray()),new TokenContext(this.token));
+
+        PKCS15SecretKey key = read.getSecretKeys().getSequence().get(0);
+        assertEquals(PKCS15SecretKey.DES3_KEY,key.getKeyType());
+        assertEquals(24,key.getGenericSecretKeyAttributes().getValue().getData().length);
+
+        PKCS15DataObject dobj = read.getDataObjects().getSequence().get(0);
+        assertEquals("payload",dobj.getCommonObjectAttributes().getLabel());
+        assertEquals("test",dobj.getCommonDataObjectAttributes().getApplicationName());
+
+        // enumerating data objects does not fetch their payload.
+        assertFalse(((AbstractReferenceProxy<?,?>)dobj.getValue()).isResolved());
+        assertEquals(3,dobj.getValue().getData().length);
+    }
+
+    public void testExplicitContext() throws Exception
+    {
+        final PKCS15Objects objs = readObjects(this.token);
+
+        assertNull(ContextHolder.getContext());
+
+        // resolve the directories on a thread without a registered context.
+        final int[] sizes = new int[2];
+        final Throwable[] error = new Throwable[1];
+
+        Thread t = new Thread() {
+            public void run() {
+                try {
+                    sizes[0] = objs.getPrivateKeys().getSequence().size();
+                    sizes[1] = objs.getCertificates().getSequence().size();
+                } catch (Throwable e) {
+                    error[0] = e;
+                }
+            }
+        };
+
+        t.start();
+        t.join();
+
+        assertNull(error[0]);
+        assertEquals(1,sizes[0]);
+        assertEquals(1,sizes[1]);
+    }
+}
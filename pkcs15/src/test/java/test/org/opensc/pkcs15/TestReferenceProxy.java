@@ -0,0 +1,161 @@
+package test.org.opensc.pkcs15;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import junit.framework.TestCase;
+
+import org.bouncycastle.asn1.DERInteger;
+import org.bouncycastle.asn1.DERNull;
+import org.opensc.pkcs15.asn1.Context;
+import org.opensc.pkcs15.asn1.ContextHolder;
+import org.opensc.pkcs15.asn1.basic.NullKeyInfo;
+import org.opensc.pkcs15.asn1.basic.NullKeyInfoImpl;
+import org.opensc.pkcs15.asn1.proxy.Directory;
+import org.opensc.pkcs15.asn1.proxy.InstanceFactory;
+import org.opensc.pkcs15.asn1.proxy.ReferenceProxy;
+import org.opensc.pkcs15.asn1.proxy.ReferenceProxyFactory;
+import org.opensc.pkcs15.asn1.proxy.StreamResolver;
+import org.opensc.pkcs15.asn1.proxy.StreamResolverDirectory;
+import org.opensc.pkcs15.token.TokenContext;
+
+public class TestReferenceProxy extends TestCase {
+
+    private static class CountingDirectory implements Directory<DERInteger,NullKeyInfo> {
+
+        int resolutions;
+        boolean fail;
+
+        public NullKeyInfo resolveReference(DERInteger ref) {
+
+            synchronized (this) {
+                ++this.resolutions;
+            }
+
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return this.fail ? null : new NullKeyInfoImpl();
+        }
+
+        public void updateEntity(DERInteger ref, NullKeyInfo entity) {
+        }
+    }
+
+    private ReferenceProxyFactory<DERInteger,NullKeyInfo> factory;
+    private CountingDirectory directory;
+
+    protected void setUp() throws Exception {
+
+        this.factory = new ReferenceProxyFactory<DERInteger,NullKeyInfo>(NullKeyInfo.class);
+        this.directory = new CountingDirectory();
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testSingleFlight() throws InterruptedException
+    {
+        final NullKeyInfo proxy = this.factory.getProxy(new DERInteger(1),this.directory);
+        final NullKeyInfo[] results = new NullKeyInfo[8];
+
+        Thread[] threads = new Thread[results.length];
+
+        for (int i=0; i<threads.length; ++i) {
+
+            final int n = i;
+
+            threads[i] = new Thread() {
+                public void run() {
+                    results[n] = ((ReferenceProxy<NullKeyInfo>)proxy).resolveEntity();
+                }
+            };
+            threads[i].start();
+        }
+
+        for (Thread t : threads)
+            t.join();
+
+        assertEquals(1,this.directory.resolutions);
+
+        for (NullKeyInfo result : results)
+            assertSame(results[0],result);
+
+        assertEquals(new DERInteger(1).getDERObject(),proxy.getDERObject());
+    }
+
+    public void testFailureCaching()
+    {
+        this.directory.fail = true;
+
+        NullKeyInfo proxy = this.factory.getProxy(new DERInteger(1),this.directory);
+
+        for (int i=0; i<2; ++i) {
+            try {
+                proxy.getParameters();
+                fail("Resolving an unresolvable reference succeeded.");
+            } catch (IllegalArgumentException e) {
+                // expected.
+            }
+        }
+
+        assertEquals(2,this.directory.resolutions);
+
+        this.factory.setFailureCacheMillis(-1L);
+        proxy = this.factory.getProxy(new DERInteger(2),this.directory);
+
+        for (int i=0; i<2; ++i) {
+            try {
+                proxy.getParameters();
+                fail("Resolving an unresolvable reference succeeded.");
+            } catch (IllegalArgumentException e) {
+                // expected.
+            }
+        }
+
+        assertEquals(3,this.directory.resolutions);
+    }
+
+    public void testCapturedContext()
+    {
+        final Context[] contexts = new Context[2];
+
+        StreamResolver<DERInteger> resolver = new StreamResolver<DERInteger>() {
+            public InputStream readReference(DERInteger ref) {
+                return new ByteArrayInputStream(DERNull.INSTANCE.getDEREncoded());
+            }
+            public OutputStream writeReference(DERInteger ref) {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        InstanceFactory<NullKeyInfo> instanceFactory = new InstanceFactory<NullKeyInfo>(NullKeyInfo.class) {
+            public NullKeyInfo getInstance(Object obj, Context context) {
+                contexts[0] = context;
+                contexts[1] = ContextHolder.getContext();
+                return new NullKeyInfoImpl();
+            }
+        };
+
+        Context context = new TokenContext(null);
+
+        ContextHolder.setContext(context);
+        NullKeyInfo proxy;
+
+        try {
+            proxy = this.factory.getProxy(new DERInteger(1),
+                    new StreamResolverDirectory<DERInteger,NullKeyInfo>(resolver,instanceFactory));
+        } finally {
+            ContextHolder.removeContext();
+        }
+
+        ((ReferenceProxy<?>)proxy).resolveEntity();
+
+        // the captured context is passed to the directory without
+        // being registered for the resolving thread.
+        assertSame(context,contexts[0]);
+        assertNull(contexts[1]);
+    }
+}
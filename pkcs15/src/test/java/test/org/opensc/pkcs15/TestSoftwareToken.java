@@ -1,10 +1,13 @@
 package test.org.opensc.pkcs15;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.cert.CertificateParsingException;
 import java.util.List;
 import java.util.zip.ZipEntry;
@@ -30,11 +33,14 @@ import org.opensc.pkcs15.asn1.attr.CertificateObject;
 import org.opensc.pkcs15.asn1.attr.PublicKeyObject;
 import org.opensc.pkcs15.asn1.basic.TokenInfo;
 import org.opensc.pkcs15.asn1.proxy.ReferenceProxy;
+import org.opensc.pkcs15.token.EF;
 import org.opensc.pkcs15.token.PathHelper;
 import org.opensc.pkcs15.token.Token;
 import org.opensc.pkcs15.token.TokenContext;
 import org.opensc.pkcs15.token.TokenFactory;
 import org.opensc.pkcs15.token.TokenPath;
+import org.opensc.pkcs15.token.impl.CachingToken;
+import org.opensc.pkcs15.token.impl.SoftwareToken;
 import org.opensc.pkcs15.util.Util;
 
 public class TestSoftwareToken extends TestCase {
@@ -218,6 +224,103 @@ public class TestSoftwareToken extends TestCase {
         this.checkEquality(this.tokenDir);
     }
     
+    private static byte[] readFully(InputStream is) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        
+        byte[] buf = new byte[4096]; 
+        int n;
+        
+        while ((n=is.read(buf))>0) {
+            
+            bos.write(buf,0,n);
+        }
+        is.close();
+        return bos.toByteArray();
+    }
+    
+    public void testPartialWrite() throws IOException
+    {
+        Token token = tokenFactory.newSoftwareToken(this.tokenDir);
+        TokenPath path = new TokenPath(new byte[]{0x3F,0x00,0x50,0x15,0x44,0x01});
+        
+        EF ef = PathHelper.selectEF(token,path);
+        assertEquals(path,ef.getPath());
+        
+        byte[] before = readFully(token.readEFData());
+        
+        OutputStream os = token.writeEFData(4);
+        os.write(new byte[]{0x01,0x02,0x03});
+        os.close();
+        
+        byte[] after = readFully(token.readEFData());
+        
+        assertEquals(before.length,after.length);
+        
+        for (int i=0;i<after.length;++i) {
+            
+            if (i>=4 && i<7)
+                assertEquals(i-3,after[i]);
+            else
+                assertEquals(before[i],after[i]);
+        }
+    }
+    
+    public void testCachingToken() throws IOException
+    {
+        CachingToken token = new CachingToken(tokenFactory.newSoftwareToken(this.tokenDir),1024);
+        TokenPath path = new TokenPath(new byte[]{0x3F,0x00,0x50,0x15,0x44,0x01});
+        
+        PathHelper.selectEF(token,path);
+        
+        byte[] before = readFully(token.readEFData());
+        assertEquals(before.length,token.getCacheSize());
+        
+        OutputStream os = token.writeEFData(0);
+        os.write(before[0]+1);
+        os.close();
+        
+        assertEquals(0,token.getCacheSize());
+        
+        byte[] after = readFully(token.readEFData());
+        assertEquals(before[0]+1,after[0]);
+        assertEquals(after.length,token.getCacheSize());
+        
+        token.invalidateAll();
+        assertEquals(0,token.getCacheSize());
+    }
+    
+    public void testMetadataIndex() throws IOException
+    {
+        SoftwareToken token = new SoftwareToken(this.tokenDir,-1L);
+        TokenPath path = new TokenPath(new byte[]{0x3F,0x00,0x50,0x15,0x44,0x01});
+        
+        long size = PathHelper.selectEF(token,path).getSize();
+        
+        // external modification is not seen until the index is invalidated.
+        File file = new File(this.tokenDir,"3F00/5015/4401");
+        FileOutputStream fos = new FileOutputStream(file,true);
+        fos.write(new byte[] { 0x00,0x00 });
+        fos.close();
+        
+        token.selectParentDF();
+        assertEquals(size,token.selectEF(0x4401).getSize());
+        
+        token.invalidateMetadata();
+        assertEquals(size+2,token.getCurrentFile().getSize());
+        
+        // own writes update the index immediately.
+        OutputStream os = token.writeEFData();
+        os.write(new byte[] { 0x01,0x02,0x03 });
+        os.close();
+        
+        assertEquals(3,token.getCurrentFile().getSize());
+        
+        token.selectParentDF();
+        token.deleteEF(0x4401);
+        assertNull(token.selectEF(0x4401));
+    }
+    
     public void testApplicationCreation() throws IOException
     {
         Token token = tokenFactory.newSoftwareToken(this.tokenDir2);
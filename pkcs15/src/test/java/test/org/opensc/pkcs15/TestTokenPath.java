@@ -0,0 +1,74 @@
+package test.org.opensc.pkcs15;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import junit.framework.TestCase;
+
+import org.opensc.pkcs15.token.PathHelper;
+import org.opensc.pkcs15.token.TokenPath;
+
+public class TestTokenPath extends TestCase {
+
+    private static final byte[] LONG_PATH =
+        new byte[] { 0x3F,0x00,0x50,0x15,0x44,0x01,0x44,0x02,0x44,0x03 };
+
+    public void testPackedAndFallback()
+    {
+        TokenPath path = new TokenPath(LONG_PATH);
+
+        assertEquals(5,path.getLength());
+        assertEquals(0x4403,path.getTailID());
+        assertEquals("3F00/5015/4401/4402/4403",path.toString());
+
+        TokenPath parent = path.getParent();
+
+        assertEquals(4,parent.getLength());
+        assertEquals(path,parent.getChild(0x4403));
+        assertEquals(parent,new TokenPath(new byte[] { 0x3F,0x00,0x50,0x15,0x44,0x01,0x44,0x02 }));
+        assertEquals(parent.hashCode(),parent.getChild(0x4403).getParent().hashCode());
+        assertTrue(parent.isPrefixOf(path));
+        assertTrue(PathHelper.MF_PATH.isPrefixOf(parent));
+        assertFalse(path.isPrefixOf(parent));
+        assertEquals(PathHelper.MF_PATH,parent.getParent().getParent().getParent());
+
+        try {
+            parent.getID(4);
+            fail("Accessing an ID beyond the length of a path succeeded.");
+        } catch (IndexOutOfBoundsException e) {
+            // expected.
+        }
+    }
+
+    public void testInterning()
+    {
+        assertSame(PathHelper.MF_PATH,new TokenPath(PathHelper.MF_ID).getChild(0x5015).getParent());
+        assertSame(PathHelper.MF_PATH,TokenPath.valueOf(new byte[] { 0x3F,0x00 }));
+
+        TokenPath app = new TokenPath(new byte[] { 0x3F,0x00,0x50,0x15 }).intern();
+
+        assertSame(app,PathHelper.MF_PATH.getChild(0x5015));
+        assertSame(app,app.getChild(0x5031).getParent());
+    }
+
+    public void testSerialization() throws Exception
+    {
+        TokenPath[] paths = new TokenPath[] {
+            PathHelper.MF_PATH, new TokenPath(LONG_PATH)
+        };
+
+        for (TokenPath path : paths) {
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(bos);
+            oos.writeObject(path);
+            oos.close();
+
+            ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+
+            assertEquals(path,ois.readObject());
+        }
+    }
+}
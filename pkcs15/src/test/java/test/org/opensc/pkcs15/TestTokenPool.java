@@ -0,0 +1,136 @@
+package test.org.opensc.pkcs15;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.opensc.pkcs15.card.CardOSSimulator;
+import org.opensc.pkcs15.card.SimulatedCardTerminal;
+import org.opensc.pkcs15.token.TokenFactory;
+import org.opensc.pkcs15.token.TokenPool;
+
+public class TestTokenPool extends TestCase {
+
+    private static TokenFactory tokenFactory = TokenFactory.newInstance();
+
+    private List<SimulatedCardTerminal> terminals;
+    private TokenPool pool;
+
+    protected void setUp() throws Exception {
+
+        this.terminals = new ArrayList<SimulatedCardTerminal>();
+
+        for (int i=0; i<2; ++i)
+            this.terminals.add(new SimulatedCardTerminal("Simulated reader "+i,new CardOSSimulator()));
+
+        this.pool = new TokenPool(tokenFactory,this.terminals);
+    }
+
+    protected void tearDown() throws Exception {
+
+        this.pool.close();
+    }
+
+    public void testLeases() throws Exception
+    {
+        TokenPool.Lease lease1 = this.pool.acquire(0);
+        TokenPool.Lease lease2 = this.pool.acquire(0);
+
+        assertNotSame(lease1.getTerminal(),lease2.getTerminal());
+        assertEquals(2,this.pool.getTokenCount());
+        assertEquals(2,this.pool.getLeasedCount());
+
+        lease1.getToken().selectMF();
+
+        assertNull(this.pool.acquire(10));
+        assertEquals(1,this.pool.getMaxQueueDepth());
+
+        lease1.release();
+        lease1.release();
+
+        TokenPool.Lease lease3 = this.pool.acquire(10);
+
+        assertNotNull(lease3);
+        assertSame(lease1.getTerminal(),lease3.getTerminal());
+        assertEquals(3,this.pool.getTotalLeases());
+        assertTrue(this.pool.getUtilization() > 0.0);
+
+        try {
+            lease1.getToken();
+            fail("Using a released lease succeeded.");
+        } catch (IllegalStateException e) {
+            // expected.
+        }
+
+        lease2.release();
+        lease3.release();
+    }
+
+    public void testCardRemoval() throws Exception
+    {
+        this.pool.refresh();
+        assertEquals(2,this.pool.getTokenCount());
+
+        TokenPool.Lease lease = this.pool.acquire(0);
+
+        SimulatedCardTerminal terminal = (SimulatedCardTerminal)lease.getTerminal();
+        CardOSSimulator simulator = terminal.removeCard();
+
+        this.pool.refresh();
+        assertEquals(1,this.pool.getTokenCount());
+
+        lease.release();
+        assertEquals(0,this.pool.getLeasedCount());
+
+        terminal.insertCard(simulator);
+        this.pool.refresh();
+        assertEquals(2,this.pool.getTokenCount());
+
+        lease = this.pool.acquire(0);
+        lease.invalidate();
+        lease.release();
+        assertEquals(1,this.pool.getTokenCount());
+
+        this.pool.refresh();
+        assertEquals(2,this.pool.getTokenCount());
+    }
+
+    public void testInvalidateWhileLeased() throws Exception
+    {
+        this.pool.refresh();
+
+        TokenPool.Lease lease = this.pool.acquire(0);
+        lease.invalidate();
+
+        // the invalidated token is not reopened while it is leased.
+        this.pool.refresh();
+        assertEquals(2,this.pool.getTokenCount());
+        assertEquals(1,this.pool.getLeasedCount());
+
+        lease.getToken().selectMF();
+
+        lease.release();
+        assertEquals(1,this.pool.getTokenCount());
+        assertEquals(0,this.pool.getLeasedCount());
+
+        this.pool.refresh();
+        assertEquals(2,this.pool.getTokenCount());
+
+        TokenPool.Lease lease1 = this.pool.acquire(0);
+        TokenPool.Lease lease2 = this.pool.acquire(0);
+
+        lease1.getToken().selectMF();
+        lease2.getToken().selectMF();
+
+        // a leased token of a removed card still counts as leased.
+        ((SimulatedCardTerminal)lease1.getTerminal()).removeCard();
+        this.pool.refresh();
+        assertEquals(1,this.pool.getTokenCount());
+        assertEquals(2,this.pool.getLeasedCount());
+
+        lease1.release();
+        lease2.release();
+        assertEquals(0,this.pool.getLeasedCount());
+    }
+}
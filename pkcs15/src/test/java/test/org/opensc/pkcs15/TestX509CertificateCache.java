@@ -0,0 +1,38 @@
+package test.org.opensc.pkcs15;
+
+import java.security.cert.X509Certificate;
+
+import org.opensc.pkcs15.asn1.PKCS15Objects;
+import org.opensc.pkcs15.asn1.PKCS15X509Certificate;
+import org.opensc.pkcs15.asn1.attr.X509CertificateCache;
+import org.opensc.pkcs15.token.Token;
+
+public class TestX509CertificateCache extends CATokenSupport {
+
+    private X509Certificate readCertificate(Token token) throws Exception
+    {
+        PKCS15Objects objs = readObjects(token);
+
+        PKCS15X509Certificate cert = (PKCS15X509Certificate)objs.getCertificates().getSequence().get(0);
+
+        X509Certificate ret = cert.getX509CertificateAttributes().getValue().getX509Certificate();
+
+        // the decoded certificate is memoized by the certificate object.
+        assertSame(ret,cert.getX509CertificateAttributes().getValue().getX509Certificate());
+
+        return ret;
+    }
+
+    public void testCertificateCache() throws Exception
+    {
+        X509CertificateCache.getDefault().clear();
+
+        Token other = loadToken();
+
+        X509Certificate cert = this.readCertificate(this.token);
+
+        // an identical certificate on another token shares the decoded instance.
+        assertSame(cert,this.readCertificate(other));
+        assertEquals(1,X509CertificateCache.getDefault().size());
+    }
+}